@@ -0,0 +1,31 @@
+package com.intelligence.capture.bench;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * One generated turn per (corpus, size) pair. Sizes run up to the 60k
+ * {@code CaptureResponseRequest.responseText} cap; the prompt is capped at 20k like
+ * {@code CapturePromptRequest.prompt}.
+ */
+@State(Scope.Benchmark)
+public class CorpusState {
+
+    @Param({"CHAT", "PII_DENSE", "DIGIT_LOG", "BACKTRACK"})
+    public RiskCorpus corpus;
+
+    @Param({"100", "1000", "10000", "60000"})
+    public int size;
+
+    public String prompt;
+    public String response;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        response = corpus.generate(size);
+        prompt = corpus.generate(Math.min(size, 20_000));
+    }
+}
@@ -0,0 +1,27 @@
+package com.intelligence.capture.bench;
+
+import com.intelligence.capture.risk.PiiDetector;
+import com.intelligence.capture.risk.PiiMatch;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PiiDetectorBenchmark {
+
+    @Benchmark
+    public Map<String, List<String>> find(CorpusState s) {
+        return PiiDetector.find(s.response);
+    }
+
+    @Benchmark
+    public List<PiiMatch> scan(CorpusState s) {
+        return PiiDetector.scan(s.response);
+    }
+}
@@ -0,0 +1,50 @@
+package com.intelligence.capture.bench;
+
+import com.intelligence.capture.risk.PiiDetector;
+import com.intelligence.capture.risk.PiiMatch;
+import com.intelligence.capture.risk.PiiType;
+import com.intelligence.capture.risk.Redactor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// redact* reuse the spans from setup, as RiskService does; scanAndRedact pays for the scan too.
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedactionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Spans {
+        final Redactor tag = Redactor.tagAll();
+        final Redactor mixed = new Redactor(Map.of(
+                PiiType.EMAIL, Redactor.Mask.PARTIAL,
+                PiiType.CREDIT_CARD, Redactor.Mask.PARTIAL,
+                PiiType.SSN, Redactor.Mask.HASH));
+        List<PiiMatch> matches;
+
+        @Setup
+        public void setUp(CorpusState s) {
+            matches = PiiDetector.scan(s.response);
+        }
+    }
+
+    @Benchmark
+    public String redactTag(CorpusState s, Spans spans) {
+        return spans.tag.redact(s.response, spans.matches);
+    }
+
+    @Benchmark
+    public String redactMixed(CorpusState s, Spans spans) {
+        return spans.mixed.redact(s.response, spans.matches);
+    }
+
+    @Benchmark
+    public String scanAndRedact(CorpusState s, Spans spans) {
+        return spans.tag.redact(s.response, PiiDetector.scan(s.response));
+    }
+}
@@ -0,0 +1,90 @@
+package com.intelligence.capture.bench;
+
+import java.util.Random;
+
+/**
+ * Deterministic text generator for the risk pipeline benchmarks. Every kind is built
+ * from a fixed seed so runs on different machines see the same input.
+ */
+public enum RiskCorpus {
+
+    /** Ordinary conversation, no PII and the odd keyword. */
+    CHAT {
+        @Override
+        void append(StringBuilder sb, Random rnd) {
+            int words = 6 + rnd.nextInt(14);
+            for (int i = 0; i < words; i++) {
+                if (i > 0) sb.append(' ');
+                sb.append(WORDS[rnd.nextInt(WORDS.length)]);
+            }
+            sb.append(rnd.nextInt(5) == 0 ? "?\n" : ". ");
+        }
+    },
+
+    /** Every sentence carries at least one email, SSN, phone or card number. */
+    PII_DENSE {
+        @Override
+        void append(StringBuilder sb, Random rnd) {
+            switch (rnd.nextInt(4)) {
+                case 0 -> sb.append("contact ").append(WORDS[rnd.nextInt(WORDS.length)])
+                        .append('.').append(rnd.nextInt(1000)).append("@example.com");
+                case 1 -> sb.append("ssn ").append(100 + rnd.nextInt(800)).append('-')
+                        .append(10 + rnd.nextInt(89)).append('-').append(1000 + rnd.nextInt(8999));
+                case 2 -> sb.append("call +1 (").append(200 + rnd.nextInt(799)).append(") ")
+                        .append(200 + rnd.nextInt(799)).append('-').append(1000 + rnd.nextInt(8999));
+                default -> sb.append("card ").append(CARDS[rnd.nextInt(CARDS.length)]);
+            }
+            sb.append(", ").append(WORDS[rnd.nextInt(WORDS.length)]).append(' ');
+        }
+    },
+
+    /** Pasted application logs: timestamps, ids, latencies and hex trace ids. */
+    DIGIT_LOG {
+        @Override
+        void append(StringBuilder sb, Random rnd) {
+            sb.append("2026-10-").append(10 + rnd.nextInt(18)).append(' ')
+              .append(10 + rnd.nextInt(13)).append(':').append(10 + rnd.nextInt(49)).append(':')
+              .append(10 + rnd.nextInt(49)).append('.').append(100 + rnd.nextInt(899))
+              .append(" INFO 1152 --- [exec-").append(rnd.nextInt(200)).append("] req=")
+              .append(Math.abs(rnd.nextLong()) % 10_000_000_000L).append(" bytes=").append(rnd.nextInt(1 << 20))
+              .append(" lat=").append(rnd.nextInt(900)).append("ms trace=")
+              .append(Long.toHexString(rnd.nextLong())).append('\n');
+        }
+    },
+
+    /**
+     * Long separated digit runs that never close on a word boundary; the worst case for
+     * the old lazy {@code (?:\d[ -]*?){13,16}\b} credit card pattern.
+     */
+    BACKTRACK {
+        @Override
+        void append(StringBuilder sb, Random rnd) {
+            for (int i = 0; i < 24; i++) {
+                sb.append((char) ('0' + rnd.nextInt(10)));
+                sb.append(rnd.nextBoolean() ? ' ' : '-');
+            }
+            sb.append("x ");
+        }
+    };
+
+    private static final String[] WORDS = {
+            "the", "service", "returns", "a", "list", "of", "users", "when", "called", "with",
+            "token", "please", "explain", "why", "my", "query", "is", "slow", "refactor", "this",
+            "function", "into", "smaller", "pieces", "and", "add", "tests", "for", "edge", "cases"
+    };
+
+    // Luhn-valid test numbers in the formats people actually paste.
+    private static final String[] CARDS = {
+            "4111 1111 1111 1111", "5500-0000-0000-0004", "340000000000009", "6011000000000004"
+    };
+
+    abstract void append(StringBuilder sb, Random rnd);
+
+    public String generate(int chars) {
+        Random rnd = new Random(0x5EEDL + ordinal());
+        StringBuilder sb = new StringBuilder(chars + 128);
+        while (sb.length() < chars) append(sb, rnd);
+        sb.setLength(chars);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,24 @@
+package com.intelligence.capture.bench;
+
+import com.intelligence.capture.risk.RiskScorer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RiskScorerBenchmark {
+
+    @Benchmark
+    public RiskScorer.Result promptOnly(CorpusState s) {
+        return RiskScorer.score(s.prompt, null);
+    }
+
+    @Benchmark
+    public RiskScorer.Result fullTurn(CorpusState s) {
+        return RiskScorer.score(s.prompt, s.response);
+    }
+}
@@ -0,0 +1,26 @@
+package com.intelligence.capture.bench;
+
+import com.intelligence.capture.risk.PiiMatch;
+import com.intelligence.capture.risk.SecretDetector;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SecretDetectorBenchmark {
+
+    @Benchmark
+    public List<PiiMatch> scanPrompt(CorpusState s) {
+        return SecretDetector.scan(s.prompt);
+    }
+
+    @Benchmark
+    public List<PiiMatch> scanResponse(CorpusState s) {
+        return SecretDetector.scan(s.response);
+    }
+}
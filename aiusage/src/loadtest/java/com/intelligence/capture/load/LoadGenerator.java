@@ -0,0 +1,327 @@
+package com.intelligence.capture.load;
+
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays prompt/response pairs against a running instance and reports latency
+ * percentiles and throughput, so the platform and virtual thread modes can be compared
+ * on the same machine with the same input.
+ *
+ * <p>Closed loop: {@code -concurrency} clients each capture one turn at a time, prompt
+ * then response, as the browser extension does. Pairs come from {@code -pairs} (JSON
+ * lines with {@code prompt} and {@code response}) or are generated from {@code -seed},
+ * and are handed out in the same order every run. Nothing is recorded during
+ * {@code -warmup}. Results are printed and written as JSON to {@code -out}.
+ *
+ * <pre>
+ *   -url http://localhost:8080   -concurrency 64   -duration 60s   -warmup 10s
+ *   -pairs file.jsonl            -seed 42          -turns 2000 (generated pairs)
+ *   -label virtual               -out target/load-result.json
+ * </pre>
+ */
+public final class LoadGenerator {
+
+    private static final JsonMapper JSON = JsonMapper.builder().build();
+
+    record Pair(String prompt, String response) {}
+
+    private final URI base;
+    private final int concurrency;
+    private final Duration duration;
+    private final Duration warmup;
+    private final String label;
+    private final Path out;
+    private final List<Pair> pairs;
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final AtomicLong next = new AtomicLong();
+
+    private LoadGenerator(Map<String, String> opts) throws IOException {
+        this.base = URI.create(opts.getOrDefault("url", "http://localhost:8080"));
+        this.concurrency = Integer.parseInt(opts.getOrDefault("concurrency", "64"));
+        this.duration = duration(opts.getOrDefault("duration", "60s"));
+        this.warmup = duration(opts.getOrDefault("warmup", "10s"));
+        this.label = opts.getOrDefault("label", "run");
+        this.out = Path.of(opts.getOrDefault("out", "target/load-result.json"));
+        this.pairs = opts.containsKey("pairs")
+                ? read(Path.of(opts.get("pairs")))
+                : generate(Long.parseLong(opts.getOrDefault("seed", "42")), Integer.parseInt(opts.getOrDefault("turns", "2000")));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("-") || i + 1 == args.length) {
+                throw new IllegalArgumentException("expected -name value pairs, got " + Arrays.toString(args));
+            }
+            opts.put(args[i].substring(1), args[++i]);
+        }
+        new LoadGenerator(opts).run();
+    }
+
+    private void run() throws Exception {
+        System.out.printf("%s: %d pairs, %d clients, %s warmup + %s against %s%n",
+                label, pairs.size(), concurrency, warmup, duration, base);
+
+        long start = System.nanoTime();
+        long recordFrom = start + warmup.toNanos();
+        long end = recordFrom + duration.toNanos();
+        List<Client> clients = new ArrayList<>();
+        // clients are virtual threads so the generator is not what runs out of threads
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                Client c = new Client(recordFrom, end);
+                clients.add(c);
+                pool.submit(c);
+            }
+        }
+
+        Stats prompt = new Stats();
+        Stats response = new Stats();
+        Stats turn = new Stats();
+        for (Client c : clients) {
+            prompt.addAll(c.prompt);
+            response.addAll(c.response);
+            turn.addAll(c.turn);
+        }
+        double seconds = duration.toNanos() / 1e9;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("label", label);
+        result.put("at", Instant.now().toString());
+        result.put("url", base.toString());
+        result.put("concurrency", concurrency);
+        result.put("durationSeconds", seconds);
+        result.put("pairs", pairs.size());
+        result.put("prompt", prompt.summary(seconds));
+        result.put("response", response.summary(seconds));
+        result.put("turn", turn.summary(seconds));
+
+        System.out.printf("%-9s %9s %7s %9s %9s %9s %9s %9s%n", "", "ok", "errors", "per sec", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        print("prompt", prompt, seconds);
+        print("response", response, seconds);
+        print("turn", turn, seconds);
+
+        if (out.getParent() != null) Files.createDirectories(out.getParent());
+        JSON.writerWithDefaultPrettyPrinter().writeValue(out.toFile(), result);
+        System.out.println("written to " + out);
+    }
+
+    /** One simulated extension: captures a turn, then the next. */
+    private final class Client implements Runnable {
+        final long recordFrom;
+        final long end;
+        final Stats prompt = new Stats();
+        final Stats response = new Stats();
+        final Stats turn = new Stats();
+
+        Client(long recordFrom, long end) {
+            this.recordFrom = recordFrom;
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+            while (System.nanoTime() < end) {
+                Pair p = pairs.get((int) (next.getAndIncrement() % pairs.size()));
+                String turnId = UUID.randomUUID().toString();
+                long t0 = System.nanoTime();
+                boolean record = t0 >= recordFrom;
+
+                Map<String, Object> body = new LinkedHashMap<>();
+                body.put("turnId", turnId);
+                body.put("prompt", p.prompt());
+                body.put("deviceId", "loadtest");
+                body.put("capturedAt", Instant.now().toString());
+                boolean ok = post("/api/turns/prompt", body, record ? prompt : null);
+
+                if (ok) {
+                    body = new LinkedHashMap<>();
+                    body.put("turnId", turnId);
+                    body.put("responseText", p.response());
+                    body.put("responseCapturedAt", Instant.now().toString());
+                    ok = post("/api/turns/response", body, record ? response : null);
+                }
+                if (record) {
+                    if (ok) turn.ok(System.nanoTime() - t0);
+                    else turn.error();
+                }
+                // back off rather than hammer an instance that is failing or shedding load
+                if (!ok) sleep(50);
+            }
+        }
+
+        private boolean post(String path, Map<String, Object> body, Stats stats) {
+            long t0 = System.nanoTime();
+            try {
+                HttpRequest req = HttpRequest.newBuilder(base.resolve(path))
+                        .timeout(Duration.ofSeconds(30))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(JSON.writeValueAsBytes(body)))
+                        .build();
+                int status = http.send(req, HttpResponse.BodyHandlers.discarding()).statusCode();
+                boolean ok = status >= 200 && status < 300;
+                if (stats != null) {
+                    if (ok) stats.ok(System.nanoTime() - t0);
+                    else stats.error();
+                }
+                return ok;
+            } catch (IOException ex) {
+                if (stats != null) stats.error();
+                return false;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /** Latencies of one kind of request; one per client, merged at the end. */
+    private static final class Stats {
+        long[] nanos = new long[1024];
+        int count;
+        long errors;
+
+        void ok(long latency) {
+            if (count == nanos.length) nanos = Arrays.copyOf(nanos, count * 2);
+            nanos[count++] = latency;
+        }
+
+        void error() { errors++; }
+
+        void addAll(Stats other) {
+            if (count + other.count > nanos.length) nanos = Arrays.copyOf(nanos, count + other.count);
+            System.arraycopy(other.nanos, 0, nanos, count, other.count);
+            count += other.count;
+            errors += other.errors;
+        }
+
+        double percentileMillis(double p) {
+            if (count == 0) return 0;
+            int i = (int) Math.ceil(p / 100 * count) - 1;
+            return nanos[Math.max(0, Math.min(i, count - 1))] / 1e6;
+        }
+
+        Map<String, Object> summary(double seconds) {
+            Arrays.sort(nanos, 0, count);
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("ok", count);
+            m.put("errors", errors);
+            m.put("perSecond", round(count / seconds));
+            m.put("p50Ms", round(percentileMillis(50)));
+            m.put("p90Ms", round(percentileMillis(90)));
+            m.put("p99Ms", round(percentileMillis(99)));
+            m.put("maxMs", round(percentileMillis(100)));
+            return m;
+        }
+    }
+
+    // ---------- helpers ----------
+
+    private static void print(String name, Stats s, double seconds) {
+        // summary() sorted the latencies already
+        System.out.printf(Locale.ROOT, "%-9s %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n", name, s.count, s.errors,
+                s.count / seconds, s.percentileMillis(50), s.percentileMillis(90), s.percentileMillis(99),
+                s.percentileMillis(100));
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 10) / 10.0;
+    }
+
+    private static Duration duration(String s) {
+        String v = s.trim().toLowerCase(Locale.ROOT);
+        if (v.endsWith("ms")) return Duration.ofMillis(Long.parseLong(v.substring(0, v.length() - 2)));
+        if (v.endsWith("s")) return Duration.ofSeconds(Long.parseLong(v.substring(0, v.length() - 1)));
+        if (v.endsWith("m")) return Duration.ofMinutes(Long.parseLong(v.substring(0, v.length() - 1)));
+        return Duration.ofSeconds(Long.parseLong(v));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<Pair> read(Path file) throws IOException {
+        List<Pair> pairs = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            if (line.isBlank()) continue;
+            try {
+                Pair p = JSON.readValue(line, Pair.class);
+                if (p.prompt() != null && p.response() != null) pairs.add(p);
+            } catch (RuntimeException ex) {
+                throw new UncheckedIOException(new IOException(file + ": bad line " + (pairs.size() + 1), ex));
+            }
+        }
+        if (pairs.isEmpty()) throw new IllegalArgumentException(file + " has no prompt/response pairs");
+        return pairs;
+    }
+
+    private static final String[] WORDS = {
+            "please", "summarize", "this", "report", "for", "the", "quarterly", "review", "and", "draft",
+            "an", "email", "to", "customer", "about", "invoice", "deployment", "failed", "with", "error",
+            "how", "do", "I", "fix", "query", "timeout", "in", "production", "database", "migration",
+            "explain", "code", "below", "refactor", "function", "contract", "confidential", "salary", "budget", "plan"
+    };
+
+    /*
+     * Chat-sized turns: most prompts are a few sentences and responses a few paragraphs,
+     * with a long tail. About one word in a hundred is an email, a phone number or an
+     * access key, so scoring finds something in most turns.
+     */
+    static List<Pair> generate(long seed, int turns) {
+        Random rnd = new Random(seed);
+        List<Pair> pairs = new ArrayList<>(turns);
+        for (int i = 0; i < turns; i++) {
+            int promptWords = rnd.nextInt(10) == 0 ? 400 + rnd.nextInt(1600) : 15 + rnd.nextInt(80);
+            int responseWords = rnd.nextInt(10) == 0 ? 1500 + rnd.nextInt(4500) : 80 + rnd.nextInt(400);
+            pairs.add(new Pair(text(rnd, promptWords), text(rnd, responseWords)));
+        }
+        return pairs;
+    }
+
+    private static String text(Random rnd, int words) {
+        StringBuilder sb = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(i % 14 == 0 ? ". " : " ");
+            if (rnd.nextInt(100) == 0) {
+                switch (rnd.nextInt(3)) {
+                    case 0 -> sb.append("jane.doe").append(rnd.nextInt(1000)).append("@example.com");
+                    case 1 -> sb.append("(").append(200 + rnd.nextInt(799)).append(") 555-")
+                            .append(1000 + rnd.nextInt(8999));
+                    default -> sb.append("AKIA").append(Long.toString(Math.abs(rnd.nextLong()), 36).toUpperCase(Locale.ROOT));
+                }
+            } else {
+                sb.append(WORDS[rnd.nextInt(WORDS.length)]);
+            }
+        }
+        return sb.append('.').toString();
+    }
+}
@@ -0,0 +1,78 @@
+package com.intelligence.capture.config;
+
+import com.intelligence.capture.service.AuditLog;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingRequestWrapper;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Hands a sample of API requests to {@link AuditLog}. The sampling decision comes first,
+ * so an unsampled request is neither wrapped nor copied; a sampled one keeps at most
+ * {@code max-payload-bytes} of its body. Requests that fail with a 5xx are recorded
+ * whether sampled or not, without their body unless sampled.
+ */
+public class AuditLogFilter extends OncePerRequestFilter {
+
+    private final AuditLog auditLog;
+    private final double sampleRate;
+    private final int maxPayloadBytes;
+    private final boolean logServerErrors;
+
+    public AuditLogFilter(AuditLog auditLog, double sampleRate, int maxPayloadBytes, boolean logServerErrors) {
+        this.auditLog = auditLog;
+        this.sampleRate = sampleRate;
+        this.maxPayloadBytes = maxPayloadBytes;
+        this.logServerErrors = logServerErrors;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean sampled = sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+        if (!sampled && !logServerErrors) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        Instant at = Instant.now();
+        long t0 = System.nanoTime();
+        BoundedBody body = sampled && maxPayloadBytes > 0 ? new BoundedBody(request, maxPayloadBytes) : null;
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR; // if the chain throws
+        try {
+            chain.doFilter(body != null ? body : request, response);
+            status = response.getStatus();
+        } finally {
+            if (sampled || status >= 500) {
+                auditLog.offer(new AuditLog.Entry(at, request.getMethod(), request.getRequestURI(),
+                        request.getQueryString(), status, (System.nanoTime() - t0) / 1000, request.getRemoteAddr(),
+                        sampled, body == null ? null : body.getContentAsByteArray(), body != null && body.overflowed));
+            }
+        }
+    }
+
+    /** Caches the body as the controller reads it, up to a limit, and notes when there was more. */
+    private static final class BoundedBody extends ContentCachingRequestWrapper {
+        boolean overflowed;
+
+        BoundedBody(HttpServletRequest request, int limit) {
+            super(request, limit);
+        }
+
+        @Override
+        protected void handleContentOverflow(int contentCacheLimit) {
+            overflowed = true;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.intelligence.capture.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.flyway.autoconfigure.FlywayDataSource;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Read/write split, on only when {@code datasource.replica.url} is set. Transactions
+ * marked {@code @Transactional(readOnly = true)} get their connection from the replica
+ * pool; everything else, including reads outside such a transaction, uses the primary.
+ * The choice is made when the first statement runs, after the transaction has said it is
+ * read-only, by a {@link LazyConnectionDataSourceProxy} in front of both pools.
+ *
+ * <p>The pools are sized separately: {@code spring.datasource.hikari.*} for the primary,
+ * {@code datasource.replica.hikari.*} for the replica. Flyway always migrates the primary.
+ * {@link ReplicaMonitor} sends reads back to the primary while the replica lags or is down.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.replica.url")
+public class DataSourceConfig {
+
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource ds = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        ds.setPoolName("primary");
+        return ds;
+    }
+
+    @Bean
+    @ConfigurationProperties("datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${datasource.replica.url}") String url,
+                                              @Value("${datasource.replica.username:}") String username,
+                                              @Value("${datasource.replica.password:}") String password) {
+        HikariDataSource ds = new HikariDataSource();
+        ds.setJdbcUrl(url);
+        ds.setUsername(username.isEmpty() ? properties.determineUsername() : username);
+        ds.setPassword(password.isEmpty() ? properties.determinePassword() : password);
+        ds.setPoolName("replica");
+        ds.setReadOnly(true);
+        return ds;
+    }
+
+    @Bean
+    public ReplicaMonitor replicaMonitor(@Qualifier("replicaDataSource") HikariDataSource replica,
+                                         @Qualifier("primaryDataSource") HikariDataSource primary,
+                                         @Value("${datasource.replica.max-lag:10s}") Duration maxLag,
+                                         MeterRegistry meters) {
+        return new ReplicaMonitor(replica, primary, maxLag, meters);
+    }
+
+    /** What JPA, JdbcTemplate and the transaction manager see. */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") HikariDataSource primary, ReplicaMonitor monitor) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primary);
+        proxy.setReadOnlyDataSource(new ReadOnlyRouting(monitor));
+        return proxy;
+    }
+
+    /** The proxy's read-only side; the monitor picks the pool per connection. */
+    private static final class ReadOnlyRouting extends AbstractDataSource {
+
+        private final ReplicaMonitor monitor;
+
+        ReadOnlyRouting(ReplicaMonitor monitor) {
+            this.monitor = monitor;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return monitor.readConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return monitor.readConnection(username, password);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.intelligence.capture.config;
+
+import com.intelligence.capture.risk.PiiType;
+import com.intelligence.capture.risk.Redactor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/** Per-type masking policy for FLAGGED turns ({@code redaction.mask.*}: tag, partial, hash or keep). */
+@Configuration
+public class RedactionConfig {
+
+    @Bean
+    public Redactor redactor(@Value("${redaction.mask.email:tag}") String email,
+                             @Value("${redaction.mask.ssn:tag}") String ssn,
+                             @Value("${redaction.mask.phone:tag}") String phone,
+                             @Value("${redaction.mask.credit-card:tag}") String creditCard,
+                             @Value("${redaction.mask.secret:tag}") String secret,
+                             @Value("${redaction.mask.high-entropy:tag}") String highEntropy) {
+        Map<PiiType, Redactor.Mask> masks = new EnumMap<>(PiiType.class);
+        masks.put(PiiType.EMAIL, parse("email", email));
+        masks.put(PiiType.SSN, parse("ssn", ssn));
+        masks.put(PiiType.PHONE, parse("phone", phone));
+        masks.put(PiiType.CREDIT_CARD, parse("credit-card", creditCard));
+        masks.put(PiiType.SECRET, parse("secret", secret));
+        masks.put(PiiType.HIGH_ENTROPY, parse("high-entropy", highEntropy));
+        return new Redactor(masks);
+    }
+
+    private static Redactor.Mask parse(String key, String value) {
+        try {
+            return Redactor.Mask.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("redaction.mask." + key + ": unknown mask '" + value + "'");
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.intelligence.capture.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Decides whether read-only transactions may run on the replica. Every
+ * {@code datasource.replica.lag-check-interval} it reads the primary's current WAL
+ * position and then the replica's replay position. Lag is how long the replica has been
+ * behind a primary position it has not replayed yet, so it is exact to one interval and
+ * an idle primary never looks like lag. Above {@code max-lag}, when the replica is behind
+ * with no streaming WAL receiver, or when either server cannot be reached, reads go to
+ * the primary until a later check finds the replica caught up again. Until the first
+ * check passes, everything uses the primary.
+ */
+public class ReplicaMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaMonitor.class);
+
+    private static final String PRIMARY_SQL = "SELECT pg_current_wal_lsn()::text";
+
+    // replay LSN is null on a server not in recovery (a promoted replica, or a second primary in a test setup)
+    private static final String REPLICA_SQL = """
+            SELECT pg_is_in_recovery() AS recovery,
+                   pg_last_wal_replay_lsn()::text AS replay,
+                   EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') AS streaming""";
+
+    /** One check's reading: the primary's WAL position, and where the replica has replayed to. */
+    record Position(long primaryLsn, boolean recovery, long replayLsn, boolean streaming) {}
+
+    // The oldest primary position seen that the replica has not replayed yet, and when it was seen.
+    private record Behind(long lsn, long sinceNanos) {}
+
+    private final DataSource replica;
+    private final DataSource primary;
+    private final JdbcTemplate replicaJdbc;
+    private final JdbcTemplate primaryJdbc;
+    private final Duration maxLag;
+
+    private volatile boolean usable;
+    private volatile double lagSeconds;
+    private Behind behind; // only touched by check()
+
+    private final Counter replicaReads;
+    private final Counter primaryReads;
+    private final Counter fallbacks;
+
+    public ReplicaMonitor(DataSource replica, DataSource primary, Duration maxLag, MeterRegistry meters) {
+        this.replica = replica;
+        this.primary = primary;
+        this.replicaJdbc = new JdbcTemplate(replica);
+        this.primaryJdbc = new JdbcTemplate(primary);
+        this.maxLag = maxLag;
+
+        this.replicaReads = Counter.builder("datasource.reads")
+                .description("Connections handed to read-only transactions, by where they went")
+                .tag("target", "replica")
+                .register(meters);
+        this.primaryReads = Counter.builder("datasource.reads")
+                .description("Connections handed to read-only transactions, by where they went")
+                .tag("target", "primary")
+                .register(meters);
+        this.fallbacks = Counter.builder("datasource.replica.fallbacks")
+                .description("Replica connections that failed and were replaced by a primary one")
+                .register(meters);
+        Gauge.builder("datasource.replica.lag", this, m -> m.lagSeconds)
+                .description("Replica replay lag at the last check")
+                .baseUnit("seconds")
+                .register(meters);
+        Gauge.builder("datasource.replica.usable", this, m -> m.usable ? 1 : 0)
+                .description("1 while read-only transactions go to the replica")
+                .register(meters);
+    }
+
+    public boolean usable() { return usable; }
+
+    @Scheduled(fixedDelayString = "${datasource.replica.lag-check-interval:5s}")
+    void check() {
+        Position pos;
+        try {
+            pos = position();
+        } catch (Exception ex) {
+            if (usable) log.warn("Replica lag check failed, reading from the primary: {}", ex.toString());
+            usable = false;
+            return;
+        }
+        update(pos, System.nanoTime());
+    }
+
+    // The primary first: whatever it has written by then, a caught-up replica has replayed.
+    Position position() {
+        long primaryLsn = lsn(primaryJdbc.queryForObject(PRIMARY_SQL, String.class));
+        return replicaJdbc.queryForObject(REPLICA_SQL, (rs, i) -> new Position(
+                primaryLsn,
+                rs.getBoolean("recovery"),
+                rs.getString("replay") == null ? 0 : lsn(rs.getString("replay")),
+                rs.getBoolean("streaming")));
+    }
+
+    void update(Position pos, long nowNanos) {
+        boolean ok;
+        if (!pos.recovery() || pos.replayLsn() >= pos.primaryLsn()) {
+            behind = null;
+            lagSeconds = 0;
+            ok = true;
+        } else {
+            if (behind == null || pos.replayLsn() >= behind.lsn()) behind = new Behind(pos.primaryLsn(), nowNanos);
+            lagSeconds = (nowNanos - behind.sinceNanos()) / 1e9;
+            if (!pos.streaming()) {
+                ok = false;
+                if (usable) log.warn("Replica is behind and its WAL receiver is not streaming, reading from the primary");
+            } else {
+                ok = lagSeconds <= maxLag.toMillis() / 1000.0;
+                if (!ok && usable) log.warn("Replica is {}s behind (max-lag {}), reading from the primary", lagSeconds, maxLag);
+            }
+        }
+        if (ok && !usable) log.info("Replica is {}s behind, reading from it again", lagSeconds);
+        usable = ok;
+    }
+
+    /** A connection for a read-only transaction: the replica's while it is usable, else the primary's. */
+    Connection readConnection() throws SQLException {
+        return readConnection(null, null);
+    }
+
+    /** {@link #readConnection()} as username, or with the pool credentials when it is null. */
+    Connection readConnection(String username, String password) throws SQLException {
+        if (usable) {
+            try {
+                Connection c = connect(replica, username, password);
+                replicaReads.increment();
+                return c;
+            } catch (SQLException ex) {
+                // stay on the primary until the next check reaches the replica again
+                usable = false;
+                fallbacks.increment();
+                log.warn("Could not get a replica connection, reading from the primary: {}", ex.toString());
+            }
+        }
+        Connection c = connect(primary, username, password);
+        primaryReads.increment();
+        return c;
+    }
+
+    // ---------- helpers ----------
+
+    private static Connection connect(DataSource ds, String username, String password) throws SQLException {
+        return username == null ? ds.getConnection() : ds.getConnection(username, password);
+    }
+
+    // "16/B374D848": high and low 32 bits in hex.
+    static long lsn(String text) {
+        int slash = text.indexOf('/');
+        return (Long.parseLong(text.substring(0, slash), 16) << 32) | Long.parseLong(text.substring(slash + 1), 16);
+    }
+}
@@ -0,0 +1,241 @@
+package com.intelligence.capture.config;
+
+import com.github.luben.zstd.ZstdInputStream;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Accepts gzip- and zstd-encoded capture bodies ({@code Content-Encoding}). The body is
+ * decoded as the controller reads it, never held in full, and reading fails with 413 once
+ * more than {@code capture.ingest.max-decoded-size} has come out, whatever the wire size
+ * was. Other encodings get 415. Requests without Content-Encoding pass straight through.
+ * Runs ahead of the other filters, so the audit log sees the decoded body.
+ */
+public class RequestDecompressionFilter extends OncePerRequestFilter implements Ordered {
+
+    private static final String PATH_PREFIX = "/api/turns/";
+    private static final int BUFFER = 8192;
+
+    private final long maxDecodedBytes;
+    private final MeterRegistry meters;
+
+    public RequestDecompressionFilter(long maxDecodedBytes, MeterRegistry meters) {
+        this.maxDecodedBytes = maxDecodedBytes;
+        this.meters = meters;
+    }
+
+    @Override
+    public int getOrder() { return Ordered.HIGHEST_PRECEDENCE + 10; }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getHeader(HttpHeaders.CONTENT_ENCODING) == null
+                || !request.getRequestURI().startsWith(PATH_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String encoding = request.getHeader(HttpHeaders.CONTENT_ENCODING).trim().toLowerCase(Locale.ROOT);
+        if (encoding.isEmpty() || encoding.equals("identity")) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (!encoding.equals("gzip") && !encoding.equals("x-gzip") && !encoding.equals("zstd")) {
+            response.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE,
+                    "Content-Encoding " + encoding + " is not supported; use gzip or zstd");
+            return;
+        }
+        String name = encoding.equals("zstd") ? "zstd" : "gzip";
+        Decoded decoded = new Decoded(request, name, maxDecodedBytes);
+        try {
+            chain.doFilter(decoded, response);
+        } finally {
+            decoded.record(meters);
+        }
+    }
+
+    /** The request as the rest of the app sees it: decoded body, no Content-Encoding, unknown length. */
+    private static final class Decoded extends HttpServletRequestWrapper {
+
+        private final String encoding;
+        private final long limit;
+        private Counting wire;
+        private Bounded body;
+        private ServletInputStream stream;
+        private BufferedReader reader;
+
+        Decoded(HttpServletRequest request, String encoding, long limit) {
+            super(request);
+            this.encoding = encoding;
+            this.limit = limit;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (reader != null) throw new IllegalStateException("getReader() has already been called");
+            if (stream == null) stream = open();
+            return stream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            if (stream != null) throw new IllegalStateException("getInputStream() has already been called");
+            if (reader == null) {
+                String enc = getCharacterEncoding();
+                Charset cs = enc == null ? StandardCharsets.UTF_8 : Charset.forName(enc);
+                reader = new BufferedReader(new InputStreamReader(open(), cs));
+            }
+            return reader;
+        }
+
+        private ServletInputStream open() throws IOException {
+            wire = new Counting(super.getInputStream());
+            InputStream in = encoding.equals("zstd") ? new ZstdInputStream(wire) : new GZIPInputStream(wire, BUFFER);
+            body = new Bounded(in, limit);
+            return new ServletInputStream() {
+                @Override
+                public int read() throws IOException { return body.read(); }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException { return body.read(b, off, len); }
+
+                @Override
+                public boolean isFinished() { return body.eof; }
+
+                @Override
+                public boolean isReady() { return true; }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException("decoded bodies are read blocking");
+                }
+
+                @Override
+                public void close() throws IOException { body.close(); }
+            };
+        }
+
+        void record(MeterRegistry meters) {
+            if (wire == null) return;
+            DistributionSummary.builder("capture.body.bytes").baseUnit("bytes")
+                    .description("Encoded capture bodies as received and after decoding")
+                    .tags("encoding", encoding, "side", "wire").register(meters).record(wire.count);
+            DistributionSummary.builder("capture.body.bytes").baseUnit("bytes")
+                    .description("Encoded capture bodies as received and after decoding")
+                    .tags("encoding", encoding, "side", "decoded").register(meters).record(body.count);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            if (HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name) || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                return null;
+            }
+            return super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if (HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name) || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                return Collections.emptyEnumeration();
+            }
+            return super.getHeaders(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            List<String> names = Collections.list(super.getHeaderNames());
+            names.removeIf(n -> HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(n) || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(n));
+            return Collections.enumeration(names);
+        }
+
+        @Override
+        public int getContentLength() { return -1; }
+
+        @Override
+        public long getContentLengthLong() { return -1; }
+    }
+
+    private static final class Counting extends FilterInputStream {
+        long count;
+
+        Counting(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+
+    /** Fails with 413 past limit decoded bytes; a small body that inflates enormously stops there. */
+    static final class Bounded extends FilterInputStream {
+        private final long limit;
+        long count;
+        boolean eof;
+
+        Bounded(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) eof = true;
+            else check(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n < 0) eof = true;
+            else check(n);
+            return n;
+        }
+
+        private void check(int n) {
+            count += n;
+            if (count > limit) {
+                throw new ResponseStatusException(HttpStatus.CONTENT_TOO_LARGE,
+                        "decoded body is larger than " + limit + " bytes");
+            }
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.intelligence.capture.config;
 
+import com.intelligence.capture.service.AuditLog;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.filter.CommonsRequestLoggingFilter;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -18,14 +22,19 @@ public class WebConfig implements WebMvcConfigurer {
     }
 
     @Bean
-    public CommonsRequestLoggingFilter logFilter() {
-        CommonsRequestLoggingFilter f = new CommonsRequestLoggingFilter();
-        f.setIncludeClientInfo(true);
-        f.setIncludeQueryString(true);
-        f.setIncludePayload(true);
-        f.setIncludeHeaders(false);
-        f.setMaxPayloadLength(10_000);
-        return f;
+    public RequestDecompressionFilter requestDecompressionFilter(
+            @Value("${capture.ingest.max-decoded-size:16MB}") DataSize maxDecodedSize, MeterRegistry meters) {
+        return new RequestDecompressionFilter(maxDecodedSize.toBytes(), meters);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "audit.enabled", havingValue = "true", matchIfMissing = true)
+    public AuditLogFilter auditLogFilter(AuditLog auditLog,
+                                         @Value("${audit.sample-rate:0.01}") double sampleRate,
+                                         @Value("${audit.max-payload-bytes:16384}") int maxPayloadBytes,
+                                         @Value("${audit.log-server-errors:true}") boolean logServerErrors) {
+        if (sampleRate < 0 || sampleRate > 1) throw new IllegalArgumentException("audit.sample-rate must be between 0 and 1");
+        return new AuditLogFilter(auditLog, sampleRate, maxPayloadBytes, logServerErrors);
     }
 }
 
@@ -0,0 +1,97 @@
+package com.intelligence.capture.controller;
+
+import com.intelligence.capture.dto.RescoreJob;
+import com.intelligence.capture.service.RescoreJobRunner;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Bulk re-score jobs (see RescoreJobRunner): start one, follow its progress, pause and
+ * resume it.
+ */
+@RestController
+@RequestMapping("/api/rescore")
+public class RescoreController {
+
+    private static final int RECENT = 20;
+
+    private final RescoreJobRunner runner;
+
+    public RescoreController(RescoreJobRunner runner) {
+        this.runner = runner;
+    }
+
+    /**
+     * Starts a job over turns captured in [from, to). from defaults to the oldest turn, to
+     * to now, so turns captured later are left to live scoring. status limits it to turns
+     * in that status; UNSCORED means turns whose live scoring was skipped or gave up.
+     */
+    @PostMapping
+    public ResponseEntity<RescoreJob> start(
+            @RequestParam(name = "from", required = false) String from,
+            @RequestParam(name = "to", required = false) String to,
+            @RequestParam(name = "status", required = false) String status
+    ) {
+        Instant start = from == null ? null : parseInstant("from", from);
+        Instant end = to == null ? Instant.now() : parseInstant("to", to);
+        if (start != null && !start.isBefore(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to");
+        }
+        String filter = (status == null || status.isBlank()) ? null : status.trim().toUpperCase();
+        try {
+            return ResponseEntity.accepted().body(runner.start(start, end, filter));
+        } catch (IllegalStateException ex) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, ex.getMessage());
+        }
+    }
+
+    @GetMapping
+    public List<RescoreJob> recent() {
+        return runner.recent(RECENT);
+    }
+
+    @GetMapping("/{id}")
+    public RescoreJob get(@PathVariable("id") long id) {
+        return runner.find(id).orElseThrow(() -> notFound(id));
+    }
+
+    @PostMapping("/{id}/pause")
+    public RescoreJob pause(@PathVariable("id") long id) {
+        return runner.pause(id).orElseThrow(() -> notFound(id));
+    }
+
+    /** Continues a PAUSED or FAILED job on this node from its last checkpoint. */
+    @PostMapping("/{id}/resume")
+    public RescoreJob resume(@PathVariable("id") long id) {
+        try {
+            return runner.resume(id).orElseThrow(() -> notFound(id));
+        } catch (IllegalStateException ex) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, ex.getMessage());
+        }
+    }
+
+    // ---------- helpers ----------
+
+    private static ResponseStatusException notFound(long id) {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "No re-score job " + id);
+    }
+
+    private static Instant parseInstant(String name, String value) {
+        try {
+            return Instant.parse(value.trim());
+        } catch (DateTimeParseException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, name + " must be an ISO-8601 instant");
+        }
+    }
+}
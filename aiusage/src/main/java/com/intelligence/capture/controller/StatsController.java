@@ -0,0 +1,101 @@
+package com.intelligence.capture.controller;
+
+import com.intelligence.capture.dto.StatsResponse;
+import com.intelligence.capture.dto.StatsRow;
+import com.intelligence.capture.repo.RollupRepository.Dimension;
+import com.intelligence.capture.service.RiskRollups;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turn counts from the hourly rollups (see RiskRollups): per device, page host, hour or
+ * day, risk level and PII type, in any combination.
+ */
+@RestController
+@RequestMapping("/api/stats")
+public class StatsController {
+
+    private static final Duration DEFAULT_RANGE = Duration.ofHours(24);
+
+    private final RiskRollups rollups;
+    private final int maxRows;
+
+    public StatsController(RiskRollups rollups, @Value("${api.stats.max-rows:10000}") int maxRows) {
+        this.rollups = rollups;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * from and to are ISO instants, widened to whole hours; the default range is the last
+     * 24 hours. groupBy is a comma list of hour, day, device, host, level, pii. One row
+     * more than the limit is read so a cut-off result comes back marked truncated.
+     */
+    @GetMapping
+    public StatsResponse stats(
+            @RequestParam(name = "from", required = false) String from,
+            @RequestParam(name = "to", required = false) String to,
+            @RequestParam(name = "groupBy", defaultValue = "level") String groupBy,
+            @RequestParam(name = "deviceId", required = false) String deviceId,
+            @RequestParam(name = "host", required = false) String host,
+            @RequestParam(name = "level", required = false) String level,
+            @RequestParam(name = "limit", required = false) Integer limit
+    ) {
+        Instant end = to == null ? Instant.now() : parseInstant("to", to);
+        Instant start = from == null ? end.minus(DEFAULT_RANGE) : parseInstant("from", from);
+        start = start.truncatedTo(ChronoUnit.HOURS);
+        Instant hour = end.truncatedTo(ChronoUnit.HOURS);
+        end = hour.equals(end) ? end : hour.plus(1, ChronoUnit.HOURS);
+        if (!start.isBefore(end)) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to");
+
+        if (limit != null && limit < 1) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be at least 1");
+        int rows = limit == null ? maxRows : Math.min(limit, maxRows);
+
+        List<Dimension> dims = dimensions(groupBy);
+        List<StatsRow> found = rollups.stats(dims, start, end, blankToNull(deviceId), blankToNull(host),
+                blankToNull(level) == null ? null : level.trim().toUpperCase(), rows + 1);
+        boolean truncated = found.size() > rows;
+        return new StatsResponse(start, end, dims.stream().map(d -> d.name().toLowerCase()).toList(),
+                truncated ? found.subList(0, rows) : found, truncated);
+    }
+
+    // ---------- helpers ----------
+
+    private static List<Dimension> dimensions(String groupBy) {
+        List<Dimension> dims = new ArrayList<>();
+        for (String part : groupBy.split(",")) {
+            if (part.isBlank()) continue;
+            try {
+                Dimension d = Dimension.valueOf(part.trim().toUpperCase());
+                if (!dims.contains(d)) dims.add(d);
+            } catch (IllegalArgumentException ex) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "groupBy takes hour, day, device, host, level, pii; got " + part.trim());
+            }
+        }
+        return dims;
+    }
+
+    private static Instant parseInstant(String name, String value) {
+        try {
+            return Instant.parse(value.trim());
+        } catch (DateTimeParseException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, name + " must be an ISO-8601 instant");
+        }
+    }
+
+    private static String blankToNull(String s) {
+        return (s == null || s.isBlank()) ? null : s.trim();
+    }
+}
@@ -1,79 +1,280 @@
 package com.intelligence.capture.controller;
 
+import com.intelligence.capture.dto.CaptureBatchAck;
+import com.intelligence.capture.dto.CaptureBatchRequest;
+import com.intelligence.capture.dto.CaptureEvent;
 import com.intelligence.capture.dto.CapturePromptRequest;
 import com.intelligence.capture.dto.CaptureResponseRequest;
+import com.intelligence.capture.dto.CursorPage;
+import com.intelligence.capture.dto.PageCursor;
+import com.intelligence.capture.dto.RiskScoreSummary;
+import com.intelligence.capture.dto.SearchHit;
+import com.intelligence.capture.dto.SimilarTurn;
+import com.intelligence.capture.dto.TurnSummary;
 import com.intelligence.capture.model.PromptEvent;
 import com.intelligence.capture.model.RiskScore;
+import com.intelligence.capture.repo.PromptEventJdbcRepository.TurnState;
 import com.intelligence.capture.repo.PromptEventRepository;
 import com.intelligence.capture.repo.RiskScoreRepository;
+import com.intelligence.capture.repo.TurnQueryRepository;
+import com.intelligence.capture.repo.TurnSearchRepository;
+import com.intelligence.capture.service.IngestBuffer;
+import com.intelligence.capture.service.NearDuplicates;
+import com.intelligence.capture.service.RiskEventHub;
 import com.intelligence.capture.service.TurnCaptureService;
 import jakarta.validation.Valid;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/turns")
 public class TurnCaptureController {
 
+    public static final String STATUS_QUEUED = "QUEUED";
+
     private final TurnCaptureService service;
     private final PromptEventRepository repo;
     private final RiskScoreRepository riskRepo;
+    private final TurnQueryRepository queryRepo;
+    private final TurnSearchRepository searchRepo;
+    private final RiskEventHub riskEvents;
+    private final NearDuplicates nearDuplicates;
+    private final IngestBuffer ingestBuffer; // null unless capture.ingest.mode=buffered
+    private final int defaultPageSize;
+    private final int maxPageSize;
 
-    public TurnCaptureController(TurnCaptureService service, PromptEventRepository repo, RiskScoreRepository riskRepo) {
+    public TurnCaptureController(TurnCaptureService service, PromptEventRepository repo, RiskScoreRepository riskRepo,
+                                 TurnQueryRepository queryRepo, TurnSearchRepository searchRepo,
+                                 RiskEventHub riskEvents, NearDuplicates nearDuplicates,
+                                 ObjectProvider<IngestBuffer> ingestBuffer,
+                                 @Value("${api.page.default-size:50}") int defaultPageSize,
+                                 @Value("${api.page.max-size:500}") int maxPageSize) {
         this.service = service;
         this.repo = repo;
         this.riskRepo = riskRepo;
+        this.queryRepo = queryRepo;
+        this.searchRepo = searchRepo;
+        this.riskEvents = riskEvents;
+        this.nearDuplicates = nearDuplicates;
+        this.ingestBuffer = ingestBuffer.getIfAvailable();
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     @PostMapping("/prompt")
     public ResponseEntity<?> capturePrompt(@Valid @RequestBody CapturePromptRequest req) {
-        PromptEvent saved = service.capturePrompt(req);
-        return ResponseEntity.ok(new PromptAck(saved.getTurnId(), saved.getId(), saved.getStatus(), saved.getCapturedAt()));
+        if (ingestBuffer != null) return enqueue(req);
+        TurnState saved = service.capturePrompt(req);
+        return ResponseEntity.ok(new PromptAck(saved.turnId(), saved.id(), saved.status(), saved.capturedAt()));
     }
 
     @PostMapping("/response")
     public ResponseEntity<?> captureResponse(@Valid @RequestBody CaptureResponseRequest req) {
-        PromptEvent saved = service.captureResponse(req);
-        return ResponseEntity.ok(new ResponseAck(saved.getTurnId(), saved.getId(), saved.getStatus(), saved.getResponseCapturedAt()));
+        if (ingestBuffer != null) return enqueue(req);
+        TurnState saved = service.captureResponse(req);
+        return ResponseEntity.ok(new ResponseAck(saved.turnId(), saved.id(), saved.status(), saved.responseCapturedAt()));
+    }
+
+    @PostMapping("/batch")
+    public List<CaptureBatchAck> captureBatch(@Valid @RequestBody CaptureBatchRequest req) {
+        return service.captureBatch(req.items);
     }
 
+    /**
+     * Turn summaries, newest first. status and deviceId combine; pass the previous
+     * page's nextCursor to continue.
+     */
     @GetMapping("/recent")
-    public List<PromptEvent> recent(
+    public CursorPage<TurnSummary> recent(
+            @RequestParam(name = "status", required = false) String status,
+            @RequestParam(name = "deviceId", required = false) String deviceId,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "cursor", required = false) String cursor
+    ) {
+        int size = pageSize(limit);
+        List<TurnSummary> rows = queryRepo.findTurns(
+                blankToNull(status) == null ? null : status.trim().toUpperCase(),
+                blankToNull(deviceId),
+                decodeCursor(cursor), size + 1);
+        return page(rows, size, t -> new PageCursor(t.capturedAt(), t.id()));
+    }
+
+    /**
+     * Turns whose prompt and/or response match q, newest first, with highlighted
+     * snippets. mode is substring (default, at least 3 characters), phrase or prefix;
+     * in is prompt, response or all. Paging works like /recent.
+     */
+    @GetMapping("/search")
+    public CursorPage<SearchHit> search(
+            @RequestParam(name = "q") String q,
+            @RequestParam(name = "mode", defaultValue = "substring") String mode,
+            @RequestParam(name = "in", defaultValue = "all") String in,
             @RequestParam(name = "status", required = false) String status,
-            @RequestParam(name = "deviceId", required = false) String deviceId
+            @RequestParam(name = "deviceId", required = false) String deviceId,
+            @RequestParam(name = "from", required = false) String from,
+            @RequestParam(name = "to", required = false) String to,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "cursor", required = false) String cursor
     ) {
-        if (deviceId != null && !deviceId.trim().isEmpty()) {
-            return repo.findTop50ByDeviceIdOrderByCapturedAtDesc(deviceId.trim());
+        TurnSearchRepository.Mode searchMode = parseEnum(TurnSearchRepository.Mode.class, "mode", mode);
+        String text = q.strip();
+        if (text.isEmpty()) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "q must not be blank");
+        if (searchMode == TurnSearchRepository.Mode.SUBSTRING && text.length() < 3) {
+            // shorter patterns cannot use the trigram index
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "substring search needs at least 3 characters");
         }
-        if (status != null && !status.trim().isEmpty()) {
-            return repo.findTop50ByStatusOrderByCapturedAtDesc(status.trim().toUpperCase());
+
+        int size = pageSize(limit);
+        List<SearchHit> rows = searchRepo.search(new TurnSearchRepository.Query(
+                text, searchMode, parseEnum(TurnSearchRepository.Field.class, "in", in),
+                blankToNull(status) == null ? null : status.trim().toUpperCase(),
+                blankToNull(deviceId), parseInstant("from", from), parseInstant("to", to)),
+                decodeCursor(cursor), size + 1);
+        return page(rows, size, h -> new PageCursor(h.capturedAt(), h.id()));
+    }
+
+    @GetMapping("/{turnId}")
+    public PromptEvent turn(@PathVariable String turnId) {
+        return repo.findByTurnId(parseTurnId(turnId))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No turn found for turnId=" + turnId));
+    }
+
+    private ResponseEntity<?> enqueue(CaptureEvent req) {
+        if (!ingestBuffer.offer(req)) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Ingest buffer full, retry later");
         }
-        return repo.findTop50ByOrderByCapturedAtDesc();
+        return ResponseEntity.accepted().body(new QueuedAck(UUID.fromString(req.turnId()), STATUS_QUEUED));
     }
 
     public record PromptAck(UUID turnId, UUID id, String status, Instant capturedAt) {}
     public record ResponseAck(UUID turnId, UUID id, String status, Instant responseCapturedAt) {}
+    public record QueuedAck(UUID turnId, String status) {}
 
     @GetMapping("/{turnId}/risk")
-public RiskScore risk(@PathVariable String turnId) {
-    UUID id = UUID.fromString(turnId);
-    return riskRepo.findTop1ByTurnIdOrderByScoredAtDesc(id)
-            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
-                    "No risk score found for turnId=" + turnId + " (risk job may not have run yet)"));
-}
+    public RiskScore risk(@PathVariable String turnId) {
+        return riskRepo.findTop1ByTurnIdOrderByScoredAtDesc(parseTurnId(turnId))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "No risk score found for turnId=" + turnId + " (risk job may not have run yet)"));
+    }
 
+    /**
+     * Turns whose prompt or response nearly repeats this turn's (MinHash similarity at
+     * least fingerprints.min-similarity), most similar first. Empty for turns too short
+     * to fingerprint or not scored yet.
+     */
+    @GetMapping("/{turnId}/similar")
+    public List<SimilarTurn> similar(@PathVariable String turnId,
+                                     @RequestParam(name = "limit", required = false) Integer limit) {
+        return nearDuplicates.similar(parseTurnId(turnId), pageSize(limit));
+    }
 
+    /** Risk score summaries at or above minScore, newest first. */
     @GetMapping("/risk/recent")
-    public List<RiskScore> recentRisk(@RequestParam(name="minScore", defaultValue="0.4") double minScore) {
-        return riskRepo.findTop50ByScoreGreaterThanEqualOrderByScoredAtDesc(minScore);
+    public CursorPage<RiskScoreSummary> recentRisk(
+            @RequestParam(name = "minScore", defaultValue = "0.4") double minScore,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "cursor", required = false) String cursor
+    ) {
+        int size = pageSize(limit);
+        List<RiskScoreSummary> rows = queryRepo.findRiskScores(minScore, decodeCursor(cursor), size + 1);
+        return page(rows, size, r -> new PageCursor(r.scoredAt(), r.id()));
     }
 
+    /**
+     * Scores as they commit, as server-sent events. Filters combine; level takes a comma
+     * list (HIGH,MEDIUM). A reconnect resumes after Last-Event-ID (header, or the
+     * lastEventId parameter for clients that cannot set it).
+     */
+    @GetMapping(path = "/risk/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter riskStream(
+            @RequestParam(name = "minScore", required = false) Double minScore,
+            @RequestParam(name = "level", required = false) String level,
+            @RequestParam(name = "deviceId", required = false) String deviceId,
+            @RequestParam(name = "lastEventId", required = false) String lastEventIdParam,
+            @RequestHeader(name = "Last-Event-ID", required = false) String lastEventIdHeader
+    ) {
+        Set<String> levels = blankToNull(level) == null ? null
+                : Arrays.stream(level.split(",")).map(String::trim).filter(l -> !l.isEmpty())
+                        .map(String::toUpperCase).collect(Collectors.toSet());
+        String lastEventId = blankToNull(lastEventIdHeader) != null ? lastEventIdHeader : lastEventIdParam;
+        return riskEvents.subscribe(new RiskEventHub.Filter(minScore, levels, blankToNull(deviceId)),
+                parseEventId(lastEventId));
+    }
 
+    // ---------- helpers ----------
+
+    private int pageSize(Integer limit) {
+        if (limit == null) return defaultPageSize;
+        if (limit < 1) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be at least 1");
+        return Math.min(limit, maxPageSize);
+    }
+
+    // rows holds up to size + 1 entries; the extra one only says there is a next page
+    private static <T> CursorPage<T> page(List<T> rows, int size, Function<T, PageCursor> cursorOf) {
+        if (rows.size() <= size) return new CursorPage<>(rows, null);
+        List<T> items = rows.subList(0, size);
+        return new CursorPage<>(items, cursorOf.apply(items.get(size - 1)).encode());
+    }
+
+    private static PageCursor decodeCursor(String cursor) {
+        try {
+            return PageCursor.decode(cursor);
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    private static UUID parseTurnId(String turnId) {
+        try {
+            return UUID.fromString(turnId);
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "turnId must be a UUID");
+        }
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String name, String value) {
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown " + name + ": " + value);
+        }
+    }
+
+    private static Instant parseInstant(String name, String value) {
+        if (blankToNull(value) == null) return null;
+        try {
+            return Instant.parse(value.trim());
+        } catch (DateTimeParseException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, name + " must be an ISO-8601 instant");
+        }
+    }
+
+    private static Long parseEventId(String id) {
+        if (blankToNull(id) == null) return null;
+        try {
+            return Long.parseLong(id.trim());
+        } catch (NumberFormatException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Last-Event-ID must be a number");
+        }
+    }
+
+    private static String blankToNull(String s) {
+        return (s == null || s.isBlank()) ? null : s.trim();
+    }
 }
@@ -0,0 +1,28 @@
+package com.intelligence.capture.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Per-item result of a batch capture, in request order. {@code at} is the prompt's
+ * capturedAt or the response's responseCapturedAt.
+ */
+public record CaptureBatchAck(
+        int index,
+        String type,
+        UUID turnId,
+        UUID id,
+        String status,
+        Instant at,
+        String result,
+        String error
+) {
+    public static final String CREATED = "CREATED";
+    public static final String UPDATED = "UPDATED";
+    public static final String DUPLICATE = "DUPLICATE";
+    public static final String REJECTED = "REJECTED";
+
+    public static CaptureBatchAck rejected(int index, String type, UUID turnId, String error) {
+        return new CaptureBatchAck(index, type, turnId, null, null, null, REJECTED, error);
+    }
+}
@@ -0,0 +1,24 @@
+package com.intelligence.capture.dto;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class CaptureBatchRequest {
+
+    public static final int MAX_ITEMS = 500;
+
+    // Items are validated one by one so a bad entry only fails its own ack.
+    // Type info lives on the property so /prompt and /response bodies stay untyped.
+    @NotEmpty
+    @Size(max = MAX_ITEMS)
+    @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
+    @JsonSubTypes({
+            @JsonSubTypes.Type(value = CapturePromptRequest.class, name = "prompt"),
+            @JsonSubTypes.Type(value = CaptureResponseRequest.class, name = "response")
+    })
+    public List<CaptureEvent> items;
+}
@@ -0,0 +1,10 @@
+package com.intelligence.capture.dto;
+
+/**
+ * A single capture that can travel in a {@link CaptureBatchRequest}: either a
+ * {@link CapturePromptRequest} or a {@link CaptureResponseRequest}.
+ */
+public interface CaptureEvent {
+
+    String turnId();
+}
@@ -4,7 +4,7 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 
-public class CapturePromptRequest {
+public class CapturePromptRequest implements CaptureEvent {
   
     @NotBlank 
     @Size(max=20000) 
@@ -29,5 +29,7 @@ public class CapturePromptRequest {
     
     @Size(max=10) 
     public String sendMethod;
-}
 
+    @Override
+    public String turnId() { return turnId; }
+}
@@ -4,10 +4,13 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import jakarta.validation.constraints.NotNull;
 
-public class CaptureResponseRequest {
+public class CaptureResponseRequest implements CaptureEvent {
   @NotNull public String turnId;
   @NotBlank @Size(max=60000) public String responseText; // cap to prevent abuse
   public String responseCapturedAt;
   public String modelHint; // optional if you can infer it
+
+  @Override
+  public String turnId() { return turnId; }
 }
 
@@ -0,0 +1,32 @@
+package com.intelligence.capture.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Keyset position in a newest-first listing: the sort timestamp and id of the last row
+ * returned. Opaque to clients (URL-safe base64 of {@code <instant>,<uuid>}).
+ */
+public record PageCursor(Instant at, UUID id) {
+
+    public String encode() {
+        String raw = at + "," + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Null for a null or blank cursor (first page); IllegalArgumentException if malformed. */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            int comma = raw.indexOf(',');
+            if (comma < 0) throw new IllegalArgumentException("Invalid cursor");
+            return new PageCursor(Instant.parse(raw.substring(0, comma)), UUID.fromString(raw.substring(comma + 1)));
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.intelligence.capture.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A bulk re-score job (see RescoreJobRunner). cursorAt/cursorId is the last turn whose
+ * score is committed; scanned counts every turn read, rescored the ones given a new
+ * score (FLAGGED turns are read but not re-scored).
+ */
+public record RescoreJob(
+        long id,
+        int scorerVersion,
+        String state,
+        String statusFilter,
+        Instant rangeFrom,
+        Instant rangeTo,
+        Instant cursorAt,
+        UUID cursorId,
+        long scanned,
+        long rescored,
+        String owner,
+        Instant heartbeatAt,
+        String error,
+        Instant createdAt,
+        Instant updatedAt,
+        Instant finishedAt
+) {}
@@ -0,0 +1,18 @@
+package com.intelligence.capture.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A committed risk score as pushed on {@code /api/turns/risk/stream}. {@code id} is the
+ * SSE event id; ids only grow, also across restarts.
+ */
+public record RiskEvent(
+        long id,
+        UUID turnId,
+        String deviceId,
+        double score,
+        String level,
+        String status,
+        Instant scoredAt
+) {}
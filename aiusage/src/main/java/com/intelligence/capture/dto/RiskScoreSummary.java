@@ -0,0 +1,14 @@
+package com.intelligence.capture.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** List view of a risk score without its details; those are at {@code GET /api/turns/{turnId}/risk}. */
+public record RiskScoreSummary(
+        UUID id,
+        UUID turnId,
+        Instant scoredAt,
+        double score,
+        String level,
+        Integer scorerVersion
+) {}
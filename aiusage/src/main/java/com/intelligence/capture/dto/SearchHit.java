@@ -0,0 +1,18 @@
+package com.intelligence.capture.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A turn matching a search. Snippets are excerpts with the matches wrapped in [[ ]];
+ * a snippet is null when that part was not searched or did not match.
+ */
+public record SearchHit(
+        UUID id,
+        UUID turnId,
+        String status,
+        String deviceId,
+        Instant capturedAt,
+        String promptSnippet,
+        String responseSnippet
+) {}
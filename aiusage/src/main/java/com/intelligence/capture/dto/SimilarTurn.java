@@ -0,0 +1,15 @@
+package com.intelligence.capture.dto;
+
+import java.util.UUID;
+
+/**
+ * A turn that nearly repeats another: part of the queried turn and matchedPart of this
+ * one ("prompt" or "response") have an estimated shingle Jaccard similarity of similarity.
+ */
+public record SimilarTurn(
+        UUID turnId,
+        String part,
+        String matchedPart,
+        double similarity,
+        boolean flagged
+) {}
@@ -0,0 +1,11 @@
+package com.intelligence.capture.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * {@code GET /api/stats}: the hour-aligned range actually queried, the grouping, and its
+ * rows. truncated is set when more groups matched than the limit (or api.stats.max-rows)
+ * allowed; narrow the range or filters, or group more coarsely, to see them all.
+ */
+public record StatsResponse(Instant from, Instant to, List<String> groupBy, List<StatsRow> rows, boolean truncated) {}
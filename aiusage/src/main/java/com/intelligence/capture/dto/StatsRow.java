@@ -0,0 +1,16 @@
+package com.intelligence.capture.dto;
+
+import java.time.Instant;
+
+/**
+ * One group of a stats query. Only the dimensions that were grouped by are set; bucket
+ * is the start of the hour or day (UTC).
+ */
+public record StatsRow(
+        Instant bucket,
+        String deviceId,
+        String pageHost,
+        String level,
+        String piiType,
+        long turns
+) {}
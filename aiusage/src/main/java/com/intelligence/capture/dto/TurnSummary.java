@@ -0,0 +1,16 @@
+package com.intelligence.capture.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** List view of a turn: lengths instead of text. The full row is at {@code GET /api/turns/{turnId}}. */
+public record TurnSummary(
+        UUID id,
+        UUID turnId,
+        String status,
+        String deviceId,
+        Instant capturedAt,
+        Instant responseCapturedAt,
+        Integer promptLength,
+        Integer responseLength
+) {}
@@ -26,6 +26,10 @@ public class PromptEvent {
     private String status;
     // e.g. RECEIVED, SENT, COMPLETED, FAILED
 
+    // set when scoring was skipped or given up on; the status is left as it was (see V13)
+    @Column(name = "unscored_at")
+    private Instant unscoredAt;
+
     // ---- Prompt data ----
 
     @Column(nullable = false, columnDefinition = "text")
@@ -40,6 +44,10 @@ public class PromptEvent {
     @Column(name = "captured_at", nullable = false)
     private Instant capturedAt;
 
+    // the client's capturedAt when it was too far from the server clock to be used (see V14)
+    @Column(name = "client_captured_at")
+    private Instant clientCapturedAt;
+
     // ---- Context ----
 
     @Column(name = "page_url", columnDefinition = "text")
@@ -81,6 +89,16 @@ public class PromptEvent {
     @Column(name = "response_metadata", nullable = false, columnDefinition = "jsonb")
     private Map<String, Object> responseMetadata = new HashMap<>();
 
+    // ---- Findings of a redacted part (see RiskScorer.PartScan#toMap); null while the text is as captured ----
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "prompt_findings", columnDefinition = "jsonb")
+    private Map<String, Object> promptFindings;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "response_findings", columnDefinition = "jsonb")
+    private Map<String, Object> responseFindings;
+
     // ---- Audit ----
 
     @Column(name = "created_at", nullable = false)
@@ -106,6 +124,9 @@ public class PromptEvent {
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
 
+    public Instant getUnscoredAt() { return unscoredAt; }
+    public void setUnscoredAt(Instant unscoredAt) { this.unscoredAt = unscoredAt; }
+
     public String getPrompt() { return prompt; }
     public void setPrompt(String prompt) { this.prompt = prompt; }
 
@@ -118,6 +139,9 @@ public class PromptEvent {
     public Instant getCapturedAt() { return capturedAt; }
     public void setCapturedAt(Instant capturedAt) { this.capturedAt = capturedAt; }
 
+    public Instant getClientCapturedAt() { return clientCapturedAt; }
+    public void setClientCapturedAt(Instant clientCapturedAt) { this.clientCapturedAt = clientCapturedAt; }
+
     public String getPageUrl() { return pageUrl; }
     public void setPageUrl(String pageUrl) { this.pageUrl = pageUrl; }
 
@@ -150,6 +174,12 @@ public class PromptEvent {
         this.responseMetadata = responseMetadata;
     }
 
+    public Map<String, Object> getPromptFindings() { return promptFindings; }
+    public void setPromptFindings(Map<String, Object> promptFindings) { this.promptFindings = promptFindings; }
+
+    public Map<String, Object> getResponseFindings() { return responseFindings; }
+    public void setResponseFindings(Map<String, Object> responseFindings) { this.responseFindings = responseFindings; }
+
     public Instant getCreatedAt() { return createdAt; }
     public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
 }
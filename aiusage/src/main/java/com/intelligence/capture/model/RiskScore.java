@@ -26,6 +26,12 @@ public class RiskScore {
     @Column(nullable = false)
     private double score;
 
+    @Column(name = "scorer_version")
+    private Integer scorerVersion;
+
+    @Column(name = "rule_set_version", length = 64)
+    private String ruleSetVersion;
+
     @JdbcTypeCode(SqlTypes.JSON)
     @Column(columnDefinition = "jsonb", nullable = false)
     private Map<String, Object> details = new LinkedHashMap<>();
@@ -43,6 +49,12 @@ public class RiskScore {
     public double getScore() { return score; }
     public void setScore(double score) { this.score = score; }
 
+    public Integer getScorerVersion() { return scorerVersion; }
+    public void setScorerVersion(Integer scorerVersion) { this.scorerVersion = scorerVersion; }
+
+    public String getRuleSetVersion() { return ruleSetVersion; }
+    public void setRuleSetVersion(String ruleSetVersion) { this.ruleSetVersion = ruleSetVersion; }
+
     public Map<String, Object> getDetails() { return details; }
     public void setDetails(Map<String, Object> details) {
         this.details = (details == null) ? new LinkedHashMap<>() : details;
@@ -0,0 +1,110 @@
+package com.intelligence.capture.repo;
+
+import com.intelligence.capture.risk.MinHash;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * JDBC access to turn_fingerprints (see V9). Lookups return LSH candidates only, rows
+ * sharing at least one band with the signature; the caller compares the signatures.
+ */
+@Repository
+public class FingerprintRepository {
+
+    public static final char PROMPT = 'P';
+    public static final char RESPONSE = 'R';
+
+    public record Fingerprint(UUID turnId, char part, int[] signature, boolean flagged) {}
+
+    private static final RowMapper<Fingerprint> MAPPER = (rs, i) -> new Fingerprint(
+            rs.getObject("turn_id", UUID.class),
+            rs.getString("part").charAt(0),
+            decode(rs.getBytes("signature")),
+            rs.getBoolean("flagged"));
+
+    // The first signature stored for a part wins: later passes over a FLAGGED turn see redacted text.
+    private static final String INSERT = """
+            INSERT INTO turn_fingerprints (turn_id, part, signature, bands, flagged)
+            SELECT ?, ?, ?, ?, ?
+            WHERE EXISTS (SELECT 1 FROM turn_index WHERE turn_id = ?)
+            ON CONFLICT (turn_id, part) DO UPDATE SET flagged = turn_fingerprints.flagged OR EXCLUDED.flagged""";
+
+    // && (overlap) is served by the GIN indexes; "AND flagged" selects the partial one.
+    private static final String CANDIDATES = """
+            SELECT turn_id, part, signature, flagged FROM turn_fingerprints
+            WHERE bands && ? AND turn_id <> ?""";
+
+    private final JdbcTemplate jdbc;
+
+    public FingerprintRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** No-op when the turn is no longer in turn_index. */
+    public void save(UUID turnId, char part, int[] signature, boolean flagged) {
+        saveAll(List.of(new Fingerprint(turnId, part, signature, flagged)));
+    }
+
+    public void saveAll(List<Fingerprint> fingerprints) {
+        if (fingerprints.isEmpty()) return;
+        jdbc.batchUpdate(INSERT, fingerprints, fingerprints.size(), (ps, f) -> {
+            ps.setObject(1, f.turnId());
+            ps.setString(2, String.valueOf(f.part()));
+            ps.setBytes(3, encode(f.signature()));
+            ps.setArray(4, ps.getConnection().createArrayOf("bigint", boxed(MinHash.bands(f.signature()))));
+            ps.setBoolean(5, f.flagged());
+            ps.setObject(6, f.turnId());
+        });
+    }
+
+    public void markFlagged(UUID turnId) {
+        jdbc.update("UPDATE turn_fingerprints SET flagged = true WHERE turn_id = ? AND NOT flagged", turnId);
+    }
+
+    public List<Fingerprint> findByTurnId(UUID turnId) {
+        return jdbc.query("SELECT turn_id, part, signature, flagged FROM turn_fingerprints WHERE turn_id = ?",
+                MAPPER, turnId);
+    }
+
+    /** Up to limit rows of other turns sharing a band with signature. */
+    public List<Fingerprint> findCandidates(int[] signature, UUID excludeTurnId, boolean flaggedOnly, int limit) {
+        return findCandidates(MinHash.bands(signature), excludeTurnId, flaggedOnly, limit);
+    }
+
+    /** Up to limit rows sharing any of bands, e.g. the bands of a whole batch of signatures. */
+    public List<Fingerprint> findCandidates(long[] bands, UUID excludeTurnId, boolean flaggedOnly, int limit) {
+        String sql = (excludeTurnId == null ? CANDIDATES.replace(" AND turn_id <> ?", "") : CANDIDATES)
+                + (flaggedOnly ? " AND flagged" : "") + " LIMIT ?";
+        return jdbc.query(sql, ps -> {
+            int i = 1;
+            ps.setArray(i++, ps.getConnection().createArrayOf("bigint", boxed(bands)));
+            if (excludeTurnId != null) ps.setObject(i++, excludeTurnId);
+            ps.setInt(i, limit);
+        }, MAPPER);
+    }
+
+    // ---------- helpers ----------
+
+    private static byte[] encode(int[] signature) {
+        ByteBuffer buf = ByteBuffer.allocate(signature.length * Integer.BYTES);
+        buf.asIntBuffer().put(signature);
+        return buf.array();
+    }
+
+    private static Long[] boxed(long[] values) {
+        Long[] out = new Long[values.length];
+        for (int i = 0; i < values.length; i++) out[i] = values[i];
+        return out;
+    }
+
+    private static int[] decode(byte[] bytes) {
+        int[] out = new int[bytes.length / Integer.BYTES];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(out);
+        return out;
+    }
+}
@@ -0,0 +1,268 @@
+package com.intelligence.capture.repo;
+
+import com.intelligence.capture.model.PromptEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * JDBC write path for captures. Every method is a single statement and a single round
+ * trip: idempotency is decided by the database (ON CONFLICT on turn_index / guarded
+ * UPDATE) instead of a SELECT followed by a write. Lookups by turnId go through
+ * turn_index so Postgres only touches the partition that holds the turn. Batch callers keep within
+ * {@code CaptureBatchRequest.MAX_ITEMS} rows so the bind-parameter count stays far below
+ * the Postgres limit.
+ */
+@Repository
+public class PromptEventJdbcRepository {
+
+    /** Just enough of a row to ack a capture without loading the text columns. */
+    public record TurnState(UUID id, UUID turnId, String status, Instant capturedAt, Instant responseCapturedAt) {}
+
+    /** A single-row write: the row as stored, and whether this call changed it. */
+    public record TurnWrite(TurnState state, boolean applied) {}
+
+    private static final String STATE_COLUMNS = "id, turn_id, status, captured_at, response_captured_at";
+
+    private static final String INSERT_COLUMNS = """
+            id, turn_id, status, prompt, prompt_length, prompt_hash, captured_at, client_captured_at,
+                page_url, user_agent, device_id, extension_version, send_method, metadata, response_metadata, created_at""";
+    // Explicit casts: inside VALUES the parameters are not typed by the target columns.
+    private static final String INSERT_ROW = "(CAST(? AS uuid), CAST(? AS uuid), ?, ?, CAST(? AS integer), ?, "
+            + "CAST(? AS timestamptz), CAST(? AS timestamptz), ?, ?, ?, ?, ?, CAST(? AS jsonb), CAST(? AS jsonb), "
+            + "CAST(? AS timestamptz))";
+    private static final String KEY_ROW = "(?, ?)";
+
+    /*
+     * turn_index is claimed first; only the turnIds this statement claimed are inserted
+     * into prompt_events. turn_id cannot be unique in the partitioned table itself.
+     */
+    private static String insertSql(int rows, String returning) {
+        StringBuilder keys = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                keys.append(", ");
+                values.append(", ");
+            }
+            keys.append(KEY_ROW);
+            values.append(INSERT_ROW);
+        }
+        return "WITH k AS (INSERT INTO turn_index (turn_id, captured_at) VALUES " + keys
+                + " ON CONFLICT (turn_id) DO NOTHING RETURNING turn_id),"
+                + " ins AS (INSERT INTO prompt_events (" + INSERT_COLUMNS + ")"
+                + " SELECT v.* FROM (VALUES " + values + ") AS v(" + INSERT_COLUMNS + ")"
+                + " WHERE v.turn_id IN (SELECT turn_id FROM k)"
+                + " RETURNING " + returning + ")";
+    }
+
+    // Pins a turn lookup to the partition holding it, via turn_index.
+    private static final String TURN_PARTITION = "captured_at = (SELECT captured_at FROM turn_index WHERE turn_id = ?)";
+
+    // Rows that already hold a response are left alone, same as captureResponse. The test is
+    // on the text, not the status: scoring moves a completed turn to CLEARED or FLAGGED.
+    // A FLAGGED prompt-only turn takes the response but stays FLAGGED: its prompt is
+    // already redacted, and only the next scoring pass may decide the turn's status.
+    private static final String UPDATE_PREFIX = """
+            UPDATE prompt_events p
+            SET response_text = v.response_text,
+                response_captured_at = v.response_captured_at,
+                response_length = v.response_length,
+                response_hash = v.response_hash,
+                response_metadata = v.response_metadata,
+                status = CASE WHEN p.status = 'FLAGGED' THEN p.status ELSE v.status END
+            FROM (VALUES\s""";
+    private static final String UPDATE_ROW =
+            "(CAST(? AS uuid), ?, CAST(? AS timestamptz), CAST(? AS integer), ?, CAST(? AS jsonb), ?)";
+    private static final String UPDATE_SUFFIX = """
+            ) AS v(turn_id, response_text, response_captured_at, response_length, response_hash, response_metadata, status)
+            JOIN turn_index t ON t.turn_id = v.turn_id
+            WHERE p.turn_id = v.turn_id
+              AND p.captured_at = t.captured_at
+              AND (p.response_text IS NULL OR p.response_text = '')
+            RETURNING p.id, p.turn_id, p.status, p.captured_at, p.response_captured_at""";
+
+    // Returns the new row, or the existing one when the turnId was already captured.
+    private static final String UPSERT_PROMPT = insertSql(1, STATE_COLUMNS + ", true AS applied")
+            + " SELECT * FROM ins UNION ALL SELECT " + STATE_COLUMNS + ", false FROM prompt_events"
+            + " WHERE turn_id = ? AND " + TURN_PARTITION + " AND NOT EXISTS (SELECT 1 FROM ins)";
+
+    // Returns the updated row, or the one that already had a response; no row means unknown turnId.
+    private static final String UPDATE_RESPONSE = "WITH upd AS ("
+            + " UPDATE prompt_events"
+            + " SET response_text = ?, response_captured_at = ?, response_length = ?, response_hash = ?,"
+            + " response_metadata = CAST(? AS jsonb), status = CASE WHEN status = 'FLAGGED' THEN status ELSE ? END"
+            + " WHERE turn_id = ? AND " + TURN_PARTITION
+            + " AND (response_text IS NULL OR response_text = '')"
+            + " RETURNING " + STATE_COLUMNS + ", true AS applied)"
+            + " SELECT * FROM upd UNION ALL SELECT " + STATE_COLUMNS + ", false FROM prompt_events"
+            + " WHERE turn_id = ? AND " + TURN_PARTITION + " AND NOT EXISTS (SELECT 1 FROM upd)";
+
+    private static final RowMapper<TurnState> STATE_MAPPER = (rs, i) -> new TurnState(
+            rs.getObject("id", UUID.class),
+            rs.getObject("turn_id", UUID.class),
+            rs.getString("status"),
+            toInstant(rs.getObject("captured_at", OffsetDateTime.class)),
+            toInstant(rs.getObject("response_captured_at", OffsetDateTime.class))
+    );
+
+    private static final RowMapper<TurnWrite> WRITE_MAPPER =
+            (rs, i) -> new TurnWrite(STATE_MAPPER.mapRow(rs, i), rs.getBoolean("applied"));
+
+    private final JdbcTemplate jdbc;
+    private final JsonMapper json;
+
+    public PromptEventJdbcRepository(JdbcTemplate jdbc, JsonMapper json) {
+        this.jdbc = jdbc;
+        this.json = json;
+    }
+
+    // Joined to turn_index like UPDATE_SUFFIX, so each turn reads only its own partition.
+    public List<TurnState> findStates(Collection<UUID> turnIds) {
+        if (turnIds.isEmpty()) return List.of();
+        return jdbc.query(
+                "SELECT p.id, p.turn_id, p.status, p.captured_at, p.response_captured_at FROM turn_index t"
+                        + " JOIN prompt_events p ON p.turn_id = t.turn_id AND p.captured_at = t.captured_at"
+                        + " WHERE t.turn_id = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", turnIds.toArray())),
+                STATE_MAPPER
+        );
+    }
+
+    /**
+     * Inserts one prompt, or returns the row already stored under its turnId. A concurrent
+     * insert of the same turnId that commits mid-statement is not visible to the fallback
+     * SELECT, so that rare case costs a second query.
+     */
+    public TurnWrite upsertPrompt(PromptEvent e) {
+        List<TurnWrite> rows = jdbc.query(UPSERT_PROMPT, ps -> {
+            int p = bindKey(ps, 1, e);
+            p = bindPrompt(ps, p, e);
+            ps.setObject(p++, e.getTurnId());
+            ps.setObject(p, e.getTurnId());
+        }, WRITE_MAPPER);
+        if (!rows.isEmpty()) return rows.get(0);
+
+        List<TurnState> raced = findStates(List.of(e.getTurnId()));
+        if (raced.isEmpty()) throw new IllegalStateException("turnId vanished during capture: " + e.getTurnId());
+        return new TurnWrite(raced.get(0), false);
+    }
+
+    /**
+     * Writes the response columns of one turn. Empty when the turnId is unknown; not
+     * applied when the turn already has a response, whatever its status. A FLAGGED turn
+     * keeps its status.
+     */
+    public Optional<TurnWrite> updateResponse(PromptEvent e) {
+        List<TurnWrite> rows = jdbc.query(UPDATE_RESPONSE, ps -> {
+            ps.setString(1, e.getResponseText());
+            setInstant(ps, 2, e.getResponseCapturedAt());
+            ps.setInt(3, e.getResponseLength());
+            ps.setString(4, e.getResponseHash());
+            ps.setString(5, toJson(e.getResponseMetadata()));
+            ps.setString(6, e.getStatus());
+            ps.setObject(7, e.getTurnId());
+            ps.setObject(8, e.getTurnId());
+            ps.setObject(9, e.getTurnId());
+            ps.setObject(10, e.getTurnId());
+        }, WRITE_MAPPER);
+        return rows.stream().findFirst();
+    }
+
+    /**
+     * Inserts new prompt rows; turnIds that already exist are skipped. Returns only the
+     * rows this statement actually inserted.
+     */
+    public List<TurnState> insertPrompts(List<PromptEvent> events) {
+        if (events.isEmpty()) return List.of();
+
+        String sql = insertSql(events.size(), STATE_COLUMNS) + " SELECT * FROM ins";
+        return jdbc.query(sql, ps -> {
+            int p = 1;
+            for (PromptEvent e : events) p = bindKey(ps, p, e);
+            for (PromptEvent e : events) p = bindPrompt(ps, p, e);
+        }, STATE_MAPPER);
+    }
+
+    /**
+     * Writes response columns for existing turns. Returns only the rows that changed;
+     * unknown turnIds and turns that already have a response are absent from the result.
+     */
+    public List<TurnState> updateResponses(List<PromptEvent> events) {
+        if (events.isEmpty()) return List.of();
+
+        StringBuilder sql = new StringBuilder(UPDATE_PREFIX);
+        for (int i = 0; i < events.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(UPDATE_ROW);
+        }
+        sql.append(UPDATE_SUFFIX);
+
+        return jdbc.query(sql.toString(), ps -> {
+            int p = 1;
+            for (PromptEvent e : events) {
+                ps.setObject(p++, e.getTurnId());
+                ps.setString(p++, e.getResponseText());
+                setInstant(ps, p++, e.getResponseCapturedAt());
+                ps.setInt(p++, e.getResponseLength());
+                ps.setString(p++, e.getResponseHash());
+                ps.setString(p++, toJson(e.getResponseMetadata()));
+                ps.setString(p++, e.getStatus());
+            }
+        }, STATE_MAPPER);
+    }
+
+    // ---------- helpers ----------
+
+    // Binds the 2 KEY_ROW parameters starting at index p; returns the next free index.
+    private int bindKey(PreparedStatement ps, int p, PromptEvent e) throws SQLException {
+        ps.setObject(p++, e.getTurnId());
+        setInstant(ps, p++, e.getCapturedAt());
+        return p;
+    }
+
+    // Binds the 16 INSERT_ROW parameters starting at index p; returns the next free index.
+    private int bindPrompt(PreparedStatement ps, int p, PromptEvent e) throws SQLException {
+        ps.setObject(p++, e.getId());
+        ps.setObject(p++, e.getTurnId());
+        ps.setString(p++, e.getStatus());
+        ps.setString(p++, e.getPrompt());
+        ps.setInt(p++, e.getPromptLength());
+        ps.setString(p++, e.getPromptHash());
+        setInstant(ps, p++, e.getCapturedAt());
+        setInstant(ps, p++, e.getClientCapturedAt());
+        ps.setString(p++, e.getPageUrl());
+        ps.setString(p++, e.getUserAgent());
+        ps.setString(p++, e.getDeviceId());
+        ps.setString(p++, e.getExtensionVersion());
+        ps.setString(p++, e.getSendMethod());
+        ps.setString(p++, toJson(e.getMetadata()));
+        ps.setString(p++, toJson(e.getResponseMetadata()));
+        setInstant(ps, p++, e.getCreatedAt());
+        return p;
+    }
+
+    private String toJson(Map<String, Object> map) {
+        return (map == null) ? "{}" : json.writeValueAsString(map);
+    }
+
+    private static void setInstant(PreparedStatement ps, int index, Instant value) throws SQLException {
+        ps.setObject(index, value == null ? null : value.atOffset(ZoneOffset.UTC));
+    }
+
+    private static Instant toInstant(OffsetDateTime t) {
+        return (t == null) ? null : t.toInstant();
+    }
+}
@@ -2,35 +2,94 @@ package com.intelligence.capture.repo;
 
 import com.intelligence.capture.model.PromptEvent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.Optional;
 import java.util.UUID;
 
+/*
+ * Lookups and updates by turnId are native so they can pin prompt_events to the one
+ * partition holding the turn: turn_index gives its captured_at, and Postgres prunes the
+ * other partitions at run time. A plain turn_id filter probes every partition.
+ */
 public interface PromptEventRepository extends JpaRepository<PromptEvent, UUID> {
-    List<PromptEvent> findTop50ByOrderByCapturedAtDesc();
-    List<PromptEvent> findTop50ByDeviceIdOrderByCapturedAtDesc(String deviceId);
-    
-    Optional<PromptEvent> findByTurnId(UUID turnId);
-    List<PromptEvent> findTop50ByStatusOrderByCapturedAtDesc(String status);
-
-    // Optimized partial update — updates only response fields and status
-    // @Modifying
-    // @Query("""
-    //     UPDATE PromptEvent p
-    //     SET p.responseText = :responseText,
-    //         p.responseHash = :responseHash,
-    //         p.responseAt = :responseAt,
-    //         p.responseMetadata = :responseMetadata,
-    //         p.status = :status
-    //     WHERE p.turnId = :turnId
-    // """)
-    // int updateResponseByTurnId(
-    //         @Param("turnId") UUID turnId,
-    //         @Param("responseText") String responseText,
-    //         @Param("responseHash") String responseHash,
-    //         @Param("responseAt") Instant responseAt,
-    //         @Param("responseMetadata") java.util.Map<String, Object> responseMetadata,
-    //         @Param("status") String status
-    // );
+    // Same predicate as PromptEventJdbcRepository's, with a named parameter.
+    String TURN_PARTITION = "captured_at = (SELECT captured_at FROM turn_index WHERE turn_id = :turnId)";
+
+    // Listings are keyset-paged summaries in TurnQueryRepository.
+    @Query(value = "SELECT * FROM prompt_events WHERE turn_id = :turnId AND " + TURN_PARTITION, nativeQuery = true)
+    Optional<PromptEvent> findByTurnId(@Param("turnId") UUID turnId);
+
+    /*
+     * Status updates from scoring. scoredWholeTurn clears unscored_at: only a pass that
+     * scored the response (or a turn without one) makes up for a skipped pass.
+     */
+
+    /*
+     * A null text keeps the stored value, so one statement covers flagging with and without
+     * redaction. Redacted text goes with its findings (JSON of RiskScorer.PartScan#toMap),
+     * which later passes score instead of the text.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE prompt_events SET status = :status, prompt = COALESCE(CAST(:prompt AS text), prompt), "
+            + "prompt_findings = COALESCE(CAST(:promptFindings AS jsonb), prompt_findings), "
+            + "response_text = COALESCE(CAST(:responseText AS text), response_text), "
+            + "response_findings = COALESCE(CAST(:responseFindings AS jsonb), response_findings), "
+            + "unscored_at = CASE WHEN :scoredWholeTurn THEN NULL ELSE unscored_at END "
+            + "WHERE turn_id = :turnId AND " + TURN_PARTITION, nativeQuery = true)
+    int updateStatusAndTextByTurnId(@Param("turnId") UUID turnId, @Param("status") String status,
+                                    @Param("prompt") String prompt, @Param("promptFindings") String promptFindings,
+                                    @Param("responseText") String responseText,
+                                    @Param("responseFindings") String responseFindings,
+                                    @Param("scoredWholeTurn") boolean scoredWholeTurn);
+
+    // Redacted text no longer shows what flagged the turn, so a later pass must not clear it.
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE prompt_events SET status = :status, "
+            + "unscored_at = CASE WHEN :scoredWholeTurn THEN NULL ELSE unscored_at END "
+            + "WHERE turn_id = :turnId AND " + TURN_PARTITION + " AND status <> 'FLAGGED'", nativeQuery = true)
+    int updateStatusUnlessFlagged(@Param("turnId") UUID turnId, @Param("status") String status,
+                                  @Param("scoredWholeTurn") boolean scoredWholeTurn);
+
+    // For a FLAGGED turn, which updateStatusUnlessFlagged leaves alone.
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE prompt_events SET unscored_at = NULL "
+            + "WHERE turn_id = :turnId AND " + TURN_PARTITION + " AND unscored_at IS NOT NULL", nativeQuery = true)
+    int clearUnscored(@Param("turnId") UUID turnId);
+
+    /*
+     * Scoring was skipped (executor overflow, shutdown) or given up on (DEAD job). The
+     * capture status stays, so a late or retried response is still guarded by it. Joined
+     * to turn_index so each turn's partition is pruned separately.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE prompt_events p SET unscored_at = :at FROM turn_index t "
+            + "WHERE t.turn_id IN (:turnIds) AND p.turn_id = t.turn_id AND p.captured_at = t.captured_at",
+            nativeQuery = true)
+    int markUnscored(@Param("turnIds") Collection<UUID> turnIds, @Param("at") Instant at);
+
+    // Prompt side only, for scoring a response whose prompt scan is not cached.
+    interface PromptText {
+        String getPrompt();
+        String getPromptHash();
+        String getStatus();
+        String getDeviceId();
+        String getPromptFindings(); // JSON, set once the prompt is redacted
+    }
+
+    @Query(value = "SELECT prompt, prompt_hash AS \"promptHash\", status, device_id AS \"deviceId\", "
+            + "CAST(prompt_findings AS text) AS \"promptFindings\" "
+            + "FROM prompt_events WHERE turn_id = :turnId AND " + TURN_PARTITION, nativeQuery = true)
+    Optional<PromptText> findPromptTextByTurnId(@Param("turnId") UUID turnId);
+
+    // Response capture is a single guarded UPDATE in PromptEventJdbcRepository.updateResponse.
 }
@@ -0,0 +1,148 @@
+package com.intelligence.capture.repo;
+
+import com.intelligence.capture.dto.PageCursor;
+import com.intelligence.capture.model.RiskScore;
+import com.intelligence.capture.risk.RiskScorer.PartScan;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Chunked reads and batched writes for the bulk re-score job. Turns are read oldest
+ * first on (captured_at, id), continuing strictly after the job's cursor; updates name
+ * both id and captured_at so each touches a single partition.
+ */
+@Repository
+public class RescoreBatchRepository {
+
+    /** Status filter for turns whose live scoring was skipped or given up on (unscored_at set, see V13). */
+    public static final String UNSCORED = "UNSCORED";
+
+    /**
+     * A turn as the job reads it. promptFindings / responseFindings are set for a part
+     * whose text was redacted (see V15), and null while the text is as captured.
+     */
+    public record TurnText(UUID id, UUID turnId, Instant capturedAt, String status, boolean unscored,
+                           String prompt, String response, PartScan promptFindings, PartScan responseFindings) {}
+
+    /**
+     * New status for one turn; prompt/response are redacted text to store, or null to keep,
+     * each with the findings it was redacted for.
+     */
+    public record StatusChange(UUID id, Instant capturedAt, String status, String prompt, PartScan promptFindings,
+                               String response, PartScan responseFindings) {}
+
+    private static final String INSERT_SCORE = "INSERT INTO risk_scores "
+            + "(id, turn_id, scored_at, score, scorer_version, rule_set_version, details) "
+            + "VALUES (?, ?, ?, ?, ?, ?, CAST(? AS jsonb))";
+
+    // Both score the whole turn, so both clear unscored_at.
+    private static final String FLAG = "UPDATE prompt_events SET status = 'FLAGGED', prompt = COALESCE(?, prompt), "
+            + "prompt_findings = COALESCE(CAST(? AS jsonb), prompt_findings), "
+            + "response_text = COALESCE(?, response_text), "
+            + "response_findings = COALESCE(CAST(? AS jsonb), response_findings), "
+            + "unscored_at = NULL WHERE id = ? AND captured_at = ?";
+
+    // Redacted text no longer shows what flagged the turn, so a lower score must not clear it.
+    private static final String SET_STATUS = "UPDATE prompt_events SET status = ?, unscored_at = NULL "
+            + "WHERE id = ? AND captured_at = ? AND status <> 'FLAGGED'";
+
+    private final JdbcTemplate jdbc;
+    private final JsonMapper json;
+
+    public RescoreBatchRepository(JdbcTemplate jdbc, JsonMapper json) {
+        this.jdbc = jdbc;
+        this.json = json;
+    }
+
+    /**
+     * Up to limit turns captured in [from, to) after the cursor, oldest first; null filters
+     * are left out. Status {@link #UNSCORED} selects on unscored_at rather than status.
+     */
+    public List<TurnText> findChunk(String status, Instant from, Instant to, PageCursor after, int limit) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT id, turn_id, captured_at, status, unscored_at IS NOT NULL AS unscored, prompt, response_text, "
+                        + "CAST(prompt_findings AS text) AS prompt_findings, "
+                        + "CAST(response_findings AS text) AS response_findings "
+                        + "FROM prompt_events WHERE captured_at < ?");
+        List<Object> args = new ArrayList<>();
+        args.add(to.atOffset(ZoneOffset.UTC));
+        if (from != null) {
+            sql.append(" AND captured_at >= ?");
+            args.add(from.atOffset(ZoneOffset.UTC));
+        }
+        if (UNSCORED.equals(status)) {
+            sql.append(" AND unscored_at IS NOT NULL");
+        } else if (status != null) {
+            sql.append(" AND status = ?");
+            args.add(status);
+        }
+        if (after != null) {
+            sql.append(" AND (captured_at, id) > (?, ?)");
+            args.add(after.at().atOffset(ZoneOffset.UTC));
+            args.add(after.id());
+        }
+        sql.append(" ORDER BY captured_at, id LIMIT ?");
+        args.add(limit);
+
+        return jdbc.query(sql.toString(), (rs, i) -> new TurnText(
+                rs.getObject("id", UUID.class),
+                rs.getObject("turn_id", UUID.class),
+                rs.getObject("captured_at", OffsetDateTime.class).toInstant(),
+                rs.getString("status"),
+                rs.getBoolean("unscored"),
+                rs.getString("prompt"),
+                rs.getString("response_text"),
+                findings(rs.getString("prompt_findings")),
+                findings(rs.getString("response_findings"))
+        ), args.toArray());
+    }
+
+    public void insertScores(List<RiskScore> scores) {
+        if (scores.isEmpty()) return;
+        jdbc.batchUpdate(INSERT_SCORE, scores, scores.size(), (ps, rs) -> {
+            ps.setObject(1, rs.getId());
+            ps.setObject(2, rs.getTurnId());
+            ps.setObject(3, rs.getScoredAt().atOffset(ZoneOffset.UTC));
+            ps.setDouble(4, rs.getScore());
+            ps.setObject(5, rs.getScorerVersion());
+            ps.setString(6, rs.getRuleSetVersion());
+            ps.setString(7, json.writeValueAsString(rs.getDetails()));
+        });
+    }
+
+    public void updateStatuses(List<StatusChange> changes) {
+        List<Object[]> flag = new ArrayList<>();
+        List<Object[]> set = new ArrayList<>();
+        for (StatusChange c : changes) {
+            OffsetDateTime at = c.capturedAt().atOffset(ZoneOffset.UTC);
+            if ("FLAGGED".equals(c.status())) {
+                flag.add(new Object[] { c.prompt(), findingsJson(c.promptFindings()), c.response(),
+                        findingsJson(c.responseFindings()), c.id(), at });
+            } else {
+                set.add(new Object[] { c.status(), c.id(), at });
+            }
+        }
+        if (!flag.isEmpty()) jdbc.batchUpdate(FLAG, flag);
+        if (!set.isEmpty()) jdbc.batchUpdate(SET_STATUS, set);
+    }
+
+    // ---------- helpers ----------
+
+    @SuppressWarnings("unchecked")
+    private PartScan findings(String stored) {
+        return stored == null ? null : PartScan.fromMap(json.readValue(stored, Map.class));
+    }
+
+    private String findingsJson(PartScan scan) {
+        return scan == null ? null : json.writeValueAsString(scan.toMap());
+    }
+}
@@ -0,0 +1,131 @@
+package com.intelligence.capture.repo;
+
+import com.intelligence.capture.dto.RescoreJob;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * JDBC access to rescore_jobs (see V10). Every write that moves a job forward is guarded
+ * by its owner and state, so a node that lost its lease, or a job paused meanwhile,
+ * updates nothing and the caller can tell.
+ */
+@Repository
+public class RescoreJobRepository {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String PAUSED = "PAUSED";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+
+    private static final String COLUMNS = "id, scorer_version, state, status_filter, range_from, range_to, cursor_at, "
+            + "cursor_id, scanned, rescored, owner, heartbeat_at, error, created_at, updated_at, finished_at";
+
+    private static final RowMapper<RescoreJob> MAPPER = (rs, i) -> new RescoreJob(
+            rs.getLong("id"),
+            rs.getInt("scorer_version"),
+            rs.getString("state"),
+            rs.getString("status_filter"),
+            toInstant(rs.getObject("range_from", OffsetDateTime.class)),
+            toInstant(rs.getObject("range_to", OffsetDateTime.class)),
+            toInstant(rs.getObject("cursor_at", OffsetDateTime.class)),
+            rs.getObject("cursor_id", UUID.class),
+            rs.getLong("scanned"),
+            rs.getLong("rescored"),
+            rs.getString("owner"),
+            toInstant(rs.getObject("heartbeat_at", OffsetDateTime.class)),
+            rs.getString("error"),
+            toInstant(rs.getObject("created_at", OffsetDateTime.class)),
+            toInstant(rs.getObject("updated_at", OffsetDateTime.class)),
+            toInstant(rs.getObject("finished_at", OffsetDateTime.class))
+    );
+
+    // The oldest RUNNING job nobody is heartbeating; SKIP LOCKED so two nodes never adopt the same one.
+    private static final String CLAIM_ORPHAN = """
+            UPDATE rescore_jobs SET owner = ?, heartbeat_at = now(), updated_at = now()
+            WHERE id = (
+              SELECT id FROM rescore_jobs
+              WHERE state = 'RUNNING' AND (owner IS NULL OR heartbeat_at < now() - make_interval(secs => ?))
+              ORDER BY id LIMIT 1
+              FOR UPDATE SKIP LOCKED
+            )
+            RETURNING\s""" + COLUMNS;
+
+    private final JdbcTemplate jdbc;
+
+    public RescoreJobRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** A new RUNNING job, already owned by owner. */
+    public RescoreJob create(int scorerVersion, String statusFilter, Instant from, Instant to, String owner) {
+        return jdbc.queryForObject(
+                "INSERT INTO rescore_jobs (scorer_version, state, status_filter, range_from, range_to, owner, heartbeat_at) "
+                        + "VALUES (?, 'RUNNING', ?, ?, ?, ?, now()) RETURNING " + COLUMNS,
+                MAPPER, scorerVersion, statusFilter, at(from), at(to), owner);
+    }
+
+    public Optional<RescoreJob> findById(long id) {
+        return jdbc.query("SELECT " + COLUMNS + " FROM rescore_jobs WHERE id = ?", MAPPER, id).stream().findFirst();
+    }
+
+    public List<RescoreJob> findRecent(int limit) {
+        return jdbc.query("SELECT " + COLUMNS + " FROM rescore_jobs ORDER BY id DESC LIMIT ?", MAPPER, limit);
+    }
+
+    public Optional<RescoreJob> claimOrphan(String owner, Duration lease) {
+        return jdbc.query(CLAIM_ORPHAN, MAPPER, owner, lease.toSeconds()).stream().findFirst();
+    }
+
+    /** Moves the cursor and counters; false if the job is no longer RUNNING under this owner. */
+    public boolean checkpoint(long id, String owner, Instant cursorAt, UUID cursorId, long scanned, long rescored) {
+        return jdbc.update("""
+                UPDATE rescore_jobs
+                SET cursor_at = ?, cursor_id = ?, scanned = scanned + ?, rescored = rescored + ?,
+                    heartbeat_at = now(), updated_at = now()
+                WHERE id = ? AND owner = ? AND state = 'RUNNING'""",
+                at(cursorAt), cursorId, scanned, rescored, id, owner) == 1;
+    }
+
+    /** Keeps the lease while throttled; false as for {@link #checkpoint}. */
+    public boolean heartbeat(long id, String owner) {
+        return jdbc.update("UPDATE rescore_jobs SET heartbeat_at = now() WHERE id = ? AND owner = ? AND state = 'RUNNING'",
+                id, owner) == 1;
+    }
+
+    /** Ends a RUNNING job owned by owner as DONE or FAILED. */
+    public void finish(long id, String owner, String state, String error) {
+        jdbc.update("UPDATE rescore_jobs SET state = ?, error = ?, owner = NULL, finished_at = now(), updated_at = now() "
+                + "WHERE id = ? AND owner = ? AND state = 'RUNNING'", state, error, id, owner);
+    }
+
+    /** RUNNING to PAUSED, whoever runs it; the runner notices at its next checkpoint. */
+    public boolean pause(long id) {
+        return jdbc.update("UPDATE rescore_jobs SET state = 'PAUSED', owner = NULL, updated_at = now() "
+                + "WHERE id = ? AND state = 'RUNNING'", id) == 1;
+    }
+
+    /** PAUSED or FAILED back to RUNNING under owner. */
+    public boolean resume(long id, String owner) {
+        return jdbc.update("UPDATE rescore_jobs SET state = 'RUNNING', owner = ?, heartbeat_at = now(), error = NULL, "
+                + "updated_at = now() WHERE id = ? AND state IN ('PAUSED', 'FAILED')", owner, id) == 1;
+    }
+
+    // ---------- helpers ----------
+
+    private static OffsetDateTime at(Instant t) {
+        return (t == null) ? null : t.atOffset(ZoneOffset.UTC);
+    }
+
+    private static Instant toInstant(OffsetDateTime t) {
+        return (t == null) ? null : t.toInstant();
+    }
+}
@@ -2,14 +2,31 @@ package com.intelligence.capture.repo;
 
 import com.intelligence.capture.model.RiskScore;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface RiskScoreRepository extends JpaRepository<RiskScore, UUID> {
 
+    // the risk endpoint's lookup; scoring itself never reads through here
+    @Transactional(readOnly = true)
     Optional<RiskScore> findTop1ByTurnIdOrderByScoredAtDesc(UUID turnId);
 
-    List<RiskScore> findTop50ByScoreGreaterThanEqualOrderByScoredAtDesc(double minScore);
+    // Latest prompt-only score (no response yet) of any turn with this prompt hash.
+    @Query(value = """
+            SELECT rs.* FROM risk_scores rs
+            JOIN prompt_events pe ON pe.turn_id = rs.turn_id
+            WHERE pe.prompt_hash = :promptHash
+              AND rs.scorer_version = :scorerVersion
+              AND rs.rule_set_version = :ruleSetVersion
+              AND rs.details ->> 'debug_response_len' = '0'
+            ORDER BY rs.scored_at DESC
+            LIMIT 1
+            """, nativeQuery = true)
+    Optional<RiskScore> findLatestPromptOnlyByPromptHash(@Param("promptHash") String promptHash,
+                                                         @Param("scorerVersion") int scorerVersion,
+                                                         @Param("ruleSetVersion") String ruleSetVersion);
 }
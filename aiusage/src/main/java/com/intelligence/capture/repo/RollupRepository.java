@@ -0,0 +1,193 @@
+package com.intelligence.capture.repo;
+
+import com.intelligence.capture.dto.StatsRow;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * JDBC access to the hourly rollup tables (see V7). Writes are additive upserts of
+ * pre-aggregated deltas; reads group the already small rollup rows, so a stats query
+ * costs the same no matter how many turns are behind it.
+ */
+@Repository
+public class RollupRepository {
+
+    /** One rollup row. piiType null addresses risk_rollup_hourly, otherwise pii_rollup_hourly. */
+    public record Key(Instant bucket, String deviceId, String pageHost, String level, String piiType) {}
+
+    /** The level and PII types (bit per PiiType ordinal) a turn is to be counted under. */
+    public record Placement(UUID turnId, String level, int piiTypes) {}
+
+    /** Where a turn was counted before it was re-scored; oldLevel null if it never was. */
+    public record Previous(UUID turnId, Instant capturedAt, String deviceId, String pageHost,
+                           String oldLevel, int oldPiiTypes) {}
+
+    /** Stats dimensions and the rollup column (expression) each groups by. */
+    public enum Dimension {
+        HOUR("bucket"),
+        DAY("date_trunc('day', bucket, 'UTC')"),
+        DEVICE("device_id"),
+        HOST("page_host"),
+        LEVEL("risk_level"),
+        PII("pii_type");
+
+        private final String expr;
+
+        Dimension(String expr) { this.expr = expr; }
+    }
+
+    /*
+     * Records the level and PII types turns are now counted under and returns what they
+     * were counted under before, plus the device and page host of their prompt. The old
+     * rows are locked first so two passes over the same turn are serialised. %s is the
+     * VALUES list of (turn_id, level, pii_types).
+     */
+    private static final String MOVE_TURNS = """
+            WITH v (turn_id, risk_level, pii_types) AS (VALUES %s),
+            old AS (
+              SELECT t.turn_id, t.risk_level, t.pii_types FROM turn_index t JOIN v ON v.turn_id = t.turn_id
+              ORDER BY t.turn_id
+              FOR UPDATE OF t
+            ), upd AS (
+              UPDATE turn_index t SET risk_level = v.risk_level, pii_types = v.pii_types
+              FROM v, old
+              WHERE t.turn_id = v.turn_id AND old.turn_id = v.turn_id
+              RETURNING t.turn_id, t.captured_at, old.risk_level AS old_level, old.pii_types AS old_pii
+            )
+            SELECT upd.turn_id, upd.captured_at, upd.old_level, upd.old_pii,
+                   p.device_id, p.metadata->>'pageHost' AS page_host
+            FROM upd
+            LEFT JOIN prompt_events p ON p.turn_id = upd.turn_id AND p.captured_at = upd.captured_at""";
+
+    private static final String MOVE_ROW = "(CAST(? AS uuid), CAST(? AS varchar), CAST(? AS integer))";
+
+    private static final String UPSERT_TURNS = """
+            INSERT INTO risk_rollup_hourly (bucket, device_id, page_host, risk_level, turns)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (bucket, device_id, page_host, risk_level)
+            DO UPDATE SET turns = risk_rollup_hourly.turns + EXCLUDED.turns""";
+
+    private static final String UPSERT_PII = """
+            INSERT INTO pii_rollup_hourly (bucket, device_id, page_host, risk_level, pii_type, turns)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (bucket, device_id, page_host, risk_level, pii_type)
+            DO UPDATE SET turns = pii_rollup_hourly.turns + EXCLUDED.turns""";
+
+    private final JdbcTemplate jdbc;
+
+    public RollupRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** One row per turn still in turn_index; turns expired by retention are left out. */
+    public List<Previous> moveTurns(List<Placement> placements) {
+        if (placements.isEmpty()) return List.of();
+        String sql = MOVE_TURNS.formatted(String.join(", ", Collections.nCopies(placements.size(), MOVE_ROW)));
+        List<Object> args = new ArrayList<>(placements.size() * 3);
+        for (Placement pl : placements) {
+            args.add(pl.turnId());
+            args.add(pl.level());
+            args.add(pl.piiTypes());
+        }
+        return jdbc.query(sql, (rs, i) -> new Previous(
+                rs.getObject("turn_id", UUID.class),
+                rs.getObject("captured_at", OffsetDateTime.class).toInstant(),
+                rs.getString("device_id"),
+                rs.getString("page_host"),
+                rs.getString("old_level"),
+                rs.getInt("old_pii")
+        ), args.toArray());
+    }
+
+    /**
+     * Adds each delta to its row, creating rows as needed. Both tables in one transaction:
+     * a failed flush is retried whole, so a half-applied one would be counted twice.
+     */
+    @Transactional
+    public void addAll(Map<Key, Long> deltas) {
+        List<Object[]> turns = new ArrayList<>();
+        List<Object[]> pii = new ArrayList<>();
+        for (var e : deltas.entrySet()) {
+            Key k = e.getKey();
+            OffsetDateTime bucket = k.bucket().atOffset(ZoneOffset.UTC);
+            if (k.piiType() == null) {
+                turns.add(new Object[] { bucket, k.deviceId(), k.pageHost(), k.level(), e.getValue() });
+            } else {
+                pii.add(new Object[] { bucket, k.deviceId(), k.pageHost(), k.level(), k.piiType(), e.getValue() });
+            }
+        }
+        if (!turns.isEmpty()) jdbc.batchUpdate(UPSERT_TURNS, turns);
+        if (!pii.isEmpty()) jdbc.batchUpdate(UPSERT_PII, pii);
+    }
+
+    /**
+     * Turn counts in [from, to) grouped by the given dimensions; null filters are left
+     * out. Grouping by PII reads the PII rollup, where a turn counts once per type.
+     * Rows come time-ordered when grouped by time, otherwise largest first.
+     */
+    @Transactional(readOnly = true)
+    public List<StatsRow> query(List<Dimension> groupBy, Instant from, Instant to,
+                                String deviceId, String pageHost, String level, int limit) {
+        String table = groupBy.contains(Dimension.PII) ? "pii_rollup_hourly" : "risk_rollup_hourly";
+
+        StringBuilder select = new StringBuilder("SELECT ");
+        StringBuilder group = new StringBuilder();
+        for (Dimension d : groupBy) {
+            select.append(d.expr).append(" AS ").append(d.name().toLowerCase()).append(", ");
+            group.append(group.isEmpty() ? " GROUP BY " : ", ").append(d.expr);
+        }
+        select.append("coalesce(sum(turns), 0) AS turns FROM ").append(table)
+                .append(" WHERE bucket >= ? AND bucket < ?");
+
+        List<Object> args = new ArrayList<>();
+        args.add(from.atOffset(ZoneOffset.UTC));
+        args.add(to.atOffset(ZoneOffset.UTC));
+        if (deviceId != null) {
+            select.append(" AND device_id = ?");
+            args.add(deviceId);
+        }
+        if (pageHost != null) {
+            select.append(" AND page_host = ?");
+            args.add(pageHost);
+        }
+        if (level != null) {
+            select.append(" AND risk_level = ?");
+            args.add(level);
+        }
+        select.append(group);
+
+        Dimension time = groupBy.contains(Dimension.HOUR) ? Dimension.HOUR
+                : groupBy.contains(Dimension.DAY) ? Dimension.DAY : null;
+        select.append(time != null ? " ORDER BY " + time.expr + ", turns DESC" : " ORDER BY turns DESC");
+        select.append(" LIMIT ?");
+        args.add(limit);
+
+        return jdbc.query(select.toString(), (rs, i) -> {
+            Instant bucket = null;
+            if (time != null) bucket = rs.getObject(time.name().toLowerCase(), OffsetDateTime.class).toInstant();
+            return new StatsRow(
+                    bucket,
+                    groupBy.contains(Dimension.DEVICE) ? emptyToNull(rs.getString("device")) : null,
+                    groupBy.contains(Dimension.HOST) ? emptyToNull(rs.getString("host")) : null,
+                    groupBy.contains(Dimension.LEVEL) ? rs.getString("level") : null,
+                    groupBy.contains(Dimension.PII) ? rs.getString("pii") : null,
+                    rs.getLong("turns"));
+        }, args.toArray());
+    }
+
+    // ---------- helpers ----------
+
+    private static String emptyToNull(String s) {
+        return (s == null || s.isEmpty()) ? null : s;
+    }
+}
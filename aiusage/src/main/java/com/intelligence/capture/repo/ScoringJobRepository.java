@@ -0,0 +1,159 @@
+package com.intelligence.capture.repo;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * JDBC access to scoring_jobs (see V12), the durable scoring queue. Writes that finish
+ * a claimed job are guarded by its owner, so a worker whose lease ran out and was taken
+ * over changes nothing, and by seq, so a job re-enqueued while it ran is run again
+ * instead of being completed.
+ */
+@Repository
+public class ScoringJobRepository {
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String DEAD = "DEAD";
+
+    /** A job this worker now holds. attempts includes this one. */
+    public record Claimed(UUID turnId, int seq, int attempts, Instant enqueuedAt) {}
+
+    private static final RowMapper<Claimed> CLAIMED = (rs, i) -> new Claimed(
+            rs.getObject("turn_id", UUID.class),
+            rs.getInt("seq"),
+            rs.getInt("attempts"),
+            rs.getObject("enqueued_at", OffsetDateTime.class).toInstant()
+    );
+
+    /*
+     * A job that is already RUNNING stays with its worker and only gets a new seq: the
+     * worker sees the change when it completes and puts the job back as PENDING. Setting
+     * it PENDING here would let a second worker score the turn at the same time.
+     */
+    private static final String ENQUEUE = """
+            INSERT INTO scoring_jobs (turn_id)
+            SELECT unnest(?::uuid[])
+            ON CONFLICT (turn_id) DO UPDATE SET
+              seq = scoring_jobs.seq + 1,
+              state = CASE WHEN scoring_jobs.state = 'RUNNING' THEN 'RUNNING' ELSE 'PENDING' END,
+              attempts = CASE WHEN scoring_jobs.state = 'RUNNING' THEN scoring_jobs.attempts ELSE 0 END,
+              run_at = CASE WHEN scoring_jobs.state = 'RUNNING' THEN scoring_jobs.run_at ELSE now() END,
+              last_error = NULL, enqueued_at = now(), updated_at = now()""";
+
+    // Due PENDING jobs, and RUNNING ones whose lease ran out, oldest first.
+    private static final String CLAIM = """
+            UPDATE scoring_jobs
+            SET state = 'RUNNING', owner = ?, attempts = attempts + 1,
+                run_at = now() + make_interval(secs => ?), updated_at = now()
+            WHERE turn_id IN (
+              SELECT turn_id FROM scoring_jobs
+              WHERE state IN ('PENDING', 'RUNNING') AND run_at <= now()
+              ORDER BY run_at
+              LIMIT ?
+              FOR UPDATE SKIP LOCKED
+            )
+            RETURNING turn_id, seq, attempts, enqueued_at""";
+
+    private static final String COMPLETE = """
+            WITH d AS (SELECT * FROM unnest(?::uuid[], ?::int[]) AS d(turn_id, seq)),
+            requeued AS (
+              UPDATE scoring_jobs j
+              SET state = 'PENDING', attempts = 0, owner = NULL, run_at = now(), updated_at = now()
+              FROM d WHERE j.turn_id = d.turn_id AND j.owner = ? AND j.state = 'RUNNING' AND j.seq <> d.seq
+              RETURNING j.turn_id
+            )
+            DELETE FROM scoring_jobs j
+            USING d WHERE j.turn_id = d.turn_id AND j.owner = ? AND j.state = 'RUNNING' AND j.seq = d.seq""";
+
+    // A job re-enqueued while it ran starts over with a fresh attempt count.
+    private static final String FAIL = """
+            UPDATE scoring_jobs
+            SET state = CASE WHEN seq = ? AND attempts >= ? THEN 'DEAD' ELSE 'PENDING' END,
+                attempts = CASE WHEN seq = ? THEN attempts ELSE 0 END,
+                run_at = CASE WHEN seq = ? THEN now() + make_interval(secs => ?) ELSE now() END,
+                owner = NULL, last_error = ?, updated_at = now()
+            WHERE turn_id = ? AND owner = ? AND state = 'RUNNING'
+            RETURNING state""";
+
+    private final JdbcTemplate jdbc;
+
+    public ScoringJobRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** Queues the turns for scoring; call inside the transaction that captured them. */
+    public void enqueue(Collection<UUID> turnIds) {
+        if (turnIds.isEmpty()) return;
+        jdbc.update(ENQUEUE, ps -> ps.setArray(1, uuids(ps.getConnection(), turnIds)));
+    }
+
+    /** Up to limit due jobs, now RUNNING under owner until the lease runs out. */
+    public List<Claimed> claim(String owner, int limit, Duration lease) {
+        return jdbc.query(CLAIM, CLAIMED, owner, lease.toSeconds(), limit);
+    }
+
+    /** Deletes the jobs that were scored; those re-enqueued meanwhile go back to PENDING. */
+    public void complete(String owner, List<Claimed> done) {
+        if (done.isEmpty()) return;
+        jdbc.update(COMPLETE, ps -> {
+            Connection c = ps.getConnection();
+            ps.setArray(1, uuids(c, done.stream().map(Claimed::turnId).toList()));
+            ps.setArray(2, c.createArrayOf("integer", done.stream().map(Claimed::seq).toArray()));
+            ps.setString(3, owner);
+            ps.setString(4, owner);
+        });
+    }
+
+    /**
+     * Puts a failed job back for another try after retryIn, or moves it to DEAD once it
+     * has had maxAttempts. Returns the new state, or null if the job was no longer ours.
+     */
+    public String fail(String owner, Claimed job, int maxAttempts, Duration retryIn, String error) {
+        List<String> state = jdbc.queryForList(FAIL, String.class,
+                job.seq(), maxAttempts, job.seq(), job.seq(), retryIn.toSeconds(), error,
+                job.turnId(), owner);
+        return state.isEmpty() ? null : state.get(0);
+    }
+
+    /** Hands back jobs a stopping worker claimed but never ran, without counting the attempt. */
+    public int release(String owner) {
+        return jdbc.update("UPDATE scoring_jobs SET state = 'PENDING', owner = NULL, attempts = greatest(attempts - 1, 0), "
+                + "run_at = now(), updated_at = now() WHERE owner = ? AND state = 'RUNNING'", owner);
+    }
+
+    /** Jobs per state. */
+    public Map<String, Long> countByState() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        jdbc.query("SELECT state, count(*) AS n FROM scoring_jobs GROUP BY state",
+                rs -> { out.put(rs.getString("state"), rs.getLong("n")); });
+        return out;
+    }
+
+    /** When the longest-waiting due PENDING job was enqueued, or null if there is none. */
+    public Instant oldestPending() {
+        OffsetDateTime t = jdbc.queryForObject(
+                "SELECT min(enqueued_at) FROM scoring_jobs WHERE state = 'PENDING' AND run_at <= now()",
+                OffsetDateTime.class);
+        return t == null ? null : t.toInstant();
+    }
+
+    // ---------- helpers ----------
+
+    private static Array uuids(Connection c, Collection<UUID> ids) throws SQLException {
+        return c.createArrayOf("uuid", ids.toArray());
+    }
+}
@@ -0,0 +1,69 @@
+package com.intelligence.capture.repo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Highlighted excerpts for substring search hits, in the same shape ts_headline gives
+ * the full-text modes: a few fragments of context around the matches, matches wrapped
+ * in {@link #START} / {@link #STOP}, fragments joined by {@link #DELIMITER}.
+ */
+public final class Snippets {
+
+    public static final String START = "[[";
+    public static final String STOP = "]]";
+    public static final String DELIMITER = " … ";
+
+    private static final int CONTEXT = 60;
+    private static final int MAX_FRAGMENTS = 2;
+
+    private Snippets() {}
+
+    /** Excerpts of text around case-insensitive occurrences of needle, or null if there are none. */
+    public static String highlight(String text, String needle) {
+        if (text == null || needle == null || needle.isEmpty()) return null;
+
+        // matches as [start, end) pairs, non-overlapping, left to right
+        List<int[]> matches = new ArrayList<>();
+        int n = text.length();
+        int m = needle.length();
+        for (int i = 0; i + m <= n; ) {
+            if (text.regionMatches(true, i, needle, 0, m)) {
+                matches.add(new int[] { i, i + m });
+                i += m;
+            } else {
+                i++;
+            }
+        }
+        if (matches.isEmpty()) return null;
+
+        // context windows around the matches, merged where they touch
+        List<int[]> windows = new ArrayList<>();
+        for (int[] match : matches) {
+            int from = Math.max(0, match[0] - CONTEXT);
+            int to = Math.min(n, match[1] + CONTEXT);
+            int[] last = windows.isEmpty() ? null : windows.get(windows.size() - 1);
+            if (last != null && from <= last[1]) {
+                last[1] = Math.max(last[1], to);
+            } else if (windows.size() < MAX_FRAGMENTS) {
+                windows.add(new int[] { from, to });
+            } else {
+                break;
+            }
+        }
+
+        StringBuilder out = new StringBuilder();
+        int k = 0;
+        for (int[] w : windows) {
+            if (!out.isEmpty()) out.append(DELIMITER);
+            int cursor = w[0];
+            while (k < matches.size() && matches.get(k)[1] <= w[1]) {
+                int[] match = matches.get(k++);
+                out.append(text, cursor, match[0]).append(START).append(text, match[0], match[1]).append(STOP);
+                cursor = match[1];
+            }
+            out.append(text, cursor, w[1]);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,103 @@
+package com.intelligence.capture.repo;
+
+import com.intelligence.capture.dto.PageCursor;
+import com.intelligence.capture.dto.RiskScoreSummary;
+import com.intelligence.capture.dto.TurnSummary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * JDBC read path for the listing endpoints. Pages are keyset-based: newest first on
+ * (captured_at, id) or (scored_at, id), continuing strictly after the cursor row, so a
+ * page costs the same no matter how deep it is and never repeats or skips rows that
+ * were inserted meanwhile. Only summary columns are selected; the text stays in the
+ * table. Callers ask for one row more than the page size to learn whether there is a
+ * next page. Read-only, so with a replica configured these queries run there.
+ */
+@Repository
+@Transactional(readOnly = true)
+public class TurnQueryRepository {
+
+    private static final RowMapper<TurnSummary> TURN_MAPPER = (rs, i) -> new TurnSummary(
+            rs.getObject("id", UUID.class),
+            rs.getObject("turn_id", UUID.class),
+            rs.getString("status"),
+            rs.getString("device_id"),
+            rs.getObject("captured_at", OffsetDateTime.class).toInstant(),
+            toInstant(rs.getObject("response_captured_at", OffsetDateTime.class)),
+            rs.getObject("prompt_length", Integer.class),
+            rs.getObject("response_length", Integer.class)
+    );
+
+    private static final RowMapper<RiskScoreSummary> RISK_MAPPER = (rs, i) -> new RiskScoreSummary(
+            rs.getObject("id", UUID.class),
+            rs.getObject("turn_id", UUID.class),
+            rs.getObject("scored_at", OffsetDateTime.class).toInstant(),
+            rs.getDouble("score"),
+            rs.getString("level"),
+            rs.getObject("scorer_version", Integer.class)
+    );
+
+    private final JdbcTemplate jdbc;
+
+    public TurnQueryRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** Turns newest first; null filters are left out of the WHERE clause. */
+    public List<TurnSummary> findTurns(String status, String deviceId, PageCursor after, int limit) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT id, turn_id, status, device_id, captured_at, response_captured_at, prompt_length, response_length
+                FROM prompt_events
+                WHERE true""");
+        List<Object> args = new ArrayList<>();
+        if (status != null) {
+            sql.append(" AND status = ?");
+            args.add(status);
+        }
+        if (deviceId != null) {
+            sql.append(" AND device_id = ?");
+            args.add(deviceId);
+        }
+        appendPage(sql, args, "captured_at", after, limit);
+        return jdbc.query(sql.toString(), TURN_MAPPER, args.toArray());
+    }
+
+    /** Risk scores with score >= minScore, newest first. */
+    public List<RiskScoreSummary> findRiskScores(double minScore, PageCursor after, int limit) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT id, turn_id, scored_at, score, details ->> 'level' AS level, scorer_version
+                FROM risk_scores
+                WHERE score >= ?""");
+        List<Object> args = new ArrayList<>();
+        args.add(minScore);
+        appendPage(sql, args, "scored_at", after, limit);
+        return jdbc.query(sql.toString(), RISK_MAPPER, args.toArray());
+    }
+
+    // ---------- helpers ----------
+
+    // Row-value comparison so Postgres can seek the (sortColumn DESC, id DESC) index.
+    private static void appendPage(StringBuilder sql, List<Object> args, String sortColumn, PageCursor after, int limit) {
+        if (after != null) {
+            sql.append(" AND (").append(sortColumn).append(", id) < (?, ?)");
+            args.add(after.at().atOffset(ZoneOffset.UTC));
+            args.add(after.id());
+        }
+        sql.append(" ORDER BY ").append(sortColumn).append(" DESC, id DESC LIMIT ?");
+        args.add(limit);
+    }
+
+    private static Instant toInstant(OffsetDateTime t) {
+        return (t == null) ? null : t.toInstant();
+    }
+}
@@ -0,0 +1,160 @@
+package com.intelligence.capture.repo;
+
+import com.intelligence.capture.dto.PageCursor;
+import com.intelligence.capture.dto.SearchHit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Search over prompt and response_text, backed by the V8 indexes. Substring queries use
+ * the trigram indexes through ILIKE; phrase and prefix queries use the 'simple' tsvector
+ * indexes. Hits come newest first with the same (captured_at, id) keyset as the turn
+ * listing, and only the page's rows are highlighted.
+ */
+@Repository
+@Transactional(readOnly = true)
+public class TurnSearchRepository {
+
+    public enum Mode {
+        /** Case-insensitive substring anywhere, punctuation included: hostnames, code. */
+        SUBSTRING,
+        /** Words in this order, adjacent. */
+        PHRASE,
+        /** Every word, each as a prefix, in any order. */
+        PREFIX
+    }
+
+    public enum Field { PROMPT, RESPONSE, ALL }
+
+    /** Null filters are left out; from is inclusive, to exclusive. */
+    public record Query(String text, Mode mode, Field in, String status, String deviceId, Instant from, Instant to) {}
+
+    // Must match the V8 index expressions exactly.
+    private static final String PROMPT_TSV = "to_tsvector('simple'::regconfig, prompt)";
+    private static final String RESPONSE_TSV = "to_tsvector('simple'::regconfig, coalesce(response_text, ''))";
+
+    private static final String HEADLINE_OPTIONS = "StartSel=" + Snippets.START + ", StopSel=" + Snippets.STOP
+            + ", MaxWords=35, MinWords=15, MaxFragments=2, FragmentDelimiter=\"" + Snippets.DELIMITER + "\"";
+
+    private final JdbcTemplate jdbc;
+
+    public TurnSearchRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public List<SearchHit> search(Query q, PageCursor after, int limit) {
+        boolean prompt = q.in() != Field.RESPONSE;
+        boolean response = q.in() != Field.PROMPT;
+        String tsQuery = switch (q.mode()) {
+            case SUBSTRING -> null;
+            case PHRASE -> "phraseto_tsquery('simple', ?)";
+            case PREFIX -> "to_tsquery('simple', ?)";
+        };
+        String term = (q.mode() == Mode.PREFIX) ? prefixQuery(q.text()) : q.text();
+
+        // ---- the page: matching rows only, newest first ----
+        StringBuilder page = new StringBuilder(
+                "SELECT id, turn_id, status, device_id, captured_at, prompt, response_text FROM prompt_events WHERE (");
+        List<Object> pageArgs = new ArrayList<>();
+        List<String> matches = new ArrayList<>();
+        if (tsQuery == null) {
+            String pattern = "%" + escapeLike(q.text()) + "%";
+            if (prompt) matches.add("prompt ILIKE ?");
+            if (response) matches.add("response_text ILIKE ?");
+            for (int i = 0; i < matches.size(); i++) pageArgs.add(pattern);
+        } else {
+            if (prompt) matches.add(PROMPT_TSV + " @@ " + tsQuery);
+            if (response) matches.add(RESPONSE_TSV + " @@ " + tsQuery);
+            for (int i = 0; i < matches.size(); i++) pageArgs.add(term);
+        }
+        page.append(String.join(" OR ", matches)).append(')');
+
+        if (q.status() != null) {
+            page.append(" AND status = ?");
+            pageArgs.add(q.status());
+        }
+        if (q.deviceId() != null) {
+            page.append(" AND device_id = ?");
+            pageArgs.add(q.deviceId());
+        }
+        if (q.from() != null) {
+            page.append(" AND captured_at >= ?");
+            pageArgs.add(q.from().atOffset(ZoneOffset.UTC));
+        }
+        if (q.to() != null) {
+            page.append(" AND captured_at < ?");
+            pageArgs.add(q.to().atOffset(ZoneOffset.UTC));
+        }
+        if (after != null) {
+            page.append(" AND (captured_at, id) < (?, ?)");
+            pageArgs.add(after.at().atOffset(ZoneOffset.UTC));
+            pageArgs.add(after.id());
+        }
+        page.append(" ORDER BY captured_at DESC, id DESC LIMIT ?");
+        pageArgs.add(limit);
+
+        if (tsQuery == null) {
+            // substring: highlight the page's text here
+            return jdbc.query(page.toString(), (rs, i) -> hit(rs.getObject("id", UUID.class),
+                    rs.getObject("turn_id", UUID.class), rs.getString("status"), rs.getString("device_id"),
+                    rs.getObject("captured_at", OffsetDateTime.class),
+                    prompt ? Snippets.highlight(rs.getString("prompt"), q.text()) : null,
+                    response ? Snippets.highlight(rs.getString("response_text"), q.text()) : null),
+                    pageArgs.toArray());
+        }
+
+        // ---- full text: ts_headline over the page only ----
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT id, turn_id, status, device_id, captured_at, ");
+        sql.append(prompt ? headline(PROMPT_TSV, "prompt", tsQuery, args, term) : "NULL")
+                .append(" AS prompt_snippet, ");
+        sql.append(response ? headline(RESPONSE_TSV, "response_text", tsQuery, args, term) : "NULL")
+                .append(" AS response_snippet FROM (").append(page).append(") page ORDER BY captured_at DESC, id DESC");
+        args.addAll(pageArgs);
+
+        return jdbc.query(sql.toString(), (rs, i) -> hit(rs.getObject("id", UUID.class),
+                rs.getObject("turn_id", UUID.class), rs.getString("status"), rs.getString("device_id"),
+                rs.getObject("captured_at", OffsetDateTime.class),
+                rs.getString("prompt_snippet"), rs.getString("response_snippet")), args.toArray());
+    }
+
+    // ---------- helpers ----------
+
+    private static SearchHit hit(UUID id, UUID turnId, String status, String deviceId, OffsetDateTime capturedAt,
+                                 String promptSnippet, String responseSnippet) {
+        return new SearchHit(id, turnId, status, deviceId, capturedAt.toInstant(), promptSnippet, responseSnippet);
+    }
+
+    private static String headline(String tsv, String column, String tsQuery, List<Object> args, String term) {
+        args.add(term);
+        args.add(term);
+        return "CASE WHEN " + tsv + " @@ " + tsQuery + " THEN ts_headline('simple', " + column + ", " + tsQuery
+                + ", '" + HEADLINE_OPTIONS + "') END";
+    }
+
+    /*
+     * Each whitespace-separated word as a quoted prefix term, ANDed. Quoting hands the
+     * word to the text parser as-is, so "db01.corp" stays one host token like in the index.
+     */
+    static String prefixQuery(String text) {
+        List<String> terms = new ArrayList<>();
+        for (String word : text.trim().split("\\s+")) {
+            if (word.isEmpty()) continue;
+            terms.add("'" + word.replace("\\", "\\\\").replace("'", "''") + "':*");
+        }
+        return String.join(" & ", terms);
+    }
+
+    // ILIKE treats % and _ as wildcards and \ as the escape character.
+    static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
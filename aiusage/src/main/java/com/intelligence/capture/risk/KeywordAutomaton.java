@@ -0,0 +1,187 @@
+package com.intelligence.capture.risk;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Case-insensitive substring matcher for a fixed set of terms (Aho-Corasick). The terms
+ * are compiled once into one automaton, so a text is read once, left to right, however
+ * many terms there are, instead of once per term.
+ *
+ * <p>ASCII input, the common case, steps through a dense transition table with the
+ * failure links already folded in. Other chars follow the trie edges and failure links.
+ */
+public final class KeywordAutomaton {
+
+    private static final int ASCII = 128;
+    private static final int ROOT = 0;
+
+    private final String[] terms;          // lower-cased, by term id
+    private final int[] ascii;             // state * ASCII + c -> next state
+    private final char[][] edgeChars;      // trie edges of each state, sorted; non-ASCII lookups only
+    private final int[][] edgeTargets;
+    private final int[] fail;
+    private final int[][] out;             // term ids ending at each state, suffixes included
+
+    private KeywordAutomaton(String[] terms, int[] ascii, char[][] edgeChars, int[][] edgeTargets,
+                             int[] fail, int[][] out) {
+        this.terms = terms;
+        this.ascii = ascii;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.out = out;
+    }
+
+    /** Compiles terms, lower-cased; blank and repeated terms are dropped. */
+    public static KeywordAutomaton of(List<String> terms) {
+        LinkedHashMap<String, Integer> ids = new LinkedHashMap<>();
+        for (String t : terms) {
+            if (t == null || t.isBlank()) continue;
+            ids.putIfAbsent(normalize(t), ids.size());
+        }
+        String[] byId = ids.keySet().toArray(new String[0]);
+
+        // ---- trie ----
+        List<Map<Character, Integer>> edges = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        edges.add(new HashMap<>());
+        ends.add(new ArrayList<>());
+        for (int id = 0; id < byId.length; id++) {
+            int s = ROOT;
+            for (int i = 0; i < byId[id].length(); i++) {
+                char c = byId[id].charAt(i);
+                Integer next = edges.get(s).get(c);
+                if (next == null) {
+                    next = edges.size();
+                    edges.get(s).put(c, next);
+                    edges.add(new HashMap<>());
+                    ends.add(new ArrayList<>());
+                }
+                s = next;
+            }
+            ends.get(s).add(id);
+        }
+
+        int states = edges.size();
+        char[][] edgeChars = new char[states][];
+        int[][] edgeTargets = new int[states][];
+        for (int s = 0; s < states; s++) {
+            Character[] cs = edges.get(s).keySet().toArray(new Character[0]);
+            Arrays.sort(cs);
+            edgeChars[s] = new char[cs.length];
+            edgeTargets[s] = new int[cs.length];
+            for (int k = 0; k < cs.length; k++) {
+                edgeChars[s][k] = cs[k];
+                edgeTargets[s][k] = edges.get(s).get(cs[k]);
+            }
+        }
+
+        // ---- failure links and the ASCII table, breadth first so a state's fail is done before it ----
+        int[] fail = new int[states];
+        int[] ascii = new int[states * ASCII];
+        int[][] out = new int[states][];
+        out[ROOT] = toArray(ends.get(ROOT));
+        for (int c = 0; c < ASCII; c++) ascii[c] = Math.max(edge(edgeChars, edgeTargets, ROOT, (char) c), ROOT);
+
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int t : edgeTargets[ROOT]) {
+            fail[t] = ROOT;
+            queue.add(t);
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            List<Integer> own = ends.get(s);
+            int[] inherited = out[fail[s]];
+            int[] all = new int[own.size() + inherited.length];
+            for (int k = 0; k < own.size(); k++) all[k] = own.get(k);
+            System.arraycopy(inherited, 0, all, own.size(), inherited.length);
+            out[s] = all;
+
+            for (int c = 0; c < ASCII; c++) {
+                int next = edge(edgeChars, edgeTargets, s, (char) c);
+                ascii[s * ASCII + c] = next >= 0 ? next : ascii[fail[s] * ASCII + c];
+            }
+            for (int k = 0; k < edgeChars[s].length; k++) {
+                char c = edgeChars[s][k];
+                int child = edgeTargets[s][k];
+                int f = fail[s];
+                int target;
+                if (c < ASCII) {
+                    target = ascii[f * ASCII + c];
+                } else {
+                    while (f != ROOT && edge(edgeChars, edgeTargets, f, c) < 0) f = fail[f];
+                    target = Math.max(edge(edgeChars, edgeTargets, f, c), ROOT);
+                }
+                fail[child] = target;
+                queue.add(child);
+            }
+        }
+
+        return new KeywordAutomaton(byId, ascii, edgeChars, edgeTargets, fail, out);
+    }
+
+    /** Number of distinct terms. */
+    public int size() {
+        return terms.length;
+    }
+
+    public String term(int id) {
+        return terms[id];
+    }
+
+    /** Terms occurring in text, case-insensitively, each once, in order of first occurrence. */
+    public List<String> find(CharSequence text) {
+        if (terms.length == 0 || text == null || text.isEmpty()) return List.of();
+        boolean[] seen = null;
+        List<String> found = null;
+        int s = ROOT;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (c < ASCII) {
+                if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+                s = ascii[s * ASCII + c];
+            } else {
+                c = Character.toLowerCase(c);
+                int next;
+                while ((next = edge(edgeChars, edgeTargets, s, c)) < 0 && s != ROOT) s = fail[s];
+                s = Math.max(next, ROOT);
+            }
+            for (int id : out[s]) {
+                if (seen == null) {
+                    seen = new boolean[terms.length];
+                    found = new ArrayList<>(4);
+                }
+                if (!seen[id]) {
+                    seen[id] = true;
+                    found.add(terms[id]);
+                }
+            }
+        }
+        return found == null ? List.of() : found;
+    }
+
+    // ---------- helpers ----------
+
+    private static int edge(char[][] edgeChars, int[][] edgeTargets, int state, char c) {
+        int k = Arrays.binarySearch(edgeChars[state], c);
+        return k >= 0 ? edgeTargets[state][k] : -1;
+    }
+
+    private static int[] toArray(List<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /** A term as the automaton stores and reports it. */
+    static String normalize(String term) {
+        StringBuilder sb = new StringBuilder(term.length());
+        for (int i = 0; i < term.length(); i++) sb.append(Character.toLowerCase(term.charAt(i)));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,121 @@
+package com.intelligence.capture.risk;
+
+import java.util.Arrays;
+
+/**
+ * MinHash signatures over word 3-shingles, for spotting the same text pasted again with
+ * small edits. Words are runs of letters and digits, compared case-insensitively. The
+ * share of positions two signatures agree on estimates the Jaccard similarity of their
+ * shingle sets, so a document with a few words changed or appended still scores close
+ * to 1 while unrelated text scores close to 0.
+ *
+ * <p>For lookups the signature is cut into {@link #BANDS} bands of {@link #ROWS} values,
+ * each hashed to one long (LSH banding). Texts sharing any band are candidates: at
+ * Jaccard 0.8 a pair shares at least one band with probability above 0.99, at 0.3 about
+ * 0.12, and the candidates are then checked with {@link #similarity}.
+ *
+ * <p>One pass over the chars; per shingle, {@link #HASHES} cheap integer mixes.
+ */
+public final class MinHash {
+
+    public static final int BANDS = 16;
+    public static final int ROWS = 4;
+    public static final int HASHES = BANDS * ROWS;
+
+    /** Fewer words than this and the text is not fingerprinted: short prompts collide too easily. */
+    public static final int MIN_WORDS = 8;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private MinHash() {}
+
+    /** The signature of text, or null when it has fewer than {@link #MIN_WORDS} words. */
+    public static int[] of(CharSequence text) {
+        if (text == null) return null;
+
+        int[] mins = null;
+        long w1 = 0, w2 = 0;   // the two previous word hashes
+        int words = 0;
+        long h = FNV_OFFSET;
+        boolean inWord = false;
+
+        int n = text.length();
+        for (int i = 0; i <= n; i++) {
+            char c = i < n ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                h = (h ^ Character.toLowerCase(c)) * FNV_PRIME;
+                inWord = true;
+                continue;
+            }
+            if (!inWord) continue;
+
+            if (++words >= 3) {
+                if (mins == null) {
+                    mins = new int[HASHES];
+                    Arrays.fill(mins, Integer.MAX_VALUE);
+                }
+                add(mins, mix64(w2 ^ Long.rotateLeft(w1, 21) ^ Long.rotateLeft(h, 42)));
+            }
+            w2 = w1;
+            w1 = h;
+            h = FNV_OFFSET;
+            inWord = false;
+        }
+        return words < MIN_WORDS ? null : mins;
+    }
+
+    /** Estimated Jaccard similarity of the two texts' shingle sets, 0..1. */
+    public static double similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (a[i] == b[i]) same++;
+        }
+        return (double) same / HASHES;
+    }
+
+    /** One hash per band; equal band hashes mean equal bands (up to 64-bit collisions). */
+    public static long[] bands(int[] sig) {
+        long[] out = new long[BANDS];
+        for (int b = 0; b < BANDS; b++) {
+            long k = b;
+            for (int r = 0; r < ROWS; r++) {
+                k = k * 0x9E3779B97F4A7C15L + (sig[b * ROWS + r] & 0xFFFFFFFFL);
+            }
+            out[b] = mix64(k);
+        }
+        return out;
+    }
+
+    // ---------- helpers ----------
+
+    // Hash i of a shingle is mix32(h1 + i * h2) (double hashing), kept if below the current min.
+    private static void add(int[] mins, long shingle) {
+        int h1 = (int) shingle;
+        int h2 = (int) (shingle >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int v = mix32(h1 + i * h2);
+            if (v < mins[i]) mins[i] = v;
+        }
+    }
+
+    // murmur3 fmix32
+    private static int mix32(int k) {
+        k ^= k >>> 16;
+        k *= 0x85ebca6b;
+        k ^= k >>> 13;
+        k *= 0xc2b2ae35;
+        k ^= k >>> 16;
+        return k;
+    }
+
+    // murmur3 fmix64
+    private static long mix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -1,23 +1,31 @@
 package com.intelligence.capture.risk;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+/**
+ * Single-pass PII scanner. Walks the text once, left to right, and recognises every
+ * {@link PiiType} at the position where it starts, so a turn is no longer re-read once
+ * per pattern and there is no regex backtracking on digit-heavy input.
+ *
+ * <p>Digits are collected into "spans": runs of digit groups joined by short gaps of
+ * spaces, dashes or parentheses. Each span is then matched group by group against the
+ * SSN, credit card and phone shapes with a bounded look-ahead (at most 16 digits), which
+ * keeps the whole scan linear. When shapes overlap the first one wins in the order
+ * SSN, credit card, phone, so a card number is no longer also counted as a phone.
+ *
+ * <p>Each thread reuses one scanner, and the result list is only created for the first
+ * match, so a text without PII is scanned without allocating.
+ */
 public final class PiiDetector {
 
-    private static final Pattern EMAIL = Pattern.compile(
-            "[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}",
-            Pattern.CASE_INSENSITIVE
-    );
+    // Longest run of gap chars (space, dash, parens) that still joins two digit groups.
+    private static final int MAX_GAP = 3;
 
-    private static final Pattern SSN = Pattern.compile("\\b\\d{3}-\\d{2}-\\d{4}\\b");
+    private static final int CARD_MIN_DIGITS = 13;
+    private static final int CARD_MAX_DIGITS = 16;
+    private static final int PHONE_MAX_GROUPS = 4;
 
-    private static final Pattern PHONE = Pattern.compile(
-            "(?:\\+?\\d{1,3}[\\s-]?)?(?:\\(\\d{2,3}\\)|\\d{2,3})[\\s-]?\\d{3,4}[\\s-]?\\d{3,4}"
-    );
-
-    private static final Pattern CREDIT = Pattern.compile("\\b(?:\\d[ -]*?){13,16}\\b");
+    private static final ThreadLocal<Scan> SCANNER = ThreadLocal.withInitial(Scan::new);
 
     private PiiDetector() {}
 
@@ -25,18 +33,348 @@ public final class PiiDetector {
         Map<String, List<String>> out = new LinkedHashMap<>();
         if (text == null || text.isBlank()) return out;
 
-        addMatches(out, "email", EMAIL, text);
-        addMatches(out, "ssn", SSN, text);
-        addMatches(out, "phone", PHONE, text);
-        addMatches(out, "credit_card", CREDIT, text);
+        return group(scan(text));
+    }
 
+    /**
+     * Groups matches into the {@link #find} shape: type key to matched values, keys in
+     * {@link PiiType} order, values in match order.
+     */
+    public static Map<String, List<String>> group(List<PiiMatch> matches) {
+        Map<String, List<String>> out = new LinkedHashMap<>();
+        if (matches.isEmpty()) return out;
+
+        EnumMap<PiiType, List<String>> byType = new EnumMap<>(PiiType.class);
+        for (PiiMatch m : matches) {
+            byType.computeIfAbsent(m.type(), k -> new ArrayList<>()).add(m.value());
+        }
+        for (var entry : byType.entrySet()) {
+            out.put(entry.getKey().key(), entry.getValue());
+        }
         return out;
     }
 
-    private static void addMatches(Map<String, List<String>> out, String key, Pattern p, String text) {
-        Matcher m = p.matcher(text);
-        while (m.find()) {
-            out.computeIfAbsent(key, k -> new ArrayList<>()).add(m.group().trim());
+    /**
+     * Returns every match in {@code text} ordered by start offset. Matches never overlap.
+     * The list is immutable and empty when there is nothing, mutable otherwise.
+     */
+    public static List<PiiMatch> scan(CharSequence text) {
+        if (text == null || text.isEmpty()) return List.of();
+        return SCANNER.get().run(text);
+    }
+
+    // ---------- scanner ----------
+
+    private static final class Scan {
+
+        private CharSequence text;
+        private int n;
+        private List<PiiMatch> out;
+
+        // digit groups of the current span: [groupStart[i], groupEnd[i])
+        private int[] groupStart = new int[16];
+        private int[] groupEnd = new int[16];
+        private int groups;
+
+        // Email local parts are looked ahead once per run of local-part chars.
+        private int emailCheckedUntil;
+        private int lastEmailStart = -1;
+        private int lastEmailEnd = -1;
+
+        List<PiiMatch> run(CharSequence text) {
+            this.text = text;
+            this.n = text.length();
+            this.out = null;
+            this.groups = 0;
+            this.emailCheckedUntil = 0;
+            this.lastEmailStart = -1;
+            this.lastEmailEnd = -1;
+            try {
+                int i = 0;
+                while (i < n) {
+                    int emailEnd = emailAt(i);
+                    if (emailEnd > 0) {
+                        emit(PiiType.EMAIL, i, emailEnd);
+                        i = emailEnd;
+                        continue;
+                    }
+                    if (isDigit(text.charAt(i))) {
+                        i = scanSpan(i);
+                        continue;
+                    }
+                    i++;
+                }
+                return out == null ? List.of() : out;
+            } finally {
+                // don't keep a 60k response reachable from the thread
+                this.text = null;
+                this.out = null;
+            }
+        }
+
+        // ---- email ----
+
+        /**
+         * End offset of an email starting at {@code at}, or -1. Only a position that starts
+         * a run of local-part chars can start an email, so each run is examined once.
+         */
+        private int emailAt(int at) {
+            if (at == lastEmailStart) return lastEmailEnd;
+            if (at < emailCheckedUntil || !isLocalChar(text.charAt(at))) return -1;
+
+            int r = at;
+            while (r < n && isLocalChar(text.charAt(r))) r++;
+            emailCheckedUntil = r;
+            if (r >= n || text.charAt(r) != '@') return -1;
+
+            int end = domainEnd(r);
+            if (end > 0) {
+                lastEmailStart = at;
+                lastEmailEnd = end;
+            }
+            return end;
+        }
+
+        // Domain is [A-Za-z0-9.-]+ followed by '.' and at least two letters; the last such dot wins.
+        private int domainEnd(int atSign) {
+            int d = atSign + 1;
+            while (d < n && isDomainChar(text.charAt(d))) d++;
+
+            for (int k = d - 1; k >= atSign + 2; k--) {
+                if (text.charAt(k) != '.') continue;
+                int e = k + 1;
+                while (e < n && isAsciiLetter(text.charAt(e))) e++;
+                if (e - k - 1 >= 2) return e;
+            }
+            return -1;
+        }
+
+        // ---- digit spans ----
+
+        private int scanSpan(int from) {
+            groups = 0;
+            int p = from;
+            while (true) {
+                int gs = p;
+                while (p < n && isDigit(text.charAt(p))) p++;
+                addGroup(gs, p);
+
+                int q = p;
+                while (q < n && q - p <= MAX_GAP && isGapChar(text.charAt(q))) q++;
+                if (q == p || q - p > MAX_GAP || q >= n || !isDigit(text.charAt(q))) break;
+                // an email that starts on this group takes precedence; leave it to run()
+                if (emailAt(q) > 0) break;
+                p = q;
+            }
+
+            int k = 0;
+            while (k < groups) {
+                int used = matchSsn(k);
+                if (used == 0) used = matchCard(k);
+                if (used == 0) used = matchPhone(k);
+                k += (used == 0) ? 1 : used;
+            }
+            return p;
+        }
+
+        private void addGroup(int start, int end) {
+            if (groups == groupStart.length) {
+                groupStart = Arrays.copyOf(groupStart, groups * 2);
+                groupEnd = Arrays.copyOf(groupEnd, groups * 2);
+            }
+            groupStart[groups] = start;
+            groupEnd[groups] = end;
+            groups++;
+        }
+
+        private int len(int g) { return groupEnd[g] - groupStart[g]; }
+
+        // ddd-dd-dddd with single dashes and word boundaries on both ends
+        private int matchSsn(int k) {
+            if (k + 2 >= groups) return 0;
+            if (len(k) != 3 || len(k + 1) != 2 || len(k + 2) != 4) return 0;
+            if (!singleDashGap(k) || !singleDashGap(k + 1)) return 0;
+            if (!startBoundary(groupStart[k]) || !endBoundary(groupEnd[k + 2])) return 0;
+            emit(PiiType.SSN, groupStart[k], groupEnd[k + 2]);
+            return 3;
+        }
+
+        private boolean singleDashGap(int g) {
+            return groupStart[g + 1] == groupEnd[g] + 1 && text.charAt(groupEnd[g]) == '-';
+        }
+
+        // 13-16 digits separated only by spaces/dashes; longest Luhn-valid candidate wins
+        private int matchCard(int k) {
+            if (!startBoundary(groupStart[k])) return 0;
+
+            int last = -1;
+            int total = 0;
+            for (int j = k; j < groups; j++) {
+                if (j > k && !cardGap(j - 1)) break;
+                total += len(j);
+                if (total > CARD_MAX_DIGITS) break;
+                last = j;
+            }
+            if (last < 0) return 0;
+
+            for (int j = last; j >= k; j--) {
+                int digits = 0;
+                for (int g = k; g <= j; g++) digits += len(g);
+                if (digits < CARD_MIN_DIGITS) break;
+                if (endBoundary(groupEnd[j]) && luhn(k, j)) {
+                    emit(PiiType.CREDIT_CARD, groupStart[k], groupEnd[j]);
+                    return j - k + 1;
+                }
+            }
+            return 0;
         }
+
+        private boolean cardGap(int g) {
+            for (int c = groupEnd[g]; c < groupStart[g + 1]; c++) {
+                char ch = text.charAt(c);
+                if (ch != ' ' && ch != '-') return false;
+            }
+            return true;
+        }
+
+        private boolean luhn(int fromGroup, int toGroup) {
+            int sum = 0;
+            boolean dbl = false;
+            for (int g = toGroup; g >= fromGroup; g--) {
+                for (int c = groupEnd[g] - 1; c >= groupStart[g]; c--) {
+                    int d = text.charAt(c) - '0';
+                    if (dbl) {
+                        d *= 2;
+                        if (d > 9) d -= 9;
+                    }
+                    sum += d;
+                    dbl = !dbl;
+                }
+            }
+            return sum % 10 == 0;
+        }
+
+        /*
+         * [+cc] (area) l1 l2 where cc is 1-3 digits, area 2-3 (optionally in parens), l1 and
+         * l2 3-4 digits. Parts may be glued or separated by one whitespace/dash; group
+         * boundaries in the text must line up with part boundaries.
+         */
+        private int matchPhone(int k) {
+            int maxGroups = Math.min(PHONE_MAX_GROUPS, groups - k);
+            for (int m = maxGroups; m >= 1; m--) {
+                int last = k + m - 1;
+                if (!endBoundary(groupEnd[last])) continue;
+                int start = phoneStart(k, m);
+                if (start >= 0) {
+                    emit(PiiType.PHONE, start, groupEnd[last]);
+                    return m;
+                }
+            }
+            return 0;
+        }
+
+        // Start offset of a phone made of groups k..k+m-1, or -1.
+        private int phoneStart(int k, int m) {
+            int total = 0;
+            int cutMask = 0;       // digit offsets where a group ends inside the window
+            int parenFrom = -1;    // digit offset range of a parenthesised group
+            int parenTo = -1;
+            for (int g = k; g < k + m; g++) {
+                if (g > k) {
+                    cutMask |= 1 << total;
+                    if (!phoneGap(g - 1, g)) return -1;
+                }
+                if (isParenGroup(g)) {
+                    if (parenFrom >= 0) return -1;
+                    parenFrom = total;
+                    parenTo = total + len(g);
+                }
+                total += len(g);
+            }
+            if (total < 8 || total > 14) return -1;
+
+            int first = groupStart[k];
+            boolean plus = parenFrom != 0 && first > 0 && text.charAt(first - 1) == '+';
+
+            // with a leading '+' prefer a country code so the '+' is part of the match
+            for (int i = 0; i <= 3; i++) {
+                int cc = plus ? (i + 1) % 4 : i;
+                for (int area = 2; area <= 3; area++) {
+                    for (int l1 = 3; l1 <= 4; l1++) {
+                        int l2 = total - cc - area - l1;
+                        if (l2 < 3 || l2 > 4) continue;
+
+                        int parts = (1 << (cc + area)) | (1 << (cc + area + l1));
+                        if (cc > 0) parts |= 1 << cc;
+                        if ((cutMask & ~parts) != 0) continue;
+                        if (parenFrom >= 0 && (parenFrom != cc || parenTo != cc + area)) continue;
+
+                        int start = first;
+                        if (parenFrom == 0) start = first - 1;
+                        else if (plus && cc > 0) start = first - 1;
+                        return startBoundary(start) ? start : -1;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private boolean isParenGroup(int g) {
+            int s = groupStart[g];
+            int e = groupEnd[g];
+            return s > 0 && text.charAt(s - 1) == '(' && e < n && text.charAt(e) == ')';
+        }
+
+        // Between phone parts: nothing but the parens of an area group, plus at most one separator.
+        private boolean phoneGap(int left, int right) {
+            int from = groupEnd[left] + (isParenGroup(left) ? 1 : 0);
+            int to = groupStart[right] - (isParenGroup(right) ? 1 : 0);
+            int rest = to - from;
+            if (rest == 0) return from != groupEnd[left] || to != groupStart[right];
+            return rest == 1 && isPhoneSeparator(text.charAt(from));
+        }
+
+        // ---- boundaries / char classes ----
+
+        private boolean startBoundary(int pos) {
+            return pos == 0 || !isWordChar(text.charAt(pos - 1));
+        }
+
+        private boolean endBoundary(int pos) {
+            return pos >= n || !isWordChar(text.charAt(pos));
+        }
+
+        private void emit(PiiType type, int start, int end) {
+            if (out == null) out = new ArrayList<>(4);
+            out.add(new PiiMatch(type, start, end, text.subSequence(start, end).toString()));
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isWordChar(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    private static boolean isLocalChar(char c) {
+        return isAsciiLetter(c) || isDigit(c) || c == '.' || c == '_' || c == '%' || c == '+' || c == '-';
+    }
+
+    private static boolean isDomainChar(char c) {
+        return isAsciiLetter(c) || isDigit(c) || c == '.' || c == '-';
+    }
+
+    private static boolean isGapChar(char c) {
+        return c == ' ' || c == '-' || c == '(' || c == ')' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    private static boolean isPhoneSeparator(char c) {
+        return c == '-' || Character.isWhitespace(c);
     }
 }
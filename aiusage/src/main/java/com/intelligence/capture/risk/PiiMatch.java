@@ -0,0 +1,12 @@
+package com.intelligence.capture.risk;
+
+/**
+ * One PII hit found by {@link PiiDetector#scan}, or a secret found by
+ * {@link SecretDetector#scan}. Offsets are char indexes into the scanned text,
+ * {@code start} inclusive and {@code end} exclusive. value is the matched text, except
+ * for secrets, where it is a label that does not reveal the secret.
+ */
+public record PiiMatch(PiiType type, int start, int end, String value) {
+
+    public int length() { return end - start; }
+}
@@ -0,0 +1,29 @@
+package com.intelligence.capture.risk;
+
+/**
+ * Sensitive-data classes the detectors know about: PII from {@link PiiDetector}, secrets
+ * from {@link SecretDetector}. Declaration order is the order keys appear in
+ * {@link PiiDetector#find} and the bit order of turn_index.pii_types, so only append.
+ */
+public enum PiiType {
+    EMAIL("email"),
+    SSN("ssn"),
+    PHONE("phone"),
+    CREDIT_CARD("credit_card"),
+    SECRET("secret"),
+    HIGH_ENTROPY("high_entropy");
+
+    private final String key;
+
+    PiiType(String key) { this.key = key; }
+
+    /** Key used in the {@code details.pii} map and in redaction tags. */
+    public String key() { return key; }
+
+    public static PiiType ofKey(String key) {
+        for (PiiType t : values()) {
+            if (t.key.equals(key)) return t;
+        }
+        throw new IllegalArgumentException("unknown PII type " + key);
+    }
+}
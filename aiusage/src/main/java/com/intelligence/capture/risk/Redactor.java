@@ -0,0 +1,117 @@
+package com.intelligence.capture.risk;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites text from detector spans in one left-to-right pass: untouched stretches are
+ * copied as-is and each span is replaced according to its type's {@link Mask}. Work is
+ * linear in the text length no matter how many matches there are, and a span that
+ * overlaps one already written is skipped instead of corrupting the output.
+ */
+public final class Redactor {
+
+    public enum Mask {
+        /** {@code [REDACTED:EMAIL]} */
+        TAG,
+        /** Keeps the shape and a few characters: {@code j***@corp.com}, {@code **** **** **** 1111} */
+        PARTIAL,
+        /** {@code [EMAIL:3f2a9c1b0d4e]}: same value, same hash, so analysts can correlate without reading it */
+        HASH,
+        /** Leave the value in place. */
+        KEEP
+    }
+
+    private static final int PARTIAL_VISIBLE = 4;
+    private static final int HASH_HEX_CHARS = 12;
+
+    private final EnumMap<PiiType, Mask> masks = new EnumMap<>(PiiType.class);
+
+    public Redactor(Map<PiiType, Mask> overrides) {
+        for (PiiType t : PiiType.values()) masks.put(t, Mask.TAG);
+        if (overrides != null) masks.putAll(overrides);
+    }
+
+    /** Every type tagged, which is what redaction always did. */
+    public static Redactor tagAll() {
+        return new Redactor(Map.of());
+    }
+
+    public Mask maskFor(PiiType type) {
+        return masks.get(type);
+    }
+
+    /**
+     * @param matches spans into {@code text}, ordered by start as {@link PiiDetector#scan} returns them
+     */
+    public String redact(CharSequence text, List<PiiMatch> matches) {
+        if (text == null) return null;
+        if (matches.isEmpty()) return text.toString();
+
+        StringBuilder out = new StringBuilder(text.length() + matches.size() * 8);
+        int cursor = 0;
+        for (PiiMatch m : matches) {
+            if (m.start() < cursor || m.end() > text.length()) continue; // overlap or stale offsets
+            Mask mask = masks.get(m.type());
+            if (mask == Mask.KEEP) continue;
+
+            out.append(text, cursor, m.start());
+            switch (mask) {
+                case TAG -> out.append("[REDACTED:").append(tagName(m.type())).append(']');
+                case PARTIAL -> appendPartial(out, text, m);
+                case HASH -> out.append('[').append(tagName(m.type())).append(':')
+                        .append(shortHash(text.subSequence(m.start(), m.end()))).append(']');
+                default -> out.append(text, m.start(), m.end());
+            }
+            cursor = m.end();
+        }
+        out.append(text, cursor, text.length());
+        return out.toString();
+    }
+
+    // ---------- helpers ----------
+
+    private static String tagName(PiiType type) {
+        return type.key().toUpperCase();
+    }
+
+    private static void appendPartial(StringBuilder out, CharSequence text, PiiMatch m) {
+        int start = m.start();
+        int end = m.end();
+
+        if (m.type() == PiiType.EMAIL) {
+            // first char of the local part, the domain stays readable
+            int at = start;
+            while (at < end && text.charAt(at) != '@') at++;
+            out.append(text.charAt(start));
+            for (int i = start + 1; i < at; i++) out.append('*');
+            out.append(text, at, end);
+            return;
+        }
+
+        // numbers: mask every digit except the last few, keep separators
+        int visibleFrom = end;
+        for (int seen = 0; visibleFrom > start && seen < PARTIAL_VISIBLE; ) {
+            if (Character.isLetterOrDigit(text.charAt(--visibleFrom))) seen++;
+        }
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            out.append(i < visibleFrom && Character.isLetterOrDigit(c) ? '*' : c);
+        }
+    }
+
+    private static String shortHash(CharSequence value) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] hash = md.digest(value.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, HASH_HEX_CHARS / 2);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
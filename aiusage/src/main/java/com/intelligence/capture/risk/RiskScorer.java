@@ -2,52 +2,162 @@ package com.intelligence.capture.risk;
 
 import java.util.*;
 
+/**
+ * Scores turns against a {@link RuleSet}. Detection (which PII shapes are recognised,
+ * how text is fingerprinted) lives in code and is versioned by {@link #VERSION}; weights,
+ * keywords and thresholds live in the rule set and are versioned by its own version.
+ *
+ * <p>Prompt and response are scanned in place, as they were stored: no concatenated or
+ * lower-cased copies. Every pass allocates only for what it finds, so a clean turn costs
+ * the two {@link PartScan}s and its result details.
+ */
 public final class RiskScorer {
 
-    public record Result(double score, String level, Map<String, Object> details) {}
+    /** ruleSet is the version of the {@link RuleSet} that produced the score. */
+    public record Result(double score, String level, Map<String, Object> details, String ruleSet) {}
+
+    /**
+     * Findings for one part of a turn (prompt or response). Parts are scanned on their
+     * own so the prompt's findings can be reused when the response arrives. Match
+     * offsets refer to the exact string that was scanned, so they can drive redaction.
+     * keywords are the rule set's terms found, as {@link KeywordAutomaton#find} returns
+     * them; terms a newer rule set dropped are ignored when scoring.
+     */
+    public record PartScan(List<PiiMatch> matches, List<String> keywords, int length) {
+        public static final PartScan EMPTY = new PartScan(List.of(), List.of(), 0);
+
+        public boolean hasPii() { return !matches.isEmpty(); }
+
+        /**
+         * The form kept in prompt_findings / response_findings once the part's text is
+         * redacted, when rescanning the text would no longer find what was there.
+         */
+        public Map<String, Object> toMap() {
+            List<Map<String, Object>> found = new ArrayList<>(matches.size());
+            for (PiiMatch m : matches) {
+                found.add(Map.of("type", m.type().key(), "start", m.start(), "end", m.end(), "value", m.value()));
+            }
+            return Map.of("matches", found, "keywords", keywords, "length", length);
+        }
+
+        public static PartScan fromMap(Map<String, ?> stored) {
+            List<PiiMatch> matches = new ArrayList<>();
+            for (Object o : (List<?>) stored.get("matches")) {
+                Map<?, ?> m = (Map<?, ?>) o;
+                matches.add(new PiiMatch(PiiType.ofKey((String) m.get("type")), ((Number) m.get("start")).intValue(),
+                        ((Number) m.get("end")).intValue(), (String) m.get("value")));
+            }
+            List<String> keywords = new ArrayList<>();
+            for (Object k : (List<?>) stored.get("keywords")) keywords.add((String) k);
+            return new PartScan(List.copyOf(matches), List.copyOf(keywords), ((Number) stored.get("length")).intValue());
+        }
+    }
+
+    /** The FLAGGED turn whose prompt or response this turn most nearly repeats (see {@link MinHash}). */
+    public record NearDuplicate(UUID turnId, double similarity) {}
+
+    /**
+     * Bump whenever detection changes, so cached and stored findings from an older
+     * scorer are not reused. Rule changes are tracked by {@link RuleSet#version}.
+     */
+    public static final int VERSION = 3;
 
     private RiskScorer() {}
 
+    /** Scores a whole turn with the built-in rules. */
     public static Result score(String prompt, String response) {
-        String p = (prompt == null) ? "" : prompt;
-        String r = (response == null) ? "" : response;
-        String text = (p + "\n" + r).trim();
+        RuleSet rules = RuleSet.defaults();
+        return combine(rules, scan(rules, prompt), scan(rules, response), null);
+    }
+
+    public static PartScan scan(RuleSet rules, CharSequence text) {
+        if (isBlank(text)) return PartScan.EMPTY;
+        List<PiiMatch> matches = SecretDetector.merge(PiiDetector.scan(text), SecretDetector.scan(text));
+        return new PartScan(matches, rules.keywords().find(text), text.length());
+    }
 
-        Map<String, List<String>> pii = PiiDetector.find(text);
+    /**
+     * Scores a turn from its part scans; same result as scanning prompt and response
+     * together. nearDuplicate, if not null, is a FLAGGED turn this one repeats.
+     */
+    public static Result combine(RuleSet rules, PartScan prompt, PartScan response, NearDuplicate nearDuplicate) {
+        Map<String, List<String>> pii = mergePii(prompt.matches(), response.matches());
 
-        double score = 0.05; // baseline
+        double score = rules.baseline();
         Map<String, Object> details = new LinkedHashMap<>();
         details.put("pii", pii);
 
-        if (pii.containsKey("credit_card")) score += 0.40;
-        if (pii.containsKey("ssn")) score += 0.35;
-        if (pii.containsKey("email")) score += 0.20;
-        if (pii.containsKey("phone")) score += 0.10;
+        if (!pii.isEmpty()) {
+            for (PiiType type : rules.piiTypes()) {
+                if (pii.containsKey(type.key())) score += rules.piiWeight(type);
+            }
+        }
 
-        // secret keywords
-        String low = text.toLowerCase();
-        List<String> secretWords = List.of("password", "passwd", "secret", "api key", "apikey", "token", "private key");
+        // a keyword counts once even if both parts contain it
         int hits = 0;
-        for (String w : secretWords) if (low.contains(w)) hits++;
-        score += Math.min(0.15, hits * 0.05);
+        if (!prompt.keywords().isEmpty() || !response.keywords().isEmpty()) {
+            List<RuleSet.KeywordRule> keywordRules = rules.keywordRules();
+            int[] perRule = new int[keywordRules.size()];
+            hits = countKeywords(rules, prompt.keywords(), null, perRule);
+            hits += countKeywords(rules, response.keywords(), prompt.keywords(), perRule);
+            for (int i = 0; i < perRule.length; i++) {
+                RuleSet.KeywordRule rule = keywordRules.get(i);
+                if (perRule[i] > 0) score += Math.min(rule.cap(), perRule[i] * rule.weight());
+            }
+        }
         details.put("secret_word_hits", hits);
 
+        // pasting (an edit of) something already flagged is at least worth a review
+        if (nearDuplicate != null) {
+            score += rules.nearDuplicateWeight();
+            details.put("near_duplicate_of", Map.of(
+                    "turnId", nearDuplicate.turnId().toString(),
+                    "similarity", nearDuplicate.similarity()));
+        }
+
         // clamp
         score = Math.min(1.0, score);
 
-        String level =
-                (score >= 0.70) ? "HIGH" :
-                (score >= 0.40) ? "MEDIUM" : "LOW";
+        String level = rules.level(score);
 
         details.put("score", score);
         details.put("level", level);
 
-        details.put("debug_prompt_len", p.length());
-        details.put("debug_response_len", r.length());
-        
-        return new Result(score, level, details);
+        details.put("debug_prompt_len", prompt.length());
+        details.put("debug_response_len", response.length());
 
-        
+        return new Result(score, level, details, rules.version());
+    }
+
+    // Counts terms of the current rules into perRule, skipping those already in counted.
+    private static int countKeywords(RuleSet rules, List<String> terms, List<String> counted, int[] perRule) {
+        int hits = 0;
+        for (String term : terms) {
+            int rule = rules.ruleOf(term);
+            if (rule < 0 || (counted != null && counted.contains(term))) continue;
+            perRule[rule]++;
+            hits++;
+        }
+        return hits;
+    }
+
+    // Prompt values first, then response values, keys in PiiType order.
+    private static Map<String, List<String>> mergePii(List<PiiMatch> p, List<PiiMatch> r) {
+        if (p.isEmpty() && r.isEmpty()) return Map.of();
+        if (r.isEmpty()) return PiiDetector.group(p);
+        if (p.isEmpty()) return PiiDetector.group(r);
+
+        List<PiiMatch> all = new ArrayList<>(p.size() + r.size());
+        all.addAll(p);
+        all.addAll(r);
+        return PiiDetector.group(all);
+    }
 
+    private static boolean isBlank(CharSequence text) {
+        if (text == null) return true;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) return false;
+        }
+        return true;
     }
 }
@@ -0,0 +1,183 @@
+package com.intelligence.capture.risk;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.json.JsonReadFeature;
+import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The scoring policy {@link RiskScorer#combine} applies: a baseline, a weight per PII
+ * type, keyword rules and the level thresholds. Read from JSON (comments allowed; see
+ * {@code risk-rules.json} on the classpath for the format and the built-in rules) and
+ * compiled once, all keyword terms into one {@link KeywordAutomaton}. Immutable, so a
+ * reload swaps the whole policy at once.
+ */
+public final class RuleSet {
+
+    /** Adds weight per distinct term found in the turn, at most cap in total. */
+    public record KeywordRule(String id, double weight, double cap, List<String> terms) {}
+
+    private static final String DEFAULTS = "/risk-rules.json";
+
+    private static final JsonMapper MAPPER = JsonMapper.builder()
+            .enable(JsonReadFeature.ALLOW_JAVA_COMMENTS)
+            .enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    // ---- file shape ----
+    record FileRules(String version, Double baseline, LinkedHashMap<String, Double> pii, List<FileKeywords> keywords,
+                     @JsonProperty("near_duplicate") Double nearDuplicate, FileLevels levels) {}
+    record FileKeywords(String id, Double weight, Double cap, List<String> terms) {}
+    record FileLevels(Double high, Double medium) {}
+
+    private final String version;
+    private final double baseline;
+    private final List<PiiType> piiOrder;          // weighted types, in file order
+    private final Map<PiiType, Double> piiWeights;
+    private final List<KeywordRule> keywordRules;
+    private final Map<String, Integer> ruleOfTerm;  // lower-cased term -> index in keywordRules
+    private final KeywordAutomaton keywords;
+    private final double nearDuplicate;
+    private final double high;
+    private final double medium;
+
+    private RuleSet(String version, double baseline, Map<PiiType, Double> piiWeights, List<KeywordRule> keywordRules,
+                    double nearDuplicate, double high, double medium) {
+        this.version = version;
+        this.baseline = baseline;
+        this.piiOrder = List.copyOf(piiWeights.keySet());
+        this.piiWeights = new EnumMap<>(PiiType.class);
+        this.piiWeights.putAll(piiWeights);
+        this.keywordRules = List.copyOf(keywordRules);
+        this.nearDuplicate = nearDuplicate;
+        this.high = high;
+        this.medium = medium;
+
+        List<String> terms = new ArrayList<>();
+        Map<String, Integer> ruleOfTerm = new HashMap<>();
+        for (int i = 0; i < keywordRules.size(); i++) {
+            for (String t : keywordRules.get(i).terms()) {
+                terms.add(t);
+                ruleOfTerm.put(t, i);
+            }
+        }
+        this.keywords = KeywordAutomaton.of(terms);
+        this.ruleOfTerm = Map.copyOf(ruleOfTerm);
+    }
+
+    /** The rules in risk-rules.json on the classpath. */
+    public static RuleSet defaults() {
+        return Defaults.RULES;
+    }
+
+    /** Parses and checks a rule file; IllegalArgumentException says what is wrong with it. */
+    public static RuleSet parse(byte[] json) {
+        FileRules f;
+        try {
+            f = MAPPER.readValue(json, FileRules.class);
+        } catch (JacksonException ex) {
+            throw new IllegalArgumentException(ex.getOriginalMessage(), ex);
+        }
+        if (f == null) throw new IllegalArgumentException("rule file is empty");
+        if (f.version() == null || f.version().isBlank()) throw new IllegalArgumentException("version is required");
+        if (f.version().length() > 64) throw new IllegalArgumentException("version is longer than 64 chars");
+
+        // LinkedHashMap: additions happen in file order, which keeps scores bit-for-bit reproducible
+        Map<PiiType, Double> pii = new LinkedHashMap<>();
+        if (f.pii() != null) {
+            f.pii().forEach((key, weight) -> pii.put(PiiType.ofKey(key), weight("pii." + key, weight)));
+        }
+
+        List<KeywordRule> rules = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        Set<String> seen = new HashSet<>();
+        for (FileKeywords k : f.keywords() == null ? List.<FileKeywords>of() : f.keywords()) {
+            if (k.id() == null || k.id().isBlank()) throw new IllegalArgumentException("keyword rule without id");
+            if (!ids.add(k.id())) throw new IllegalArgumentException("keyword rule " + k.id() + " defined twice");
+            if (k.terms() == null || k.terms().isEmpty()) {
+                throw new IllegalArgumentException("keyword rule " + k.id() + " has no terms");
+            }
+            List<String> terms = new ArrayList<>();
+            for (String t : k.terms()) {
+                if (t == null || t.isBlank()) throw new IllegalArgumentException("keyword rule " + k.id() + " has a blank term");
+                String term = KeywordAutomaton.normalize(t);
+                if (!seen.add(term)) throw new IllegalArgumentException("keyword term '" + t + "' is in more than one place");
+                terms.add(term);
+            }
+            double weight = weight("keywords." + k.id() + ".weight", k.weight());
+            double cap = k.cap() == null ? Double.MAX_VALUE : weight("keywords." + k.id() + ".cap", k.cap());
+            rules.add(new KeywordRule(k.id(), weight, cap, List.copyOf(terms)));
+        }
+
+        if (f.levels() == null || f.levels().high() == null || f.levels().medium() == null) {
+            throw new IllegalArgumentException("levels.high and levels.medium are required");
+        }
+        double high = weight("levels.high", f.levels().high());
+        double medium = weight("levels.medium", f.levels().medium());
+        if (medium <= 0 || medium > high) throw new IllegalArgumentException("levels need 0 < medium <= high");
+
+        return new RuleSet(f.version().trim(),
+                f.baseline() == null ? 0 : weight("baseline", f.baseline()),
+                pii, rules,
+                f.nearDuplicate() == null ? 0 : weight("near_duplicate", f.nearDuplicate()),
+                high, medium);
+    }
+
+    public String version() { return version; }
+
+    public double baseline() { return baseline; }
+
+    /** PII types that carry a weight, in the order their weights are added. */
+    public List<PiiType> piiTypes() { return piiOrder; }
+
+    public double piiWeight(PiiType type) { return piiWeights.getOrDefault(type, 0.0); }
+
+    public List<KeywordRule> keywordRules() { return keywordRules; }
+
+    /** Index in {@link #keywordRules} of the rule a term (as {@link KeywordAutomaton#find} returns it) belongs to, or -1. */
+    public int ruleOf(String term) { return ruleOfTerm.getOrDefault(term, -1); }
+
+    /** Every keyword rule's terms in one automaton. */
+    public KeywordAutomaton keywords() { return keywords; }
+
+    public double nearDuplicateWeight() { return nearDuplicate; }
+
+    public String level(double score) {
+        return (score >= high) ? "HIGH" : (score >= medium) ? "MEDIUM" : "LOW";
+    }
+
+    // ---------- helpers ----------
+
+    private static double weight(String name, Double value) {
+        if (value == null || value.isNaN() || value < 0 || value > 1) {
+            throw new IllegalArgumentException(name + " must be between 0 and 1");
+        }
+        return value;
+    }
+
+    private static final class Defaults {
+        static final RuleSet RULES = load();
+
+        private static RuleSet load() {
+            try (InputStream in = RuleSet.class.getResourceAsStream(DEFAULTS)) {
+                if (in == null) throw new IllegalStateException(DEFAULTS + " is missing from the classpath");
+                return parse(in.readAllBytes());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+}
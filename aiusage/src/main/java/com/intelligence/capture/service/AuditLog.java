@@ -0,0 +1,221 @@
+package com.intelligence.capture.service;
+
+import com.intelligence.capture.risk.PiiDetector;
+import com.intelligence.capture.risk.Redactor;
+import com.intelligence.capture.risk.SecretDetector;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.JsonNodeFactory;
+import tools.jackson.databind.node.ObjectNode;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Writes request audit records as one JSON object per line to the {@code audit} logger.
+ * Request threads only {@link #offer} a record into a bounded queue; a single writer
+ * thread redacts, formats and logs it, so a slow log sink never holds up a request. When
+ * the queue is full the record is dropped and counted.
+ *
+ * <p>Payloads are logged field by field, never as raw text. Fields named in
+ * {@code audit.omit-fields} (the captured prompt and response by default) keep only
+ * their length. Every other string, and the query string, has its PII and secrets
+ * masked and is cut to {@code audit.max-field-chars}. A body that is not JSON, or was
+ * cut off at {@code audit.max-payload-bytes}, is logged by size only.
+ */
+@Component
+@ConditionalOnProperty(name = "audit.enabled", havingValue = "true", matchIfMissing = true)
+public class AuditLog implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLog.class);
+    private static final Logger audit = LoggerFactory.getLogger("audit");
+
+    private static final JsonMapper MAPPER = JsonMapper.builder().build();
+    private static final Redactor REDACTOR = Redactor.tagAll();
+
+    /**
+     * What the filter saw. payload is null when the request was not sampled for its
+     * body, and truncated when the body was longer than the filter kept. sampled is false
+     * for records kept only because the request failed.
+     */
+    public record Entry(Instant at, String method, String path, String query, int status, long micros,
+                        String client, boolean sampled, byte[] payload, boolean truncated) {}
+
+    private final BlockingQueue<Entry> queue;
+    private final Set<String> omitFields;
+    private final int maxFieldChars;
+
+    private final Counter logged;
+    private final Counter dropped;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public AuditLog(MeterRegistry meters,
+                    @Value("${audit.queue-capacity:2000}") int capacity,
+                    @Value("${audit.omit-fields:prompt,responseText}") String[] omitFields,
+                    @Value("${audit.max-field-chars:200}") int maxFieldChars) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.omitFields = Arrays.stream(omitFields).map(String::trim).filter(f -> !f.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.maxFieldChars = maxFieldChars;
+
+        meters.gauge("audit.queue.depth", queue, BlockingQueue::size);
+        this.logged = Counter.builder("audit.records")
+                .description("Request audit records, by outcome")
+                .tag("result", "logged")
+                .register(meters);
+        this.dropped = Counter.builder("audit.records")
+                .description("Request audit records, by outcome")
+                .tag("result", "dropped")
+                .register(meters);
+    }
+
+    /** Queues a record for the writer; never blocks. False when the queue was full. */
+    public boolean offer(Entry e) {
+        if (queue.offer(e)) return true;
+        dropped.increment();
+        return false;
+    }
+
+    /** The JSON line for a record. */
+    String format(Entry e) {
+        ObjectNode out = JsonNodeFactory.instance.objectNode();
+        out.put("ts", e.at().toString());
+        out.put("method", e.method());
+        out.put("path", e.path());
+        if (e.query() != null) out.put("query", clean(decode(e.query())));
+        out.put("status", e.status());
+        out.put("ms", e.micros() / 1000.0);
+        if (e.client() != null) out.put("client", e.client());
+        out.put("sampled", e.sampled());
+        if (e.payload() != null && e.payload().length > 0) {
+            JsonNode body = e.truncated() ? null : parse(e.payload());
+            if (body != null) {
+                out.set("payload", redact(body));
+            } else {
+                out.put("payloadBytes", e.payload().length);
+                if (e.truncated()) out.put("payloadTruncated", true);
+            }
+        }
+        return out.toString();
+    }
+
+    // ---------- writer ----------
+
+    private void drainLoop() {
+        while (running || !queue.isEmpty()) {
+            Entry e;
+            try {
+                e = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (e == null) continue;
+            try {
+                audit.info(format(e));
+                logged.increment();
+            } catch (RuntimeException ex) {
+                log.warn("Could not write audit record for {} {}: {}", e.method(), e.path(), ex.toString());
+            }
+        }
+    }
+
+    // ---------- helpers ----------
+
+    // decoded so the detectors see what the user typed (%40, +)
+    private static String decode(String query) {
+        try {
+            return URLDecoder.decode(query, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException ex) {
+            return query;
+        }
+    }
+
+    private static JsonNode parse(byte[] payload) {
+        try {
+            return MAPPER.readTree(payload);
+        } catch (JacksonException ex) {
+            return null;
+        }
+    }
+
+    private JsonNode redact(JsonNode node) {
+        if (node instanceof ObjectNode obj) {
+            ObjectNode out = JsonNodeFactory.instance.objectNode();
+            for (Map.Entry<String, JsonNode> f : obj.properties()) {
+                JsonNode v = f.getValue();
+                if (omitFields.contains(f.getKey()) && v.isString()) {
+                    out.put(f.getKey(), "[" + v.asString().length() + " chars]");
+                } else {
+                    out.set(f.getKey(), redact(v));
+                }
+            }
+            return out;
+        }
+        if (node instanceof ArrayNode arr) {
+            ArrayNode out = JsonNodeFactory.instance.arrayNode();
+            for (JsonNode v : arr) out.add(redact(v));
+            return out;
+        }
+        if (node.isString()) return JsonNodeFactory.instance.stringNode(clean(node.asString()));
+        return node;
+    }
+
+    // masked first, so a value cut in half is still recognised
+    private String clean(String text) {
+        String masked = REDACTOR.redact(text, SecretDetector.merge(PiiDetector.scan(text), SecretDetector.scan(text)));
+        if (masked.length() <= maxFieldChars) return masked;
+        return masked.substring(0, maxFieldChars) + "…(+" + (masked.length() - maxFieldChars) + ")";
+    }
+
+    // ---------- lifecycle ----------
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::drainLoop, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("Audit writer still busy after 5s; {} records not written", queue.size());
+            writer.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() { return running; }
+
+    // Stop after the web server so the last requests are still written.
+    @Override
+    public int getPhase() { return SmartLifecycle.DEFAULT_PHASE - 4096; }
+}
@@ -0,0 +1,75 @@
+package com.intelligence.capture.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Capture-side meters, all under {@code capture.*}:
+ * <ul>
+ *   <li>{@code capture.latency{type}}: time spent in capturePrompt / captureResponse / captureBatch</li>
+ *   <li>{@code capture.results{type,result}}: created, updated, duplicate (idempotent retry),
+ *       rejected or unknown (response for a turnId never captured)</li>
+ *   <li>{@code capture.payload.chars{type}}: prompt and response sizes after trimming</li>
+ *   <li>{@code capture.clock.skewed}: prompts whose capturedAt was too far from the server
+ *       clock and was clamped</li>
+ * </ul>
+ */
+@Component
+public class CaptureMetrics {
+
+    public static final String PROMPT = "prompt";
+    public static final String RESPONSE = "response";
+    public static final String BATCH = "batch";
+
+    private final MeterRegistry meters;
+    private final Map<String, Timer> latency = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> payload = new ConcurrentHashMap<>();
+    private final Map<String, Counter> results = new ConcurrentHashMap<>();
+    private final Counter skewed;
+
+    public CaptureMetrics(MeterRegistry meters) {
+        this.meters = meters;
+        this.skewed = Counter.builder("capture.clock.skewed")
+                .description("Prompts stored with a clamped capturedAt; the client's value is in client_captured_at")
+                .register(meters);
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(meters);
+    }
+
+    public void stop(Timer.Sample sample, String type) {
+        sample.stop(latency.computeIfAbsent(type, t -> Timer.builder("capture.latency")
+                .description("Time to write a capture, until the ack")
+                .tag("type", t)
+                .publishPercentileHistogram()
+                .register(meters)));
+    }
+
+    public void result(String type, String result) {
+        results.computeIfAbsent(type + ':' + result, k -> Counter.builder("capture.results")
+                .description("Capture outcomes; duplicate is an idempotent retry")
+                .tag("type", type)
+                .tag("result", result.toLowerCase())
+                .register(meters)).increment();
+    }
+
+    public void skewed() {
+        skewed.increment();
+    }
+
+    public void payload(String type, int chars) {
+        payload.computeIfAbsent(type, t -> DistributionSummary.builder("capture.payload.chars")
+                .description("Captured text length")
+                .baseUnit("chars")
+                .tag("type", t)
+                .publishPercentileHistogram()
+                .register(meters)).record(chars);
+    }
+}
@@ -0,0 +1,200 @@
+package com.intelligence.capture.service;
+
+import com.intelligence.capture.dto.CaptureBatchAck;
+import com.intelligence.capture.dto.CaptureBatchRequest;
+import com.intelligence.capture.dto.CaptureEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind ingest (capture.ingest.mode=buffered). Validated captures are queued in
+ * memory and acked immediately; a single writer thread drains the queue and commits
+ * them as one batch when it holds max-batch items or max-wait has passed since the
+ * first one arrived. A full queue rejects new captures instead of growing the heap.
+ *
+ * <p>Items still queued when the process dies are lost; the extension retries on a
+ * missing ack only, so use direct mode where that matters more than p99.
+ */
+@Component
+@ConditionalOnProperty(name = "capture.ingest.mode", havingValue = "buffered")
+public class IngestBuffer implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestBuffer.class);
+
+    private static final int MAX_FLUSH_ATTEMPTS = 3;
+
+    private final TurnCaptureService captureService;
+    private final BlockingQueue<CaptureEvent> queue;
+    private final int maxBatch;
+    private final long maxWaitNanos;
+
+    private final Timer flushTimer;
+    private final DistributionSummary flushSize;
+    private final Counter rejected;
+    private final Counter dropped;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public IngestBuffer(TurnCaptureService captureService, MeterRegistry meters,
+                        @Value("${capture.ingest.buffer.capacity:10000}") int capacity,
+                        @Value("${capture.ingest.buffer.max-batch:200}") int maxBatch,
+                        @Value("${capture.ingest.buffer.max-wait:50ms}") Duration maxWait) {
+        this.captureService = captureService;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = Math.min(maxBatch, CaptureBatchRequest.MAX_ITEMS);
+        this.maxWaitNanos = maxWait.toNanos();
+
+        meters.gauge("capture.ingest.queue.depth", queue, BlockingQueue::size);
+        meters.gauge("capture.ingest.queue.capacity", queue, q -> capacity);
+        this.flushTimer = Timer.builder("capture.ingest.flush")
+                .description("Group commit latency of the write-behind buffer")
+                .publishPercentiles(0.5, 0.99)
+                .register(meters);
+        this.flushSize = DistributionSummary.builder("capture.ingest.flush.size").register(meters);
+        this.rejected = Counter.builder("capture.ingest.rejected")
+                .description("Captures refused with 429 because the buffer was full")
+                .register(meters);
+        this.dropped = Counter.builder("capture.ingest.dropped")
+                .description("Queued captures that could not be written")
+                .register(meters);
+    }
+
+    /**
+     * Queues a validated capture. Returns false when the buffer is full; the caller
+     * should answer 429 so the client backs off and retries.
+     */
+    public boolean offer(CaptureEvent event) {
+        // reject malformed ids now, while the client is still listening
+        try {
+            UUID.fromString(event.turnId());
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid UUID: " + event.turnId());
+        }
+        if (queue.offer(event)) return true;
+        rejected.increment();
+        return false;
+    }
+
+    public int depth() { return queue.size(); }
+
+    // ---------- writer ----------
+
+    private void drainLoop() {
+        List<CaptureEvent> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                CaptureEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatch) {
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    long left = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatch || left <= 0 || !running) break;
+                    CaptureEvent next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException ie) {
+                // stop() interrupts only after running=false and its grace period. The flag
+                // is restored after the last writes, which would otherwise fail at once.
+                running = false;
+                flushRemaining(batch);
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Writes batch and everything still queued, at most maxBatch items per statement.
+    private void flushRemaining(List<CaptureEvent> batch) {
+        while (true) {
+            queue.drainTo(batch, maxBatch - batch.size());
+            if (batch.isEmpty()) return;
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<CaptureEvent> batch) {
+        flushSize.record(batch.size());
+        for (int attempt = 1; attempt <= MAX_FLUSH_ATTEMPTS; attempt++) {
+            try {
+                List<CaptureBatchAck> acks = flushTimer.recordCallable(() -> captureService.captureBatch(batch));
+                for (CaptureBatchAck ack : acks) {
+                    if (CaptureBatchAck.REJECTED.equals(ack.result())) {
+                        dropped.increment();
+                        log.warn("Buffered {} for turnId={} dropped: {}", ack.type(), ack.turnId(), ack.error());
+                    }
+                }
+                return;
+            } catch (Exception ex) {
+                log.warn("Ingest flush of {} items failed (attempt {}/{}): {}",
+                        batch.size(), attempt, MAX_FLUSH_ATTEMPTS, ex.getMessage());
+                if (attempt < MAX_FLUSH_ATTEMPTS) sleepQuietly(200L * attempt);
+            }
+        }
+        dropped.increment(batch.size());
+        log.error("Dropped {} buffered captures after {} failed flushes", batch.size(), MAX_FLUSH_ATTEMPTS);
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------- lifecycle ----------
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::drainLoop, "ingest-writer");
+        writer.setDaemon(false);
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("Ingest writer still busy after 30s; {} captures left in buffer", queue.size());
+            writer.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() { return running; }
+
+    // Stop after the web server so nothing new arrives while the queue drains.
+    @Override
+    public int getPhase() { return SmartLifecycle.DEFAULT_PHASE - 4096; }
+}
@@ -0,0 +1,169 @@
+package com.intelligence.capture.service;
+
+import com.intelligence.capture.dto.SimilarTurn;
+import com.intelligence.capture.repo.FingerprintRepository;
+import com.intelligence.capture.repo.FingerprintRepository.Fingerprint;
+import com.intelligence.capture.risk.RiskScorer.NearDuplicate;
+import com.intelligence.capture.risk.MinHash;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Near-duplicate detection on the scoring path. Every scored prompt and response gets a
+ * {@link MinHash} signature, stored in turn_fingerprints with its LSH bands (see V9).
+ * Before a turn is scored its signatures are looked up among FLAGGED turns; the most
+ * similar one at or above {@code fingerprints.min-similarity} becomes the scorer's
+ * near-duplicate signal.
+ *
+ * <p>Per turn this is one pass over each text and one GIN lookup per part against the
+ * flagged set.
+ */
+@Component
+public class NearDuplicates {
+
+    private final FingerprintRepository repo;
+    private final double minSimilarity;
+    private final int maxCandidates;
+
+    private final Timer fingerprint;
+    private final Counter flaggedMatches;
+
+    public NearDuplicates(FingerprintRepository repo, MeterRegistry meters,
+                          @Value("${fingerprints.min-similarity:0.8}") double minSimilarity,
+                          @Value("${fingerprints.max-candidates:1000}") int maxCandidates) {
+        this.repo = repo;
+        this.minSimilarity = minSimilarity;
+        this.maxCandidates = maxCandidates;
+        this.fingerprint = Timer.builder("scoring.fingerprint")
+                .description("MinHash of one part of a turn")
+                .register(meters);
+        this.flaggedMatches = Counter.builder("scoring.near-duplicates")
+                .description("Turns found to repeat a FLAGGED turn")
+                .register(meters);
+    }
+
+    /** Signature of text, or null when it is too short. */
+    public int[] fingerprint(String text) {
+        long t0 = System.nanoTime();
+        int[] sig = MinHash.of(text);
+        fingerprint.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+        return sig;
+    }
+
+    /** The FLAGGED part of another turn most similar to sig, at or above min-similarity, or null. */
+    public NearDuplicate nearestFlagged(UUID turnId, int[] sig) {
+        if (sig == null) return null;
+        NearDuplicate best = null;
+        for (Fingerprint f : repo.findCandidates(sig, turnId, true, maxCandidates)) {
+            double sim = MinHash.similarity(sig, f.signature());
+            if (sim >= minSimilarity && (best == null || sim > best.similarity())) {
+                best = new NearDuplicate(f.turnId(), sim);
+            }
+        }
+        if (best != null) flaggedMatches.increment();
+        return best;
+    }
+
+    /**
+     * {@link #nearestFlagged} for a batch of turns with one lookup: the candidates for every
+     * band of every signature are read together, then matched per turn.
+     */
+    public Map<UUID, NearDuplicate> nearestFlagged(Map<UUID, List<int[]>> signatures) {
+        Map<Long, List<Fingerprint>> byBand = new HashMap<>();
+        Set<Long> bands = new HashSet<>();
+        for (List<int[]> sigs : signatures.values()) {
+            for (int[] sig : sigs) {
+                for (long b : MinHash.bands(sig)) bands.add(b);
+            }
+        }
+        if (bands.isEmpty()) return Map.of();
+
+        long[] all = bands.stream().mapToLong(Long::longValue).toArray();
+        for (Fingerprint f : repo.findCandidates(all, null, true, maxCandidates * signatures.size())) {
+            for (long b : MinHash.bands(f.signature())) {
+                if (bands.contains(b)) byBand.computeIfAbsent(b, k -> new ArrayList<>()).add(f);
+            }
+        }
+
+        Map<UUID, NearDuplicate> out = new HashMap<>();
+        signatures.forEach((turnId, sigs) -> {
+            NearDuplicate best = null;
+            for (int[] sig : sigs) {
+                for (long b : MinHash.bands(sig)) {
+                    for (Fingerprint f : byBand.getOrDefault(b, List.of())) {
+                        if (f.turnId().equals(turnId)) continue;
+                        double sim = MinHash.similarity(sig, f.signature());
+                        if (sim >= minSimilarity && (best == null || sim > best.similarity())) {
+                            best = new NearDuplicate(f.turnId(), sim);
+                        }
+                    }
+                }
+            }
+            if (best != null) {
+                out.put(turnId, best);
+                flaggedMatches.increment();
+            }
+        });
+        return out;
+    }
+
+    /** Picks the closer of two signals; either may be null. */
+    public static NearDuplicate closer(NearDuplicate a, NearDuplicate b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return b.similarity() > a.similarity() ? b : a;
+    }
+
+    /** Stores the turn's signatures (either may be null); call inside the scoring transaction. */
+    public void save(UUID turnId, int[] promptSig, int[] responseSig, boolean flagged) {
+        if (promptSig != null) repo.save(turnId, FingerprintRepository.PROMPT, promptSig, flagged);
+        if (responseSig != null) repo.save(turnId, FingerprintRepository.RESPONSE, responseSig, flagged);
+        // a part stored by an earlier, lower-scored pass
+        if (flagged) repo.markFlagged(turnId);
+    }
+
+    /** Batch form of {@link #save}, one statement batch; call inside the writing transaction. */
+    public void saveAll(List<Fingerprint> fingerprints) {
+        repo.saveAll(fingerprints);
+    }
+
+    /** Other turns whose prompt or response is at least min-similarity to this turn's, most similar first. */
+    @Transactional(readOnly = true)
+    public List<SimilarTurn> similar(UUID turnId, int limit) {
+        Map<UUID, SimilarTurn> best = new HashMap<>();
+        for (Fingerprint own : repo.findByTurnId(turnId)) {
+            for (Fingerprint f : repo.findCandidates(own.signature(), turnId, false, maxCandidates)) {
+                double sim = MinHash.similarity(own.signature(), f.signature());
+                if (sim < minSimilarity) continue;
+                SimilarTurn prev = best.get(f.turnId());
+                if (prev == null || sim > prev.similarity()) {
+                    best.put(f.turnId(), new SimilarTurn(f.turnId(), partName(own.part()), partName(f.part()),
+                            sim, f.flagged()));
+                }
+            }
+        }
+        List<SimilarTurn> out = new ArrayList<>(best.values());
+        out.sort(Comparator.comparingDouble(SimilarTurn::similarity).reversed().thenComparing(SimilarTurn::turnId));
+        return out.size() > limit ? out.subList(0, limit) : out;
+    }
+
+    // ---------- helpers ----------
+
+    private static String partName(char part) {
+        return part == FingerprintRepository.PROMPT ? "prompt" : "response";
+    }
+}
@@ -0,0 +1,232 @@
+package com.intelligence.capture.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the time partitions of prompt_events and risk_scores (see V6) ahead of the clock
+ * and applies retention by whole partitions: a partition whose upper bound is older than
+ * {@code partitions.retention} is detached and, unless {@code retention-mode=detach},
+ * dropped. No bulk DELETE on the event tables, so no bloat and no vacuum storm.
+ *
+ * <p>Runs at startup and every {@code partitions.maintenance-interval}. Each DDL step
+ * runs in its own short transaction behind a transaction-scoped advisory lock, so
+ * several nodes can run this without stepping on each other.
+ */
+@Component
+public class PartitionMaintenance {
+
+    public enum Granularity { DAILY, MONTHLY }
+    public enum RetentionMode { DROP, DETACH }
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionMaintenance.class);
+
+    private static final long LOCK_KEY = 0x5041525449L; // "PARTI"
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final int TURN_INDEX_DELETE_BATCH = 10_000;
+
+    /** A partitioned table and the column it is ranged on. */
+    private record Parent(String table, String column) {}
+
+    /** One child partition; null bounds are MINVALUE / MAXVALUE or the DEFAULT partition. */
+    private record Partition(String name, Instant from, Instant to, boolean isDefault) {}
+
+    private static final List<Parent> PARENTS = List.of(
+            new Parent("prompt_events", "captured_at"),
+            new Parent("risk_scores", "scored_at"));
+
+    // Bounds of each child, read back in the session time zone they were printed in.
+    private static final String CHILDREN_SQL = """
+            SELECT c.relname AS name,
+                   pg_get_expr(c.relpartbound, c.oid) = 'DEFAULT' AS is_default,
+                   (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'FROM \\(''([^'']+)''\\)'))[1]::timestamptz AS range_from,
+                   (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \\(''([^'']+)''\\)'))[1]::timestamptz AS range_to
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = CAST(? AS regclass)
+            ORDER BY range_to NULLS FIRST""";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate txTemplate;
+    private final Granularity granularity;
+    private final Duration premake;
+    private final Duration retention;
+    private final RetentionMode retentionMode;
+
+    private final AtomicLong defaultRows = new AtomicLong();
+
+    public PartitionMaintenance(JdbcTemplate jdbc, TransactionTemplate txTemplate, MeterRegistry meters,
+                                @Value("${partitions.granularity:daily}") Granularity granularity,
+                                @Value("${partitions.premake:7d}") Duration premake,
+                                @Value("${partitions.retention:0d}") Duration retention,
+                                @Value("${partitions.retention-mode:drop}") RetentionMode retentionMode) {
+        this.jdbc = jdbc;
+        this.txTemplate = txTemplate;
+        this.granularity = granularity;
+        this.premake = premake;
+        this.retention = retention;
+        this.retentionMode = retentionMode;
+        meters.gauge("partitions.default.rows", defaultRows);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(fixedDelayString = "${partitions.maintenance-interval:1h}",
+               initialDelayString = "${partitions.maintenance-interval:1h}")
+    public void maintain() {
+        Instant now = Instant.now();
+        long unrouted = 0;
+        for (Parent parent : PARENTS) {
+            try {
+                createAhead(parent, now);
+                if (!retention.isZero()) applyRetention(parent, now.minus(retention));
+                unrouted += countDefault(parent);
+            } catch (Exception ex) {
+                log.error("partition maintenance failed for {}", parent.table(), ex);
+            }
+        }
+        defaultRows.set(unrouted);
+    }
+
+    // ---------- create ----------
+
+    private void createAhead(Parent parent, Instant now) {
+        Instant horizon = now.plus(premake);
+        Instant from = null;
+        for (Partition p : children(parent)) {
+            if (!p.isDefault() && p.to() != null && (from == null || p.to().isAfter(from))) from = p.to();
+        }
+        if (from == null) from = startOf(now);
+
+        while (from.isBefore(horizon)) {
+            Instant to = next(from);
+            String name = parent.table() + "_p" + SUFFIX.format(from.atOffset(ZoneOffset.UTC));
+            String ddl = "CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + parent.table()
+                    + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')";
+            boolean move = defaultHasRows(parent, from, to);
+            if (!(move ? locked(moveOutOfDefault(parent, from, to, ddl)) : locked(ddl))) return;
+            log.info("created partition {} [{}, {}){}", name, from, to, move ? ", rows moved in from the default partition" : "");
+            from = to;
+        }
+    }
+
+    /*
+     * Postgres refuses to create a partition while the default one holds rows of its
+     * range. Those rows are parked in a temp table, the partition is created, and they go
+     * back through the parent into it, all in one transaction.
+     */
+    private static String[] moveOutOfDefault(Parent parent, Instant from, Instant to, String createDdl) {
+        return new String[] {
+                "CREATE TEMP TABLE partition_move (LIKE " + parent.table() + ") ON COMMIT DROP",
+                "WITH moved AS (DELETE FROM " + parent.table() + "_default WHERE " + parent.column()
+                        + " >= '" + from + "' AND " + parent.column() + " < '" + to + "' RETURNING *)"
+                        + " INSERT INTO partition_move SELECT * FROM moved",
+                createDdl,
+                "INSERT INTO " + parent.table() + " SELECT * FROM partition_move"
+        };
+    }
+
+    private boolean defaultHasRows(Parent parent, Instant from, Instant to) {
+        return Boolean.TRUE.equals(jdbc.queryForObject("SELECT EXISTS (SELECT 1 FROM " + parent.table() + "_default"
+                        + " WHERE " + parent.column() + " >= ? AND " + parent.column() + " < ?)", Boolean.class,
+                from.atOffset(ZoneOffset.UTC), to.atOffset(ZoneOffset.UTC)));
+    }
+
+    // ---------- retention ----------
+
+    private void applyRetention(Parent parent, Instant cutoff) {
+        for (Partition p : children(parent)) {
+            if (p.isDefault() || p.to() == null || p.to().isAfter(cutoff)) continue;
+
+            String detach = "ALTER TABLE " + parent.table() + " DETACH PARTITION " + p.name();
+            boolean done = (retentionMode == RetentionMode.DROP)
+                    ? locked(detach, "DROP TABLE " + p.name())
+                    : locked(detach);
+            if (!done) return;
+            log.info("{} partition {} (rows before {})", retentionMode == RetentionMode.DROP ? "dropped" : "detached",
+                    p.name(), p.to());
+
+            if (parent.table().equals("prompt_events")) forgetTurns(p);
+        }
+    }
+
+    // turn_index is small and unpartitioned; its expired rows (and their fingerprints, by
+    // cascade) go in short batches.
+    private void forgetTurns(Partition p) {
+        String sql = "DELETE FROM turn_index WHERE ctid = ANY(ARRAY(SELECT ctid FROM turn_index"
+                + " WHERE captured_at < ?" + (p.from() == null ? "" : " AND captured_at >= ?")
+                + " LIMIT " + TURN_INDEX_DELETE_BATCH + "))";
+        Object[] args = (p.from() == null)
+                ? new Object[] { p.to().atOffset(ZoneOffset.UTC) }
+                : new Object[] { p.to().atOffset(ZoneOffset.UTC), p.from().atOffset(ZoneOffset.UTC) };
+        int deleted;
+        do {
+            deleted = jdbc.update(sql, args);
+        } while (deleted == TURN_INDEX_DELETE_BATCH);
+    }
+
+    // ---------- helpers ----------
+
+    private List<Partition> children(Parent parent) {
+        return jdbc.query(CHILDREN_SQL, (rs, i) -> new Partition(
+                rs.getString("name"),
+                toInstant(rs.getObject("range_from", OffsetDateTime.class)),
+                toInstant(rs.getObject("range_to", OffsetDateTime.class)),
+                rs.getBoolean("is_default")), parent.table());
+    }
+
+    // Rows no range accepted; createAhead moves them once their range is created.
+    private long countDefault(Parent parent) {
+        Long n = jdbc.queryForObject("SELECT count(*) FROM " + parent.table() + "_default", Long.class);
+        if (n != null && n > 0) log.warn("{} rows of {} are in the default partition", n, parent.table());
+        return (n == null) ? 0 : n;
+    }
+
+    // Runs ddl under the advisory lock; false when another node holds it this round.
+    private boolean locked(String... ddl) {
+        Boolean done = txTemplate.execute(tx -> {
+            Boolean got = jdbc.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, LOCK_KEY);
+            if (!Boolean.TRUE.equals(got)) return false;
+            for (String statement : ddl) jdbc.execute(statement);
+            return true;
+        });
+        return Boolean.TRUE.equals(done);
+    }
+
+    private Instant startOf(Instant t) {
+        LocalDate day = t.atOffset(ZoneOffset.UTC).toLocalDate();
+        if (granularity == Granularity.MONTHLY) day = day.withDayOfMonth(1);
+        return day.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    // End of the partition starting at from: the next day or month boundary.
+    private Instant next(Instant from) {
+        LocalDate day = from.atOffset(ZoneOffset.UTC).toLocalDate();
+        LocalDate end = (granularity == Granularity.MONTHLY) ? day.withDayOfMonth(1).plusMonths(1) : day.plusDays(1);
+        return end.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private static Instant toInstant(OffsetDateTime t) {
+        return (t == null) ? null : t.toInstant();
+    }
+}
@@ -0,0 +1,426 @@
+package com.intelligence.capture.service;
+
+import com.intelligence.capture.dto.PageCursor;
+import com.intelligence.capture.dto.RescoreJob;
+import com.intelligence.capture.model.RiskScore;
+import com.intelligence.capture.repo.FingerprintRepository;
+import com.intelligence.capture.repo.FingerprintRepository.Fingerprint;
+import com.intelligence.capture.repo.RescoreBatchRepository;
+import com.intelligence.capture.repo.RescoreBatchRepository.StatusChange;
+import com.intelligence.capture.repo.RescoreBatchRepository.TurnText;
+import com.intelligence.capture.repo.RescoreJobRepository;
+import com.intelligence.capture.risk.Redactor;
+import com.intelligence.capture.risk.RiskScorer;
+import com.intelligence.capture.risk.RiskScorer.NearDuplicate;
+import com.intelligence.capture.risk.RiskScorer.PartScan;
+import com.intelligence.capture.risk.RuleSet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Re-scores stored turns with the current {@link RiskScorer#VERSION} and rule set, e.g.
+ * after a rule change. A job walks prompt_events oldest first in chunks of {@code rescore.chunk-size}
+ * on the (captured_at, id) keyset. Each chunk is scanned in parallel on a dedicated
+ * fork-join pool, checked against FLAGGED fingerprints with one lookup, then written in
+ * one transaction: the new risk_scores rows, status changes, rollup moves, fingerprints
+ * and the job's checkpoint. A crash loses at most the chunk in flight; the job resumes
+ * after its cursor.
+ *
+ * <p>FLAGGED turns are read but not re-scored: their text is already redacted, so a new
+ * score would only miss what flagged them. Their fingerprints are still backfilled.
+ * Any other turn with a redacted part (see V15) is scored from that part's stored
+ * findings, never from the redacted text, so it cannot come out lower than it was.
+ * Re-scored turns bypass the scan cache and the risk event stream.
+ *
+ * <p>One job runs per node. A RUNNING job whose owner stopped heartbeating for
+ * {@code rescore.lease} is adopted by the next node that looks. Live scoring comes first:
+ * while the scoring backlog is above {@code rescore.backoff-backlog} the job sleeps, and
+ * {@code rescore.max-rate} caps its turns per second.
+ */
+@Component
+public class RescoreJobRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(RescoreJobRunner.class);
+
+    // A chunk's scan results, before the near-duplicate lookup.
+    private record Scanned(TurnText row, PartScan prompt, PartScan response, int[] promptSig, int[] responseSig) {
+        boolean flagged() { return "FLAGGED".equals(row.status()); }
+    }
+
+    private final RescoreJobRepository jobs;
+    private final RescoreBatchRepository batches;
+    private final TransactionTemplate txTemplate;
+    private final NearDuplicates nearDuplicates;
+    private final RiskRollups rollups;
+    private final ScoringExecutor scoringExecutor;
+    private final ScoringJobWorker jobWorker; // null unless scoring.queue=outbox
+    private final Redactor redactor;
+    private final RiskRules rules;
+
+    private final int chunkSize;
+    private final int maxRate;
+    private final int backoffBacklog;
+    private final Duration backoff;
+    private final Duration lease;
+    private final boolean adoptOrphans;
+
+    private final String owner;
+    private final ForkJoinPool pool;
+    // Not a monitor: start, resume and adoptOrphan hold it across JDBC calls, which would
+    // pin a virtual thread's carrier under synchronized.
+    private final ReentrantLock lock = new ReentrantLock();
+    private Thread worker; // guarded by lock
+    private volatile boolean stopping;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final Counter rescored;
+    private final Counter skipped;
+    private final Counter backoffs;
+    private final Timer chunkTimer;
+
+    public RescoreJobRunner(RescoreJobRepository jobs, RescoreBatchRepository batches, TransactionTemplate txTemplate,
+                            NearDuplicates nearDuplicates, RiskRollups rollups, ScoringExecutor scoringExecutor,
+                            ObjectProvider<ScoringJobWorker> jobWorker, Redactor redactor, RiskRules rules, MeterRegistry meters,
+                            @Value("${rescore.chunk-size:1000}") int chunkSize,
+                            @Value("${rescore.parallelism:0}") int parallelism,
+                            @Value("${rescore.max-rate:0}") int maxRate,
+                            @Value("${rescore.backoff-backlog:500}") int backoffBacklog,
+                            @Value("${rescore.backoff:2s}") Duration backoff,
+                            @Value("${rescore.lease:2m}") Duration lease,
+                            @Value("${rescore.adopt-orphans:true}") boolean adoptOrphans) {
+        this.jobs = jobs;
+        this.batches = batches;
+        this.txTemplate = txTemplate;
+        this.nearDuplicates = nearDuplicates;
+        this.rollups = rollups;
+        this.scoringExecutor = scoringExecutor;
+        this.jobWorker = jobWorker.getIfAvailable();
+        this.redactor = redactor;
+        this.rules = rules;
+        this.chunkSize = chunkSize;
+        this.maxRate = maxRate;
+        this.backoffBacklog = backoffBacklog;
+        this.backoff = backoff;
+        this.lease = lease;
+        this.adoptOrphans = adoptOrphans;
+        this.owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+
+        this.rescored = Counter.builder("rescore.turns")
+                .description("Turns read by re-score jobs")
+                .tag("result", "rescored")
+                .register(meters);
+        this.skipped = Counter.builder("rescore.turns")
+                .description("Turns read by re-score jobs")
+                .tag("result", "skipped")
+                .register(meters);
+        this.backoffs = Counter.builder("rescore.backoffs")
+                .description("Times a re-score job paused for the live scoring backlog")
+                .register(meters);
+        this.chunkTimer = Timer.builder("rescore.chunk")
+                .description("Reading, scoring and writing one re-score chunk")
+                .register(meters);
+        meters.gauge("rescore.active", active);
+    }
+
+    /**
+     * Starts a job over turns captured in [from, to), optionally only those in status;
+     * from null means from the oldest turn. IllegalStateException if this node already
+     * runs one.
+     */
+    public RescoreJob start(Instant from, Instant to, String status) {
+        lock.lock();
+        try {
+            if (busy()) throw new IllegalStateException("a re-score job is already running on this node");
+            RescoreJob job = jobs.create(RiskScorer.VERSION, status, from, to, owner);
+            launch(job);
+            return job;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Pauses a RUNNING job; whichever node runs it stops after its current chunk. */
+    public Optional<RescoreJob> pause(long id) {
+        jobs.pause(id);
+        return jobs.findById(id);
+    }
+
+    /** Resumes a PAUSED or FAILED job on this node. IllegalStateException if this node is busy. */
+    public Optional<RescoreJob> resume(long id) {
+        lock.lock();
+        try {
+            if (busy()) throw new IllegalStateException("a re-score job is already running on this node");
+            if (jobs.resume(id, owner)) jobs.findById(id).ifPresent(this::launch);
+            return jobs.findById(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Optional<RescoreJob> find(long id) {
+        return jobs.findById(id);
+    }
+
+    public List<RescoreJob> recent(int limit) {
+        return jobs.findRecent(limit);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        adoptOrphan();
+    }
+
+    @Scheduled(fixedDelayString = "${rescore.lease:2m}", initialDelayString = "${rescore.lease:2m}")
+    public void adoptOrphan() {
+        lock.lock();
+        try {
+            if (!adoptOrphans || stopping || busy()) return;
+            jobs.claimOrphan(owner, lease).ifPresent(job -> {
+                log.info("adopting re-score job {} at cursor {}", job.id(), job.cursorAt());
+                launch(job);
+            });
+        } catch (Exception ex) {
+            log.warn("could not look for orphaned re-score jobs: {}", ex.toString());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * The job stays RUNNING: its lease runs out and it is adopted after the restart, from
+     * the last checkpoint.
+     */
+    @PreDestroy
+    void close() throws InterruptedException {
+        stopping = true;
+        Thread t;
+        lock.lock();
+        try {
+            t = worker;
+        } finally {
+            lock.unlock();
+        }
+        if (t != null) {
+            t.interrupt();
+            t.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        pool.shutdownNow();
+    }
+
+    // ---------- the job ----------
+
+    // Under lock, as is busy.
+    private void launch(RescoreJob job) {
+        Thread t = new Thread(() -> run(job), "rescore-" + job.id());
+        t.setDaemon(true);
+        worker = t;
+        active.set(1);
+        t.start();
+    }
+
+    private boolean busy() {
+        return worker != null && worker.isAlive();
+    }
+
+    private void run(RescoreJob job) {
+        long id = job.id();
+        PageCursor cursor = job.cursorAt() == null ? null : new PageCursor(job.cursorAt(), job.cursorId());
+        log.info("re-score job {} running: version={}, range=[{}, {}), status={}",
+                id, RiskScorer.VERSION, job.rangeFrom(), job.rangeTo(), job.statusFilter());
+        try {
+            while (!stopping) {
+                if (!waitForBacklog(id)) {
+                    log.info("re-score job {} paused or taken over; stopping", id);
+                    return;
+                }
+                long t0 = System.nanoTime();
+                List<TurnText> rows = batches.findChunk(job.statusFilter(), job.rangeFrom(), job.rangeTo(), cursor, chunkSize);
+                if (rows.isEmpty()) {
+                    jobs.finish(id, owner, RescoreJobRepository.DONE, null);
+                    log.info("re-score job {} done", id);
+                    return;
+                }
+                TurnText last = rows.get(rows.size() - 1);
+                int written = processChunk(id, rows, last);
+                if (written < 0) {
+                    log.info("re-score job {} paused or taken over; stopping", id);
+                    return;
+                }
+                cursor = new PageCursor(last.capturedAt(), last.id());
+                rescored.increment(written);
+                skipped.increment(rows.size() - written);
+                long elapsed = System.nanoTime() - t0;
+                chunkTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                pace(elapsed, rows.size());
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            if (stopping) return;
+            log.error("re-score job {} failed", id, ex);
+            jobs.finish(id, owner, RescoreJobRepository.FAILED, ex.toString());
+        } finally {
+            lock.lock();
+            try {
+                if (worker == Thread.currentThread()) worker = null;
+            } finally {
+                lock.unlock();
+            }
+            active.set(0);
+        }
+    }
+
+    /*
+     * Scores one chunk and commits it with the checkpoint. Returns the number of turns
+     * given a new score, or -1 if the checkpoint found the job paused or taken over (the
+     * chunk is rolled back).
+     */
+    private int processChunk(long jobId, List<TurnText> rows, TurnText last)
+            throws InterruptedException, ExecutionException {
+        RuleSet ruleSet = rules.current(); // one rule set per chunk, even across a reload
+        List<Scanned> scanned = pool.submit(() -> rows.parallelStream().map(row -> scan(ruleSet, row)).toList()).get();
+
+        Map<UUID, List<int[]>> signatures = new HashMap<>();
+        for (Scanned s : scanned) {
+            if (s.flagged()) continue;
+            List<int[]> sigs = new ArrayList<>(2);
+            if (s.promptSig() != null) sigs.add(s.promptSig());
+            if (s.responseSig() != null) sigs.add(s.responseSig());
+            if (!sigs.isEmpty()) signatures.put(s.row().turnId(), sigs);
+        }
+        Map<UUID, NearDuplicate> dups = nearDuplicates.nearestFlagged(signatures);
+
+        Instant scoredAt = Instant.now();
+        List<RiskScore> scores = new ArrayList<>(rows.size());
+        List<StatusChange> changes = new ArrayList<>();
+        Map<UUID, RiskScorer.Result> results = new HashMap<>();
+        List<Fingerprint> fingerprints = new ArrayList<>(rows.size() * 2);
+        for (Scanned s : scanned) {
+            TurnText row = s.row();
+            boolean flagged = s.flagged();
+            if (!flagged) {
+                RiskScorer.Result res = RiskScorer.combine(ruleSet, s.prompt(), s.response(),
+                        dups.get(row.turnId()));
+                res.details().put("rescore_job", jobId);
+                scores.add(score(row.turnId(), scoredAt, res));
+                results.put(row.turnId(), res);
+                flagged = "HIGH".equals(res.level());
+                StatusChange change = statusChange(s, res);
+                if (change != null) changes.add(change);
+            }
+            if (s.promptSig() != null) {
+                fingerprints.add(new Fingerprint(row.turnId(), FingerprintRepository.PROMPT, s.promptSig(), flagged));
+            }
+            if (s.responseSig() != null) {
+                fingerprints.add(new Fingerprint(row.turnId(), FingerprintRepository.RESPONSE, s.responseSig(), flagged));
+            }
+        }
+
+        Boolean ok = txTemplate.execute(tx -> {
+            batches.insertScores(scores);
+            batches.updateStatuses(changes);
+            rollups.recordAll(results);
+            nearDuplicates.saveAll(fingerprints);
+            if (!jobs.checkpoint(jobId, owner, last.capturedAt(), last.id(), rows.size(), scores.size())) {
+                tx.setRollbackOnly();
+                return false;
+            }
+            return true;
+        });
+        return Boolean.TRUE.equals(ok) ? scores.size() : -1;
+    }
+
+    // Runs on the fork-join pool: the CPU-bound part of a turn. A redacted part is scored from its stored findings.
+    private Scanned scan(RuleSet ruleSet, TurnText row) {
+        boolean flagged = "FLAGGED".equals(row.status());
+        PartScan p = flagged ? PartScan.EMPTY : part(ruleSet, row.prompt(), row.promptFindings());
+        PartScan r = flagged ? PartScan.EMPTY : part(ruleSet, row.response(), row.responseFindings());
+        return new Scanned(row, p, r, nearDuplicates.fingerprint(row.prompt()), nearDuplicates.fingerprint(row.response()));
+    }
+
+    private static PartScan part(RuleSet ruleSet, String text, PartScan findings) {
+        return findings != null ? findings : RiskScorer.scan(ruleSet, text);
+    }
+
+    /*
+     * The status the live path would set; HIGH also redacts the parts still as captured.
+     * Null when nothing changes and the turn is not unscored.
+     */
+    private StatusChange statusChange(Scanned s, RiskScorer.Result res) {
+        TurnText row = s.row();
+        if ("HIGH".equals(res.level())) {
+            boolean redactPrompt = s.prompt().hasPii() && row.promptFindings() == null;
+            boolean redactResponse = s.response().hasPii() && row.responseFindings() == null;
+            return new StatusChange(row.id(), row.capturedAt(), "FLAGGED",
+                    redactPrompt ? redactor.redact(row.prompt(), s.prompt().matches()) : null,
+                    redactPrompt ? s.prompt() : null,
+                    redactResponse ? redactor.redact(row.response(), s.response().matches()) : null,
+                    redactResponse ? s.response() : null);
+        }
+        String next = "MEDIUM".equals(res.level()) ? "REVIEW" : "CLEARED";
+        return next.equals(row.status()) && !row.unscored() ? null
+                : new StatusChange(row.id(), row.capturedAt(), next, null, null, null, null);
+    }
+
+    private static RiskScore score(UUID turnId, Instant scoredAt, RiskScorer.Result res) {
+        RiskScore rs = new RiskScore();
+        rs.setId(UUID.randomUUID());
+        rs.setTurnId(turnId);
+        rs.setScoredAt(scoredAt);
+        rs.setScore(res.score());
+        rs.setScorerVersion(RiskScorer.VERSION);
+        rs.setRuleSetVersion(res.ruleSet());
+        rs.setDetails(res.details());
+        return rs;
+    }
+
+    // ---------- throttling ----------
+
+    // Sleeps while live scoring is backed up, keeping the lease; false if the job was lost meanwhile.
+    private boolean waitForBacklog(long jobId) throws InterruptedException {
+        while (liveBacklog() > backoffBacklog) {
+            backoffs.increment();
+            Thread.sleep(backoff.toMillis());
+            if (stopping || !jobs.heartbeat(jobId, owner)) return false;
+        }
+        return true;
+    }
+
+    private long liveBacklog() {
+        return scoringExecutor.backlog() + (jobWorker == null ? 0 : jobWorker.backlog());
+    }
+
+    private void pace(long elapsedNanos, int turns) throws InterruptedException {
+        if (maxRate <= 0) return;
+        long minNanos = TimeUnit.SECONDS.toNanos(turns) / maxRate;
+        long sleep = minNanos - elapsedNanos;
+        if (sleep > 0) TimeUnit.NANOSECONDS.sleep(sleep);
+    }
+}
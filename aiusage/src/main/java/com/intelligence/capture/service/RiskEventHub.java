@@ -0,0 +1,311 @@
+package com.intelligence.capture.service;
+
+import com.intelligence.capture.dto.RiskEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process fan-out of committed risk scores to SSE subscribers, so dashboards stop
+ * polling the database.
+ *
+ * <p>Every event goes into a replay ring of the last {@code risk-stream.replay-size}
+ * events. A reconnecting client sends its Last-Event-ID and gets what it missed from the
+ * ring; if that id has already fallen out of it (or predates a restart) the client gets
+ * a {@code reset} event and should reload through the list API.
+ *
+ * <p>Each subscriber has its own buffer of at most {@code risk-stream.subscriber-buffer}
+ * events. A newer event for a turn replaces the one still waiting for it (coalescing);
+ * past the limit the oldest waiting event is dropped and the client is sent a
+ * {@code dropped} event with the count. Sending happens on a small dispatch pool, never
+ * on the scoring thread. A pool thread sends one batch of at most {@value #DRAIN_BATCH}
+ * events per turn and then queues the subscriber behind the others, so a busy client
+ * cannot keep a thread to itself. A client that takes longer than
+ * {@code risk-stream.write-timeout} to accept a batch is disconnected; it can resume
+ * with Last-Event-ID.
+ */
+@Component
+public class RiskEventHub {
+
+    public static final String EVENT_RISK = "risk";
+    public static final String EVENT_DROPPED = "dropped";
+    public static final String EVENT_RESET = "reset";
+
+    private static final Logger log = LoggerFactory.getLogger(RiskEventHub.class);
+
+    static final int DRAIN_BATCH = 64;
+
+    /** Subscriber-side filter; null fields match everything. */
+    public record Filter(Double minScore, Set<String> levels, String deviceId) {
+        boolean matches(RiskEvent e) {
+            if (minScore != null && e.score() < minScore) return false;
+            if (levels != null && !levels.isEmpty() && !levels.contains(e.level())) return false;
+            return deviceId == null || deviceId.equals(e.deviceId());
+        }
+    }
+
+    private final int bufferSize;
+    private final int replaySize;
+    private final Duration timeout;
+    private final Duration writeTimeout;
+    private final ExecutorService dispatch;
+    private final ScheduledExecutorService watchdog;
+
+    // ids start from the wall clock so a restarted process never reuses an old id
+    private final AtomicLong nextId = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final ArrayDeque<RiskEvent> replay = new ArrayDeque<>();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private final Counter published;
+    private final Counter dropped;
+    private final Counter coalesced;
+    private final Counter writeTimeouts;
+
+    public RiskEventHub(MeterRegistry meters,
+                        @Value("${risk-stream.subscriber-buffer:256}") int bufferSize,
+                        @Value("${risk-stream.replay-size:10000}") int replaySize,
+                        @Value("${risk-stream.timeout:30m}") Duration timeout,
+                        @Value("${risk-stream.dispatch-threads:2}") int dispatchThreads,
+                        @Value("${risk-stream.write-timeout:10s}") Duration writeTimeout) {
+        this.bufferSize = bufferSize;
+        this.replaySize = replaySize;
+        this.timeout = timeout;
+        this.writeTimeout = writeTimeout;
+
+        AtomicInteger seq = new AtomicInteger();
+        this.dispatch = Executors.newFixedThreadPool(dispatchThreads, r -> {
+            Thread t = new Thread(r, "risk-stream-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "risk-stream-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+
+        meters.gauge("risk.stream.subscribers", subscribers, List::size);
+        this.published = Counter.builder("risk.stream.published").register(meters);
+        this.dropped = Counter.builder("risk.stream.dropped")
+                .description("Events dropped because a subscriber fell behind")
+                .register(meters);
+        this.coalesced = Counter.builder("risk.stream.coalesced")
+                .description("Waiting events replaced by a newer event for the same turn")
+                .register(meters);
+        this.writeTimeouts = Counter.builder("risk.stream.write.timeouts")
+                .description("Subscribers disconnected for not accepting a batch within the write timeout")
+                .register(meters);
+    }
+
+    /** Records a committed score and hands it to every matching subscriber. Never blocks on I/O. */
+    public void publish(UUID turnId, String deviceId, double score, String level, String status, Instant scoredAt) {
+        RiskEvent event;
+        synchronized (replay) {
+            event = new RiskEvent(nextId.getAndIncrement(), turnId, deviceId, score, level, status, scoredAt);
+            replay.addLast(event);
+            if (replay.size() > replaySize) replay.removeFirst();
+        }
+        published.increment();
+        for (Subscriber s : subscribers) {
+            if (s.filter.matches(event)) s.offer(event);
+        }
+    }
+
+    /**
+     * Opens a stream. With a lastEventId, events after it still in the replay ring are
+     * queued first; a lastEventId older than the ring yields a reset event.
+     */
+    public SseEmitter subscribe(Filter filter, Long lastEventId) {
+        return subscribe(filter, lastEventId, new SseEmitter(timeout.toMillis()));
+    }
+
+    SseEmitter subscribe(Filter filter, Long lastEventId, SseEmitter emitter) {
+        Subscriber s = new Subscriber(emitter, filter);
+        emitter.onCompletion(() -> subscribers.remove(s));
+        emitter.onTimeout(() -> subscribers.remove(s));
+        emitter.onError(ex -> subscribers.remove(s));
+
+        // register and snapshot under the ring's lock so nothing falls between replay and live
+        synchronized (replay) {
+            if (lastEventId != null) {
+                RiskEvent oldest = replay.peekFirst();
+                if (oldest == null ? lastEventId < nextId.get() - 1 : lastEventId < oldest.id() - 1) {
+                    s.reset = true;
+                }
+                for (RiskEvent e : replay) {
+                    if (e.id() > lastEventId && filter.matches(e)) s.offer(e);
+                }
+            }
+            subscribers.add(s);
+        }
+        s.schedule();
+        return emitter;
+    }
+
+    // SSE comment every interval: keeps proxies from closing idle streams and finds dead clients.
+    @Scheduled(fixedDelayString = "${risk-stream.heartbeat:15s}")
+    void heartbeat() {
+        for (Subscriber s : subscribers) {
+            s.heartbeat = true;
+            s.schedule();
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        for (Subscriber s : subscribers) s.emitter.complete();
+        subscribers.clear();
+        dispatch.shutdownNow();
+        watchdog.shutdownNow();
+    }
+
+    // ---------- per subscriber ----------
+
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final Filter filter;
+
+        // waiting events by turnId, oldest first; guarded by this
+        private final LinkedHashMap<UUID, RiskEvent> pending = new LinkedHashMap<>();
+        private int droppedSinceSend;
+        volatile boolean reset;
+        volatile boolean heartbeat;
+
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final Object sendLock = new Object();
+        private Thread sending; // guarded by sendLock
+
+        Subscriber(SseEmitter emitter, Filter filter) {
+            this.emitter = emitter;
+            this.filter = filter;
+        }
+
+        void offer(RiskEvent e) {
+            synchronized (this) {
+                if (pending.remove(e.turnId()) != null) {
+                    coalesced.increment();
+                } else if (pending.size() >= bufferSize) {
+                    Iterator<RiskEvent> oldest = pending.values().iterator();
+                    oldest.next();
+                    oldest.remove();
+                    droppedSinceSend++;
+                    dropped.increment();
+                }
+                pending.put(e.turnId(), e);
+            }
+            schedule();
+        }
+
+        void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    dispatch.execute(this::drain);
+                } catch (RuntimeException ex) {
+                    draining.set(false); // pool shut down
+                }
+            }
+        }
+
+        // One batch per run, then back in the pool's queue behind the other subscribers.
+        private void drain() {
+            try {
+                List<RiskEvent> batch = new ArrayList<>(Math.min(bufferSize, DRAIN_BATCH));
+                int lost;
+                synchronized (this) {
+                    Iterator<RiskEvent> it = pending.values().iterator();
+                    while (it.hasNext() && batch.size() < DRAIN_BATCH) {
+                        batch.add(it.next());
+                        it.remove();
+                    }
+                    lost = droppedSinceSend;
+                    droppedSinceSend = 0;
+                }
+                boolean ping = heartbeat;
+                heartbeat = false;
+                if (!batch.isEmpty() || lost > 0 || reset || ping) send(batch, lost, ping);
+            } catch (IOException | IllegalStateException ex) {
+                // client went away (or was cut off by the watchdog); the emitter callbacks unregister it
+                log.debug("risk stream subscriber closed: {}", ex.toString());
+                subscribers.remove(this);
+                emitter.completeWithError(ex);
+            } finally {
+                draining.set(false);
+            }
+            // more left over, or an offer that raced with the end of the run
+            boolean more;
+            synchronized (this) {
+                more = !pending.isEmpty() || droppedSinceSend > 0 || reset;
+            }
+            if (more && subscribers.contains(this)) schedule();
+        }
+
+        private void send(List<RiskEvent> batch, int lost, boolean ping) throws IOException {
+            synchronized (sendLock) {
+                sending = Thread.currentThread();
+            }
+            ScheduledFuture<?> guard = watchdog.schedule(this::timedOut, writeTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            try {
+                if (reset) {
+                    reset = false;
+                    emitter.send(SseEmitter.event().name(EVENT_RESET).data("{}", MediaType.APPLICATION_JSON));
+                }
+                if (lost > 0) {
+                    emitter.send(SseEmitter.event().name(EVENT_DROPPED).data("{\"count\":" + lost + "}",
+                            MediaType.APPLICATION_JSON));
+                }
+                for (RiskEvent e : batch) {
+                    emitter.send(SseEmitter.event().id(Long.toString(e.id())).name(EVENT_RISK)
+                            .data(e, MediaType.APPLICATION_JSON));
+                }
+                if (ping && batch.isEmpty()) emitter.send(SseEmitter.event().comment("ping"));
+            } finally {
+                guard.cancel(false);
+                synchronized (sendLock) {
+                    sending = null;
+                    Thread.interrupted(); // a timeout that fired just as the batch finished
+                }
+            }
+        }
+
+        /*
+         * The batch is stuck on a client that stopped reading. The subscriber is dropped
+         * and the blocked write interrupted so the pool thread can move on.
+         */
+        private void timedOut() {
+            synchronized (sendLock) {
+                if (sending == null || !subscribers.remove(this)) return;
+                writeTimeouts.increment();
+                log.debug("risk stream subscriber did not accept a batch within {}, closing", writeTimeout);
+                sending.interrupt();
+            }
+            emitter.completeWithError(new IOException("write timed out after " + writeTimeout));
+        }
+    }
+}
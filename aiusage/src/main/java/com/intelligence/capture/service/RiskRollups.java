@@ -0,0 +1,155 @@
+package com.intelligence.capture.service;
+
+import com.intelligence.capture.dto.StatsRow;
+import com.intelligence.capture.repo.RollupRepository;
+import com.intelligence.capture.repo.RollupRepository.Dimension;
+import com.intelligence.capture.repo.RollupRepository.Key;
+import com.intelligence.capture.repo.RollupRepository.Placement;
+import com.intelligence.capture.repo.RollupRepository.Previous;
+import com.intelligence.capture.risk.PiiType;
+import com.intelligence.capture.risk.RiskScorer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the hourly risk rollups (see V7) current from the scoring path.
+ *
+ * <p>Each persisted score moves its turn in turn_index to the new level and PII types
+ * (in the scoring transaction) and, once that commits, adds +1 to the new rollup rows
+ * and -1 to the ones the turn was counted under before. Deltas are summed in memory and
+ * flushed every {@code rollups.flush-interval} as one batch of additive upserts, so a
+ * busy hour costs one row write per group instead of one per score. Stats are therefore
+ * up to one interval behind; deltas still in memory when the process dies are lost.
+ */
+@Component
+public class RiskRollups {
+
+    private static final Logger log = LoggerFactory.getLogger(RiskRollups.class);
+
+    private final RollupRepository repo;
+    private final ConcurrentHashMap<Key, Long> pending = new ConcurrentHashMap<>();
+    private final Timer flushTimer;
+
+    public RiskRollups(RollupRepository repo, MeterRegistry meters) {
+        this.repo = repo;
+        meters.gauge("rollups.pending", pending, Map::size);
+        this.flushTimer = Timer.builder("rollups.flush").register(meters);
+    }
+
+    /**
+     * Counts a turn under its new score. Call inside the transaction that persists the
+     * score; the in-memory deltas are only applied if it commits.
+     */
+    public void record(UUID turnId, RiskScorer.Result res) {
+        recordAll(Map.of(turnId, res));
+    }
+
+    /** {@link #record} for many turns in one statement. */
+    public void recordAll(Map<UUID, RiskScorer.Result> results) {
+        List<Placement> placements = new ArrayList<>(results.size());
+        results.forEach((turnId, res) -> placements.add(new Placement(turnId, res.level(), piiTypes(res))));
+        placements.sort(Comparator.comparing(Placement::turnId)); // lock order, as in the statement
+
+        Map<UUID, Placement> byTurn = new HashMap<>();
+        for (Placement pl : placements) byTurn.put(pl.turnId(), pl);
+
+        // turns expired from turn_index are not returned; their rollups are history
+        List<Runnable> moves = new ArrayList<>();
+        for (Previous prev : repo.moveTurns(placements)) {
+            Placement now = byTurn.get(prev.turnId());
+            if (now.level().equals(prev.oldLevel()) && now.piiTypes() == prev.oldPiiTypes()) continue;
+            moves.add(() -> move(prev, now.level(), now.piiTypes()));
+        }
+        if (moves.isEmpty()) return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    moves.forEach(Runnable::run);
+                }
+            });
+        } else {
+            moves.forEach(Runnable::run);
+        }
+    }
+
+    public List<StatsRow> stats(List<Dimension> groupBy, Instant from, Instant to,
+                                String deviceId, String pageHost, String level, int limit) {
+        return repo.query(groupBy, from, to, deviceId, pageHost, level, limit);
+    }
+
+    @Scheduled(fixedDelayString = "${rollups.flush-interval:5s}")
+    public void flush() {
+        if (pending.isEmpty()) return;
+
+        // remove() per key: a delta added concurrently lands in a fresh entry for the next flush
+        Map<Key, Long> batch = new HashMap<>();
+        for (Key k : pending.keySet()) {
+            Long d = pending.remove(k);
+            if (d != null && d != 0) batch.put(k, d);
+        }
+        if (batch.isEmpty()) return;
+
+        try {
+            flushTimer.record(() -> repo.addAll(batch));
+        } catch (RuntimeException ex) {
+            log.warn("rollup flush of {} rows failed, retrying next interval: {}", batch.size(), ex.toString());
+            batch.forEach(this::add);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        flush();
+    }
+
+    // ---------- helpers ----------
+
+    private void move(Previous prev, String level, int piiTypes) {
+        Instant bucket = prev.capturedAt().truncatedTo(ChronoUnit.HOURS);
+        String device = prev.deviceId() == null ? "" : prev.deviceId();
+        String host = prev.pageHost() == null ? "" : prev.pageHost();
+
+        if (prev.oldLevel() != null) count(bucket, device, host, prev.oldLevel(), prev.oldPiiTypes(), -1);
+        count(bucket, device, host, level, piiTypes, 1);
+    }
+
+    private void count(Instant bucket, String device, String host, String level, int piiTypes, long delta) {
+        add(new Key(bucket, device, host, level, null), delta);
+        for (PiiType t : PiiType.values()) {
+            if ((piiTypes & (1 << t.ordinal())) != 0) add(new Key(bucket, device, host, level, t.key()), delta);
+        }
+    }
+
+    private void add(Key key, long delta) {
+        pending.merge(key, delta, Long::sum);
+    }
+
+    // Bit per PiiType ordinal, from the keys of details.pii.
+    private static int piiTypes(RiskScorer.Result res) {
+        if (!(res.details().get("pii") instanceof Map<?, ?> pii)) return 0;
+        int mask = 0;
+        for (PiiType t : PiiType.values()) {
+            if (pii.containsKey(t.key())) mask |= 1 << t.ordinal();
+        }
+        return mask;
+    }
+}
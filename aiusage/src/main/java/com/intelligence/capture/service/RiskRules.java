@@ -0,0 +1,120 @@
+package com.intelligence.capture.service;
+
+import com.intelligence.capture.risk.RuleSet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * The {@link RuleSet} scoring uses. Built-in unless {@code scoring.rules.file} names a
+ * rule file, which is checked every {@code scoring.rules.reload-interval} and recompiled
+ * when its content changes. The new rules replace the old in one volatile write, so
+ * scoring never waits on a reload; a turn already being scored finishes with the rules
+ * it started with.
+ *
+ * <p>A file that fails to parse, or changes without changing its version, is rejected
+ * and the loaded rules stay. At startup a bad file fails the application instead.
+ */
+@Component
+public class RiskRules {
+
+    private static final Logger log = LoggerFactory.getLogger(RiskRules.class);
+
+    // What was loaded, and the file state it was loaded from (null/-1 for the built-in rules).
+    private record Loaded(RuleSet rules, FileTime modified, long size, String sha256) {}
+
+    private final Path file;
+    private volatile Loaded loaded;
+
+    private final Counter reloads;
+    private final Counter rejected;
+
+    public RiskRules(MeterRegistry meters, @Value("${scoring.rules.file:}") String file) {
+        this.reloads = Counter.builder("scoring.rules.reloads")
+                .description("Rule files loaded")
+                .tag("result", "loaded")
+                .register(meters);
+        this.rejected = Counter.builder("scoring.rules.reloads")
+                .description("Rule files loaded")
+                .tag("result", "rejected")
+                .register(meters);
+
+        if (file == null || file.isBlank()) {
+            this.file = null;
+            this.loaded = new Loaded(RuleSet.defaults(), null, -1, null);
+        } else {
+            this.file = Path.of(file.trim());
+            try {
+                FileTime modified = Files.getLastModifiedTime(this.file);
+                byte[] bytes = Files.readAllBytes(this.file);
+                this.loaded = new Loaded(RuleSet.parse(bytes), modified, bytes.length, sha256(bytes));
+            } catch (IOException | IllegalArgumentException ex) {
+                throw new IllegalStateException("Cannot load risk rules from " + this.file + ": " + ex.getMessage(), ex);
+            }
+        }
+        log.info("risk rules {} in use ({})", current().version(), this.file == null ? "built-in" : this.file);
+    }
+
+    public RuleSet current() {
+        return loaded.rules();
+    }
+
+    @Scheduled(fixedDelayString = "${scoring.rules.reload-interval:10s}")
+    public void reload() {
+        if (file == null) return;
+        Loaded prev = loaded;
+        FileTime modified;
+        byte[] bytes;
+        try {
+            modified = Files.getLastModifiedTime(file);
+            if (modified.equals(prev.modified()) && Files.size(file) == prev.size()) return;
+            bytes = Files.readAllBytes(file);
+        } catch (IOException ex) {
+            // e.g. mid-replace; the next check sees the finished file
+            log.warn("cannot read risk rules from {}, keeping {}: {}", file, prev.rules().version(), ex.toString());
+            return;
+        }
+
+        String sha = sha256(bytes);
+        if (sha.equals(prev.sha256())) {
+            loaded = new Loaded(prev.rules(), modified, bytes.length, sha);
+            return;
+        }
+        try {
+            RuleSet next = RuleSet.parse(bytes);
+            if (next.version().equals(prev.rules().version())) {
+                throw new IllegalArgumentException("content changed but version is still " + next.version());
+            }
+            loaded = new Loaded(next, modified, bytes.length, sha);
+            reloads.increment();
+            log.info("risk rules {} loaded from {}, replacing {}", next.version(), file, prev.rules().version());
+        } catch (IllegalArgumentException ex) {
+            // remember the rejected file so it is reported once, not on every check
+            loaded = new Loaded(prev.rules(), modified, bytes.length, prev.sha256());
+            rejected.increment();
+            log.error("risk rules in {} rejected, keeping {}: {}", file, prev.rules().version(), ex.getMessage());
+        }
+    }
+
+    // ---------- helpers ----------
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -3,85 +3,368 @@ package com.intelligence.capture.service;
 import com.intelligence.capture.model.PromptEvent;
 import com.intelligence.capture.model.RiskScore;
 import com.intelligence.capture.repo.PromptEventRepository;
+import com.intelligence.capture.repo.PromptEventRepository.PromptText;
 import com.intelligence.capture.repo.RiskScoreRepository;
-import com.intelligence.capture.risk.PiiDetector;
+import com.intelligence.capture.risk.Redactor;
 import com.intelligence.capture.risk.RiskScorer;
-import org.springframework.scheduling.annotation.Async;
+import com.intelligence.capture.risk.RiskScorer.NearDuplicate;
+import com.intelligence.capture.risk.RiskScorer.PartScan;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class RiskService {
 
+    private static final Logger log = LoggerFactory.getLogger(RiskService.class);
+
+    /**
+     * What to score for a turn. The capture path passes the text it already holds: a
+     * prompt-only request after capturePrompt, a response-only request after
+     * captureResponse (the prompt's findings come from the scan cache), or both after a
+     * batch that carried the whole turn. With neither, the turn is reloaded from the DB.
+     * The hashes are the stored SHA-256 of each text and key the {@link ScanCache}.
+     * acceptedAt is when capture handed the turn over, for the scoring lag metric.
+     * deviceId rides along for the risk event stream; only the prompt side has it.
+     */
+    public record ScoreRequest(UUID turnId, String deviceId, String prompt, String promptHash,
+                               String response, String responseHash, Instant acceptedAt) {
+        public static ScoreRequest forPrompt(PromptEvent e) {
+            return new ScoreRequest(e.getTurnId(), e.getDeviceId(), e.getPrompt(), e.getPromptHash(),
+                    null, null, Instant.now());
+        }
+        public static ScoreRequest forResponse(PromptEvent e) {
+            return new ScoreRequest(e.getTurnId(), null, null, null, e.getResponseText(), e.getResponseHash(), Instant.now());
+        }
+        public static ScoreRequest forTurn(PromptEvent prompt, PromptEvent response) {
+            return new ScoreRequest(prompt.getTurnId(), prompt.getDeviceId(), prompt.getPrompt(), prompt.getPromptHash(),
+                    response.getResponseText(), response.getResponseHash(), Instant.now());
+        }
+        public static ScoreRequest reload(UUID turnId) {
+            return reload(turnId, null);
+        }
+        public static ScoreRequest reload(UUID turnId, Instant acceptedAt) {
+            return new ScoreRequest(turnId, null, null, null, null, null, acceptedAt);
+        }
+
+        boolean isReload() { return prompt == null && response == null; }
+    }
+
+    // Per-turn scan state, only read and written under the turn's stripe lock.
+    private static final class TurnScans {
+        PartScan prompt;
+        int[] promptSig;                // set with prompt; null if too short to fingerprint
+        NearDuplicate promptDup;        // set with prompt
+        String deviceId;
+        boolean responseScored;
+        boolean promptRedacted;         // the stored prompt is redacted; prompt came from its findings or redaction
+        boolean responseRedacted;
+    }
+
     private final PromptEventRepository promptRepo;
     private final RiskScoreRepository riskRepo;
+    private final TransactionTemplate txTemplate;
+    private final Redactor redactor;
+    private final ScanCache scanCache;
+    private final boolean dbFallback;
+    private final RiskEventHub events;
+    private final RiskRollups rollups;
+    private final NearDuplicates nearDuplicates;
+    private final RiskRules rules;
+    private final JsonMapper json;
+    private final Map<UUID, TurnScans> scans;
 
-    public RiskService(PromptEventRepository promptRepo, RiskScoreRepository riskRepo) {
+    /*
+     * Serialize the passes for one turn so they never persist out of order. Striped and
+     * kept apart from scans: that cache may evict a turn while a pass holds its lock, and
+     * a new entry with its own lock would let the next pass run alongside. ReentrantLock
+     * rather than a monitor: it is held across JDBC calls, which would pin a virtual
+     * thread's carrier under synchronized.
+     */
+    private static final int LOCK_STRIPES = 1024; // a power of two, well above the scoring pool size
+    private final ReentrantLock[] turnLocks = new ReentrantLock[LOCK_STRIPES];
+
+    private final MeterRegistry meters;
+    private final Map<String, Counter> levels = new ConcurrentHashMap<>();
+    private final Timer lag;
+    private final Timer redaction;
+
+    public RiskService(PromptEventRepository promptRepo, RiskScoreRepository riskRepo, TransactionTemplate txTemplate,
+                       Redactor redactor, ScanCache scanCache, RiskEventHub events, RiskRollups rollups,
+                       NearDuplicates nearDuplicates, RiskRules rules, JsonMapper json,
+                       MeterRegistry meters,
+                       @Value("${scoring.scan-cache.db-fallback:false}") boolean dbFallback,
+                       @Value("${scoring.turn-cache.max-entries:50000}") int maxCachedTurns) {
         this.promptRepo = promptRepo;
         this.riskRepo = riskRepo;
+        this.txTemplate = txTemplate;
+        this.redactor = redactor;
+        this.scanCache = scanCache;
+        this.dbFallback = dbFallback;
+        this.events = events;
+        this.rollups = rollups;
+        this.nearDuplicates = nearDuplicates;
+        this.rules = rules;
+        this.json = json;
+        this.meters = meters;
+        this.lag = Timer.builder("scoring.lag")
+                .description("From capture handing a turn over to its risk score being committed")
+                .publishPercentileHistogram()
+                .register(meters);
+        this.redaction = Timer.builder("scoring.redaction")
+                .description("Redacting a FLAGGED turn's prompt and response")
+                .register(meters);
+        for (int i = 0; i < LOCK_STRIPES; i++) turnLocks[i] = new ReentrantLock();
+        this.scans = Collections.synchronizedMap(new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, TurnScans> eldest) {
+                return size() > maxCachedTurns;
+            }
+        });
     }
 
-    @Async
-@Transactional
-public void scoreTurn(UUID turnId) {
-    try {
-        PromptEvent e = promptRepo.findByTurnId(turnId).orElse(null);
-        if (e == null) return;
+    /**
+     * Re-reads the turn from the DB and scores prompt and response. Unlike {@link #score},
+     * failures are thrown, for callers that retry. acceptedAt, if known, feeds the lag metric.
+     */
+    public void scoreTurn(UUID turnId, Instant acceptedAt) {
+        scoreNow(ScoreRequest.reload(turnId, acceptedAt));
+    }
 
-        String prompt = e.getPrompt() == null ? "" : e.getPrompt();
-        String response = e.getResponseText() == null ? "" : e.getResponseText();
+    public void score(ScoreRequest req) {
+        try {
+            scoreNow(req);
+        } catch (Exception ex) {
+            // IMPORTANT: async failures often disappear silently otherwise
+            log.error("scoreTurn failed for turnId={}", req.turnId(), ex);
+        }
+    }
 
-        // If BOTH are empty, nothing to do
-        if (prompt.isBlank() && response.isBlank()) return;
+    private void scoreNow(ScoreRequest req) {
+        ReentrantLock lock = lockFor(req.turnId());
+        lock.lock();
+        try {
+            // looked up under the lock: an entry evicted meanwhile is simply a cache miss
+            scoreLocked(req, scans.computeIfAbsent(req.turnId(), k -> new TurnScans()));
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        RiskScorer.Result res = RiskScorer.score(prompt, response);
+    private ReentrantLock lockFor(UUID turnId) {
+        int h = turnId.hashCode();
+        return turnLocks[(h ^ (h >>> 16)) & (LOCK_STRIPES - 1)];
+    }
 
-        RiskScore rs = new RiskScore();
-        rs.setId(UUID.randomUUID());
-        rs.setTurnId(turnId);
-        rs.setScoredAt(Instant.now());
-        rs.setScore(res.score());
-        rs.setDetails(res.details());
-        riskRepo.save(rs);
+    private void scoreLocked(ScoreRequest req, TurnScans turn) {
+        UUID turnId = req.turnId();
 
-        // Update status based on score
-        if ("HIGH".equals(res.level())) {
-            e.setStatus("FLAGGED");
-            // Optional: redact prompt+response; at least redact response
-            e.setResponseText(redactResponse(response));
-        } else if ("MEDIUM".equals(res.level())) {
-            e.setStatus("REVIEW");
-        } else {
-            e.setStatus("CLEARED");
+        if (req.isReload()) {
+            PromptEvent e = promptRepo.findByTurnId(turnId).orElse(null);
+            if (e == null) return;
+            String response = e.getResponseText();
+
+            // If BOTH are empty, nothing to do
+            if (isBlank(e.getPrompt()) && isBlank(response)) return;
+
+            // a FLAGGED turn's text may have been redacted after hashing, so the hashes no longer describe it
+            boolean hashed = !"FLAGGED".equals(e.getStatus());
+            turn.deviceId = e.getDeviceId();
+            scanPrompt(turnId, turn, e.getPrompt(), hashed ? e.getPromptHash() : null, e.getPromptFindings());
+            PartScan r;
+            if (e.getResponseFindings() != null) {
+                r = PartScan.fromMap(e.getResponseFindings());
+                turn.responseRedacted = true;
+            } else {
+                r = scanCache.scan(response, hashed ? e.getResponseHash() : null);
+            }
+            if (!isBlank(response)) turn.responseScored = true;
+            persist(turnId, turn, e.getPrompt(), response, r, true, req.acceptedAt());
+            return;
+        }
+
+        if (req.deviceId() != null) turn.deviceId = req.deviceId();
+
+        if (req.response() == null) {
+            // prompt pass: the response pass already scored the full turn, don't regress it
+            if (turn.responseScored) return;
+            if (turn.prompt == null && reusePromptScore(req, turn)) return;
+        }
+
+        if (req.prompt() != null && turn.prompt == null) {
+            scanPrompt(turnId, turn, req.prompt(), req.promptHash(), null);
         }
-        promptRepo.save(e);
 
-    } catch (Exception ex) {
-        // IMPORTANT: async failures often disappear silently otherwise
-        System.err.println("[RiskService] scoreTurn failed for turnId=" + turnId + " err=" + ex.getMessage());
-        ex.printStackTrace();
+        if (req.response() == null) {
+            if (turn.prompt == PartScan.EMPTY) return;
+            persist(turnId, turn, req.prompt(), null, PartScan.EMPTY, false, req.acceptedAt());
+            return;
+        }
+
+        String prompt = req.prompt();
+        if (turn.prompt == null) {
+            // cache miss (evicted, restarted, or captured on another node): prompt side only
+            PromptText stored = promptRepo.findPromptTextByTurnId(turnId).orElse(null);
+            prompt = (stored == null) ? null : stored.getPrompt();
+            if (stored != null) turn.deviceId = stored.getDeviceId();
+            String hash = (stored == null || "FLAGGED".equals(stored.getStatus())) ? null : stored.getPromptHash();
+            String findings = (stored == null) ? null : stored.getPromptFindings();
+            scanPrompt(turnId, turn, prompt, hash, findings == null ? null : json.readValue(findings, Map.class));
+        }
+        PartScan r = scanCache.scan(req.response(), req.responseHash());
+        turn.responseScored = true;
+        persist(turnId, turn, prompt, req.response(), r, true, req.acceptedAt());
     }
-}
 
+    /*
+     * With scoring.scan-cache.db-fallback on, a prompt not in the scan cache may still
+     * have been scored before, e.g. on another node or before a restart. Its latest
+     * prompt-only score is copied instead of scanning. HIGH scores are not reused
+     * because redaction needs the spans. The turn's scan stays unset, so its response
+     * pass reloads and scans the prompt as on any other cache miss.
+     */
+    private boolean reusePromptScore(ScoreRequest req, TurnScans turn) {
+        String promptHash = req.promptHash();
+        if (!dbFallback || promptHash == null || scanCache.contains(promptHash)) return false;
+
+        RiskScore prior = riskRepo.findLatestPromptOnlyByPromptHash(promptHash, RiskScorer.VERSION,
+                rules.current().version()).orElse(null);
+        if (prior == null) return false;
+        Object level = prior.getDetails().get("level");
+        if (level == null || "HIGH".equals(level)) return false;
+
+        scanCache.recordFallbackHit();
+        save(req.turnId(), turn, new RiskScorer.Result(prior.getScore(), level.toString(), prior.getDetails(),
+                        prior.getRuleSetVersion()),
+                null, null, null, null, null, false, req.acceptedAt());
+        return true;
+    }
+
+    /*
+     * The prompt's findings, signature and near-duplicate signal always go together.
+     * A redacted prompt no longer shows its PII, so the findings stored with it are used
+     * instead of a scan; scoring it from its text would clear a FLAGGED turn.
+     */
+    private void scanPrompt(UUID turnId, TurnScans turn, String prompt, String hash, Map<String, ?> findings) {
+        if (findings != null) {
+            turn.prompt = PartScan.fromMap(findings);
+            turn.promptRedacted = true;
+        } else {
+            turn.prompt = scanCache.scan(prompt, hash);
+        }
+        turn.promptSig = nearDuplicates.fingerprint(prompt);
+        turn.promptDup = nearDuplicates.nearestFlagged(turnId, turn.promptSig);
+    }
 
-    private String redactResponse(String responseText) {
-        // Minimal redaction: replace detected strings with tags
-        Map<String, List<String>> pii = PiiDetector.find(responseText);
-        String out = responseText;
+    /*
+     * Scores the turn and saves it. A HIGH turn also gets its text redacted from the
+     * spans the scan already found. prompt is the text the prompt scan came from, or
+     * null when the pass does not hold it. wholeTurn is false for a prompt-only pass.
+     */
+    private void persist(UUID turnId, TurnScans turn, String prompt, String response, PartScan r,
+                         boolean wholeTurn, Instant acceptedAt) {
+        int[] responseSig = nearDuplicates.fingerprint(response);
+        NearDuplicate dup = NearDuplicates.closer(turn.promptDup, nearDuplicates.nearestFlagged(turnId, responseSig));
+        RiskScorer.Result res = RiskScorer.combine(rules.current(), turn.prompt, r, dup);
 
-        for (var entry : pii.entrySet()) {
-            String type = entry.getKey().toUpperCase();
-            for (String token : entry.getValue()) {
-                if (token != null && !token.isBlank()) {
-                    out = out.replace(token, "[REDACTED:" + type + "]");
-                }
+        String redactedPrompt = null;
+        String redactedResponse = null;
+        if ("HIGH".equals(res.level())) {
+            long t0 = System.nanoTime();
+            if (turn.prompt.hasPii() && !turn.promptRedacted) {
+                redactedPrompt = redactPrompt(turnId, turn.prompt, prompt);
             }
+            if (r.hasPii() && !turn.responseRedacted) redactedResponse = redactor.redact(response, r.matches());
+            redaction.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
         }
-        return out;
+        save(turnId, turn, res, redactedPrompt, redactedPrompt == null ? null : turn.prompt,
+                redactedResponse, redactedResponse == null ? null : r, responseSig, wholeTurn, acceptedAt);
+        if (redactedPrompt != null) turn.promptRedacted = true;
+        if (redactedResponse != null) turn.responseRedacted = true;
+    }
+
+    /*
+     * One transaction: the risk row, the turn's move in the rollups, its fingerprints,
+     * and a targeted status update, which also clears unscored_at when the whole turn was
+     * scored. Redacted text is written with the findings it was redacted for.
+     * Once committed the score goes out on the risk event stream with the status the
+     * turn actually ended up in.
+     */
+    private void save(UUID turnId, TurnScans turn, RiskScorer.Result res, String newPrompt, PartScan promptFindings,
+                      String newResponse, PartScan responseFindings, int[] responseSig, boolean wholeTurn,
+                      Instant acceptedAt) {
+        Instant scoredAt = Instant.now();
+        String status = txTemplate.execute(tx -> {
+            RiskScore rs = new RiskScore();
+            rs.setId(UUID.randomUUID());
+            rs.setTurnId(turnId);
+            rs.setScoredAt(scoredAt);
+            rs.setScore(res.score());
+            rs.setScorerVersion(RiskScorer.VERSION);
+            rs.setRuleSetVersion(res.ruleSet());
+            rs.setDetails(res.details());
+            riskRepo.save(rs);
+            rollups.record(turnId, res);
+            nearDuplicates.save(turnId, turn.promptSig, responseSig, "HIGH".equals(res.level()));
+
+            // Update status based on score
+            if ("HIGH".equals(res.level())) {
+                promptRepo.updateStatusAndTextByTurnId(turnId, "FLAGGED", newPrompt, findingsJson(promptFindings),
+                        newResponse, findingsJson(responseFindings), wholeTurn);
+                return "FLAGGED";
+            }
+            String next = "MEDIUM".equals(res.level()) ? "REVIEW" : "CLEARED";
+            if (promptRepo.updateStatusUnlessFlagged(turnId, next, wholeTurn) > 0) return next;
+            // no row updated: the turn stays FLAGGED from an earlier pass
+            if (wholeTurn) promptRepo.clearUnscored(turnId);
+            return "FLAGGED";
+        });
+        events.publish(turnId, turn.deviceId, res.score(), res.level(), status, scoredAt);
+
+        levels.computeIfAbsent(res.level(), level -> Counter.builder("scoring.results")
+                .description("Persisted risk scores by level")
+                .tag("level", level)
+                .register(meters)).increment();
+        // capture to committed score; deferred reloads have no capture time
+        if (acceptedAt != null) lag.record(Duration.between(acceptedAt, Instant.now()));
+    }
+
+    /*
+     * The cached scan's offsets only fit the text it came from; reload and rescan if that
+     * is gone. A reloaded prompt with findings was already redacted, e.g. by a re-score job.
+     */
+    private String redactPrompt(UUID turnId, PartScan scan, String prompt) {
+        if (prompt == null || prompt.length() != scan.length()) {
+            PromptText stored = promptRepo.findPromptTextByTurnId(turnId).orElse(null);
+            if (stored == null || stored.getPrompt() == null || stored.getPromptFindings() != null) return null;
+            prompt = stored.getPrompt();
+            if (prompt.length() != scan.length()) scan = RiskScorer.scan(rules.current(), prompt);
+        }
+        return scan.hasPii() ? redactor.redact(prompt, scan.matches()) : null;
+    }
+
+    private String findingsJson(PartScan scan) {
+        return scan == null ? null : json.writeValueAsString(scan.toMap());
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.isBlank();
     }
 }
@@ -0,0 +1,139 @@
+package com.intelligence.capture.service;
+
+import com.intelligence.capture.risk.PiiDetector;
+import com.intelligence.capture.risk.PiiMatch;
+import com.intelligence.capture.risk.RiskScorer;
+import com.intelligence.capture.risk.RiskScorer.PartScan;
+import com.intelligence.capture.risk.RuleSet;
+import com.intelligence.capture.risk.SecretDetector;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Part scans keyed by the SHA-256 content hash capture already stores, plus the scorer
+ * and rule set versions, so repeated prompts (templates, pasted boilerplate) are scanned
+ * once and a rule change takes effect without clearing anything. The
+ * hash is of the exact stored text, so cached match offsets stay valid for redaction.
+ * Callers must not pass the stored hash for text that has been redacted since.
+ * Least recently used entries are evicted past {@code scoring.scan-cache.max-entries}.
+ * Misses run the PII, secret and keyword passes separately timed ({@code scoring.scan{pass}}).
+ */
+@Component
+public class ScanCache {
+
+    private record Key(String hash, int version, String rules) {}
+
+    private final RiskRules rules;
+    private final Map<Key, PartScan> entries;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter fallbackHits;
+    private final Counter evictions;
+    private final Timer piiPass;
+    private final Timer secretPass;
+    private final Timer keywordPass;
+
+    public ScanCache(MeterRegistry meters, RiskRules rules,
+                     @Value("${scoring.scan-cache.max-entries:100000}") int maxEntries) {
+        this.rules = rules;
+        this.hits = counter(meters, "hit");
+        this.misses = counter(meters, "miss");
+        this.fallbackHits = counter(meters, "db-fallback");
+        this.evictions = Counter.builder("scoring.scan-cache.evictions")
+                .description("Scans dropped to stay within max-entries")
+                .register(meters);
+        this.entries = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PartScan> eldest) {
+                if (size() <= maxEntries) return false;
+                evictions.increment();
+                return true;
+            }
+        };
+        meters.gauge("scoring.scan-cache.size", this, ScanCache::size);
+        this.piiPass = passTimer(meters, "pii");
+        this.secretPass = passTimer(meters, "secrets");
+        this.keywordPass = passTimer(meters, "keywords");
+    }
+
+    /** Cached scan of {@code text} under the current rules, scanning on a miss. A null hash bypasses the cache. */
+    public PartScan scan(String text, String hash) {
+        if (text == null || text.isBlank()) return PartScan.EMPTY;
+        RuleSet ruleSet = rules.current();
+        if (hash == null) return timedScan(ruleSet, text);
+
+        Key key = new Key(hash, RiskScorer.VERSION, ruleSet.version());
+        PartScan cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+        }
+        // cheap guard against a caller passing the hash of some other text
+        if (cached != null && cached.length() == text.length()) {
+            hits.increment();
+            return cached;
+        }
+
+        // scan outside the lock; two threads missing on the same text both scan, last one wins
+        misses.increment();
+        PartScan scan = timedScan(ruleSet, text);
+        synchronized (entries) {
+            entries.put(key, scan);
+        }
+        return scan;
+    }
+
+    public boolean contains(String hash) {
+        synchronized (entries) {
+            return entries.containsKey(new Key(hash, RiskScorer.VERSION, rules.current().version()));
+        }
+    }
+
+    /** Counts a miss that was answered from a stored risk score instead of a scan. */
+    public void recordFallbackHit() {
+        fallbackHits.increment();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private PartScan timedScan(RuleSet ruleSet, String text) {
+        long t0 = System.nanoTime();
+        List<PiiMatch> pii = PiiDetector.scan(text);
+        long t1 = System.nanoTime();
+        List<PiiMatch> secrets = SecretDetector.scan(text);
+        long t2 = System.nanoTime();
+        List<String> keywords = ruleSet.keywords().find(text);
+        long t3 = System.nanoTime();
+        piiPass.record(t1 - t0, TimeUnit.NANOSECONDS);
+        secretPass.record(t2 - t1, TimeUnit.NANOSECONDS);
+        keywordPass.record(t3 - t2, TimeUnit.NANOSECONDS);
+        List<PiiMatch> matches = SecretDetector.merge(pii, secrets);
+        return new PartScan(matches, keywords, text.length());
+    }
+
+    private static Timer passTimer(MeterRegistry meters, String pass) {
+        return Timer.builder("scoring.scan")
+                .description("One detection pass over a prompt or response")
+                .tag("pass", pass)
+                .publishPercentileHistogram()
+                .register(meters);
+    }
+
+    private static Counter counter(MeterRegistry meters, String result) {
+        return Counter.builder("scoring.scan-cache.requests")
+                .description("Part scans looked up by content hash")
+                .tag("result", result)
+                .register(meters);
+    }
+}
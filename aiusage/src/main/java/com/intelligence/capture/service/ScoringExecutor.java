@@ -0,0 +1,219 @@
+package com.intelligence.capture.service;
+
+import com.intelligence.capture.repo.PromptEventRepository;
+import com.intelligence.capture.service.RiskService.ScoreRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link RiskService#score} on a dedicated, bounded pool. Submissions made
+ * inside a transaction are held until it commits so the worker can see the row.
+ *
+ * <p>When the queue is full, {@code scoring.executor.overflow} decides what happens:
+ * <ul>
+ *   <li>{@code caller-runs}: score on the submitting thread (slows ingest down)</li>
+ *   <li>{@code drop}: mark the turn unscored ({@code unscored_at}) for a later re-score</li>
+ *   <li>{@code defer}: park the turnId and resubmit it once the queue has room (the
+ *       text is reloaded then, so parked turns hold no payload); falls back to drop
+ *       when the parking lot is full as well</li>
+ * </ul>
+ * On shutdown queued work is drained; anything still pending after the timeout is
+ * marked unscored rather than silently lost. Marking leaves the capture status alone.
+ *
+ * <p>With {@code spring.threads.virtual.enabled} the workers are virtual threads. The
+ * pool still bounds how many turns score at once, and the queue and overflow policy work
+ * as before; max-size can go up to the JDBC pool size, since a waiting worker no
+ * longer ties up a platform thread.
+ */
+@Component
+public class ScoringExecutor implements SmartLifecycle {
+
+    public enum OverflowPolicy { CALLER_RUNS, DROP, DEFER }
+
+    private static final Logger log = LoggerFactory.getLogger(ScoringExecutor.class);
+
+    private final RiskService riskService;
+    private final PromptEventRepository promptRepo;
+    private final OverflowPolicy overflow;
+    private final Duration shutdownTimeout;
+
+    private final ThreadPoolExecutor pool;
+    private final ExecutorService executor; // pool wrapped with timing metrics
+    private final BlockingQueue<UUID> deferred;
+    private final Map<UUID, Integer> pending = new ConcurrentHashMap<>(); // turnId -> queued runs
+
+    private final Counter rejected;
+    private final Counter dropped;
+
+    private volatile boolean running;
+
+    public ScoringExecutor(RiskService riskService, PromptEventRepository promptRepo, MeterRegistry meters,
+                           @Value("${scoring.executor.core-size:4}") int coreSize,
+                           @Value("${scoring.executor.max-size:4}") int maxSize,
+                           @Value("${scoring.executor.queue-capacity:2000}") int queueCapacity,
+                           @Value("${scoring.executor.overflow:caller-runs}") OverflowPolicy overflow,
+                           @Value("${scoring.executor.defer-capacity:10000}") int deferCapacity,
+                           @Value("${scoring.executor.shutdown-timeout:30s}") Duration shutdownTimeout,
+                           @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.riskService = riskService;
+        this.promptRepo = promptRepo;
+        this.overflow = overflow;
+        this.shutdownTimeout = shutdownTimeout;
+
+        this.pool = new ThreadPoolExecutor(coreSize, Math.max(coreSize, maxSize), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                (virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon()).name("scoring-", 1).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.deferred = new LinkedBlockingQueue<>(deferCapacity);
+
+        // executor.* meters: queued, active, pool size, completed, plus
+        // executor.idle (time a task waited in the queue) and executor (run time)
+        this.executor = ExecutorServiceMetrics.monitor(meters, pool, "scoring");
+        meters.gauge("scoring.deferred", deferred, BlockingQueue::size);
+        meters.gauge("scoring.pending", pending, Map::size);
+        this.rejected = Counter.builder("scoring.rejected")
+                .description("Scoring submissions that found the queue full")
+                .tag("policy", overflow.name().toLowerCase())
+                .register(meters);
+        this.dropped = Counter.builder("scoring.dropped")
+                .description("Turns marked unscored instead of being scored")
+                .register(meters);
+    }
+
+    /** Schedules a turn for scoring, after the current transaction commits if there is one. */
+    public void submit(ScoreRequest req) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(req);
+                }
+            });
+        } else {
+            enqueue(req);
+        }
+    }
+
+    private void enqueue(ScoreRequest req) {
+        UUID turnId = req.turnId();
+        if (!running) {
+            markUnscored(List.of(turnId));
+            return;
+        }
+        if (tryExecute(req)) return;
+
+        rejected.increment();
+        switch (overflow) {
+            case CALLER_RUNS -> riskService.score(req);
+            case DEFER -> {
+                if (!deferred.offer(turnId)) markUnscored(List.of(turnId));
+            }
+            case DROP -> markUnscored(List.of(turnId));
+        }
+    }
+
+    private boolean tryExecute(ScoreRequest req) {
+        UUID turnId = req.turnId();
+        pending.merge(turnId, 1, Integer::sum);
+        try {
+            executor.execute(() -> {
+                try {
+                    riskService.score(req);
+                } finally {
+                    release(turnId);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException ex) {
+            release(turnId);
+            return false;
+        }
+    }
+
+    private void release(UUID turnId) {
+        pending.computeIfPresent(turnId, (k, n) -> n == 1 ? null : n - 1);
+    }
+
+    // Moves parked turns back into the pool while it has room.
+    @Scheduled(fixedDelayString = "${scoring.executor.defer-retry:5s}")
+    void resubmitDeferred() {
+        if (!running) return;
+        UUID turnId;
+        while (pool.getQueue().remainingCapacity() > 0 && (turnId = deferred.poll()) != null) {
+            if (!tryExecute(ScoreRequest.reload(turnId))) {
+                if (!deferred.offer(turnId)) markUnscored(List.of(turnId));
+                return;
+            }
+        }
+    }
+
+    private void markUnscored(List<UUID> turnIds) {
+        if (turnIds.isEmpty()) return;
+        try {
+            promptRepo.markUnscored(turnIds, Instant.now());
+            dropped.increment(turnIds.size());
+        } catch (Exception ex) {
+            log.error("Could not mark {} turns unscored: {}", turnIds.size(), ex.getMessage());
+        }
+    }
+
+    /** Live turns waiting to be scored: queued plus parked. Bulk work backs off while this is high. */
+    public int backlog() {
+        return pool.getQueue().size() + deferred.size();
+    }
+
+    // ---------- lifecycle ----------
+
+    @Override
+    public void start() { running = true; }
+
+    @Override
+    public void stop() {
+        running = false;
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Scoring pool did not drain within {}; {} turns left", shutdownTimeout, pending.size());
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+        }
+
+        List<UUID> leftover = new ArrayList<>(pending.keySet());
+        deferred.drainTo(leftover);
+        markUnscored(leftover);
+    }
+
+    @Override
+    public boolean isRunning() { return running; }
+
+    // Stop after the web server and the ingest writer, both of which submit work here.
+    @Override
+    public int getPhase() { return SmartLifecycle.DEFAULT_PHASE - 8192; }
+}
@@ -0,0 +1,287 @@
+package com.intelligence.capture.service;
+
+import com.intelligence.capture.repo.PromptEventRepository;
+import com.intelligence.capture.repo.ScoringJobRepository;
+import com.intelligence.capture.repo.ScoringJobRepository.Claimed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Scores turns from the durable scoring_jobs queue (scoring.queue=outbox, see V12).
+ * Capture writes a job in the same transaction as the turn, so a restart, a crash or a
+ * busy node leaves turns waiting, never unscored.
+ *
+ * <p>Every node runs {@code scoring.jobs.workers} threads. Each claims up to
+ * {@code batch-size} due jobs with FOR UPDATE SKIP LOCKED, scores them one by one from
+ * the stored text, and completes the scored ones with one statement. Throughput grows
+ * with the number of nodes; no broker is involved. A failed job is retried after
+ * {@code backoff}, doubling up to {@code max-backoff}. After {@code max-attempts} it
+ * stays in scoring_jobs as DEAD with its last error, and the turn gets unscored_at (its
+ * status is left alone) so a re-score job with status=UNSCORED can pick it up later. A worker that dies mid-batch
+ * holds its jobs until {@code lease} runs out, then another worker takes them over.
+ *
+ * <p>Idle workers poll every {@code poll-interval}. Captures on this node wake one at
+ * once, so local turns are not held up by the poll. With
+ * {@code spring.threads.virtual.enabled} the workers are virtual threads.
+ */
+@Component
+@ConditionalOnProperty(name = "scoring.queue", havingValue = "outbox", matchIfMissing = true)
+public class ScoringJobWorker implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ScoringJobWorker.class);
+
+    private static final int MAX_ERROR_CHARS = 2000;
+
+    private final ScoringJobRepository jobs;
+    private final RiskService riskService;
+    private final PromptEventRepository promptRepo;
+
+    private final int workers;
+    private final int batchSize;
+    private final Duration pollInterval;
+    private final Duration lease;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final Duration maxBackoff;
+    private final Duration shutdownTimeout;
+
+    private final String owner;
+    private final boolean virtualThreads;
+    // not a monitor: Object.wait would pin a virtual worker's carrier while idle
+    private final ReentrantLock signalLock = new ReentrantLock();
+    private final Condition signal = signalLock.newCondition();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    private final Counter completed;
+    private final Counter retried;
+    private final Counter dead;
+    private final Timer batchTimer;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong runningJobs = new AtomicLong();
+    private final AtomicLong deadJobs = new AtomicLong();
+    private final AtomicLong oldestSeconds = new AtomicLong();
+
+    public ScoringJobWorker(ScoringJobRepository jobs, RiskService riskService, PromptEventRepository promptRepo,
+                            MeterRegistry meters,
+                            @Value("${scoring.jobs.workers:4}") int workers,
+                            @Value("${scoring.jobs.batch-size:20}") int batchSize,
+                            @Value("${scoring.jobs.poll-interval:500ms}") Duration pollInterval,
+                            @Value("${scoring.jobs.lease:2m}") Duration lease,
+                            @Value("${scoring.jobs.max-attempts:5}") int maxAttempts,
+                            @Value("${scoring.jobs.backoff:10s}") Duration backoff,
+                            @Value("${scoring.jobs.max-backoff:10m}") Duration maxBackoff,
+                            @Value("${scoring.executor.shutdown-timeout:30s}") Duration shutdownTimeout,
+                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.jobs = jobs;
+        this.riskService = riskService;
+        this.promptRepo = promptRepo;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+        this.lease = lease;
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+        this.maxBackoff = maxBackoff;
+        this.shutdownTimeout = shutdownTimeout;
+        this.virtualThreads = virtualThreads;
+        this.owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+
+        this.completed = Counter.builder("scoring.jobs")
+                .description("Scoring jobs finished, by outcome")
+                .tag("result", "completed")
+                .register(meters);
+        this.retried = Counter.builder("scoring.jobs")
+                .description("Scoring jobs finished, by outcome")
+                .tag("result", "retried")
+                .register(meters);
+        this.dead = Counter.builder("scoring.jobs")
+                .description("Scoring jobs finished, by outcome")
+                .tag("result", "dead")
+                .register(meters);
+        this.batchTimer = Timer.builder("scoring.jobs.batch")
+                .description("Scoring and completing one claimed batch")
+                .register(meters);
+        // refreshed every scoring.jobs.stats-interval, not per scrape
+        meters.gauge("scoring.jobs.queued", Tags.of("state", "pending"), pending);
+        meters.gauge("scoring.jobs.queued", Tags.of("state", "running"), runningJobs);
+        meters.gauge("scoring.jobs.queued", Tags.of("state", "dead"), deadJobs);
+        meters.gauge("scoring.jobs.oldest.seconds", oldestSeconds);
+    }
+
+    /** Wakes an idle worker; capture calls this once its jobs are committed. */
+    public void wake() {
+        signalLock.lock();
+        try {
+            signal.signal();
+        } finally {
+            signalLock.unlock();
+        }
+    }
+
+    /** PENDING jobs across all nodes, as of the last stats refresh. Bulk work backs off while this is high. */
+    public long backlog() {
+        return pending.get();
+    }
+
+    @Scheduled(fixedDelayString = "${scoring.jobs.stats-interval:15s}")
+    void refreshStats() {
+        try {
+            Map<String, Long> counts = jobs.countByState();
+            pending.set(counts.getOrDefault(ScoringJobRepository.PENDING, 0L));
+            runningJobs.set(counts.getOrDefault(ScoringJobRepository.RUNNING, 0L));
+            deadJobs.set(counts.getOrDefault(ScoringJobRepository.DEAD, 0L));
+            Instant oldest = jobs.oldestPending();
+            oldestSeconds.set(oldest == null ? 0 : Math.max(0, Duration.between(oldest, Instant.now()).toSeconds()));
+        } catch (Exception ex) {
+            log.warn("Could not read scoring job stats: {}", ex.toString());
+        }
+    }
+
+    // ---------- work ----------
+
+    private void workLoop() {
+        while (running) {
+            List<Claimed> batch;
+            try {
+                batch = jobs.claim(owner, batchSize, lease);
+            } catch (Exception ex) {
+                log.warn("Could not claim scoring jobs: {}", ex.toString());
+                idle();
+                continue;
+            }
+            if (batch.isEmpty()) {
+                idle();
+                continue;
+            }
+            runBatch(batch);
+        }
+    }
+
+    private void runBatch(List<Claimed> batch) {
+        long t0 = System.nanoTime();
+        List<Claimed> done = new ArrayList<>(batch.size());
+        for (Claimed job : batch) {
+            if (!running) break; // the rest is released on stop
+            try {
+                riskService.scoreTurn(job.turnId(), job.enqueuedAt());
+                done.add(job);
+            } catch (Exception ex) {
+                failed(job, ex);
+            }
+        }
+        try {
+            jobs.complete(owner, done);
+            completed.increment(done.size());
+        } catch (Exception ex) {
+            // the jobs run again once their lease is up; a turn scored twice just has two risk_scores rows
+            log.warn("Could not complete {} scoring jobs: {}", done.size(), ex.toString());
+        }
+        batchTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+    }
+
+    private void failed(Claimed job, Exception cause) {
+        String error = cause.toString();
+        if (error.length() > MAX_ERROR_CHARS) error = error.substring(0, MAX_ERROR_CHARS);
+        try {
+            String state = jobs.fail(owner, job, maxAttempts, backoff(backoff, maxBackoff, job.attempts()), error);
+            if (ScoringJobRepository.DEAD.equals(state)) {
+                dead.increment();
+                promptRepo.markUnscored(List.of(job.turnId()), Instant.now());
+                log.error("Scoring turnId={} failed {} times, giving up", job.turnId(), job.attempts(), cause);
+            } else if (state != null) {
+                retried.increment();
+                log.warn("Scoring turnId={} failed (attempt {}), will retry: {}", job.turnId(), job.attempts(), error);
+            }
+        } catch (Exception ex) {
+            log.error("Could not record failure of scoring job turnId={}: {}", job.turnId(), ex.toString());
+        }
+    }
+
+    /** Wait before retry number attempts: base, doubling per attempt, at most max. */
+    static Duration backoff(Duration base, Duration max, int attempts) {
+        int doublings = Math.min(Math.max(attempts - 1, 0), 30);
+        Duration d = base.multipliedBy(1L << doublings);
+        return d.compareTo(max) > 0 ? max : d;
+    }
+
+    private void idle() {
+        signalLock.lock();
+        try {
+            if (!running) return;
+            signal.await(pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            running = false;
+        } finally {
+            signalLock.unlock();
+        }
+    }
+
+    // ---------- lifecycle ----------
+
+    @Override
+    public void start() {
+        running = true;
+        Thread.Builder builder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+        for (int i = 1; i <= workers; i++) {
+            threads.add(builder.name("scoring-job-" + i).start(this::workLoop));
+        }
+        log.info("{} scoring job workers started as {}{}", workers, owner, virtualThreads ? " (virtual threads)" : "");
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        signalLock.lock();
+        try {
+            signal.signalAll();
+        } finally {
+            signalLock.unlock();
+        }
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        for (Thread t : threads) {
+            try {
+                t.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        threads.clear();
+        try {
+            int released = jobs.release(owner);
+            if (released > 0) log.info("Released {} claimed scoring jobs for other nodes", released);
+        } catch (Exception ex) {
+            log.warn("Could not release claimed scoring jobs; they are taken over after {}: {}", lease, ex.toString());
+        }
+    }
+
+    @Override
+    public boolean isRunning() { return running; }
+
+    // Stop after the web server and the ingest writer, both of which add jobs.
+    @Override
+    public int getPhase() { return SmartLifecycle.DEFAULT_PHASE - 8192; }
+}
@@ -0,0 +1,147 @@
+package com.intelligence.capture.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shows where threads wait instead of work, to compare the platform and virtual thread
+ * modes ({@code spring.threads.virtual.enabled}).
+ *
+ * <p>With virtual threads on, a JFR stream records every {@code jdk.VirtualThreadPinned}
+ * event of at least {@code diagnostics.pinned-threshold}: a virtual thread that blocked
+ * while holding a monitor or inside native code, and so kept its carrier thread from
+ * running anything else. Each one feeds {@code jvm.threads.virtual.pinned}; the first
+ * pin from each code location is logged with its stack.
+ *
+ * <p>In both modes, every {@code diagnostics.pool-wait-interval} the JDBC pools are
+ * checked for threads waiting for a connection. With virtual threads the pool, not the
+ * thread count, bounds how much DB work runs at once, so this is where load queues up.
+ * Hikari's own {@code hikaricp.connections.pending} and {@code .acquire} meters give
+ * the numbers; this adds a log line while it happens.
+ */
+@Component
+public class ThreadDiagnostics implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ThreadDiagnostics.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 12;
+    private static final int MAX_LOGGED_SITES = 200;
+    private static final Duration POOL_WAIT_LOG_INTERVAL = Duration.ofMinutes(1);
+
+    private final ObjectProvider<HikariDataSource> pools;
+    private final boolean virtualThreads;
+    private final Duration pinnedThreshold;
+
+    private final Timer pinned;
+    private final Counter poolWaits;
+    private final Map<String, Boolean> loggedSites = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastPoolWaitLog = new ConcurrentHashMap<>();
+
+    private volatile RecordingStream stream;
+
+    public ThreadDiagnostics(ObjectProvider<HikariDataSource> pools, MeterRegistry meters,
+                             @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                             @Value("${diagnostics.pinned-threshold:20ms}") Duration pinnedThreshold) {
+        this.pools = pools;
+        this.virtualThreads = virtualThreads;
+        this.pinnedThreshold = pinnedThreshold;
+        this.pinned = Timer.builder("jvm.threads.virtual.pinned")
+                .description("Virtual threads that blocked while pinned to their carrier")
+                .register(meters);
+        this.poolWaits = Counter.builder("diagnostics.pool.waits")
+                .description("Pool checks that found threads waiting for a JDBC connection")
+                .register(meters);
+    }
+
+    @Scheduled(fixedDelayString = "${diagnostics.pool-wait-interval:10s}")
+    void checkPools() {
+        pools.orderedStream().forEach(ds -> {
+            HikariPoolMXBean pool = ds.getHikariPoolMXBean();
+            if (pool == null) return; // not started yet
+            int waiting = pool.getThreadsAwaitingConnection();
+            if (waiting == 0) return;
+            poolWaits.increment();
+            long now = System.nanoTime();
+            Long last = lastPoolWaitLog.get(ds.getPoolName());
+            if (last != null && now - last < POOL_WAIT_LOG_INTERVAL.toNanos()) return;
+            lastPoolWaitLog.put(ds.getPoolName(), now);
+            log.warn("{} threads waiting for a connection from pool {} ({} of {} in use){}", waiting,
+                    ds.getPoolName(), pool.getActiveConnections(), ds.getMaximumPoolSize(),
+                    virtualThreads ? "; with virtual threads the pool size is the limit on concurrent DB work" : "");
+        });
+    }
+
+    private void onPinned(RecordedEvent e) {
+        pinned.record(e.getDuration());
+        List<RecordedFrame> frames = e.getStackTrace() == null ? List.of() : e.getStackTrace().getFrames();
+        String site = frames.isEmpty() ? "unknown" : frame(frames.get(0));
+        if (loggedSites.size() < MAX_LOGGED_SITES && loggedSites.putIfAbsent(site, Boolean.TRUE) == null) {
+            log.warn("Virtual thread {} pinned its carrier for {} ms at:{}", e.getThread() == null ? "?" : e.getThread().getJavaName(),
+                    e.getDuration().toMillis(), stack(e.getStackTrace()));
+        }
+    }
+
+    // ---------- helpers ----------
+
+    private static String stack(RecordedStackTrace trace) {
+        if (trace == null) return " (no stack)";
+        StringBuilder sb = new StringBuilder();
+        List<RecordedFrame> frames = trace.getFrames();
+        for (int i = 0; i < Math.min(frames.size(), LOGGED_FRAMES); i++) {
+            sb.append("\n\tat ").append(frame(frames.get(i)));
+        }
+        return sb.toString();
+    }
+
+    private static String frame(RecordedFrame f) {
+        return f.getMethod().getType().getName() + "." + f.getMethod().getName() + ":" + f.getLineNumber();
+    }
+
+    // ---------- lifecycle ----------
+
+    @Override
+    public void start() {
+        if (!virtualThreads) return;
+        try {
+            RecordingStream rs = new RecordingStream();
+            rs.enable(PINNED_EVENT).withThreshold(pinnedThreshold).withStackTrace();
+            rs.onEvent(PINNED_EVENT, this::onPinned);
+            rs.startAsync();
+            stream = rs;
+            log.info("Recording virtual thread pinning of {} or more", pinnedThreshold);
+        } catch (RuntimeException ex) {
+            // JFR can be unavailable (some minimal runtimes); the app runs without the diagnostics
+            log.warn("Could not start JFR pinning diagnostics: {}", ex.toString());
+        }
+    }
+
+    @Override
+    public void stop() {
+        RecordingStream rs = stream;
+        stream = null;
+        if (rs != null) rs.close();
+    }
+
+    @Override
+    public boolean isRunning() { return stream != null; }
+}
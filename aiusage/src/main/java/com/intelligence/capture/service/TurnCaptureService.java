@@ -1,44 +1,302 @@
 package com.intelligence.capture.service;
 
+import com.intelligence.capture.dto.CaptureBatchAck;
+import com.intelligence.capture.dto.CaptureEvent;
 import com.intelligence.capture.dto.CapturePromptRequest;
 import com.intelligence.capture.dto.CaptureResponseRequest;
 import com.intelligence.capture.model.PromptEvent;
-import com.intelligence.capture.repo.PromptEventRepository;
+import com.intelligence.capture.repo.PromptEventJdbcRepository;
+import com.intelligence.capture.repo.PromptEventJdbcRepository.TurnState;
+import com.intelligence.capture.repo.PromptEventJdbcRepository.TurnWrite;
+import com.intelligence.capture.repo.ScoringJobRepository;
+import com.intelligence.capture.service.RiskService.ScoreRequest;
+import io.micrometer.core.instrument.Timer;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
-
+import java.util.function.Supplier;
+
+/**
+ * Capture write path. Turns that need scoring are handed over per {@code scoring.queue}:
+ * {@code outbox} (default) writes a scoring_jobs row in the capture's own transaction for
+ * {@link ScoringJobWorker}; {@code memory} submits to this node's {@link ScoringExecutor},
+ * which is faster but loses what is queued when the process stops.
+ */
 @Service
 public class TurnCaptureService {
 
     public static final String STATUS_PROMPT_ONLY = "PROMPT_ONLY";
     public static final String STATUS_COMPLETED = "COMPLETED";
 
-    private final PromptEventRepository repo;
-    private final RiskService riskService;
-    
+    public enum ScoringQueue { OUTBOX, MEMORY }
+
+    private static final String RESULT_UNKNOWN = "unknown";
+
+    private final PromptEventJdbcRepository jdbcRepo;
+    private final ScoringExecutor scoringExecutor;
+    private final ScoringJobRepository scoringJobs;
+    private final ScoringJobWorker jobWorker; // null unless scoring.queue=outbox
+    private final boolean outbox;
+    private final TransactionTemplate txTemplate;
+    private final Validator validator;
+    private final CaptureMetrics metrics;
+    private final Duration maxClockSkew;
+
+    public TurnCaptureService(PromptEventJdbcRepository jdbcRepo, ScoringExecutor scoringExecutor,
+                              ScoringJobRepository scoringJobs, ObjectProvider<ScoringJobWorker> jobWorker,
+                              TransactionTemplate txTemplate, Validator validator, CaptureMetrics metrics,
+                              @Value("${scoring.queue:outbox}") ScoringQueue queue,
+                              @Value("${capture.max-clock-skew:5m}") Duration maxClockSkew) {
+        this.jdbcRepo = jdbcRepo;
+        this.scoringExecutor = scoringExecutor;
+        this.scoringJobs = scoringJobs;
+        this.jobWorker = jobWorker.getIfAvailable();
+        this.outbox = queue == ScoringQueue.OUTBOX;
+        this.metrics = metrics;
+        this.txTemplate = txTemplate;
+        this.validator = validator;
+        this.maxClockSkew = maxClockSkew;
+    }
+
+    /**
+     * One INSERT ... ON CONFLICT round trip. A retry of the same turnId gets the stored
+     * row back instead of a duplicate-key error, and is not scored again.
+     */
+    public TurnState capturePrompt(CapturePromptRequest req) {
+        Timer.Sample sample = metrics.start();
+        UUID turnId = parseUuid(req.turnId);
 
-    public TurnCaptureService(PromptEventRepository repo, RiskService riskService) {
-        this.repo = repo;
-        this.riskService = riskService;
+        PromptEvent e = newPromptEvent(req, turnId);
+        TurnWrite w = withScoringJob(() -> jdbcRepo.upsertPrompt(e));
+        if (w.applied()) dispatch(() -> ScoreRequest.forPrompt(e)); // score prompt immediately
+
+        metrics.stop(sample, CaptureMetrics.PROMPT);
+        metrics.result(CaptureMetrics.PROMPT, w.applied() ? CaptureBatchAck.CREATED : CaptureBatchAck.DUPLICATE);
+        if (w.applied()) metrics.payload(CaptureMetrics.PROMPT, e.getPromptLength());
+        return w.state();
     }
 
-    @Transactional
-    public PromptEvent capturePrompt(CapturePromptRequest req) {
+    /**
+     * One guarded UPDATE round trip; the prompt row is never loaded. A response that was
+     * already captured is left as is (idempotent retry).
+     */
+    public TurnState captureResponse(CaptureResponseRequest req) {
+        Timer.Sample sample = metrics.start();
         UUID turnId = parseUuid(req.turnId);
 
-        // Idempotency: if extension retries, return existing row
-        Optional<PromptEvent> existing = repo.findByTurnId(turnId);
-        if (existing.isPresent()) return existing.get();
+        PromptEvent e = new PromptEvent();
+        e.setTurnId(turnId);
+        applyResponse(e, req);
+
+        TurnWrite w = withScoringJob(() -> jdbcRepo.updateResponse(e).orElse(null));
+        metrics.stop(sample, CaptureMetrics.RESPONSE);
+        if (w == null) {
+            metrics.result(CaptureMetrics.RESPONSE, RESULT_UNKNOWN);
+            throw new IllegalArgumentException("Unknown turnId: " + turnId);
+        }
+
+        // Kick off Phase 3 async risk scoring
+        if (w.applied()) dispatch(() -> ScoreRequest.forResponse(e));
+
+        metrics.result(CaptureMetrics.RESPONSE, w.applied() ? CaptureBatchAck.UPDATED : CaptureBatchAck.DUPLICATE);
+        if (w.applied()) metrics.payload(CaptureMetrics.RESPONSE, e.getResponseLength());
+        return w.state();
+    }
+
+    /**
+     * Captures a mixed batch of prompt and response events with at most four statements:
+     * one multi-row insert for prompts, one multi-row update for responses, and a state
+     * lookup for each when some items turn out to be retries. Acks come back in request
+     * order; an invalid item is rejected on its own without failing the rest.
+     */
+    public List<CaptureBatchAck> captureBatch(List<CaptureEvent> items) {
+        Timer.Sample sample = metrics.start();
+        CaptureBatchAck[] acks = new CaptureBatchAck[items.size()];
+        Map<UUID, PromptEvent> newPrompts = new LinkedHashMap<>();
+        Map<UUID, PromptEvent> newResponses = new LinkedHashMap<>();
+
+        txTemplate.executeWithoutResult(tx -> {
+            writeBatch(items, acks, newPrompts, newResponses);
+            if (outbox) scoringJobs.enqueue(scoredTurns(newPrompts, newResponses));
+        });
+
+        if (!outbox) {
+            // a turn whose prompt came in the same batch is scored once, with both parts in hand
+            for (UUID turnId : scoredTurns(newPrompts, newResponses)) {
+                PromptEvent p = newPrompts.get(turnId);
+                PromptEvent r = newResponses.get(turnId);
+                scoringExecutor.submit(p == null ? ScoreRequest.forResponse(r)
+                        : r == null ? ScoreRequest.forPrompt(p)
+                        : ScoreRequest.forTurn(p, r));
+            }
+        } else if (jobWorker != null && !(newPrompts.isEmpty() && newResponses.isEmpty())) {
+            jobWorker.wake();
+        }
+        metrics.stop(sample, CaptureMetrics.BATCH);
+        for (CaptureBatchAck ack : acks) {
+            metrics.result(ack.type() == null ? RESULT_UNKNOWN : ack.type(), ack.result());
+        }
+        for (PromptEvent p : newPrompts.values()) metrics.payload(CaptureMetrics.PROMPT, p.getPromptLength());
+        for (PromptEvent r : newResponses.values()) metrics.payload(CaptureMetrics.RESPONSE, r.getResponseLength());
+        return Arrays.asList(acks);
+    }
+
+    /*
+     * Fills newPrompts and newResponses with the parts this batch actually wrote, by
+     * turnId; retries and rejected items are only acked.
+     */
+    private void writeBatch(List<CaptureEvent> items, CaptureBatchAck[] acks,
+                            Map<UUID, PromptEvent> newPrompts, Map<UUID, PromptEvent> newResponses) {
+        // first occurrence of a turnId wins; later ones in the same batch are retries
+        Map<UUID, PromptEvent> prompts = new LinkedHashMap<>();
+        Map<UUID, PromptEvent> responses = new LinkedHashMap<>();
+        Map<Integer, UUID> promptItems = new LinkedHashMap<>();
+        Map<Integer, UUID> responseItems = new LinkedHashMap<>();
+
+        for (int i = 0; i < items.size(); i++) {
+            CaptureEvent item = items.get(i);
+            String type = batchType(item);
+            UUID turnId = null;
+            try {
+                String violation = firstViolation(item);
+                if (violation != null) throw new IllegalArgumentException(violation);
+                turnId = parseUuid(item.turnId());
+
+                if (item instanceof CapturePromptRequest p) {
+                    prompts.putIfAbsent(turnId, newPromptEvent(p, turnId));
+                    promptItems.put(i, turnId);
+                } else if (item instanceof CaptureResponseRequest r) {
+                    PromptEvent e = new PromptEvent();
+                    e.setTurnId(turnId);
+                    applyResponse(e, r);
+                    responses.putIfAbsent(turnId, e);
+                    responseItems.put(i, turnId);
+                }
+            } catch (IllegalArgumentException ex) {
+                acks[i] = CaptureBatchAck.rejected(i, type, turnId, ex.getMessage());
+            }
+        }
+
+        // ---- prompts: insert new, look up the ones that already existed ----
+        Map<UUID, TurnState> inserted = byTurnId(jdbcRepo.insertPrompts(new ArrayList<>(prompts.values())));
+        for (UUID turnId : inserted.keySet()) newPrompts.put(turnId, prompts.get(turnId));
+        Map<UUID, TurnState> existing = byTurnId(jdbcRepo.findStates(missing(prompts.keySet(), inserted)));
+
+        Set<UUID> created = new HashSet<>();
+        for (var entry : promptItems.entrySet()) {
+            UUID turnId = entry.getValue();
+            TurnState st = inserted.get(turnId);
+            boolean isNew = st != null && created.add(turnId);
+            if (st == null) st = existing.get(turnId);
+            if (st == null) {
+                // conflicted on insert but gone by the time we looked: let the client retry
+                acks[entry.getKey()] = CaptureBatchAck.rejected(entry.getKey(), "prompt", turnId, "Concurrent delete, retry");
+                continue;
+            }
+            acks[entry.getKey()] = new CaptureBatchAck(entry.getKey(), "prompt", turnId, st.id(), st.status(),
+                    st.capturedAt(), isNew ? CaptureBatchAck.CREATED : CaptureBatchAck.DUPLICATE, null);
+        }
+
+        // ---- responses: update in place, then tell retries apart from unknown turns ----
+        Map<UUID, TurnState> updated = byTurnId(jdbcRepo.updateResponses(new ArrayList<>(responses.values())));
+        for (UUID turnId : updated.keySet()) newResponses.put(turnId, responses.get(turnId));
+        Map<UUID, TurnState> unchanged = byTurnId(jdbcRepo.findStates(missing(responses.keySet(), updated)));
+
+        Set<UUID> applied = new HashSet<>();
+        for (var entry : responseItems.entrySet()) {
+            int i = entry.getKey();
+            UUID turnId = entry.getValue();
+            TurnState st = updated.get(turnId);
+            boolean isNew = st != null && applied.add(turnId);
+            if (st == null) st = unchanged.get(turnId);
+            if (st == null) {
+                acks[i] = CaptureBatchAck.rejected(i, "response", turnId, "Unknown turnId: " + turnId);
+                continue;
+            }
+            acks[i] = new CaptureBatchAck(i, "response", turnId, st.id(), st.status(),
+                    st.responseCapturedAt(), isNew ? CaptureBatchAck.UPDATED : CaptureBatchAck.DUPLICATE, null);
+        }
+    }
+
+    /*
+     * Outbox mode: runs a single-turn write in a transaction that also queues its scoring
+     * job when the write applied, so the turn and its job commit together or not at all.
+     */
+    private TurnWrite withScoringJob(Supplier<TurnWrite> write) {
+        if (!outbox) return write.get();
+        return txTemplate.execute(tx -> {
+            TurnWrite w = write.get();
+            if (w != null && w.applied()) scoringJobs.enqueue(List.of(w.state().turnId()));
+            return w;
+        });
+    }
+
+    /*
+     * After commit: the job is already queued in outbox mode and the worker reloads the
+     * turn from it, so only nudge a local worker; the request is built for memory mode only.
+     */
+    private void dispatch(Supplier<ScoreRequest> req) {
+        if (!outbox) {
+            scoringExecutor.submit(req.get());
+        } else if (jobWorker != null) {
+            jobWorker.wake();
+        }
+    }
+
+    private static Set<UUID> scoredTurns(Map<UUID, PromptEvent> newPrompts, Map<UUID, PromptEvent> newResponses) {
+        Set<UUID> out = new LinkedHashSet<>(newPrompts.keySet());
+        out.addAll(newResponses.keySet());
+        return out;
+    }
+
+    private String batchType(CaptureEvent item) {
+        if (item instanceof CapturePromptRequest) return "prompt";
+        if (item instanceof CaptureResponseRequest) return "response";
+        return null;
+    }
+
+    private String firstViolation(CaptureEvent item) {
+        if (item == null) return "Missing item";
+        Set<ConstraintViolation<CaptureEvent>> violations = validator.validate(item);
+        if (violations.isEmpty()) return null;
+        ConstraintViolation<CaptureEvent> v = violations.iterator().next();
+        return v.getPropertyPath() + " " + v.getMessage();
+    }
+
+    private static Map<UUID, TurnState> byTurnId(List<TurnState> states) {
+        Map<UUID, TurnState> out = new HashMap<>();
+        for (TurnState st : states) out.put(st.turnId(), st);
+        return out;
+    }
+
+    private static List<UUID> missing(Set<UUID> wanted, Map<UUID, TurnState> found) {
+        List<UUID> out = new ArrayList<>();
+        for (UUID id : wanted) if (!found.containsKey(id)) out.add(id);
+        return out;
+    }
 
+    // ---------- row builders (shared by single and batch capture) ----------
+
+    private PromptEvent newPromptEvent(CapturePromptRequest req, UUID turnId) {
         String prompt = req.prompt.trim();
 
         PromptEvent e = new PromptEvent();
@@ -46,7 +304,7 @@ public class TurnCaptureService {
         e.setTurnId(turnId);
 
         e.setPrompt(prompt);
-        e.setCapturedAt(parseInstantOrNow(req.capturedAt));
+        setCapturedAt(e, req.capturedAt);
 
         e.setPageUrl(nullIfBlank(req.pageUrl));
         e.setUserAgent(nullIfBlank(req.userAgent));
@@ -69,26 +327,10 @@ public class TurnCaptureService {
         e.setResponseMetadata(new HashMap<>());
 
         e.setCreatedAt(Instant.now());
-        
-        PromptEvent saved = repo.save(e);
-riskService.scoreTurn(saved.getTurnId()); // score prompt immediately
-return saved;
-
-        //return repo.save(e);
+        return e;
     }
 
-    @Transactional
-    public PromptEvent captureResponse(CaptureResponseRequest req) {
-        UUID turnId = parseUuid(req.turnId);
-
-        PromptEvent e = repo.findByTurnId(turnId)
-                .orElseThrow(() -> new IllegalArgumentException("Unknown turnId: " + turnId));
-
-        // Idempotency: if response already captured, don’t overwrite
-        if (STATUS_COMPLETED.equals(e.getStatus()) && e.getResponseText() != null && !e.getResponseText().isBlank()) {
-            return e;
-        }
-
+    private void applyResponse(PromptEvent e, CaptureResponseRequest req) {
         String response = req.responseText.trim();
 
         e.setResponseText(response);
@@ -103,13 +345,6 @@ return saved;
         e.setResponseMetadata(rmeta); // NOT NULL
 
         e.setStatus(STATUS_COMPLETED);
-
-        PromptEvent saved = repo.save(e);
-
-        // Kick off Phase 3 async risk scoring
-        riskService.scoreTurn(saved.getTurnId());
-
-        return saved;
     }
 
     // ---------- helpers ----------
@@ -127,9 +362,37 @@ return saved;
         return (s.equals("enter") || s.equals("button")) ? s : "unknown";
     }
 
+    /*
+     * captured_at picks the partition, so a client clock far off must not decide it: a
+     * value outside maxClockSkew of the server clock is clamped to that window and kept
+     * as client_captured_at.
+     */
+    private void setCapturedAt(PromptEvent e, String iso) {
+        Instant now = Instant.now();
+        Instant client = parseInstantOrNull(iso);
+        if (client == null) {
+            e.setCapturedAt(now);
+            return;
+        }
+        Instant earliest = now.minus(maxClockSkew);
+        Instant latest = now.plus(maxClockSkew);
+        if (client.isBefore(earliest) || client.isAfter(latest)) {
+            e.setCapturedAt(client.isBefore(earliest) ? earliest : latest);
+            e.setClientCapturedAt(client);
+            metrics.skewed();
+        } else {
+            e.setCapturedAt(client);
+        }
+    }
+
+    private Instant parseInstantOrNull(String iso) {
+        if (iso == null || iso.isBlank()) return null;
+        try { return Instant.parse(iso); } catch (Exception ignored) { return null; }
+    }
+
     private Instant parseInstantOrNow(String iso) {
-        if (iso == null || iso.isBlank()) return Instant.now();
-        try { return Instant.parse(iso); } catch (Exception ignored) { return Instant.now(); }
+        Instant t = parseInstantOrNull(iso);
+        return t == null ? Instant.now() : t;
     }
 
     private String nullIfBlank(String s) {
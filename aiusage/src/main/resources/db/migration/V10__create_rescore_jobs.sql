@@ -0,0 +1,28 @@
+-- Bulk re-score jobs (see RescoreJobRunner). A job walks prompt_events in
+-- (captured_at, id) order within [range_from, range_to) and moves cursor_at/cursor_id
+-- forward in the same transaction that writes each chunk's scores, so a resumed job
+-- never scores a chunk twice or skips one.
+--
+-- owner/heartbeat_at form a lease: a RUNNING job whose owner stopped heartbeating is
+-- picked up by the next node that looks for work.
+
+CREATE TABLE rescore_jobs (
+  id             BIGSERIAL PRIMARY KEY,
+  scorer_version INTEGER NOT NULL,
+  state          VARCHAR(10) NOT NULL,       -- RUNNING | PAUSED | DONE | FAILED
+  status_filter  VARCHAR(30),                -- only turns with this status, e.g. UNSCORED
+  range_from     TIMESTAMPTZ,
+  range_to       TIMESTAMPTZ NOT NULL,
+  cursor_at      TIMESTAMPTZ,
+  cursor_id      UUID,
+  scanned        BIGINT NOT NULL DEFAULT 0,
+  rescored       BIGINT NOT NULL DEFAULT 0,
+  owner          VARCHAR(80),
+  heartbeat_at   TIMESTAMPTZ,
+  error          TEXT,
+  created_at     TIMESTAMPTZ NOT NULL DEFAULT now(),
+  updated_at     TIMESTAMPTZ NOT NULL DEFAULT now(),
+  finished_at    TIMESTAMPTZ
+);
+
+CREATE INDEX idx_rescore_jobs_state ON rescore_jobs (state) WHERE state = 'RUNNING';
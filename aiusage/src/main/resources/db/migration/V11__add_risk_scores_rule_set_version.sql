@@ -0,0 +1,4 @@
+-- Which RuleSet version (RiskRules) produced the row; NULL for rows scored before rule
+-- files. Together with scorer_version it says exactly which policy a score came from.
+ALTER TABLE risk_scores
+  ADD COLUMN rule_set_version VARCHAR(64);
@@ -0,0 +1,23 @@
+-- Durable scoring queue (scoring.queue=outbox, see ScoringJobWorker). Capture writes a
+-- row in the same transaction as the turn, so a turn is never stored without the job
+-- that scores it. One row per turn: a response arriving while the prompt's job is
+-- queued or running bumps seq, and the turn is scored again with both parts.
+--
+-- Workers on every node claim due rows with FOR UPDATE SKIP LOCKED. A claimed row is
+-- RUNNING until run_at, its lease; after that another worker may take it over. Scored
+-- rows are deleted. Failures are retried with backoff up to scoring.jobs.max-attempts,
+-- then the row stays as DEAD with its last error and the turn is marked UNSCORED.
+
+CREATE TABLE scoring_jobs (
+  turn_id      UUID PRIMARY KEY,
+  seq          INTEGER NOT NULL DEFAULT 0,
+  state        VARCHAR(10) NOT NULL DEFAULT 'PENDING',   -- PENDING | RUNNING | DEAD
+  attempts     INTEGER NOT NULL DEFAULT 0,
+  run_at       TIMESTAMPTZ NOT NULL DEFAULT now(),       -- PENDING: due time; RUNNING: lease end
+  owner        VARCHAR(80),
+  last_error   TEXT,
+  enqueued_at  TIMESTAMPTZ NOT NULL DEFAULT now(),       -- last capture that needed this turn scored
+  updated_at   TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX idx_scoring_jobs_due ON scoring_jobs (run_at) WHERE state IN ('PENDING', 'RUNNING');
@@ -0,0 +1,14 @@
+-- Turns whose scoring was skipped (scoring executor overflow or shutdown) or given up on
+-- (DEAD scoring job) were marked by overwriting status with UNSCORED, which lost the
+-- capture status (PROMPT_ONLY / COMPLETED) the response guard relies on. They now get
+-- unscored_at instead and keep their status; scoring the whole turn clears it. A re-score
+-- job with status=UNSCORED selects on it.
+
+ALTER TABLE prompt_events ADD COLUMN unscored_at TIMESTAMPTZ;
+
+UPDATE prompt_events
+SET unscored_at = now(),
+    status = CASE WHEN response_text IS NOT NULL AND response_text <> '' THEN 'COMPLETED' ELSE 'PROMPT_ONLY' END
+WHERE status = 'UNSCORED';
+
+CREATE INDEX prompt_events_unscored_idx ON prompt_events (captured_at, id) WHERE unscored_at IS NOT NULL;
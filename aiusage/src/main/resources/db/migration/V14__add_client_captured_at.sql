@@ -0,0 +1,6 @@
+-- captured_at is the partition key, so it is now kept within capture.max-clock-skew of
+-- the server clock: a client clock far off used to send turns into the DEFAULT partition,
+-- where they later blocked creating the partition for their range. When the client's
+-- own capturedAt had to be moved, it is kept here.
+
+ALTER TABLE prompt_events ADD COLUMN client_captured_at TIMESTAMPTZ;
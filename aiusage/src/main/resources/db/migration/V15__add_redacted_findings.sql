@@ -0,0 +1,9 @@
+-- Redaction replaces the PII a scan found, so rescanning a redacted prompt or response
+-- finds nothing and a later pass (the response arriving, an outbox reload, a re-score)
+-- scored the turn down. Each part's findings are now kept when its text is redacted and
+-- later passes use them instead of the text. NULL means the stored text is as captured.
+-- Parts redacted before this migration have no findings; their turns stay FLAGGED.
+
+ALTER TABLE prompt_events
+  ADD COLUMN prompt_findings JSONB,
+  ADD COLUMN response_findings JSONB;
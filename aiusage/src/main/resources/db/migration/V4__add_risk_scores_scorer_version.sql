@@ -0,0 +1,3 @@
+-- Which RiskScorer.VERSION produced the row; NULL for rows scored before versioning.
+ALTER TABLE risk_scores
+  ADD COLUMN scorer_version INTEGER;
@@ -0,0 +1,11 @@
+-- Keyset pagination walks (sort key, id) newest first, optionally inside a filter.
+-- The composite indexes cover every single-column index they replace.
+CREATE INDEX idx_prompt_events_captured_at_id ON prompt_events (captured_at DESC, id DESC);
+CREATE INDEX idx_prompt_events_device_captured ON prompt_events (device_id, captured_at DESC, id DESC);
+CREATE INDEX idx_prompt_events_status_captured ON prompt_events (status, captured_at DESC, id DESC);
+CREATE INDEX idx_risk_scores_scored_at_id ON risk_scores (scored_at DESC, id DESC);
+
+DROP INDEX idx_prompt_events_captured_at;
+DROP INDEX idx_prompt_events_device_id;
+DROP INDEX idx_prompt_events_status;
+DROP INDEX IF EXISTS idx_risk_scores_scored_at;
@@ -0,0 +1,81 @@
+-- Range-partition prompt_events by captured_at and risk_scores by scored_at.
+--
+-- No data is copied: each existing table is renamed to *_legacy and attached as the
+-- partition for everything before the cutover (start of the day after the newest row,
+-- or tomorrow). Attaching scans it once to check the bound. Daily partitions from the
+-- cutover on are created here for the first week; PartitionMaintenance keeps creating
+-- them ahead and applies retention by detaching/dropping whole partitions.
+--
+-- A unique index on a partitioned table must contain the partition key, so turn_id can
+-- no longer be unique in prompt_events itself. turn_index holds one row per turnId: it
+-- is the ON CONFLICT target for idempotent capture and tells lookups by turnId which
+-- partition (captured_at) to read.
+
+-- ---------- prompt_events ----------
+
+ALTER TABLE prompt_events RENAME TO prompt_events_legacy;
+ALTER INDEX prompt_events_pkey RENAME TO prompt_events_legacy_pkey;
+
+CREATE TABLE prompt_events (LIKE prompt_events_legacy INCLUDING DEFAULTS)
+  PARTITION BY RANGE (captured_at);
+ALTER TABLE prompt_events ADD PRIMARY KEY (id, captured_at);
+
+CREATE TABLE turn_index (
+  turn_id     UUID PRIMARY KEY,
+  captured_at TIMESTAMPTZ NOT NULL
+);
+INSERT INTO turn_index (turn_id, captured_at)
+  SELECT turn_id, captured_at FROM prompt_events_legacy WHERE turn_id IS NOT NULL;
+CREATE INDEX idx_turn_index_captured_at ON turn_index (captured_at);
+
+-- ---------- risk_scores ----------
+
+ALTER TABLE risk_scores RENAME TO risk_scores_legacy;
+ALTER INDEX risk_scores_pkey RENAME TO risk_scores_legacy_pkey;
+
+CREATE TABLE risk_scores (LIKE risk_scores_legacy INCLUDING DEFAULTS)
+  PARTITION BY RANGE (scored_at);
+ALTER TABLE risk_scores ADD PRIMARY KEY (id, scored_at);
+
+-- ---------- attach legacy data, create the first week ----------
+
+DO $$
+DECLARE
+  t       RECORD;
+  cutover TIMESTAMPTZ;
+  d       TIMESTAMPTZ;
+BEGIN
+  FOR t IN SELECT * FROM (VALUES ('prompt_events', 'captured_at'), ('risk_scores', 'scored_at')) AS v(tbl, col) LOOP
+    EXECUTE format('SELECT date_trunc(''day'', greatest(max(%I), now()) AT TIME ZONE ''UTC'') AT TIME ZONE ''UTC'' + interval ''24 hours'' FROM %I',
+                   t.col, t.tbl || '_legacy')
+      INTO cutover;
+
+    -- the parent's key is (id, time); attaching builds that index on the legacy table
+    EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', t.tbl || '_legacy', t.tbl || '_legacy_pkey');
+    EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (MINVALUE) TO (%L)',
+                   t.tbl, t.tbl || '_legacy', cutover);
+
+    d := cutover;
+    WHILE d < cutover + interval '168 hours' LOOP
+      EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                     t.tbl || '_p' || to_char(d AT TIME ZONE 'UTC', 'YYYYMMDD'), t.tbl, d, d + interval '24 hours');
+      d := d + interval '24 hours';
+    END LOOP;
+
+    -- rows outside every range (e.g. a client clock far off) land here instead of failing
+    EXECUTE format('CREATE TABLE %I PARTITION OF %I DEFAULT', t.tbl || '_default', t.tbl);
+  END LOOP;
+END $$;
+
+-- ---------- indexes (existing equivalents on the legacy partitions are reused) ----------
+
+CREATE INDEX prompt_events_captured_at_id_idx ON prompt_events (captured_at DESC, id DESC);
+CREATE INDEX prompt_events_device_captured_idx ON prompt_events (device_id, captured_at DESC, id DESC);
+CREATE INDEX prompt_events_status_captured_idx ON prompt_events (status, captured_at DESC, id DESC);
+CREATE INDEX prompt_events_turn_id_idx ON prompt_events (turn_id);
+CREATE INDEX prompt_events_prompt_hash_idx ON prompt_events (prompt_hash);
+CREATE INDEX prompt_events_metadata_gin_idx ON prompt_events USING GIN (metadata);
+
+CREATE INDEX risk_scores_turn_id_idx ON risk_scores (turn_id);
+CREATE INDEX risk_scores_score_idx ON risk_scores (score DESC);
+CREATE INDEX risk_scores_scored_at_id_idx ON risk_scores (scored_at DESC, id DESC);
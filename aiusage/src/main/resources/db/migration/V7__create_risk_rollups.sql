@@ -0,0 +1,66 @@
+-- Hourly rollups of scored turns, maintained by the scoring path (see RiskRollups).
+--
+-- A turn counts once, under its latest score: turn_index remembers the level and PII
+-- types the turn is currently counted under, so a re-score moves the turn from its old
+-- rollup rows to the new ones instead of counting it twice. Buckets are the UTC hour of
+-- the turn's captured_at; a missing device or page host is stored as ''.
+
+ALTER TABLE turn_index
+  ADD COLUMN risk_level VARCHAR(10),
+  ADD COLUMN pii_types  INTEGER NOT NULL DEFAULT 0;  -- bit per PiiType ordinal
+
+CREATE TABLE risk_rollup_hourly (
+  bucket     TIMESTAMPTZ NOT NULL,
+  device_id  VARCHAR(120) NOT NULL,
+  page_host  TEXT NOT NULL,
+  risk_level VARCHAR(10) NOT NULL,
+  turns      BIGINT NOT NULL,
+  PRIMARY KEY (bucket, device_id, page_host, risk_level)
+);
+
+CREATE TABLE pii_rollup_hourly (
+  bucket     TIMESTAMPTZ NOT NULL,
+  device_id  VARCHAR(120) NOT NULL,
+  page_host  TEXT NOT NULL,
+  risk_level VARCHAR(10) NOT NULL,
+  pii_type   VARCHAR(20) NOT NULL,
+  turns      BIGINT NOT NULL,
+  PRIMARY KEY (bucket, device_id, page_host, risk_level, pii_type)
+);
+
+-- ---------- backfill from the latest score of every turn still indexed ----------
+
+UPDATE turn_index t
+SET risk_level = l.details->>'level',
+    pii_types  = (CASE WHEN l.details->'pii' ? 'email'       THEN 1 ELSE 0 END)
+               | (CASE WHEN l.details->'pii' ? 'ssn'         THEN 2 ELSE 0 END)
+               | (CASE WHEN l.details->'pii' ? 'phone'       THEN 4 ELSE 0 END)
+               | (CASE WHEN l.details->'pii' ? 'credit_card' THEN 8 ELSE 0 END)
+FROM (
+  SELECT DISTINCT ON (turn_id) turn_id, details
+  FROM risk_scores
+  ORDER BY turn_id, scored_at DESC
+) l
+WHERE t.turn_id = l.turn_id;
+
+CREATE TEMPORARY TABLE rollup_src ON COMMIT DROP AS
+  SELECT date_trunc('hour', t.captured_at, 'UTC') AS bucket,
+         coalesce(p.device_id, '') AS device_id,
+         coalesce(p.metadata->>'pageHost', '') AS page_host,
+         t.risk_level,
+         t.pii_types
+  FROM turn_index t
+  JOIN prompt_events p ON p.turn_id = t.turn_id AND p.captured_at = t.captured_at
+  WHERE t.risk_level IS NOT NULL;
+
+INSERT INTO risk_rollup_hourly (bucket, device_id, page_host, risk_level, turns)
+  SELECT bucket, device_id, page_host, risk_level, count(*)
+  FROM rollup_src
+  GROUP BY 1, 2, 3, 4;
+
+INSERT INTO pii_rollup_hourly (bucket, device_id, page_host, risk_level, pii_type, turns)
+  SELECT s.bucket, s.device_id, s.page_host, s.risk_level, v.pii_type, count(*)
+  FROM rollup_src s
+  JOIN (VALUES (1, 'email'), (2, 'ssn'), (4, 'phone'), (8, 'credit_card')) AS v(bit, pii_type)
+    ON s.pii_types & v.bit <> 0
+  GROUP BY 1, 2, 3, 4, 5;
@@ -0,0 +1,19 @@
+-- Search over prompt and response_text (see TurnSearchRepository).
+--
+-- Trigram GIN indexes serve substring search (ILIKE '%...%', three characters or more);
+-- tsvector expression indexes with the 'simple' configuration (no stemming, no stop
+-- words, so names, hostnames and identifiers stay searchable) serve phrase and prefix
+-- search. Queries must repeat the indexed expressions exactly.
+-- pg_trgm ships with Postgres; creating it needs CREATE privilege on the database.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX idx_prompt_events_prompt_trgm
+  ON prompt_events USING GIN (prompt gin_trgm_ops);
+CREATE INDEX idx_prompt_events_response_trgm
+  ON prompt_events USING GIN (response_text gin_trgm_ops);
+
+CREATE INDEX idx_prompt_events_prompt_tsv
+  ON prompt_events USING GIN (to_tsvector('simple'::regconfig, prompt));
+CREATE INDEX idx_prompt_events_response_tsv
+  ON prompt_events USING GIN (to_tsvector('simple'::regconfig, coalesce(response_text, '')));
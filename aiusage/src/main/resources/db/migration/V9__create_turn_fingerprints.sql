@@ -0,0 +1,20 @@
+-- MinHash signatures of prompts and responses, for near-duplicate lookups (see
+-- NearDuplicates). part is 'P' or 'R'. signature holds the 64 min-hashes (4 bytes each,
+-- big-endian); bands holds one hash per LSH band. Rows sharing any band are candidates,
+-- then the signatures are compared.
+--
+-- The partial GIN index keeps the per-turn "repeats something FLAGGED" lookup to the
+-- small flagged set; the full one serves the on-demand similar-turns lookup. Rows go
+-- with their turn when retention deletes it from turn_index.
+
+CREATE TABLE turn_fingerprints (
+  turn_id   UUID NOT NULL REFERENCES turn_index (turn_id) ON DELETE CASCADE,
+  part      CHAR(1) NOT NULL,
+  signature BYTEA NOT NULL,
+  bands     BIGINT[] NOT NULL,
+  flagged   BOOLEAN NOT NULL DEFAULT false,
+  PRIMARY KEY (turn_id, part)
+);
+
+CREATE INDEX idx_turn_fingerprints_bands ON turn_fingerprints USING GIN (bands);
+CREATE INDEX idx_turn_fingerprints_flagged_bands ON turn_fingerprints USING GIN (bands) WHERE flagged;
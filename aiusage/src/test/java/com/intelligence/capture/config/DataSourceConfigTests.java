@@ -0,0 +1,89 @@
+package com.intelligence.capture.config;
+
+import com.intelligence.capture.config.ReplicaMonitor.Position;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DataSourceConfigTests {
+
+	private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+	private final HikariDataSource primary = mock(HikariDataSource.class);
+	private final DataSource replica = mock(DataSource.class);
+	private final Connection primaryConnection = mock(Connection.class);
+	private final Connection replicaConnection = mock(Connection.class);
+	private final ReplicaMonitor monitor = new ReplicaMonitor(replica, primary, Duration.ofSeconds(10), meters);
+	private final DataSource routed = new DataSourceConfig().dataSource(primary, monitor);
+
+	@BeforeEach
+	void setUp() throws SQLException {
+		when(primary.getConnection()).thenReturn(primaryConnection);
+		when(replica.getConnection()).thenReturn(replicaConnection);
+	}
+
+	@Test
+	void readOnlyConnectionsGoToTheReplicaOnceItIsCaughtUp() throws SQLException {
+		assertThat(target(routed.getConnection(), true)).isSameAs(primaryConnection); // before the first check
+
+		monitor.update(new Position(100, true, 100, true), 0);
+
+		assertThat(target(routed.getConnection(), true)).isSameAs(replicaConnection);
+		assertThat(target(routed.getConnection(), false)).isSameAs(primaryConnection);
+		assertThat(reads("replica")).isEqualTo(1);
+		assertThat(reads("primary")).isEqualTo(1);
+	}
+
+	@Test
+	void readsFailOverToThePrimaryWhileTheReplicaLags() throws SQLException {
+		monitor.update(new Position(100, true, 100, true), 0);
+		monitor.update(new Position(200, true, 150, true), Duration.ofSeconds(1).toNanos());
+		monitor.update(new Position(300, true, 150, true), Duration.ofSeconds(12).toNanos());
+
+		assertThat(target(routed.getConnection(), true)).isSameAs(primaryConnection);
+
+		monitor.update(new Position(300, true, 300, true), Duration.ofSeconds(13).toNanos());
+		assertThat(target(routed.getConnection(), true)).isSameAs(replicaConnection);
+	}
+
+	@Test
+	void replicaThatRefusesAConnectionIsDroppedUntilTheNextCheck() throws SQLException {
+		monitor.update(new Position(100, true, 100, true), 0);
+		when(replica.getConnection()).thenThrow(new SQLException("too many clients"));
+
+		assertThat(target(routed.getConnection(), true)).isSameAs(primaryConnection);
+		assertThat(monitor.usable()).isFalse();
+		assertThat(meters.get("datasource.replica.fallbacks").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void explicitCredentialsAreRoutedLikeTheDefaultOnes() throws SQLException {
+		Connection asReporter = mock(Connection.class);
+		when(replica.getConnection("reporter", "pw")).thenReturn(asReporter);
+		monitor.update(new Position(100, true, 100, true), 0);
+
+		assertThat(target(routed.getConnection("reporter", "pw"), true)).isSameAs(asReporter);
+	}
+
+	// ---------- helpers ----------
+
+	// The pooled connection the lazy proxy picks once a statement needs one.
+	private static Connection target(Connection proxy, boolean readOnly) throws SQLException {
+		proxy.setReadOnly(readOnly);
+		return ((ConnectionProxy) proxy).getTargetConnection();
+	}
+
+	private double reads(String target) {
+		return meters.get("datasource.reads").tag("target", target).counter().count();
+	}
+}
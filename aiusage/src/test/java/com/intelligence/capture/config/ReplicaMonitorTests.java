@@ -0,0 +1,130 @@
+package com.intelligence.capture.config;
+
+import com.intelligence.capture.config.ReplicaMonitor.Position;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.jdbc.test.autoconfigure.JdbcTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/** Lag decisions from given positions; the position query itself runs against the database from application.yaml. */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReplicaMonitorTests {
+
+	@SpringBootConfiguration
+	static class Config {
+	}
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@Autowired
+	private DataSource dataSource;
+
+	private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+	@Test
+	void idlePrimaryIsNoLagHoweverOldTheLastCommit() {
+		ReplicaMonitor monitor = monitor();
+
+		monitor.update(new Position(100, true, 100, true), 0);
+		monitor.update(new Position(100, true, 100, false), 3600 * SECOND);
+
+		assertThat(monitor.usable()).isTrue();
+		assertThat(lag()).isZero();
+	}
+
+	@Test
+	void replicaStuckBehindOnePositionFailsOverOnceMaxLagPasses() {
+		ReplicaMonitor monitor = monitor();
+		monitor.update(new Position(100, true, 100, true), 0);
+
+		monitor.update(new Position(200, true, 150, true), 10 * SECOND);
+		assertThat(monitor.usable()).isTrue();
+		monitor.update(new Position(300, true, 190, true), 15 * SECOND);
+		assertThat(lag()).isEqualTo(5);
+		assertThat(monitor.usable()).isTrue();
+		monitor.update(new Position(400, true, 199, true), 21 * SECOND);
+		assertThat(lag()).isEqualTo(11);
+		assertThat(monitor.usable()).isFalse();
+
+		// past the position it was stuck behind: lag counts from the newest unreplayed one
+		monitor.update(new Position(500, true, 450, true), 25 * SECOND);
+		assertThat(lag()).isZero();
+		assertThat(monitor.usable()).isTrue();
+	}
+
+	@Test
+	void replicaBehindWithoutAStreamingReceiverIsNotUsed() {
+		ReplicaMonitor monitor = monitor();
+		monitor.update(new Position(100, true, 100, true), 0);
+
+		monitor.update(new Position(200, true, 100, false), SECOND);
+
+		assertThat(monitor.usable()).isFalse();
+		monitor.update(new Position(200, true, 200, false), 2 * SECOND);
+		assertThat(monitor.usable()).isTrue();
+	}
+
+	@Test
+	void serverNotInRecoveryHasNoLag() {
+		ReplicaMonitor monitor = monitor();
+
+		monitor.update(new Position(500, false, 0, false), 0);
+
+		assertThat(monitor.usable()).isTrue();
+	}
+
+	@Test
+	void unreachableReplicaIsNotUsed() throws SQLException {
+		DataSource down = mock(DataSource.class);
+		when(down.getConnection()).thenThrow(new SQLException("connection refused"));
+		ReplicaMonitor monitor = new ReplicaMonitor(down, dataSource, Duration.ofSeconds(10), meters);
+		monitor.update(new Position(100, true, 100, true), 0);
+
+		monitor.check();
+
+		assertThat(monitor.usable()).isFalse();
+	}
+
+	@Test
+	void positionQueriesRunOnPostgres() {
+		ReplicaMonitor monitor = new ReplicaMonitor(dataSource, dataSource, Duration.ofSeconds(10), meters);
+
+		Position pos = monitor.position();
+		monitor.check();
+
+		assertThat(pos.primaryLsn()).isPositive();
+		assertThat(pos.recovery()).isFalse();
+		assertThat(monitor.usable()).isTrue();
+	}
+
+	@Test
+	void lsnTextIsParsedAsTwoHexHalves() {
+		assertThat(ReplicaMonitor.lsn("0/0")).isZero();
+		assertThat(ReplicaMonitor.lsn("16/B374D848")).isEqualTo(0x16B374D848L);
+	}
+
+	// ---------- helpers ----------
+
+	private ReplicaMonitor monitor() {
+		return new ReplicaMonitor(mock(DataSource.class), mock(DataSource.class), Duration.ofSeconds(10), meters);
+	}
+
+	private double lag() {
+		return meters.get("datasource.replica.lag").gauge().value();
+	}
+}
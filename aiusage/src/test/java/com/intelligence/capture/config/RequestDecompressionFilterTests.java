@@ -0,0 +1,79 @@
+package com.intelligence.capture.config;
+
+import com.github.luben.zstd.Zstd;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestDecompressionFilterTests {
+
+	private static final byte[] BODY = ("{\"turnId\":\"7d3f6c2e-1111-4a5b-9c8d-000000000001\",\"responseText\":\""
+			+ "x".repeat(5000) + "\"}").getBytes(StandardCharsets.UTF_8);
+
+	private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+	private byte[] readThrough(long limit, String encoding, byte[] wire) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/turns/response");
+		request.addHeader("Content-Encoding", encoding);
+		request.setContent(wire);
+		AtomicReference<byte[]> seen = new AtomicReference<>();
+		new RequestDecompressionFilter(limit, meters).doFilter(request, new MockHttpServletResponse(),
+				new MockFilterChain() {
+					@Override
+					public void doFilter(ServletRequest req, ServletResponse res) throws IOException {
+						assertThat(((HttpServletRequest) req).getHeader("Content-Encoding")).isNull();
+						seen.set(req.getInputStream().readAllBytes());
+					}
+				});
+		return seen.get();
+	}
+
+	@Test
+	void gzipAndZstdBodiesReachTheControllerDecoded() throws Exception {
+		assertThat(readThrough(1 << 20, "gzip", gzip(BODY))).isEqualTo(BODY);
+		assertThat(readThrough(1 << 20, "zstd", Zstd.compress(BODY))).isEqualTo(BODY);
+		assertThat(meters.get("capture.body.bytes").tags("encoding", "zstd", "side", "decoded").summary().totalAmount())
+				.isEqualTo(BODY.length);
+	}
+
+	@Test
+	void decodingStopsPastTheLimit() {
+		assertThatThrownBy(() -> readThrough(1000, "gzip", gzip(BODY)))
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						ex -> assertThat(ex.getStatusCode()).isEqualTo(HttpStatus.CONTENT_TOO_LARGE));
+	}
+
+	@Test
+	void unknownEncodingIsRefused() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/turns/batch");
+		request.addHeader("Content-Encoding", "br");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		new RequestDecompressionFilter(1 << 20, meters).doFilter(request, response, new MockFilterChain());
+
+		assertThat(response.getStatus()).isEqualTo(415);
+	}
+
+	private static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+			gz.write(data);
+		}
+		return out.toByteArray();
+	}
+}
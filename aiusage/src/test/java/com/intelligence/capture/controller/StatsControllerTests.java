@@ -0,0 +1,52 @@
+package com.intelligence.capture.controller;
+
+import com.intelligence.capture.dto.StatsResponse;
+import com.intelligence.capture.dto.StatsRow;
+import com.intelligence.capture.service.RiskRollups;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StatsControllerTests {
+
+	private final RiskRollups rollups = mock(RiskRollups.class);
+	private final StatsController controller = new StatsController(rollups, 3);
+
+	@Test
+	void moreGroupsThanTheLimitAreCutAndMarked() {
+		stored(4);
+
+		StatsResponse res = controller.stats(null, null, "level", null, null, null, null);
+
+		assertThat(res.rows()).extracting(StatsRow::level).containsExactly("L0", "L1", "L2");
+		assertThat(res.truncated()).isTrue();
+		verify(rollups).stats(any(), any(), any(), any(), any(), any(), eq(4));
+	}
+
+	@Test
+	void resultThatFitsIsNotMarked() {
+		stored(2);
+
+		StatsResponse res = controller.stats(null, null, "level", null, null, null, 2);
+
+		assertThat(res.rows()).hasSize(2);
+		assertThat(res.truncated()).isFalse();
+		verify(rollups).stats(any(), any(), any(), any(), any(), any(), eq(3));
+	}
+
+	private void stored(int groups) {
+		when(rollups.stats(any(), any(), any(), any(), any(), any(), anyInt())).thenAnswer(inv -> {
+			int limit = inv.getArgument(6);
+			return IntStream.range(0, Math.min(groups, limit))
+					.mapToObj(i -> new StatsRow(null, null, null, "L" + i, null, 10 - i)).toList();
+		});
+	}
+}
@@ -0,0 +1,148 @@
+package com.intelligence.capture.controller;
+
+import com.intelligence.capture.config.WebConfig;
+import com.intelligence.capture.dto.CapturePromptRequest;
+import com.intelligence.capture.repo.PromptEventJdbcRepository.TurnState;
+import com.intelligence.capture.repo.PromptEventRepository;
+import com.intelligence.capture.repo.RiskScoreRepository;
+import com.intelligence.capture.repo.TurnQueryRepository;
+import com.intelligence.capture.repo.TurnSearchRepository;
+import com.intelligence.capture.service.NearDuplicates;
+import com.intelligence.capture.service.RiskEventHub;
+import com.intelligence.capture.service.TurnCaptureService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/** Capture bodies in each wire format, through the MVC converters and the decompression filter. */
+@WebMvcTest(properties = { "audit.enabled=false", "capture.ingest.max-decoded-size=16KB" })
+class TurnCaptureControllerTests {
+
+	@SpringBootConfiguration
+	@Import({ TurnCaptureController.class, WebConfig.class })
+	static class Config {
+
+		@Bean
+		MeterRegistry meterRegistry() {
+			return new SimpleMeterRegistry();
+		}
+	}
+
+	private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+	@Autowired
+	private MockMvc mvc;
+
+	@MockitoBean
+	private TurnCaptureService service;
+
+	@MockitoBean
+	private PromptEventRepository repo;
+
+	@MockitoBean
+	private RiskScoreRepository riskRepo;
+
+	@MockitoBean
+	private TurnQueryRepository queryRepo;
+
+	@MockitoBean
+	private TurnSearchRepository searchRepo;
+
+	@MockitoBean
+	private RiskEventHub riskEvents;
+
+	@MockitoBean
+	private NearDuplicates nearDuplicates;
+
+	@Test
+	void promptIsAcceptedAsCborAndSmile() throws Exception {
+		String code = "for (int i = 0; i < n; i++) {\n\tsum += \"\\u00e9\".length();\n}\n".repeat(50);
+		for (var format : List.of(Map.entry(MediaType.APPLICATION_CBOR, (ObjectMapper) new CBORMapper()),
+				Map.entry(SMILE, (ObjectMapper) new SmileMapper()))) {
+			UUID turnId = UUID.randomUUID();
+			stored(turnId);
+
+			mvc.perform(post("/api/turns/prompt").contentType(format.getKey())
+							.content(format.getValue().writeValueAsBytes(prompt(turnId, code))))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.turnId").value(turnId.toString()));
+
+			ArgumentCaptor<CapturePromptRequest> req = ArgumentCaptor.forClass(CapturePromptRequest.class);
+			verify(service).capturePrompt(req.capture());
+			assertThat(req.getValue().prompt).as(format.getKey().toString()).isEqualTo(code);
+			assertThat(req.getValue().deviceId).isEqualTo("dev-1");
+			clearInvocations(service);
+		}
+	}
+
+	@Test
+	void binaryBodyIsValidatedLikeJson() throws Exception {
+		Map<String, Object> body = prompt(UUID.randomUUID(), "");
+
+		mvc.perform(post("/api/turns/prompt").contentType(MediaType.APPLICATION_CBOR)
+						.content(new CBORMapper().writeValueAsBytes(body)))
+				.andExpect(status().isBadRequest());
+
+		verify(service, never()).capturePrompt(any());
+	}
+
+	@Test
+	void compressedBodyPastTheDecodedLimitIs413() throws Exception {
+		byte[] cbor = new CBORMapper().writeValueAsBytes(prompt(UUID.randomUUID(), "x".repeat(20_000)));
+
+		mvc.perform(post("/api/turns/prompt").contentType(MediaType.APPLICATION_CBOR)
+						.header("Content-Encoding", "gzip").content(gzip(cbor)))
+				.andExpect(status().isContentTooLarge());
+
+		verify(service, never()).capturePrompt(any());
+	}
+
+	// ---------- helpers ----------
+
+	private void stored(UUID turnId) {
+		when(service.capturePrompt(any()))
+				.thenReturn(new TurnState(UUID.randomUUID(), turnId, "PROMPT_ONLY", Instant.now(), null));
+	}
+
+	private static Map<String, Object> prompt(UUID turnId, String text) {
+		return Map.of("turnId", turnId.toString(), "prompt", text, "deviceId", "dev-1", "sendMethod", "enter");
+	}
+
+	private static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+			gz.write(data);
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,148 @@
+package com.intelligence.capture.repo;
+
+import com.intelligence.capture.model.PromptEvent;
+import com.intelligence.capture.repo.PromptEventJdbcRepository.TurnState;
+import com.intelligence.capture.repo.PromptEventJdbcRepository.TurnWrite;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.jdbc.test.autoconfigure.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Runs the capture SQL against the database from application.yaml (docker-compose). */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PromptEventJdbcRepositoryTests {
+
+	@SpringBootConfiguration
+	static class Config {
+	}
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	private PromptEventJdbcRepository repo;
+	private final List<UUID> turns = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		repo = new PromptEventJdbcRepository(jdbc, JsonMapper.builder().build());
+	}
+
+	@AfterEach
+	void cleanUp() {
+		for (UUID turnId : turns) {
+			jdbc.update("DELETE FROM prompt_events WHERE turn_id = ?", turnId);
+			jdbc.update("DELETE FROM turn_index WHERE turn_id = ?", turnId);
+		}
+	}
+
+	@Test
+	void retriedResponseIsIgnoredOnceTheTurnIsScored() {
+		UUID turnId = capturePrompt();
+		assertThat(repo.updateResponse(response(turnId, "first")).map(TurnWrite::applied)).contains(true);
+
+		for (String scored : List.of("CLEARED", "FLAGGED")) {
+			jdbc.update("UPDATE prompt_events SET status = ? WHERE turn_id = ?", scored, turnId);
+
+			assertThat(repo.updateResponse(response(turnId, "retry")).map(TurnWrite::applied)).contains(false);
+			assertThat(repo.updateResponses(List.of(response(turnId, "retry")))).isEmpty();
+			assertThat(stored(turnId)).containsEntry("status", scored).containsEntry("response_text", "first");
+		}
+	}
+
+	@Test
+	void responseIsAppliedToAScoredPromptOnlyTurn() {
+		UUID turnId = capturePrompt();
+		jdbc.update("UPDATE prompt_events SET status = 'CLEARED' WHERE turn_id = ?", turnId);
+
+		assertThat(repo.updateResponses(List.of(response(turnId, "answer")))).hasSize(1);
+		assertThat(stored(turnId)).containsEntry("status", "COMPLETED").containsEntry("response_text", "answer");
+	}
+
+	@Test
+	void responseToAFlaggedPromptKeepsTheTurnFlagged() {
+		UUID single = capturePrompt();
+		UUID batched = capturePrompt();
+		jdbc.update("UPDATE prompt_events SET status = 'FLAGGED', prompt = '[REDACTED:EMAIL]' WHERE turn_id IN (?, ?)",
+				single, batched);
+
+		assertThat(repo.updateResponse(response(single, "answer"))).get().satisfies(w -> {
+			assertThat(w.applied()).isTrue();
+			assertThat(w.state().status()).isEqualTo("FLAGGED");
+		});
+		assertThat(repo.updateResponses(List.of(response(batched, "answer"))))
+				.extracting(TurnState::status).containsExactly("FLAGGED");
+		for (UUID turnId : List.of(single, batched)) {
+			assertThat(stored(turnId)).containsEntry("status", "FLAGGED").containsEntry("response_text", "answer");
+		}
+	}
+
+	@Test
+	void findStatesReturnsTheStoredTurnsOnly() {
+		UUID a = capturePrompt();
+		UUID b = capturePrompt();
+
+		assertThat(repo.findStates(List.of(a, b, UUID.randomUUID())))
+				.extracting(TurnState::turnId).containsExactlyInAnyOrder(a, b);
+	}
+
+	@Test
+	void unknownTurnHasNoRow() {
+		assertThat(repo.updateResponse(response(UUID.randomUUID(), "answer"))).isEmpty();
+	}
+
+	// ---------- helpers ----------
+
+	private UUID capturePrompt() {
+		UUID turnId = UUID.randomUUID();
+		turns.add(turnId);
+
+		PromptEvent e = new PromptEvent();
+		e.setId(UUID.randomUUID());
+		e.setTurnId(turnId);
+		e.setStatus("PROMPT_ONLY");
+		e.setPrompt("hello");
+		e.setPromptLength(5);
+		e.setPromptHash("h");
+		e.setCapturedAt(Instant.now().truncatedTo(ChronoUnit.MICROS));
+		e.setSendMethod("enter");
+		e.setMetadata(Map.of());
+		e.setResponseMetadata(Map.of());
+		e.setCreatedAt(Instant.now());
+		assertThat(repo.upsertPrompt(e).applied()).isTrue();
+		return turnId;
+	}
+
+	private static PromptEvent response(UUID turnId, String text) {
+		PromptEvent e = new PromptEvent();
+		e.setTurnId(turnId);
+		e.setResponseText(text);
+		e.setResponseCapturedAt(Instant.now());
+		e.setResponseLength(text.length());
+		e.setResponseHash("h");
+		e.setResponseMetadata(Map.of());
+		e.setStatus("COMPLETED");
+		return e;
+	}
+
+	private Map<String, Object> stored(UUID turnId) {
+		return jdbc.queryForMap("SELECT status, response_text FROM prompt_events WHERE turn_id = ?", turnId);
+	}
+}
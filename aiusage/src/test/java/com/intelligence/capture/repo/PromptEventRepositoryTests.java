@@ -0,0 +1,98 @@
+package com.intelligence.capture.repo;
+
+import com.intelligence.capture.repo.PromptEventRepository.PromptText;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.persistence.autoconfigure.EntityScan;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Runs the native turnId queries against the database from application.yaml; each test rolls back. */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class PromptEventRepositoryTests {
+
+	@SpringBootConfiguration
+	@AutoConfigurationPackage
+	@EntityScan(basePackages = "com.intelligence.capture.model")
+	static class Config {
+	}
+
+	@Autowired
+	private PromptEventRepository repo;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Test
+	void lookupsByTurnIdReadTheStoredRow() {
+		UUID turnId = insertTurn("COMPLETED");
+
+		assertThat(repo.findByTurnId(turnId)).get().satisfies(e -> {
+			assertThat(e.getPrompt()).isEqualTo("hello");
+			assertThat(e.getResponseText()).isEqualTo("answer");
+		});
+		PromptText text = repo.findPromptTextByTurnId(turnId).orElseThrow();
+		assertThat(text.getPrompt()).isEqualTo("hello");
+		assertThat(text.getPromptHash()).isEqualTo("h");
+		assertThat(text.getStatus()).isEqualTo("COMPLETED");
+		assertThat(text.getDeviceId()).isEqualTo("dev-1");
+		assertThat(text.getPromptFindings()).isNull();
+		assertThat(repo.findByTurnId(UUID.randomUUID())).isEmpty();
+	}
+
+	@Test
+	void statusUpdatesLeaveFlaggedTurnsAndTrackUnscored() {
+		UUID turnId = insertTurn("COMPLETED");
+		UUID other = insertTurn("PROMPT_ONLY");
+
+		assertThat(repo.markUnscored(List.of(turnId, other), Instant.now())).isEqualTo(2);
+		assertThat(repo.updateStatusUnlessFlagged(turnId, "CLEARED", false)).isEqualTo(1);
+		assertThat(stored(turnId)).containsEntry("status", "CLEARED");
+		assertThat(stored(turnId).get("unscored_at")).isNotNull();
+
+		String findings = "{\"matches\": [], \"keywords\": [\"secret\"], \"length\": 5}";
+		assertThat(repo.updateStatusAndTextByTurnId(turnId, "FLAGGED", "[REDACTED]", findings, null, null, true))
+				.isEqualTo(1);
+		assertThat(stored(turnId)).containsEntry("status", "FLAGGED").containsEntry("prompt", "[REDACTED]")
+				.containsEntry("response_text", "answer").containsEntry("unscored_at", null);
+		assertThat(repo.findByTurnId(turnId)).get().satisfies(e -> {
+			assertThat(e.getPromptFindings()).containsEntry("keywords", List.of("secret")).containsEntry("length", 5);
+			assertThat(e.getResponseFindings()).isNull();
+		});
+		assertThat(repo.findPromptTextByTurnId(turnId).orElseThrow().getPromptFindings()).contains("\"secret\"");
+		assertThat(repo.updateStatusUnlessFlagged(turnId, "CLEARED", true)).isZero();
+
+		assertThat(repo.clearUnscored(other)).isEqualTo(1);
+		assertThat(stored(other)).containsEntry("status", "PROMPT_ONLY").containsEntry("unscored_at", null);
+	}
+
+	private UUID insertTurn(String status) {
+		UUID turnId = UUID.randomUUID();
+		OffsetDateTime capturedAt = Instant.now().truncatedTo(ChronoUnit.MICROS).atOffset(ZoneOffset.UTC);
+		jdbc.update("INSERT INTO turn_index (turn_id, captured_at) VALUES (?, ?)", turnId, capturedAt);
+		jdbc.update("INSERT INTO prompt_events (id, turn_id, status, prompt, prompt_length, prompt_hash, captured_at, "
+				+ "device_id, send_method, metadata, response_text, response_metadata, created_at) VALUES "
+				+ "(?, ?, ?, 'hello', 5, 'h', ?, 'dev-1', 'enter', '{}', ?, '{}', now())",
+				UUID.randomUUID(), turnId, status, capturedAt, "COMPLETED".equals(status) ? "answer" : null);
+		return turnId;
+	}
+
+	private Map<String, Object> stored(UUID turnId) {
+		return jdbc.queryForMap("SELECT status, prompt, response_text, unscored_at FROM prompt_events WHERE turn_id = ?",
+				turnId);
+	}
+}
@@ -0,0 +1,88 @@
+package com.intelligence.capture.repo;
+
+import com.intelligence.capture.repo.RescoreBatchRepository.StatusChange;
+import com.intelligence.capture.repo.RescoreBatchRepository.TurnText;
+import com.intelligence.capture.risk.RiskScorer;
+import com.intelligence.capture.risk.RiskScorer.PartScan;
+import com.intelligence.capture.risk.RuleSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.jdbc.test.autoconfigure.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Runs the re-score job's SQL against the database from application.yaml (docker-compose). */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RescoreBatchRepositoryTests {
+
+	@SpringBootConfiguration
+	static class Config {
+	}
+
+	private static final String PII = "card 4111 1111 1111 1111, ssn 123-45-6789";
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	private final Instant capturedAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+	private final UUID turnId = UUID.randomUUID();
+	private final UUID id = UUID.randomUUID();
+
+	@AfterEach
+	void cleanUp() {
+		jdbc.update("DELETE FROM prompt_events WHERE turn_id = ?", turnId);
+		jdbc.update("DELETE FROM turn_index WHERE turn_id = ?", turnId);
+	}
+
+	@Test
+	void redactedTextIsStoredAndReadBackWithItsFindings() {
+		RescoreBatchRepository repo = new RescoreBatchRepository(jdbc, JsonMapper.builder().build());
+		insertTurn(PII, "noted");
+		TurnText row = chunk(repo);
+		assertThat(row.promptFindings()).isNull();
+		assertThat(row.responseFindings()).isNull();
+
+		PartScan found = RiskScorer.scan(RuleSet.defaults(), PII);
+		repo.updateStatuses(List.of(new StatusChange(id, capturedAt, "FLAGGED", "[REDACTED]", found, null, null)));
+
+		row = chunk(repo);
+		assertThat(row.status()).isEqualTo("FLAGGED");
+		assertThat(row.prompt()).isEqualTo("[REDACTED]");
+		assertThat(row.response()).isEqualTo("noted");
+		assertThat(row.promptFindings()).isEqualTo(found);
+		assertThat(row.responseFindings()).isNull();
+	}
+
+	// ---------- helpers ----------
+
+	private void insertTurn(String prompt, String response) {
+		OffsetDateTime at = capturedAt.atOffset(ZoneOffset.UTC);
+		jdbc.update("INSERT INTO turn_index (turn_id, captured_at) VALUES (?, ?)", turnId, at);
+		jdbc.update("INSERT INTO prompt_events (id, turn_id, status, prompt, prompt_length, captured_at, "
+				+ "send_method, metadata, response_text, response_metadata, created_at) VALUES "
+				+ "(?, ?, 'COMPLETED', ?, ?, ?, 'enter', '{}', ?, '{}', now())",
+				id, turnId, prompt, prompt.length(), at, response);
+	}
+
+	private TurnText chunk(RescoreBatchRepository repo) {
+		List<TurnText> rows = repo.findChunk(null, capturedAt, capturedAt.plusMillis(1), null, 10);
+		assertThat(rows).extracting(TurnText::id).containsExactly(id);
+		return rows.get(0);
+	}
+}
@@ -0,0 +1,198 @@
+package com.intelligence.capture.repo;
+
+import com.intelligence.capture.repo.ScoringJobRepository.Claimed;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.jdbc.test.autoconfigure.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the queue SQL against the database from application.yaml (docker-compose). Every
+ * statement commits on its own, as it does for the workers; only this test's turns are
+ * looked at and cleaned up, so jobs already in the table are claimed at most briefly.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ScoringJobRepository.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ScoringJobRepositoryTests {
+
+	private static final Duration LEASE = Duration.ofMinutes(2);
+
+	// the application class also enables JPA repositories, which a JDBC slice has no EntityManager for
+	@SpringBootConfiguration
+	static class Config {
+	}
+
+	@Autowired
+	private ScoringJobRepository jobs;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Autowired
+	private DataSource dataSource;
+
+	private final String owner = "test-" + UUID.randomUUID().toString().substring(0, 8);
+	private final String otherOwner = owner + "-other";
+	private final List<UUID> turns = new ArrayList<>();
+
+	@AfterEach
+	void cleanUp() {
+		jobs.release(owner);
+		jobs.release(otherOwner);
+		for (UUID turnId : turns) jdbc.update("DELETE FROM scoring_jobs WHERE turn_id = ?", turnId);
+	}
+
+	@Test
+	void claimSkipsJobsLockedByAnotherTransaction() throws Exception {
+		UUID locked = newTurn();
+		UUID free = newTurn();
+		jobs.enqueue(List.of(locked, free));
+
+		try (Connection c = dataSource.getConnection()) {
+			c.setAutoCommit(false);
+			try (PreparedStatement ps = c.prepareStatement("SELECT 1 FROM scoring_jobs WHERE turn_id = ? FOR UPDATE")) {
+				ps.setObject(1, locked);
+				ps.executeQuery().close();
+			}
+
+			assertThat(claimOurs(owner)).extracting(Claimed::turnId).containsExactly(free);
+			c.rollback();
+		}
+
+		assertThat(claimOurs(otherOwner)).extracting(Claimed::turnId).containsExactly(locked);
+		assertThat(claimOurs(owner)).isEmpty(); // both are RUNNING under a live lease now
+	}
+
+	@Test
+	void completeDeletesTheJob() {
+		UUID turnId = newTurn();
+		jobs.enqueue(List.of(turnId));
+		List<Claimed> claimed = claimOurs(owner);
+
+		jobs.complete(otherOwner, claimed); // not the holder: nothing changes
+		assertThat(row(turnId)).containsEntry("state", ScoringJobRepository.RUNNING).containsEntry("owner", owner);
+
+		jobs.complete(owner, claimed);
+		assertThat(jdbc.queryForList("SELECT 1 FROM scoring_jobs WHERE turn_id = ?", turnId)).isEmpty();
+	}
+
+	@Test
+	void jobEnqueuedWhileRunningIsRequeuedOnComplete() {
+		UUID turnId = newTurn();
+		jobs.enqueue(List.of(turnId));
+		Claimed first = claimOurs(owner).get(0);
+
+		jobs.enqueue(List.of(turnId)); // the response arrives while the prompt is being scored
+		assertThat(row(turnId)).containsEntry("state", ScoringJobRepository.RUNNING)
+				.containsEntry("owner", owner).containsEntry("seq", first.seq() + 1);
+
+		jobs.complete(owner, List.of(first));
+		assertThat(row(turnId)).containsEntry("state", ScoringJobRepository.PENDING)
+				.containsEntry("attempts", 0).containsEntry("owner", null);
+
+		Claimed second = claimOurs(otherOwner).get(0);
+		assertThat(second.seq()).isEqualTo(first.seq() + 1);
+		jobs.complete(otherOwner, List.of(second));
+		assertThat(jdbc.queryForList("SELECT 1 FROM scoring_jobs WHERE turn_id = ?", turnId)).isEmpty();
+	}
+
+	@Test
+	void failRetriesAfterBackoffThenGoesDead() {
+		UUID turnId = newTurn();
+		jobs.enqueue(List.of(turnId));
+
+		Claimed first = claimOurs(owner).get(0);
+		assertThat(first.attempts()).isEqualTo(1);
+		assertThat(jobs.fail(owner, first, 2, Duration.ofHours(1), "boom")).isEqualTo(ScoringJobRepository.PENDING);
+		assertThat(row(turnId)).containsEntry("last_error", "boom").containsEntry("owner", null);
+		assertThat(claimOurs(owner)).isEmpty(); // not due for an hour
+
+		jdbc.update("UPDATE scoring_jobs SET run_at = now() WHERE turn_id = ?", turnId);
+		Claimed second = claimOurs(owner).get(0);
+		assertThat(second.attempts()).isEqualTo(2);
+		assertThat(jobs.fail(owner, second, 2, Duration.ZERO, "boom again")).isEqualTo(ScoringJobRepository.DEAD);
+		assertThat(row(turnId)).containsEntry("state", ScoringJobRepository.DEAD).containsEntry("last_error", "boom again");
+		assertThat(claimOurs(owner)).isEmpty();
+
+		// a new capture revives a dead job with a fresh attempt count
+		jobs.enqueue(List.of(turnId));
+		assertThat(row(turnId)).containsEntry("state", ScoringJobRepository.PENDING).containsEntry("attempts", 0);
+	}
+
+	@Test
+	void failOfAJobEnqueuedWhileRunningStartsOver() {
+		UUID turnId = newTurn();
+		jobs.enqueue(List.of(turnId));
+		Claimed claimed = claimOurs(owner).get(0);
+		jobs.enqueue(List.of(turnId));
+
+		// max-attempts is reached, but the turn changed since the claim: retry it at once
+		assertThat(jobs.fail(owner, claimed, 1, Duration.ofHours(1), "boom")).isEqualTo(ScoringJobRepository.PENDING);
+		assertThat(row(turnId)).containsEntry("attempts", 0);
+		assertThat(claimOurs(owner)).extracting(Claimed::turnId).containsExactly(turnId);
+	}
+
+	@Test
+	void failByAFormerOwnerIsIgnored() {
+		UUID turnId = newTurn();
+		jobs.enqueue(List.of(turnId));
+		Claimed claimed = claimOurs(owner).get(0);
+
+		assertThat(jobs.fail(otherOwner, claimed, 5, Duration.ZERO, "late")).isNull();
+		assertThat(row(turnId)).containsEntry("state", ScoringJobRepository.RUNNING).containsEntry("last_error", null);
+	}
+
+	@Test
+	void releaseHandsBackClaimedJobsWithoutCountingTheAttempt() {
+		UUID turnId = newTurn();
+		jobs.enqueue(List.of(turnId));
+		claimOurs(owner);
+
+		assertThat(jobs.release(owner)).isGreaterThanOrEqualTo(1);
+		assertThat(row(turnId)).containsEntry("state", ScoringJobRepository.PENDING)
+				.containsEntry("attempts", 0).containsEntry("owner", null);
+	}
+
+	// ---------- helpers ----------
+
+	private UUID newTurn() {
+		UUID turnId = UUID.randomUUID();
+		turns.add(turnId);
+		return turnId;
+	}
+
+	// Claims everything due, then hands back what other tests or a running app queued.
+	private List<Claimed> claimOurs(String who) {
+		List<Claimed> ours = new ArrayList<>();
+		List<Claimed> others = new ArrayList<>();
+		for (Claimed c : jobs.claim(who, 10_000, LEASE)) (turns.contains(c.turnId()) ? ours : others).add(c);
+		for (Claimed c : others) {
+			jdbc.update("UPDATE scoring_jobs SET state = 'PENDING', owner = NULL, attempts = greatest(attempts - 1, 0), "
+					+ "run_at = now() WHERE turn_id = ? AND owner = ?", c.turnId(), who);
+		}
+		return ours;
+	}
+
+	private Map<String, Object> row(UUID turnId) {
+		return jdbc.queryForMap("SELECT state, seq, attempts, owner, last_error FROM scoring_jobs WHERE turn_id = ?", turnId);
+	}
+}
@@ -0,0 +1,35 @@
+package com.intelligence.capture.repo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnippetsTests {
+
+	@Test
+	void highlightsEveryOccurrenceIgnoringCase() {
+		String out = Snippets.highlight("ssh to DB01.corp then db01.corp again", "db01.corp");
+
+		assertThat(out).isEqualTo("ssh to [[DB01.corp]] then [[db01.corp]] again");
+	}
+
+	@Test
+	void keepsContextAroundDistantMatches() {
+		String filler = "x".repeat(200);
+		String out = Snippets.highlight("acme " + filler + " acme " + filler + " acme", "acme");
+
+		assertThat(out).startsWith("[[acme]] xxx").contains(Snippets.DELIMITER).endsWith("xxx [[acme]] " + "x".repeat(59));
+	}
+
+	@Test
+	void nullWithoutMatch() {
+		assertThat(Snippets.highlight("nothing here", "acme")).isNull();
+		assertThat(Snippets.highlight(null, "acme")).isNull();
+	}
+
+	@Test
+	void escapesLikeWildcards() {
+		assertThat(TurnSearchRepository.escapeLike("50%_off\\")).isEqualTo("50\\%\\_off\\\\");
+		assertThat(TurnSearchRepository.prefixQuery(" o'brien  db01.co ")).isEqualTo("'o''brien':* & 'db01.co':*");
+	}
+}
@@ -0,0 +1,58 @@
+package com.intelligence.capture.risk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeywordAutomatonTests {
+
+	@Test
+	void findsOverlappingAndNestedTermsInOnePass() {
+		KeywordAutomaton a = KeywordAutomaton.of(List.of("api key", "key", "private key", "he", "she", "hers"));
+
+		assertThat(a.find("Here is my PRIVATE KEY and ushers")).containsExactly("he", "private key", "key", "she", "hers");
+	}
+
+	@Test
+	void reportsEachTermOnceInFirstOccurrenceOrder() {
+		KeywordAutomaton a = KeywordAutomaton.of(List.of("token", "secret"));
+
+		assertThat(a.find("secret token, another token, more secrets")).containsExactly("secret", "token");
+		assertThat(a.find("nothing to see")).isEmpty();
+	}
+
+	@Test
+	void matchesNonAsciiTermsCaseInsensitively() {
+		KeywordAutomaton a = KeywordAutomaton.of(List.of("Passwort", "mot de passe", "Пароль"));
+
+		assertThat(a.find("Das PASSWORT ist … le Mot De Passe, ПАРОЛЬ")).containsExactly("passwort", "mot de passe", "пароль");
+	}
+
+	@Test
+	void agreesWithContainsOnRandomText() {
+		Random rnd = new Random(11);
+		List<String> terms = new ArrayList<>();
+		for (int i = 0; i < 200; i++) terms.add(word(rnd, 2 + rnd.nextInt(4)));
+		KeywordAutomaton a = KeywordAutomaton.of(terms);
+
+		for (int round = 0; round < 50; round++) {
+			String text = word(rnd, 400);
+			String low = text.toLowerCase(Locale.ROOT);
+			List<String> expected = terms.stream().filter(t -> !t.isBlank()).map(t -> t.toLowerCase(Locale.ROOT))
+					.distinct().filter(low::contains).toList();
+
+			assertThat(a.find(text)).containsExactlyInAnyOrderElementsOf(expected);
+		}
+	}
+
+	private static String word(Random rnd, int length) {
+		StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++) sb.append("abcAB é".charAt(rnd.nextInt(7)));
+		return sb.toString();
+	}
+}
@@ -0,0 +1,49 @@
+package com.intelligence.capture.risk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MinHashTests {
+
+	@Test
+	void ignoresCaseAndPunctuation() {
+		String a = "Quarterly revenue for the Northwind account grew by twelve percent last year";
+		String b = "quarterly REVENUE, for the northwind account -- grew by twelve percent (last year)!";
+
+		assertThat(MinHash.of(a)).isNotNull().isEqualTo(MinHash.of(b));
+	}
+
+	@Test
+	void smallEditsStaySimilarAndShareBands() {
+		String doc = words(new Random(7), 300);
+		String edited = doc.replaceFirst("w\\d+", "changed") + " plus a short trailing note";
+		String other = words(new Random(8), 300);
+
+		int[] sig = MinHash.of(doc);
+		assertThat(MinHash.similarity(sig, MinHash.of(edited))).isGreaterThan(0.85);
+		assertThat(MinHash.similarity(sig, MinHash.of(other))).isLessThan(0.1);
+		assertThat(sharedBands(sig, MinHash.of(edited))).isGreaterThan(0);
+		assertThat(sharedBands(sig, MinHash.of(other))).isZero();
+	}
+
+	@Test
+	void shortTextIsNotFingerprinted() {
+		assertThat(MinHash.of("just a few words here")).isNull();
+		assertThat(MinHash.of(null)).isNull();
+	}
+
+	private static long sharedBands(int[] a, int[] b) {
+		long[] bb = MinHash.bands(b);
+		return Arrays.stream(MinHash.bands(a)).filter(x -> Arrays.stream(bb).anyMatch(y -> y == x)).count();
+	}
+
+	private static String words(Random rnd, int n) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < n; i++) sb.append('w').append(rnd.nextInt(5000)).append(' ');
+		return sb.toString();
+	}
+}
@@ -0,0 +1,102 @@
+package com.intelligence.capture.risk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PiiDetectorTests {
+
+	@Test
+	void findsEveryTypeInOnePass() {
+		String text = "mail jane.doe+x@corp.example.com, ssn 123-45-6789, "
+				+ "call +1 (555) 123-4567 or card 4111 1111 1111 1111.";
+
+		Map<String, List<String>> pii = PiiDetector.find(text);
+
+		assertThat(pii).containsOnlyKeys("email", "ssn", "phone", "credit_card");
+		assertThat(pii.get("email")).containsExactly("jane.doe+x@corp.example.com");
+		assertThat(pii.get("ssn")).containsExactly("123-45-6789");
+		assertThat(pii.get("phone")).containsExactly("+1 (555) 123-4567");
+		assertThat(pii.get("credit_card")).containsExactly("4111 1111 1111 1111");
+	}
+
+	@Test
+	void keepsOffsetsAndOrder() {
+		String text = "a@b.io then 555-123-4567";
+
+		List<PiiMatch> matches = PiiDetector.scan(text);
+
+		assertThat(matches).extracting(PiiMatch::type).containsExactly(PiiType.EMAIL, PiiType.PHONE);
+		for (PiiMatch m : matches) {
+			assertThat(text.substring(m.start(), m.end())).isEqualTo(m.value());
+		}
+	}
+
+	@Test
+	void reusedScannerStartsCleanForEachText() {
+		String first = "reach a@b.io or 555-123-4567";
+		String second = "clean text, no contact details";
+
+		assertThat(PiiDetector.scan(first)).hasSize(2);
+		assertThat(PiiDetector.scan(second)).isEmpty();
+		assertThat(PiiDetector.scan(first)).extracting(PiiMatch::value).containsExactly("a@b.io", "555-123-4567");
+	}
+
+	@Test
+	void rejectsCardNumbersFailingLuhn() {
+		assertThat(PiiDetector.find("order 4111 1111 1111 1112 shipped")).doesNotContainKey("credit_card");
+		assertThat(PiiDetector.find("pay with 5500-0000-0000-0004")).containsKey("credit_card");
+	}
+
+	@Test
+	void ignoresDigitsGluedToWords() {
+		assertThat(PiiDetector.find("build id123-45-6789x and v5551234567b")).isEmpty();
+	}
+
+	@Test
+	void stopsAtEmailAfterDigitGroups() {
+		Map<String, List<String>> pii = PiiDetector.find("ticket 555 123 4567 555@corp.io");
+
+		assertThat(pii.get("email")).containsExactly("555@corp.io");
+		assertThat(pii.get("phone")).containsExactly("555 123 4567");
+	}
+
+	@Test
+	void scansLongDigitHeavyLogsLinearly() {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < 60_000) sb.append("1 2 3 4 5 6 7 8 9 0 ");
+
+		CountingText text = new CountingText(sb.toString());
+
+		PiiDetector.scan(text);
+		// each char is looked at a bounded number of times, however many digit groups there are
+		assertThat(text.reads).isLessThan(20L * text.length());
+	}
+
+	private static final class CountingText implements CharSequence {
+		private final String text;
+		long reads;
+
+		CountingText(String text) {
+			this.text = text;
+		}
+
+		@Override
+		public int length() { return text.length(); }
+
+		@Override
+		public char charAt(int index) {
+			reads++;
+			return text.charAt(index);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) { return text.subSequence(start, end); }
+
+		@Override
+		public String toString() { return text; }
+	}
+}
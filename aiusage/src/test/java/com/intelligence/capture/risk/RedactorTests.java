@@ -0,0 +1,54 @@
+package com.intelligence.capture.risk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RedactorTests {
+
+	@Test
+	void tagsEverySpanInOnePass() {
+		String text = "mail a@b.io, ssn 123-45-6789, card 4111 1111 1111 1111.";
+
+		String out = Redactor.tagAll().redact(text, PiiDetector.scan(text));
+
+		assertThat(out).isEqualTo("mail [REDACTED:EMAIL], ssn [REDACTED:SSN], card [REDACTED:CREDIT_CARD].");
+	}
+
+	@Test
+	void appliesPerTypeMasks() {
+		String text = "jane@corp.com paid with 4111-1111-1111-1111, ssn 123-45-6789";
+		Redactor r = new Redactor(Map.of(
+				PiiType.EMAIL, Redactor.Mask.PARTIAL,
+				PiiType.CREDIT_CARD, Redactor.Mask.PARTIAL,
+				PiiType.SSN, Redactor.Mask.KEEP));
+
+		String out = r.redact(text, PiiDetector.scan(text));
+
+		assertThat(out).isEqualTo("j***@corp.com paid with ****-****-****-1111, ssn 123-45-6789");
+	}
+
+	@Test
+	void hashIsStablePerValue() {
+		String text = "a@b.io and a@b.io";
+		Redactor r = new Redactor(Map.of(PiiType.EMAIL, Redactor.Mask.HASH));
+
+		String out = r.redact(text, PiiDetector.scan(text));
+
+		assertThat(out).matches("\\[EMAIL:[0-9a-f]{12}] and \\[EMAIL:[0-9a-f]{12}]");
+		assertThat(out.substring(0, 20)).isEqualTo(out.substring(25));
+	}
+
+	@Test
+	void skipsOverlappingSpans() {
+		String text = "0123456789";
+		List<PiiMatch> matches = List.of(
+				new PiiMatch(PiiType.PHONE, 0, 6, "012345"),
+				new PiiMatch(PiiType.SSN, 4, 10, "456789"));
+
+		assertThat(Redactor.tagAll().redact(text, matches)).isEqualTo("[REDACTED:PHONE]6789");
+	}
+}
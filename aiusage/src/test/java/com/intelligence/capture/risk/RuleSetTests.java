@@ -0,0 +1,76 @@
+package com.intelligence.capture.risk;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RuleSetTests {
+
+	@Test
+	void builtInRulesKeepTheOriginalWeights() {
+		RiskScorer.Result ssnOnly = RiskScorer.score("ssn 123-45-6789", null);
+		RiskScorer.Result card = RiskScorer.score("card 4111 1111 1111 1111 password", "passwd secret apikey");
+
+		assertThat(ssnOnly.score()).isEqualTo(0.05 + 0.35);
+		assertThat(ssnOnly.level()).isEqualTo("LOW");
+		assertThat(card.score()).isEqualTo(0.05 + 0.40 + 0.15);
+		assertThat(card.details()).containsEntry("secret_word_hits", 4);
+		assertThat(card.ruleSet()).isEqualTo(RuleSet.defaults().version());
+	}
+
+	@Test
+	void appliesRulesFromFile() {
+		RuleSet rules = parse("""
+				// compliance policy
+				{
+				  "version": "2026-10-12",
+				  "baseline": 0.1,
+				  "pii": { "email": 0.3 },
+				  "keywords": [
+				    { "id": "projects", "weight": 0.2, "terms": ["Project Falcon", "falcon-db"] }
+				  ],
+				  "levels": { "high": 0.75, "medium": 0.35 }
+				}
+				""");
+
+		RiskScorer.Result res = RiskScorer.combine(rules,
+				RiskScorer.scan(rules, "status of project falcon?"),
+				RiskScorer.scan(rules, "ask a@b.io about FALCON-DB and project falcon"), null);
+
+		assertThat(res.score()).isEqualTo(0.1 + 0.3 + 0.4);
+		assertThat(res.level()).isEqualTo("HIGH");
+		assertThat(res.details()).containsEntry("secret_word_hits", 2);
+		assertThat(res.ruleSet()).isEqualTo("2026-10-12");
+	}
+
+	@Test
+	void ignoresTermsTheCurrentRulesDropped() {
+		RuleSet rules = parse("""
+				{ "version": "v2", "keywords": [ { "id": "k", "weight": 0.2, "terms": ["secret"] } ],
+				  "levels": { "high": 0.7, "medium": 0.4 } }
+				""");
+		RiskScorer.PartScan old = RiskScorer.scan(RuleSet.defaults(), "password and secret");
+
+		assertThat(RiskScorer.combine(rules, old, RiskScorer.PartScan.EMPTY, null).details())
+				.containsEntry("secret_word_hits", 1);
+	}
+
+	@Test
+	void rejectsInvalidFiles() {
+		assertThatThrownBy(() -> parse("{ \"levels\": { \"high\": 0.7, \"medium\": 0.4 } }"))
+				.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("version");
+		assertThatThrownBy(() -> parse("{ \"version\": \"x\", \"pii\": { \"iban\": 0.3 }, \"levels\": { \"high\": 0.7, \"medium\": 0.4 } }"))
+				.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("iban");
+		assertThatThrownBy(() -> parse("{ \"version\": \"x\", \"levels\": { \"high\": 0.3, \"medium\": 0.4 } }"))
+				.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("medium <= high");
+		assertThatThrownBy(() -> parse("{ \"version\": \"x\", \"treshold\": 1, \"levels\": { \"high\": 0.7, \"medium\": 0.4 } }"))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private static RuleSet parse(String json) {
+		return RuleSet.parse(json.getBytes(StandardCharsets.UTF_8));
+	}
+}
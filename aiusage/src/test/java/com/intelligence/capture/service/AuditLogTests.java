@@ -0,0 +1,53 @@
+package com.intelligence.capture.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuditLogTests {
+
+	private final AuditLog audit = new AuditLog(new SimpleMeterRegistry(), 10,
+			new String[] {"prompt", "responseText"}, 40);
+
+	private String format(String query, String body, boolean truncated) {
+		return audit.format(new AuditLog.Entry(Instant.parse("2026-10-18T10:00:00Z"), "POST", "/api/turns/prompt",
+				query, 200, 1500, "10.0.0.1", true,
+				body == null ? null : body.getBytes(StandardCharsets.UTF_8), truncated));
+	}
+
+	@Test
+	void omittedFieldsKeepOnlyTheirLength() {
+		String line = format(null, "{\"turnId\":\"t-1\",\"prompt\":\"mail jane@corp.com\"}", false);
+
+		assertThat(line).contains("\"prompt\":\"[18 chars]\"").contains("\"turnId\":\"t-1\"")
+				.doesNotContain("jane@corp.com");
+	}
+
+	@Test
+	void otherStringsAreMaskedAndCut() {
+		String line = format(null, "{\"items\":[{\"pageUrl\":\"https://x.test/?to=jane@corp.com\"},"
+				+ "{\"userAgent\":\"" + "a".repeat(60) + "\"}]}", false);
+
+		assertThat(line).contains("to=[REDACTED:EMAIL]").doesNotContain("jane@corp.com")
+				.contains("a".repeat(40) + "…(+20)");
+	}
+
+	@Test
+	void queryStringIsDecodedBeforeMasking() {
+		String line = format("q=jane%40corp.com&mode=phrase", null, false);
+
+		assertThat(line).contains("\"query\":\"q=[REDACTED:EMAIL]&mode=phrase\"");
+	}
+
+	@Test
+	void cutOrNonJsonBodiesAreLoggedBySizeOnly() {
+		assertThat(format(null, "{\"prompt\":\"jane@corp.com", true))
+				.contains("\"payloadBytes\":24").contains("\"payloadTruncated\":true").doesNotContain("jane");
+		assertThat(format(null, "ssn 123-45-6789", false))
+				.contains("\"payloadBytes\":15").doesNotContain("6789");
+	}
+}
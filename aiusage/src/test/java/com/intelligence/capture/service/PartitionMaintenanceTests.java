@@ -0,0 +1,84 @@
+package com.intelligence.capture.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.jdbc.test.autoconfigure.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against the database from application.yaml (docker-compose). Creates daily
+ * partitions a few days further ahead than the app does; they are kept, as the app's own
+ * would be.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PartitionMaintenanceTests {
+
+	@SpringBootConfiguration
+	static class Config {
+	}
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Autowired
+	private PlatformTransactionManager txManager;
+
+	private final UUID id = UUID.randomUUID();
+
+	@AfterEach
+	void cleanUp() {
+		jdbc.update("DELETE FROM prompt_events WHERE id = ?", id);
+	}
+
+	@Test
+	void rowsInTheDefaultPartitionAreMovedIntoTheNewRange() {
+		LocalDate day = LocalDate.now(ZoneOffset.UTC).plusDays(premakeDays() + 2);
+		String partition = "prompt_events_p" + day.format(DateTimeFormatter.ofPattern("yyyyMMdd"));
+		jdbc.update("INSERT INTO prompt_events (id, turn_id, status, prompt, prompt_length, captured_at, send_method, metadata, "
+				+ "response_metadata, created_at) VALUES (?, ?, 'PROMPT_ONLY', 'hello', 5, ?, 'enter', '{}', '{}', now())",
+				id, UUID.randomUUID(), day.atTime(12, 0).atOffset(ZoneOffset.UTC));
+		assertThat(partitionOf(id)).isEqualTo("prompt_events_default");
+
+		maintenance(Duration.ofDays(premakeDays() + 4)).maintain();
+
+		assertThat(partitionOf(id)).isEqualTo(partition);
+		assertThat(jdbc.queryForObject("SELECT prompt FROM prompt_events WHERE id = ?", String.class, id)).isEqualTo("hello");
+	}
+
+	// ---------- helpers ----------
+
+	// beyond whatever this database already has, so the row's day has no partition yet
+	private long premakeDays() {
+		Long days = jdbc.queryForObject("SELECT coalesce(max(to_date(substring(c.relname from '_p(\\d{8})$'), 'YYYYMMDD'))"
+				+ " - current_date, 0) FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid"
+				+ " WHERE i.inhparent = 'prompt_events'::regclass", Long.class);
+		return Math.max(days == null ? 0 : days, 7);
+	}
+
+	private PartitionMaintenance maintenance(Duration premake) {
+		return new PartitionMaintenance(jdbc, new TransactionTemplate(txManager), new SimpleMeterRegistry(),
+				PartitionMaintenance.Granularity.DAILY, premake, Duration.ZERO, PartitionMaintenance.RetentionMode.DROP);
+	}
+
+	private String partitionOf(UUID rowId) {
+		return jdbc.queryForObject("SELECT tableoid::regclass::text FROM prompt_events WHERE id = ?", String.class, rowId);
+	}
+}
@@ -0,0 +1,259 @@
+package com.intelligence.capture.service;
+
+import com.intelligence.capture.dto.PageCursor;
+import com.intelligence.capture.dto.RescoreJob;
+import com.intelligence.capture.model.RiskScore;
+import com.intelligence.capture.repo.RescoreBatchRepository;
+import com.intelligence.capture.repo.RescoreBatchRepository.StatusChange;
+import com.intelligence.capture.repo.RescoreBatchRepository.TurnText;
+import com.intelligence.capture.repo.RescoreJobRepository;
+import com.intelligence.capture.risk.Redactor;
+import com.intelligence.capture.risk.RiskScorer;
+import com.intelligence.capture.risk.RiskScorer.PartScan;
+import com.intelligence.capture.risk.RuleSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.jdbc.test.autoconfigure.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the job against rescore_jobs in the database from application.yaml (docker-compose);
+ * the turns come from a mocked chunk reader, five of them in chunks of two.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RescoreJobRunnerTests {
+
+	@SpringBootConfiguration
+	static class Config {
+	}
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Autowired
+	private PlatformTransactionManager txManager;
+
+	private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+	private final RescoreBatchRepository batches = mock(RescoreBatchRepository.class);
+	private final List<TurnText> turns = new ArrayList<>();
+	private final List<PageCursor> reads = new CopyOnWriteArrayList<>();
+	private final List<Long> jobIds = new ArrayList<>();
+	private RescoreJobRepository jobs;
+	private RescoreJobRunner runner;
+
+	// when set, the read after turns[1] waits for proceed
+	private volatile CountDownLatch reading;
+	private final CountDownLatch proceed = new CountDownLatch(1);
+
+	@BeforeEach
+	void setUp() {
+		Instant t = Instant.now().minus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.MILLIS);
+		for (int i = 0; i < 5; i++) {
+			turns.add(new TurnText(UUID.randomUUID(), UUID.randomUUID(), t.plusSeconds(i), "COMPLETED", false,
+					"hello " + i, "answer " + i, null, null));
+		}
+		when(batches.findChunk(isNull(), any(), any(), any(), anyInt())).thenAnswer(inv -> {
+			PageCursor after = inv.getArgument(3);
+			reads.add(after == null ? new PageCursor(null, null) : after);
+			int from = after == null ? 0 : indexOf(after.id()) + 1;
+			CountDownLatch r = reading;
+			if (r != null && from == 2) {
+				r.countDown();
+				assertThat(proceed.await(5, TimeUnit.SECONDS)).isTrue();
+			}
+			return List.copyOf(turns.subList(from, Math.min(from + (int) inv.getArgument(4), turns.size())));
+		});
+
+		jobs = new RescoreJobRepository(jdbc);
+		runner = runner(true);
+	}
+
+	@AfterEach
+	void cleanUp() throws InterruptedException {
+		proceed.countDown();
+		runner.close();
+		for (long id : jobIds) jdbc.update("DELETE FROM rescore_jobs WHERE id = ?", id);
+	}
+
+	@Test
+	void eachChunkIsCheckpointedAndTheNextReadStartsAfterIt() {
+		long id = track(runner.start(null, Instant.now(), null));
+
+		RescoreJob done = awaitState(id, RescoreJobRepository.DONE);
+
+		assertThat(reads).extracting(PageCursor::id)
+				.containsExactly(null, turns.get(1).id(), turns.get(3).id(), turns.get(4).id());
+		assertThat(done.scanned()).isEqualTo(5);
+		assertThat(done.rescored()).isEqualTo(5);
+		assertThat(done.cursorId()).isEqualTo(turns.get(4).id());
+		assertThat(done.cursorAt()).isEqualTo(turns.get(4).capturedAt());
+		assertThat(done.owner()).isNull();
+		assertThat(meters.get("rescore.turns").tag("result", "rescored").counter().count()).isEqualTo(5);
+	}
+
+	@Test
+	void pausedJobStopsAfterItsChunkAndResumesFromTheCheckpoint() throws Exception {
+		reading = new CountDownLatch(1);
+		long id = track(runner.start(null, Instant.now(), null));
+		assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+
+		assertThat(runner.pause(id)).get().extracting(RescoreJob::state).isEqualTo(RescoreJobRepository.PAUSED);
+		proceed.countDown();
+		await(() -> meters.get("rescore.active").gauge().value() == 0);
+
+		// the chunk in flight found the job paused at its checkpoint and was rolled back
+		RescoreJob paused = runner.find(id).orElseThrow();
+		assertThat(paused.state()).isEqualTo(RescoreJobRepository.PAUSED);
+		assertThat(paused.scanned()).isEqualTo(2);
+		assertThat(paused.cursorId()).isEqualTo(turns.get(1).id());
+
+		reading = null;
+		reads.clear();
+		assertThat(runner.resume(id)).get().extracting(RescoreJob::state).isEqualTo(RescoreJobRepository.RUNNING);
+		RescoreJob done = awaitState(id, RescoreJobRepository.DONE);
+
+		assertThat(reads.get(0).id()).isEqualTo(turns.get(1).id());
+		assertThat(done.scanned()).isEqualTo(5);
+		assertThat(done.cursorId()).isEqualTo(turns.get(4).id());
+	}
+
+	@Test
+	void orphanedJobIsAdoptedAtItsCursorAndLiveOnesAreLeftAlone() {
+		long live = track(jobs.create(2, null, null, Instant.now(), "live-node"));
+		long orphan = track(jobs.create(2, null, null, Instant.now(), "dead-node"));
+		assertThat(jobs.checkpoint(orphan, "dead-node", turns.get(1).capturedAt(), turns.get(1).id(), 2, 2)).isTrue();
+		jdbc.update("UPDATE rescore_jobs SET heartbeat_at = now() - interval '10 minutes' WHERE id = ?", orphan);
+
+		runner.adoptOrphan();
+		RescoreJob done = awaitState(orphan, RescoreJobRepository.DONE);
+
+		assertThat(reads.get(0).id()).isEqualTo(turns.get(1).id());
+		assertThat(done.scanned()).isEqualTo(5);
+		assertThat(done.rescored()).isEqualTo(5);
+		assertThat(jobs.findById(live)).get().satisfies(j -> {
+			assertThat(j.state()).isEqualTo(RescoreJobRepository.RUNNING);
+			assertThat(j.owner()).isEqualTo("live-node");
+		});
+	}
+
+	@Test
+	void adoptionCanBeTurnedOff() throws InterruptedException {
+		long orphan = track(jobs.create(2, null, null, Instant.now(), "dead-node"));
+		jdbc.update("UPDATE rescore_jobs SET heartbeat_at = now() - interval '10 minutes' WHERE id = ?", orphan);
+		runner.close();
+		runner = runner(false);
+
+		runner.adoptOrphan();
+
+		assertThat(jobs.findById(orphan)).get().extracting(RescoreJob::owner).isEqualTo("dead-node");
+		verify(batches, never()).findChunk(any(), any(), any(), any(), anyInt());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void redactedTurnIsScoredFromItsFindingsAndNeverLower() {
+		TurnText t = turns.get(2);
+		PartScan found = RiskScorer.scan(RuleSet.defaults(), "card 4111 1111 1111 1111, ssn 123-45-6789");
+		// left COMPLETED by a response captured after its prompt was redacted
+		TurnText redacted = new TurnText(t.id(), t.turnId(), t.capturedAt(), "COMPLETED", false,
+				"card [REDACTED:CREDIT_CARD], ssn [REDACTED:SSN]", "noted", found, null);
+		turns.set(2, redacted);
+		t = turns.get(3);
+		TurnText flagged = new TurnText(t.id(), t.turnId(), t.capturedAt(), "FLAGGED", false,
+				"[REDACTED:EMAIL]", "noted", null, null);
+		turns.set(3, flagged);
+
+		long id = track(runner.start(null, Instant.now(), null));
+		RescoreJob done = awaitState(id, RescoreJobRepository.DONE);
+
+		ArgumentCaptor<List<RiskScore>> scores = ArgumentCaptor.forClass(List.class);
+		verify(batches, atLeastOnce()).insertScores(scores.capture());
+		Map<UUID, Object> levels = new HashMap<>();
+		scores.getAllValues().forEach(chunk -> chunk.forEach(rs -> levels.put(rs.getTurnId(), rs.getDetails().get("level"))));
+		assertThat(levels).containsEntry(redacted.turnId(), "HIGH").doesNotContainKey(flagged.turnId());
+		assertThat(done.rescored()).isEqualTo(4);
+
+		ArgumentCaptor<List<StatusChange>> changes = ArgumentCaptor.forClass(List.class);
+		verify(batches, atLeastOnce()).updateStatuses(changes.capture());
+		assertThat(changes.getAllValues().stream().flatMap(List::stream).filter(c -> c.id().equals(redacted.id())))
+				.singleElement().satisfies(c -> {
+					assertThat(c.status()).isEqualTo("FLAGGED");
+					assertThat(c.prompt()).isNull(); // already redacted: not redacted again
+					assertThat(c.promptFindings()).isNull();
+				});
+	}
+
+	// ---------- helpers ----------
+
+	@SuppressWarnings("unchecked")
+	private RescoreJobRunner runner(boolean adoptOrphans) {
+		return new RescoreJobRunner(jobs, batches, new TransactionTemplate(txManager), mock(NearDuplicates.class),
+				mock(RiskRollups.class), mock(ScoringExecutor.class), mock(ObjectProvider.class), new Redactor(Map.of()),
+				new RiskRules(meters, ""), meters, 2, 2, 0, 500, Duration.ofMillis(50), Duration.ofMinutes(2), adoptOrphans);
+	}
+
+	private long track(RescoreJob job) {
+		jobIds.add(job.id());
+		return job.id();
+	}
+
+	private int indexOf(UUID id) {
+		for (int i = 0; i < turns.size(); i++) {
+			if (turns.get(i).id().equals(id)) return i;
+		}
+		throw new IllegalArgumentException("unknown turn " + id);
+	}
+
+	private RescoreJob awaitState(long id, String state) {
+		await(() -> runner.find(id).map(j -> state.equals(j.state())).orElse(false));
+		return runner.find(id).orElseThrow();
+	}
+
+	private static void await(BooleanSupplier condition) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime()).as("condition not met within 5s").isLessThan(deadline);
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package com.intelligence.capture.service;
+
+import com.intelligence.capture.dto.RiskEvent;
+import com.intelligence.capture.service.RiskEventHub.Filter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RiskEventHubTests {
+
+	private static final Filter ALL = new Filter(null, null, null);
+
+	private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+	private final List<RiskEventHub> hubs = new ArrayList<>();
+
+	@AfterEach
+	void close() {
+		hubs.forEach(RiskEventHub::close);
+	}
+
+	@Test
+	void reconnectGetsTheEventsAfterItsLastEventId() {
+		RiskEventHub hub = hub(16, 100, Duration.ofSeconds(10));
+		Recorder first = new Recorder();
+		hub.subscribe(ALL, null, first);
+		for (int i = 0; i < 5; i++) publish(hub, "dev", i / 5.0);
+		await(() -> first.events().size() == 5);
+		List<Long> ids = first.events().stream().map(RiskEvent::id).toList();
+
+		Recorder resumed = new Recorder();
+		hub.subscribe(ALL, ids.get(1), resumed);
+		Recorder filtered = new Recorder();
+		hub.subscribe(new Filter(0.5, null, null), ids.get(0), filtered);
+
+		await(() -> resumed.events().size() == 3 && filtered.events().size() == 2);
+		assertThat(resumed.events()).extracting(RiskEvent::id).containsExactlyElementsOf(ids.subList(2, 5));
+		assertThat(filtered.events()).extracting(RiskEvent::id).containsExactly(ids.get(3), ids.get(4));
+		assertThat(resumed.names()).doesNotContain(RiskEventHub.EVENT_RESET);
+	}
+
+	@Test
+	void lastEventIdOlderThanTheRingGetsAReset() {
+		RiskEventHub hub = hub(16, 2, Duration.ofSeconds(10));
+		Recorder first = new Recorder();
+		hub.subscribe(ALL, null, first);
+		for (int i = 0; i < 5; i++) publish(hub, "dev", 0.1);
+		await(() -> first.events().size() == 5);
+		List<Long> ids = first.events().stream().map(RiskEvent::id).toList();
+
+		Recorder late = new Recorder();
+		hub.subscribe(ALL, ids.get(0), late);
+
+		await(() -> late.events().size() == 2);
+		assertThat(late.names()).containsExactly(RiskEventHub.EVENT_RESET, RiskEventHub.EVENT_RISK, RiskEventHub.EVENT_RISK);
+		assertThat(late.events()).extracting(RiskEvent::id).containsExactly(ids.get(3), ids.get(4));
+	}
+
+	@Test
+	void slowSubscriberLosesTheOldestWaitingEventsAndIsToldHowMany() throws Exception {
+		RiskEventHub hub = hub(2, 100, Duration.ofSeconds(10));
+		Recorder slow = new Recorder();
+		slow.hold();
+		hub.subscribe(ALL, null, slow);
+
+		UUID sending = publish(hub, "dev", 0.1);
+		assertThat(slow.entered.await(5, TimeUnit.SECONDS)).isTrue();
+		List<UUID> waiting = new ArrayList<>();
+		for (int i = 0; i < 4; i++) waiting.add(publish(hub, "dev", 0.1));
+		assertThat(meters.get("risk.stream.dropped").counter().count()).isEqualTo(2);
+
+		slow.release();
+		await(() -> slow.events().size() == 3);
+		assertThat(slow.names()).containsExactly(RiskEventHub.EVENT_RISK, RiskEventHub.EVENT_DROPPED,
+				RiskEventHub.EVENT_RISK, RiskEventHub.EVENT_RISK);
+		assertThat(slow.data()).contains("{\"count\":2}");
+		assertThat(slow.events()).extracting(RiskEvent::turnId).containsExactly(sending, waiting.get(2), waiting.get(3));
+	}
+
+	@Test
+	void newerEventForATurnReplacesTheWaitingOne() throws Exception {
+		RiskEventHub hub = hub(16, 100, Duration.ofSeconds(10));
+		Recorder slow = new Recorder();
+		slow.hold();
+		hub.subscribe(ALL, null, slow);
+
+		publish(hub, "dev", 0.1);
+		assertThat(slow.entered.await(5, TimeUnit.SECONDS)).isTrue();
+		UUID turnId = UUID.randomUUID();
+		hub.publish(turnId, "dev", 0.2, "LOW", "CLEARED", Instant.now());
+		hub.publish(turnId, "dev", 0.9, "HIGH", "FLAGGED", Instant.now());
+
+		slow.release();
+		await(() -> slow.events().size() == 2);
+		assertThat(slow.events().get(1).level()).isEqualTo("HIGH");
+		assertThat(meters.get("risk.stream.coalesced").counter().count()).isEqualTo(1);
+		assertThat(meters.get("risk.stream.dropped").counter().count()).isZero();
+	}
+
+	@Test
+	void busySubscriberDoesNotHoldTheDispatchThreadForTheOthers() throws Exception {
+		RiskEventHub hub = hub(256, 1000, Duration.ofSeconds(10)); // one dispatch thread
+		List<String> order = new CopyOnWriteArrayList<>();
+		Recorder busy = new Recorder(order, "a");
+		busy.hold();
+		Recorder quiet = new Recorder(order, "b");
+		hub.subscribe(new Filter(null, null, "a"), null, busy);
+		hub.subscribe(new Filter(null, null, "b"), null, quiet);
+
+		publish(hub, "a", 0.1);
+		assertThat(busy.entered.await(5, TimeUnit.SECONDS)).isTrue();
+		for (int i = 0; i < 200; i++) publish(hub, "a", 0.1);
+		publish(hub, "b", 0.1);
+
+		busy.release();
+		await(() -> busy.events().size() == 201 && quiet.events().size() == 1);
+		// a's first batch was on the wire; b goes next, before a's remaining 200
+		assertThat(order.indexOf("b")).isEqualTo(1);
+	}
+
+	@Test
+	void subscriberThatStopsReadingIsCutOffAfterTheWriteTimeout() throws Exception {
+		RiskEventHub hub = hub(16, 100, Duration.ofMillis(200)); // one dispatch thread
+		Recorder stuck = new Recorder();
+		stuck.hold();
+		hub.subscribe(new Filter(null, null, "a"), null, stuck);
+		Recorder other = new Recorder();
+		hub.subscribe(new Filter(null, null, "b"), null, other);
+
+		publish(hub, "a", 0.1);
+		assertThat(stuck.entered.await(5, TimeUnit.SECONDS)).isTrue();
+		publish(hub, "b", 0.1);
+
+		await(() -> other.events().size() == 1);
+		assertThat(meters.get("risk.stream.write.timeouts").counter().count()).isEqualTo(1);
+		assertThat(meters.get("risk.stream.subscribers").gauge().value()).isEqualTo(1);
+	}
+
+	// ---------- helpers ----------
+
+	private RiskEventHub hub(int buffer, int replay, Duration writeTimeout) {
+		RiskEventHub hub = new RiskEventHub(meters, buffer, replay, Duration.ofMinutes(1), 1, writeTimeout);
+		hubs.add(hub);
+		return hub;
+	}
+
+	private static UUID publish(RiskEventHub hub, String deviceId, double score) {
+		UUID turnId = UUID.randomUUID();
+		hub.publish(turnId, deviceId, score, score >= 0.5 ? "MEDIUM" : "LOW", "CLEARED", Instant.now());
+		return turnId;
+	}
+
+	private static void await(BooleanSupplier condition) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime()).as("condition not met within 5s").isLessThan(deadline);
+			try {
+				Thread.sleep(5);
+			} catch (InterruptedException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+	}
+
+	/** Keeps what the hub sends; hold() makes sends block like a client that stopped reading. */
+	private static final class Recorder extends SseEmitter {
+
+		private static final Pattern NAME = Pattern.compile("event:(\\w+)");
+
+		final CountDownLatch entered = new CountDownLatch(1);
+		private final List<String> order;
+		private final String label;
+		private final List<String> names = new CopyOnWriteArrayList<>();
+		private final List<Object> data = new CopyOnWriteArrayList<>();
+		private volatile CountDownLatch gate;
+
+		Recorder() {
+			this(new CopyOnWriteArrayList<>(), "");
+		}
+
+		Recorder(List<String> order, String label) {
+			this.order = order;
+			this.label = label;
+		}
+
+		void hold() {
+			gate = new CountDownLatch(1);
+		}
+
+		void release() {
+			gate.countDown();
+		}
+
+		@Override
+		public void send(SseEventBuilder event) throws IOException {
+			entered.countDown();
+			CountDownLatch g = gate;
+			if (g != null) {
+				try {
+					g.await();
+				} catch (InterruptedException ex) {
+					throw new IOException("write interrupted", ex);
+				}
+				gate = null; // only the first send blocks
+			}
+			StringBuilder text = new StringBuilder();
+			for (DataWithMediaType part : event.build()) {
+				if (part.getData() instanceof String s) {
+					text.append(s);
+				} else {
+					data.add(part.getData());
+				}
+			}
+			Matcher m = NAME.matcher(text);
+			if (m.find()) names.add(m.group(1));
+			if (text.indexOf("data:{") >= 0) data.add(text.substring(text.indexOf("data:") + 5).trim());
+			order.add(label);
+		}
+
+		List<String> names() {
+			return names;
+		}
+
+		List<Object> data() {
+			return data;
+		}
+
+		List<RiskEvent> events() {
+			return data.stream().filter(RiskEvent.class::isInstance).map(RiskEvent.class::cast).toList();
+		}
+	}
+}
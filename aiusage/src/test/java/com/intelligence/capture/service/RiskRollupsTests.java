@@ -0,0 +1,173 @@
+package com.intelligence.capture.service;
+
+import com.intelligence.capture.dto.StatsRow;
+import com.intelligence.capture.repo.RollupRepository;
+import com.intelligence.capture.repo.RollupRepository.Dimension;
+import com.intelligence.capture.repo.RollupRepository.Key;
+import com.intelligence.capture.risk.RiskScorer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.jdbc.test.autoconfigure.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Runs the rollup SQL against the database from application.yaml (docker-compose). */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RiskRollupsTests {
+
+	@SpringBootConfiguration
+	@Import(RollupRepository.class)
+	static class Config {
+	}
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Autowired
+	private RollupRepository repo;
+
+	private final String device = "rollup-test-" + UUID.randomUUID();
+	private final Instant hour = Instant.now().truncatedTo(ChronoUnit.HOURS);
+	private final List<UUID> turns = new ArrayList<>();
+	private RiskRollups rollups;
+
+	@BeforeEach
+	void setUp() {
+		rollups = new RiskRollups(repo, new SimpleMeterRegistry());
+	}
+
+	@AfterEach
+	void cleanUp() {
+		jdbc.update("DELETE FROM risk_rollup_hourly WHERE device_id = ?", device);
+		jdbc.update("DELETE FROM pii_rollup_hourly WHERE device_id = ?", device);
+		for (UUID turnId : turns) {
+			jdbc.update("DELETE FROM prompt_events WHERE turn_id = ?", turnId);
+			jdbc.update("DELETE FROM turn_index WHERE turn_id = ?", turnId);
+		}
+	}
+
+	@Test
+	void rescoredTurnMovesFromItsOldLevelToTheNewOne() {
+		UUID turnId = insertTurn();
+		UUID other = insertTurn();
+		rollups.recordAll(Map.of(turnId, result("LOW"), other, result("LOW")));
+		rollups.flush();
+		assertThat(byLevel()).containsExactlyInAnyOrderEntriesOf(Map.of("LOW", 2L));
+
+		rollups.record(turnId, result("HIGH"));
+		rollups.flush();
+		assertThat(byLevel()).containsExactlyInAnyOrderEntriesOf(Map.of("LOW", 1L, "HIGH", 1L));
+
+		// same level and PII again: nothing moves
+		rollups.record(turnId, result("HIGH"));
+		rollups.flush();
+		assertThat(byLevel()).containsExactlyInAnyOrderEntriesOf(Map.of("LOW", 1L, "HIGH", 1L));
+		assertThat(jdbc.queryForObject("SELECT risk_level FROM turn_index WHERE turn_id = ?", String.class, turnId))
+				.isEqualTo("HIGH");
+	}
+
+	@Test
+	void piiTypesAreCountedPerBitAndMovedWithTheTurn() {
+		UUID turnId = insertTurn();
+		rollups.record(turnId, result("MEDIUM", "email", "ssn"));
+		rollups.flush();
+		assertThat(byPii()).containsExactlyInAnyOrderEntriesOf(Map.of("MEDIUM/email", 1L, "MEDIUM/ssn", 1L));
+		assertThat(jdbc.queryForObject("SELECT pii_types FROM turn_index WHERE turn_id = ?", Integer.class, turnId))
+				.isEqualTo(0b11);
+
+		// email stays, ssn goes, phone comes; the level is unchanged so only the PII rows move
+		rollups.record(turnId, result("MEDIUM", "email", "phone"));
+		rollups.flush();
+		assertThat(byPii()).containsExactlyInAnyOrderEntriesOf(Map.of("MEDIUM/email", 1L, "MEDIUM/ssn", 0L,
+				"MEDIUM/phone", 1L));
+		assertThat(byLevel()).containsExactlyInAnyOrderEntriesOf(Map.of("MEDIUM", 1L));
+	}
+
+	@Test
+	void deltasForTheSameRowAreMergedBeforeTheFlush() {
+		UUID a = insertTurn();
+		UUID b = insertTurn();
+		rollups.record(a, result("LOW", "email"));
+		rollups.record(b, result("LOW", "email"));
+		rollups.record(a, result("HIGH", "email"));
+
+		rollups.flush();
+
+		assertThat(byLevel()).containsExactlyInAnyOrderEntriesOf(Map.of("LOW", 1L, "HIGH", 1L));
+		assertThat(byPii()).containsExactlyInAnyOrderEntriesOf(Map.of("LOW/email", 1L, "HIGH/email", 1L));
+	}
+
+	@Test
+	void flushThatFailsHalfwayWritesNothing() {
+		Map<Key, Long> deltas = new HashMap<>();
+		deltas.put(new Key(hour, device, "chat.example", "HIGH", null), 1L);
+		deltas.put(new Key(hour, device, "chat.example", "HIGH", "x".repeat(30)), 1L); // too long for pii_type
+
+		assertThatThrownBy(() -> repo.addAll(deltas)).isInstanceOf(DataAccessException.class);
+
+		assertThat(byLevel()).isEmpty();
+	}
+
+	// ---------- helpers ----------
+
+	private UUID insertTurn() {
+		UUID turnId = UUID.randomUUID();
+		turns.add(turnId);
+		OffsetDateTime capturedAt = hour.plus(1, ChronoUnit.MINUTES).atOffset(ZoneOffset.UTC);
+		jdbc.update("INSERT INTO turn_index (turn_id, captured_at) VALUES (?, ?)", turnId, capturedAt);
+		jdbc.update("INSERT INTO prompt_events (id, turn_id, status, prompt, prompt_length, captured_at, device_id, "
+				+ "send_method, metadata, response_metadata, created_at) VALUES "
+				+ "(?, ?, 'PROMPT_ONLY', 'hello', 5, ?, ?, 'enter', '{\"pageHost\":\"chat.example\"}', '{}', now())",
+				UUID.randomUUID(), turnId, capturedAt, device);
+		return turnId;
+	}
+
+	private static RiskScorer.Result result(String level, String... pii) {
+		Map<String, Object> found = new HashMap<>();
+		for (String type : pii) found.put(type, 1);
+		return new RiskScorer.Result(0.5, level, Map.of("pii", found), "test");
+	}
+
+	private Map<String, Long> byLevel() {
+		Map<String, Long> counts = new HashMap<>();
+		for (StatsRow row : stats(List.of(Dimension.LEVEL))) counts.put(row.level(), row.turns());
+		counts.values().removeIf(n -> n == 0);
+		return counts;
+	}
+
+	// level/type; rows that were moved out of keep their zero
+	private Map<String, Long> byPii() {
+		Map<String, Long> counts = new HashMap<>();
+		for (StatsRow row : stats(List.of(Dimension.LEVEL, Dimension.PII))) {
+			counts.put(row.level() + "/" + row.piiType(), row.turns());
+		}
+		return counts;
+	}
+
+	private List<StatsRow> stats(List<Dimension> groupBy) {
+		return rollups.stats(groupBy, hour, hour.plus(1, ChronoUnit.HOURS), device, "chat.example", null, 100);
+	}
+}
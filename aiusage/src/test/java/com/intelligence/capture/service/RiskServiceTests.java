@@ -0,0 +1,309 @@
+package com.intelligence.capture.service;
+
+import com.intelligence.capture.dto.StatsRow;
+import com.intelligence.capture.model.PromptEvent;
+import com.intelligence.capture.repo.PromptEventJdbcRepository;
+import com.intelligence.capture.repo.PromptEventRepository;
+import com.intelligence.capture.repo.RiskScoreRepository;
+import com.intelligence.capture.repo.RollupRepository;
+import com.intelligence.capture.repo.RollupRepository.Dimension;
+import com.intelligence.capture.risk.Redactor;
+import com.intelligence.capture.service.RiskService.ScoreRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.persistence.autoconfigure.EntityScan;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.InstanceOfAssertFactories.MAP;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Captures and scores turns against the database from application.yaml (docker-compose),
+ * with the real repositories, redaction and rollups. Each {@link #service()} is a fresh
+ * turn cache: a second one stands for a restart or another node.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RiskServiceTests {
+
+	@SpringBootConfiguration
+	@AutoConfigurationPackage(basePackages = "com.intelligence.capture.repo")
+	@EntityScan(basePackages = "com.intelligence.capture.model")
+	static class Config {
+	}
+
+	// HIGH on its own: credit card and SSN
+	private static final String PII = "card 4111 1111 1111 1111, ssn 123-45-6789";
+
+	@Autowired
+	private PromptEventRepository promptRepo;
+
+	@Autowired
+	private RiskScoreRepository riskRepo;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Autowired
+	private PlatformTransactionManager txManager;
+
+	private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+	private final RiskRules rules = new RiskRules(meters, "");
+	private final JsonMapper json = JsonMapper.builder().build();
+	private final String device = "risk-test-" + UUID.randomUUID();
+	private final Instant hour = Instant.now().truncatedTo(ChronoUnit.HOURS);
+	private final List<UUID> turns = new ArrayList<>();
+	private PromptEventJdbcRepository capture;
+	private RiskRollups rollups;
+
+	@BeforeEach
+	void setUp() {
+		capture = new PromptEventJdbcRepository(jdbc, json);
+		rollups = new RiskRollups(new RollupRepository(jdbc), meters);
+	}
+
+	@AfterEach
+	void cleanUp() {
+		jdbc.update("DELETE FROM risk_rollup_hourly WHERE device_id = ?", device);
+		jdbc.update("DELETE FROM pii_rollup_hourly WHERE device_id = ?", device);
+		for (UUID turnId : turns) {
+			jdbc.update("DELETE FROM risk_scores WHERE turn_id = ?", turnId);
+			jdbc.update("DELETE FROM prompt_events WHERE turn_id = ?", turnId);
+			jdbc.update("DELETE FROM turn_index WHERE turn_id = ?", turnId);
+		}
+	}
+
+	@Test
+	void promptOnlyPassScoresThePromptAndLeavesItsText() {
+		PromptEvent prompt = capturePrompt("reach me at jane.doe@corp.example.com");
+		UUID turnId = prompt.getTurnId();
+
+		service().score(ScoreRequest.forPrompt(prompt));
+
+		assertThat(stored(turnId)).containsEntry("status", "CLEARED").containsEntry("prompt", prompt.getPrompt());
+		assertThat(latest(turnId)).containsEntry("level", "LOW").containsEntry("debug_response_len", 0);
+		assertThat(byLevel()).containsExactlyInAnyOrderEntriesOf(Map.of("LOW", 1L));
+	}
+
+	@Test
+	void responseAfterTheCachedPromptRedactsOnlyTheResponse() {
+		RiskService service = service();
+		PromptEvent prompt = capturePrompt("hello");
+		UUID turnId = prompt.getTurnId();
+		service.score(ScoreRequest.forPrompt(prompt));
+
+		service.score(ScoreRequest.forResponse(captureResponse(turnId, "on file: " + PII)));
+
+		assertThat(stored(turnId)).containsEntry("status", "FLAGGED").containsEntry("prompt", "hello");
+		assertThat((String) stored(turnId).get("response_text")).startsWith("on file: ").doesNotContain("123-45-6789");
+		assertThat(findings(turnId)).containsEntry("prompt_findings", null);
+		assertThat(findings(turnId).get("response_findings")).isNotNull();
+		assertThat(levels(turnId)).containsExactly("LOW", "HIGH");
+		assertThat(byLevel()).containsExactlyInAnyOrderEntriesOf(Map.of("HIGH", 1L));
+	}
+
+	@Test
+	void responseFirstReloadsThePromptAndTheLatePromptPassIsSkipped() {
+		RiskService service = service();
+		PromptEvent prompt = capturePrompt("reach me at jane.doe@corp.example.com");
+		UUID turnId = prompt.getTurnId();
+
+		service.score(ScoreRequest.forResponse(captureResponse(turnId, "noted")));
+		service.score(ScoreRequest.forPrompt(prompt));
+
+		assertThat(levels(turnId)).containsExactly("LOW");
+		assertThat(latest(turnId)).containsEntry("debug_prompt_len", prompt.getPrompt().length())
+				.extracting(d -> d.get("pii")).asInstanceOf(MAP).containsOnlyKeys("email");
+		assertThat(stored(turnId)).containsEntry("status", "CLEARED");
+	}
+
+	@Test
+	void reloadOfARedactedResponseKeepsItsTextAndLevel() {
+		PromptEvent prompt = capturePrompt("hello");
+		UUID turnId = prompt.getTurnId();
+		service().score(ScoreRequest.forTurn(prompt, captureResponse(turnId, "on file: " + PII)));
+		String redacted = (String) stored(turnId).get("response_text");
+
+		service().scoreTurn(turnId, null);
+
+		assertThat(stored(turnId)).containsEntry("status", "FLAGGED").containsEntry("response_text", redacted);
+		assertThat(levels(turnId)).containsExactly("HIGH", "HIGH");
+		assertThat(byLevel()).containsExactlyInAnyOrderEntriesOf(Map.of("HIGH", 1L));
+	}
+
+	@Test
+	void concurrentPassesForOneTurnEndOnTheWholeTurnScore() throws Exception {
+		RiskService service = service();
+		List<Callable<Void>> passes = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			PromptEvent prompt = capturePrompt("hello " + i);
+			PromptEvent response = captureResponse(prompt.getTurnId(), "on file: " + PII);
+			passes.add(() -> { service.score(ScoreRequest.forPrompt(prompt)); return null; });
+			passes.add(() -> { service.score(ScoreRequest.forResponse(response)); return null; });
+		}
+		Collections.shuffle(passes, new Random(7));
+
+		try (ExecutorService pool = Executors.newFixedThreadPool(8)) {
+			for (Future<Void> f : pool.invokeAll(passes)) f.get();
+		}
+
+		for (UUID turnId : turns) {
+			assertThat(stored(turnId)).containsEntry("status", "FLAGGED");
+			assertThat(latest(turnId)).containsEntry("level", "HIGH");
+		}
+		assertThat(byLevel()).containsExactlyInAnyOrderEntriesOf(Map.of("HIGH", 20L));
+	}
+
+	@Test
+	void responseOnAnotherNodeScoresTheRedactedPromptFromItsFindings() {
+		PromptEvent prompt = capturePrompt("pay with " + PII);
+		UUID turnId = prompt.getTurnId();
+		service().score(ScoreRequest.forPrompt(prompt));
+		assertThat(stored(turnId)).containsEntry("status", "FLAGGED");
+		assertThat((String) stored(turnId).get("prompt")).doesNotContain("123-45-6789");
+
+		service().score(ScoreRequest.forResponse(captureResponse(turnId, "noted")));
+
+		assertThat(stored(turnId)).containsEntry("status", "FLAGGED");
+		assertThat(levels(turnId)).containsExactly("HIGH", "HIGH");
+		assertThat(byLevel()).containsExactlyInAnyOrderEntriesOf(Map.of("HIGH", 1L));
+	}
+
+	@Test
+	void outboxReloadAfterTheResponseKeepsAFlaggedTurnHigh() {
+		RiskService service = service();
+		UUID turnId = capturePrompt("pay with " + PII).getTurnId();
+		service.scoreTurn(turnId, null);
+		assertThat(stored(turnId)).containsEntry("status", "FLAGGED");
+		Map<String, Long> flagged = byLevel();
+		Map<String, Long> flaggedPii = byPii();
+		assertThat(flagged).containsExactlyInAnyOrderEntriesOf(Map.of("HIGH", 1L));
+		assertThat(flaggedPii).containsExactlyInAnyOrderEntriesOf(Map.of("HIGH/credit_card", 1L, "HIGH/ssn", 1L));
+
+		captureResponse(turnId, "noted");
+		assertThat(stored(turnId)).containsEntry("status", "FLAGGED");
+		service.scoreTurn(turnId, null);
+
+		assertThat(stored(turnId)).containsEntry("status", "FLAGGED").containsEntry("response_text", "noted");
+		assertThat(levels(turnId)).containsExactly("HIGH", "HIGH");
+		assertThat(byLevel()).isEqualTo(flagged);
+		assertThat(byPii()).isEqualTo(flaggedPii);
+	}
+
+	// ---------- helpers ----------
+
+	private RiskService service() {
+		return new RiskService(promptRepo, riskRepo, new TransactionTemplate(txManager), new Redactor(Map.of()),
+				new ScanCache(meters, rules, 100), mock(RiskEventHub.class), rollups, mock(NearDuplicates.class), rules,
+				json, meters, false, 100);
+	}
+
+	private PromptEvent capturePrompt(String text) {
+		UUID turnId = UUID.randomUUID();
+		turns.add(turnId);
+
+		PromptEvent e = new PromptEvent();
+		e.setId(UUID.randomUUID());
+		e.setTurnId(turnId);
+		e.setStatus("PROMPT_ONLY");
+		e.setPrompt(text);
+		e.setPromptLength(text.length());
+		e.setPromptHash("p-" + turnId);
+		e.setCapturedAt(hour.plus(1, ChronoUnit.MINUTES));
+		e.setDeviceId(device);
+		e.setSendMethod("enter");
+		e.setMetadata(Map.of());
+		e.setResponseMetadata(Map.of());
+		e.setCreatedAt(Instant.now());
+		assertThat(capture.upsertPrompt(e).applied()).isTrue();
+		return e;
+	}
+
+	private PromptEvent captureResponse(UUID turnId, String text) {
+		PromptEvent e = new PromptEvent();
+		e.setTurnId(turnId);
+		e.setResponseText(text);
+		e.setResponseCapturedAt(Instant.now());
+		e.setResponseLength(text.length());
+		e.setResponseHash("r-" + turnId);
+		e.setResponseMetadata(Map.of());
+		e.setStatus("COMPLETED");
+		assertThat(capture.updateResponse(e)).get().extracting(PromptEventJdbcRepository.TurnWrite::applied)
+				.isEqualTo(true);
+		return e;
+	}
+
+	private Map<String, Object> stored(UUID turnId) {
+		return jdbc.queryForMap("SELECT status, prompt, response_text FROM prompt_events WHERE turn_id = ?", turnId);
+	}
+
+	private Map<String, Object> findings(UUID turnId) {
+		return jdbc.queryForMap("SELECT prompt_findings, response_findings FROM prompt_events WHERE turn_id = ?",
+				turnId);
+	}
+
+	// details of the turn's newest score
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> latest(UUID turnId) {
+		String details = jdbc.queryForObject("SELECT CAST(details AS text) FROM risk_scores WHERE turn_id = ? "
+				+ "ORDER BY scored_at DESC LIMIT 1", String.class, turnId);
+		return json.readValue(details, Map.class);
+	}
+
+	// Every score the turn got, oldest first.
+	private List<String> levels(UUID turnId) {
+		return jdbc.queryForList("SELECT details->>'level' FROM risk_scores WHERE turn_id = ? ORDER BY scored_at",
+				String.class, turnId);
+	}
+
+	private Map<String, Long> byLevel() {
+		rollups.flush();
+		Map<String, Long> counts = new HashMap<>();
+		for (StatsRow row : rollups.stats(List.of(Dimension.LEVEL), hour, hour.plus(1, ChronoUnit.HOURS), device,
+				null, null, 100)) {
+			counts.put(row.level(), row.turns());
+		}
+		counts.values().removeIf(n -> n == 0);
+		return counts;
+	}
+
+	// level/type
+	private Map<String, Long> byPii() {
+		rollups.flush();
+		Map<String, Long> counts = new HashMap<>();
+		for (StatsRow row : rollups.stats(List.of(Dimension.LEVEL, Dimension.PII), hour, hour.plus(1, ChronoUnit.HOURS),
+				device, null, null, 100)) {
+			counts.put(row.level() + "/" + row.piiType(), row.turns());
+		}
+		counts.values().removeIf(n -> n == 0);
+		return counts;
+	}
+}
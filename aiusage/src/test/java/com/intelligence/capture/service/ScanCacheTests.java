@@ -0,0 +1,54 @@
+package com.intelligence.capture.service;
+
+import com.intelligence.capture.risk.RiskScorer.PartScan;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScanCacheTests {
+
+	private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+	private final RiskRules rules = new RiskRules(meters, "");
+
+	@Test
+	void repeatedTextIsScannedOnce() {
+		ScanCache cache = new ScanCache(meters, rules, 10);
+
+		PartScan first = cache.scan("mail a@b.io", "h1");
+		PartScan second = cache.scan("mail a@b.io", "h1");
+
+		assertThat(second).isSameAs(first);
+		assertThat(requests("hit")).isEqualTo(1);
+		assertThat(requests("miss")).isEqualTo(1);
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedPastMaxEntries() {
+		ScanCache cache = new ScanCache(meters, rules, 2);
+
+		cache.scan("one", "h1");
+		cache.scan("two", "h2");
+		cache.scan("one", "h1");
+		cache.scan("three", "h3");
+
+		assertThat(cache.contains("h1")).isTrue();
+		assertThat(cache.contains("h2")).isFalse();
+		assertThat(meters.get("scoring.scan-cache.evictions").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void rescansWhenHashDoesNotFitText() {
+		ScanCache cache = new ScanCache(meters, rules, 10);
+
+		cache.scan("mail a@b.io", "h1");
+		PartScan other = cache.scan("something longer", "h1");
+
+		assertThat(other.length()).isEqualTo("something longer".length());
+		assertThat(requests("miss")).isEqualTo(2);
+	}
+
+	private double requests(String result) {
+		return meters.get("scoring.scan-cache.requests").tag("result", result).counter().count();
+	}
+}
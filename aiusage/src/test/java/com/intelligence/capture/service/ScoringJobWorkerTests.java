@@ -0,0 +1,22 @@
+package com.intelligence.capture.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScoringJobWorkerTests {
+
+	@Test
+	void backoffDoublesPerAttemptUpToTheCap() {
+		Duration base = Duration.ofSeconds(10);
+		Duration max = Duration.ofMinutes(10);
+
+		assertThat(ScoringJobWorker.backoff(base, max, 1)).isEqualTo(Duration.ofSeconds(10));
+		assertThat(ScoringJobWorker.backoff(base, max, 2)).isEqualTo(Duration.ofSeconds(20));
+		assertThat(ScoringJobWorker.backoff(base, max, 4)).isEqualTo(Duration.ofSeconds(80));
+		assertThat(ScoringJobWorker.backoff(base, max, 7)).isEqualTo(max);
+		assertThat(ScoringJobWorker.backoff(base, max, 1000)).isEqualTo(max);
+	}
+}
@@ -0,0 +1,89 @@
+package com.intelligence.capture.service;
+
+import com.intelligence.capture.dto.CapturePromptRequest;
+import com.intelligence.capture.model.PromptEvent;
+import com.intelligence.capture.repo.PromptEventJdbcRepository;
+import com.intelligence.capture.repo.PromptEventJdbcRepository.TurnState;
+import com.intelligence.capture.repo.PromptEventJdbcRepository.TurnWrite;
+import com.intelligence.capture.repo.ScoringJobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TurnCaptureServiceTests {
+
+	private final PromptEventJdbcRepository jdbcRepo = mock(PromptEventJdbcRepository.class);
+	private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+	@SuppressWarnings("unchecked")
+	private final TurnCaptureService service = new TurnCaptureService(jdbcRepo, mock(ScoringExecutor.class),
+			mock(ScoringJobRepository.class), mock(ObjectProvider.class), mock(TransactionTemplate.class),
+			mock(Validator.class), new CaptureMetrics(meters), TurnCaptureService.ScoringQueue.MEMORY,
+			Duration.ofMinutes(5));
+
+	@Test
+	void capturedAtWithinTheSkewIsKept() {
+		Instant client = Instant.now().minus(2, ChronoUnit.MINUTES);
+
+		PromptEvent stored = capture(client.toString());
+
+		assertThat(stored.getCapturedAt()).isEqualTo(client);
+		assertThat(stored.getClientCapturedAt()).isNull();
+		assertThat(meters.get("capture.clock.skewed").counter().count()).isZero();
+	}
+
+	@Test
+	void capturedAtFarOffIsClampedAndKeptAsTheClientValue() {
+		Instant future = Instant.parse("2031-01-01T00:00:00Z");
+		Instant past = Instant.parse("1999-01-01T00:00:00Z");
+
+		PromptEvent ahead = capture(future.toString());
+		PromptEvent behind = capture(past.toString());
+
+		assertThat(ahead.getCapturedAt()).isCloseTo(Instant.now().plus(5, ChronoUnit.MINUTES), within(5, ChronoUnit.SECONDS));
+		assertThat(ahead.getClientCapturedAt()).isEqualTo(future);
+		assertThat(behind.getCapturedAt()).isCloseTo(Instant.now().minus(5, ChronoUnit.MINUTES), within(5, ChronoUnit.SECONDS));
+		assertThat(behind.getClientCapturedAt()).isEqualTo(past);
+		assertThat(meters.get("capture.clock.skewed").counter().count()).isEqualTo(2);
+	}
+
+	@Test
+	void missingOrUnparseableCapturedAtIsNow() {
+		assertThat(capture(null).getCapturedAt()).isCloseTo(Instant.now(), within(5, ChronoUnit.SECONDS));
+		assertThat(capture("yesterday").getClientCapturedAt()).isNull();
+	}
+
+	private PromptEvent capture(String capturedAt) {
+		UUID turnId = UUID.randomUUID();
+		when(jdbcRepo.upsertPrompt(any())).thenReturn(
+				new TurnWrite(new TurnState(UUID.randomUUID(), turnId, "PROMPT_ONLY", Instant.now(), null), false));
+
+		CapturePromptRequest req = new CapturePromptRequest();
+		req.turnId = turnId.toString();
+		req.prompt = "hello";
+		req.capturedAt = capturedAt;
+		service.capturePrompt(req);
+
+		ArgumentCaptor<PromptEvent> written = ArgumentCaptor.forClass(PromptEvent.class);
+		verify(jdbcRepo).upsertPrompt(written.capture());
+		PromptEvent e = written.getValue();
+		clearInvocations(jdbcRepo);
+		return e;
+	}
+}